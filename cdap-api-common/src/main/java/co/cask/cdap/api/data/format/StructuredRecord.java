@@ -21,21 +21,22 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.schema.Schema;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
- * Instance of a record structured by a {@link Schema}. Fields are accessible by name.
+ * Instance of a record structured by a {@link Schema}. Fields are accessible by name, or by the position of the
+ * field in {@link Schema#getFields()}, which avoids the lookup of the field by name.
  */
 @Beta
 public class StructuredRecord implements Serializable {
   private final Schema schema;
-  private final Map<String, Object> fields;
+  // Field values in the same order as the schema fields
+  private final Object[] fields;
 
-  private static final long serialVersionUID = -4648752378975451591L;
+  private static final long serialVersionUID = 2218364792163476402L;
 
-  private StructuredRecord(Schema schema, Map<String, Object> fields) {
+  private StructuredRecord(Schema schema, Object[] fields) {
     this.schema = schema;
     this.fields = fields;
   }
@@ -58,7 +59,21 @@ public class StructuredRecord implements Serializable {
    */
   @SuppressWarnings("unchecked")
   public <T> T get(String fieldName) {
-    return (T) fields.get(fieldName);
+    int idx = schema.getFieldIndex(fieldName);
+    return idx < 0 ? null : (T) fields[idx];
+  }
+
+  /**
+   * Get the value of a field in the record by the position of the field in the schema.
+   *
+   * @param fieldIndex index of the field in {@link Schema#getFields()}.
+   * @param <T> type of object of the field value.
+   * @return value of the field.
+   * @throws IndexOutOfBoundsException if the index is not a valid field index of the schema.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(int fieldIndex) {
+    return (T) fields[fieldIndex];
   }
 
   /**
@@ -81,11 +96,11 @@ public class StructuredRecord implements Serializable {
    */
   public static class Builder {
     private final Schema schema;
-    private Map<String, Object> fields;
+    private final Object[] fields;
 
     private Builder(Schema schema) {
       this.schema = schema;
-      this.fields = new HashMap<>();
+      this.fields = new Object[schema.getFields().size()];
     }
 
     /**
@@ -98,8 +113,22 @@ public class StructuredRecord implements Serializable {
      *                                   value is given.
      */
     public Builder set(String fieldName, Object value) {
-      validateAndGetField(fieldName, value);
-      fields.put(fieldName, value);
+      fields[validateAndGetFieldIndex(fieldName, value)] = value;
+      return this;
+    }
+
+    /**
+     * Set the field at the given position of the schema fields to the given value.
+     *
+     * @param fieldIndex Index of the field in {@link Schema#getFields()}.
+     * @param value Value for the field.
+     * @return This builder.
+     * @throws UnexpectedFormatException if the index is not a valid field index, or the field is not nullable but
+     *                                   a null value is given.
+     */
+    public Builder set(int fieldIndex, Object value) {
+      validateField(getField(fieldIndex), value);
+      fields[fieldIndex] = value;
       return this;
     }
 
@@ -114,8 +143,26 @@ public class StructuredRecord implements Serializable {
      *                                   value is given, or the string cannot be converted to the type for the field.
      */
     public Builder convertAndSet(String fieldName, String strVal) throws UnexpectedFormatException {
-      Schema.Field field = validateAndGetField(fieldName, strVal);
-      fields.put(fieldName, convertString(field.getSchema(), strVal));
+      int idx = validateAndGetFieldIndex(fieldName, strVal);
+      fields[idx] = convertString(schema.getFields().get(idx).getSchema(), strVal);
+      return this;
+    }
+
+    /**
+     * Convert the given string into the type of the field at the given position of the schema fields, and set the
+     * value for that field. A String can be converted to a boolean, int, long, float, double, bytes, string, or null.
+     *
+     * @param fieldIndex Index of the field in {@link Schema#getFields()}.
+     * @param strVal String value for the field.
+     * @return This builder.
+     * @throws UnexpectedFormatException if the index is not a valid field index, or the field is not nullable but
+     *                                   a null value is given, or the string cannot be converted to the type for
+     *                                   the field.
+     */
+    public Builder convertAndSet(int fieldIndex, String strVal) throws UnexpectedFormatException {
+      Schema.Field field = getField(fieldIndex);
+      validateField(field, strVal);
+      fields[fieldIndex] = convertString(field.getSchema(), strVal);
       return this;
     }
 
@@ -126,17 +173,12 @@ public class StructuredRecord implements Serializable {
      * @throws UnexpectedFormatException if there is at least one non-nullable field without a value.
      */
     public StructuredRecord build() throws UnexpectedFormatException {
-      // check that all non-nullable fields have a value.
+      // check that all non-nullable fields have a value. Since a non-nullable field can't be set to null,
+      // a null value means the field is not set.
+      int idx = 0;
       for (Schema.Field field : schema.getFields()) {
-        String fieldName = field.getName();
-        if (!fields.containsKey(fieldName)) {
-          // if the field is not nullable and there is no value set for the field, this is invalid.
-          if (!field.getSchema().isNullable()) {
-            throw new UnexpectedFormatException("Field " + fieldName + " must contain a value.");
-          } else {
-            // otherwise, set the value for the field to null
-            fields.put(fieldName, null);
-          }
+        if (fields[idx++] == null && !field.getSchema().isNullable()) {
+          throw new UnexpectedFormatException("Field " + field.getName() + " must contain a value.");
         }
       }
       return new StructuredRecord(schema, fields);
@@ -181,15 +223,26 @@ public class StructuredRecord implements Serializable {
       }
     }
 
-    private Schema.Field validateAndGetField(String fieldName, Object val) {
-      Schema.Field field = schema.getField(fieldName);
-      if (field == null) {
+    private int validateAndGetFieldIndex(String fieldName, Object val) {
+      int idx = schema.getFieldIndex(fieldName);
+      if (idx < 0) {
         throw new UnexpectedFormatException("field " + fieldName + " is not in the schema.");
       }
+      validateField(schema.getFields().get(idx), val);
+      return idx;
+    }
+
+    private Schema.Field getField(int fieldIndex) {
+      if (fieldIndex < 0 || fieldIndex >= fields.length) {
+        throw new UnexpectedFormatException("field index " + fieldIndex + " is not in the schema.");
+      }
+      return schema.getFields().get(fieldIndex);
+    }
+
+    private void validateField(Schema.Field field, Object val) {
       if (!field.getSchema().isNullable() && val == null) {
-        throw new UnexpectedFormatException("field " + fieldName + " cannot be set to a null value.");
+        throw new UnexpectedFormatException("field " + field.getName() + " cannot be set to a null value.");
       }
-      return field;
     }
   }
 
@@ -204,12 +257,12 @@ public class StructuredRecord implements Serializable {
 
     StructuredRecord that = (StructuredRecord) o;
 
-    return Objects.equals(schema, that.schema) && Objects.equals(fields, that.fields);
+    return Objects.equals(schema, that.schema) && Arrays.equals(fields, that.fields);
 
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(schema, fields);
+    return Objects.hash(schema, Arrays.hashCode(fields));
   }
 }
@@ -375,6 +375,9 @@ public final class Schema implements Serializable {
   private final String recordName;
   private final Map<String, Field> fieldMap;
   private final List<Field> fields;
+  // Not serialized, so that the serialized form stays compatible with schemas serialized before the index was added.
+  // It is computed on demand from the fieldMap.
+  private transient volatile Map<String, Integer> fieldIndexes;
 
   private final List<Schema> unionSchemas;
 
@@ -485,6 +488,26 @@ public final class Schema implements Serializable {
     return fieldMap.get(name);
   }
 
+  /**
+   * Returns the position of the record {@link Field} of the given name in the list returned by {@link #getFields()}.
+   *
+   * @param name Name of the field
+   * @return The 0-base index of the field or {@code -1} if there is no such field in this record
+   *         or this is not a {@link Type#RECORD RECORD} schema.
+   */
+  public int getFieldIndex(String name) {
+    if (fieldMap == null) {
+      return -1;
+    }
+    // The index may be created more than once by concurrent calls, which all yield the same result.
+    Map<String, Integer> indexes = fieldIndexes;
+    if (indexes == null) {
+      fieldIndexes = indexes = createIndex(fieldMap.keySet()).getKey();
+    }
+    Integer idx = indexes.get(name);
+    return idx == null ? -1 : idx;
+  }
+
   /**
    * @return An immutable {@link List} of schemas inside this union
    *         or {@code null} if this is not a {@link Type#UNION UNION} schema.
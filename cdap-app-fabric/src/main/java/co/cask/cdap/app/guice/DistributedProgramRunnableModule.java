@@ -36,6 +36,7 @@ import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data.stream.StreamAdminModules;
 import co.cask.cdap.data.view.ViewAdminModules;
 import co.cask.cdap.data2.audit.AuditModule;
+import co.cask.cdap.data2.metadata.writer.AsyncLineageWriter;
 import co.cask.cdap.data2.metadata.writer.LineageWriter;
 import co.cask.cdap.data2.registry.RuntimeUsageRegistry;
 import co.cask.cdap.explore.guice.ExploreClientModule;
@@ -127,7 +128,10 @@ public class DistributedProgramRunnableModule {
     return Modules.override(combined).with(new AbstractModule() {
       @Override
       protected void configure() {
-        bind(LineageWriter.class).to(RemoteLineageWriter.class);
+        // Lineage is buffered and written in batches, by the AsyncLineageWriter service started by the container
+        bind(LineageWriter.class).annotatedWith(Names.named(AsyncLineageWriter.DELEGATE)).to(RemoteLineageWriter.class);
+        bind(AsyncLineageWriter.class).in(Scopes.SINGLETON);
+        bind(LineageWriter.class).to(AsyncLineageWriter.class);
         bind(RuntimeUsageRegistry.class).to(RemoteRuntimeUsageRegistry.class).in(Scopes.SINGLETON);
       }
     });
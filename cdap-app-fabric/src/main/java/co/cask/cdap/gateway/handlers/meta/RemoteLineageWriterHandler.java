@@ -16,8 +16,10 @@
 
 package co.cask.cdap.gateway.handlers.meta;
 
+import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.common.internal.remote.MethodArgument;
 import co.cask.cdap.data2.metadata.lineage.AccessType;
+import co.cask.cdap.data2.metadata.lineage.DataAccess;
 import co.cask.cdap.data2.metadata.writer.LineageWriter;
 import co.cask.cdap.proto.id.DatasetId;
 import co.cask.cdap.proto.id.NamespacedEntityId;
@@ -28,7 +30,9 @@ import com.google.inject.Inject;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 
@@ -72,4 +76,33 @@ public class RemoteLineageWriterHandler extends AbstractRemoteSystemOpsHandler {
 
     responder.sendStatus(HttpResponseStatus.OK);
   }
+
+  @POST
+  @Path("/addAccesses")
+  public void addAccesses(HttpRequest request, HttpResponder responder) throws Exception {
+    Iterator<MethodArgument> arguments = parseArguments(request);
+
+    // Each access is a sequence of run, dataset or stream, access type, access time and component
+    List<DataAccess> accesses = new ArrayList<>();
+    while (arguments.hasNext()) {
+      ProgramRunId run = deserializeNext(arguments);
+      NamespacedEntityId data = deserializeNext(arguments);
+      AccessType accessType = deserializeNext(arguments);
+      Long accessTimeMillis = deserializeNext(arguments);
+      NamespacedEntityId component = deserializeNext(arguments);
+      if (run == null || accessType == null || accessTimeMillis == null) {
+        throw new BadRequestException("Run, access type and access time are required for each access.");
+      }
+      if (data instanceof DatasetId) {
+        accesses.add(new DataAccess(run, (DatasetId) data, accessType, accessTimeMillis, component));
+      } else if (data instanceof StreamId) {
+        accesses.add(new DataAccess(run, (StreamId) data, accessType, accessTimeMillis, component));
+      } else {
+        throw new BadRequestException("Expected a dataset or a stream, but got " + data);
+      }
+    }
+    lineageWriter.addAccesses(accesses);
+
+    responder.sendStatus(HttpResponseStatus.OK);
+  }
 }
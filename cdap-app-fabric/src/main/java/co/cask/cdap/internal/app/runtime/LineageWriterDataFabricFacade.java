@@ -114,7 +114,13 @@ public final class LineageWriterDataFabricFacade implements DataFabricFacade, Pr
   @Override
   public QueueConsumer createConsumer(QueueName queueName,
                                       ConsumerConfig consumerConfig, int numGroups) throws IOException {
-    QueueConsumer consumer = queueClientFactory.createConsumer(queueName, consumerConfig, numGroups);
+    return createConsumer(queueName, consumerConfig, numGroups, QueueMetrics.NOOP_QUEUE_METRICS);
+  }
+
+  @Override
+  public QueueConsumer createConsumer(QueueName queueName, ConsumerConfig consumerConfig, int numGroups,
+                                      QueueMetrics queueMetrics) throws IOException {
+    QueueConsumer consumer = queueClientFactory.createConsumer(queueName, consumerConfig, numGroups, queueMetrics);
     if (consumer instanceof TransactionAware) {
       consumer = new CloseableQueueConsumer(datasetCache, consumer);
       datasetCache.addExtraTransactionAware((TransactionAware) consumer);
@@ -36,6 +36,7 @@ public final class SystemArguments {
   private static final String MEMORY_KEY = "system.resources.memory";
   private static final String CORES_KEY = "system.resources.cores";
   private static final String LOG_LEVEL = "system.log.level";
+  private static final String FLOWLET_PROCESS_THREADS_KEY = "system.flowlet.process.threads";
 
   /**
    * Set the log level for the {@link LogAppenderInitializer}.
@@ -95,6 +96,19 @@ public final class SystemArguments {
                          cores != null ? cores : defaultResources.getVirtualCores());
   }
 
+  /**
+   * Returns the number of threads for invoking the process methods of a flowlet instance, based on configurations in
+   * the given arguments. With more than one thread, every process method of the flowlet instance is invoked on a
+   * work-stealing pool, with its own flowlet object, datasets and transaction context. Returns {@code 1} if the
+   * number of threads is not configured.
+   *
+   * @param args the arguments to use for looking up the number of threads
+   */
+  public static int getFlowletProcessThreads(Map<String, String> args) {
+    Integer threads = getPositiveInt(args, FLOWLET_PROCESS_THREADS_KEY, "number of flowlet process threads");
+    return threads == null ? 1 : threads;
+  }
+
   /**
    * Gets a positive integer value from the given map using the given key.
    * If there is no such key or if the value is negative, returns {@code null}.
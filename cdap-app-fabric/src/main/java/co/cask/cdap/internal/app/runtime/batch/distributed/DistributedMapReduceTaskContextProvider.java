@@ -20,6 +20,7 @@ import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.app.guice.DistributedProgramRunnableModule;
 import co.cask.cdap.app.runtime.ProgramOptions;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.data2.metadata.writer.AsyncLineageWriter;
 import co.cask.cdap.internal.app.runtime.SystemArguments;
 import co.cask.cdap.internal.app.runtime.batch.MapReduceClassLoader;
 import co.cask.cdap.internal.app.runtime.batch.MapReduceContextConfig;
@@ -47,6 +48,7 @@ public final class DistributedMapReduceTaskContextProvider extends MapReduceTask
   private final ZKClientService zkClientService;
   private final KafkaClientService kafkaClientService;
   private final MetricsCollectionService metricsCollectionService;
+  private final AsyncLineageWriter lineageWriter;
   private final AuthorizationEnforcementService authorizationEnforcementService;
   private final MapReduceContextConfig mapReduceContextConfig;
   private final LogAppenderInitializer logAppenderInitializer;
@@ -59,6 +61,7 @@ public final class DistributedMapReduceTaskContextProvider extends MapReduceTask
     this.zkClientService = injector.getInstance(ZKClientService.class);
     this.kafkaClientService = injector.getInstance(KafkaClientService.class);
     this.metricsCollectionService = injector.getInstance(MetricsCollectionService.class);
+    this.lineageWriter = injector.getInstance(AsyncLineageWriter.class);
     this.logAppenderInitializer = injector.getInstance(LogAppenderInitializer.class);
     this.authorizationEnforcementService = injector.getInstance(AuthorizationEnforcementService.class);
     this.mapReduceContextConfig = new MapReduceContextConfig(hConf);
@@ -71,11 +74,12 @@ public final class DistributedMapReduceTaskContextProvider extends MapReduceTask
       List<ListenableFuture<State>> startFutures = Services.chainStart(zkClientService,
                                                                        kafkaClientService,
                                                                        metricsCollectionService,
+                                                                       lineageWriter,
                                                                        authorizationEnforcementService).get();
       // All services should be started
       for (ListenableFuture<State> future : startFutures) {
-        Preconditions.checkState(future.get() == State.RUNNING, "Failed to start services: %s, %s, %s, %s",
-                                 zkClientService, kafkaClientService, metricsCollectionService,
+        Preconditions.checkState(future.get() == State.RUNNING, "Failed to start services: %s, %s, %s, %s, %s",
+                                 zkClientService, kafkaClientService, metricsCollectionService, lineageWriter,
                                  authorizationEnforcementService);
       }
       logAppenderInitializer.initialize();
@@ -102,7 +106,7 @@ public final class DistributedMapReduceTaskContextProvider extends MapReduceTask
       failure = e;
     }
     try {
-      Services.chainStop(metricsCollectionService, kafkaClientService, zkClientService,
+      Services.chainStop(lineageWriter, metricsCollectionService, kafkaClientService, zkClientService,
                          authorizationEnforcementService).get();
     } catch (Exception e) {
       if (failure != null) {
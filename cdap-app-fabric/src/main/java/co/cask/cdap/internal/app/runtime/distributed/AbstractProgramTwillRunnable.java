@@ -31,6 +31,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.lang.jar.BundleJarUtil;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
+import co.cask.cdap.data2.metadata.writer.AsyncLineageWriter;
 import co.cask.cdap.internal.app.ApplicationSpecificationAdapter;
 import co.cask.cdap.internal.app.runtime.AbstractListener;
 import co.cask.cdap.internal.app.runtime.BasicArguments;
@@ -113,6 +114,7 @@ public abstract class AbstractProgramTwillRunnable<T extends ProgramRunner> impl
   private ZKClientService zkClientService;
   private KafkaClientService kafkaClientService;
   private MetricsCollectionService metricsCollectionService;
+  private AsyncLineageWriter lineageWriter;
   private StreamCoordinatorClient streamCoordinatorClient;
   private ProgramResourceReporter resourceReporter;
   private LogAppenderInitializer logAppenderInitializer;
@@ -168,6 +170,7 @@ public abstract class AbstractProgramTwillRunnable<T extends ProgramRunner> impl
       zkClientService = injector.getInstance(ZKClientService.class);
       kafkaClientService = injector.getInstance(KafkaClientService.class);
       metricsCollectionService = injector.getInstance(MetricsCollectionService.class);
+      lineageWriter = injector.getInstance(AsyncLineageWriter.class);
       streamCoordinatorClient = injector.getInstance(StreamCoordinatorClient.class);
 
       programOpts = createProgramOptions(cmdLine, context, context.getSpecification().getConfigs());
@@ -272,8 +275,8 @@ public abstract class AbstractProgramTwillRunnable<T extends ProgramRunner> impl
   @Override
   public void run() {
     Futures.getUnchecked(
-      Services.chainStart(zkClientService, kafkaClientService,
-                          metricsCollectionService, streamCoordinatorClient, resourceReporter, authEnforcementService));
+      Services.chainStart(zkClientService, kafkaClientService, metricsCollectionService, lineageWriter,
+                          streamCoordinatorClient, resourceReporter, authEnforcementService));
 
     LOG.info("Starting runnable: {}", name);
     controller = programRunner.run(program, programOpts);
@@ -340,7 +343,7 @@ public abstract class AbstractProgramTwillRunnable<T extends ProgramRunner> impl
         Closeables.closeQuietly(program);
       }
       Futures.getUnchecked(
-        Services.chainStop(authEnforcementService, resourceReporter, streamCoordinatorClient,
+        Services.chainStop(authEnforcementService, resourceReporter, streamCoordinatorClient, lineageWriter,
                            metricsCollectionService, kafkaClientService, zkClientService));
       LOG.info("Runnable stopped: {}", name);
     } finally {
@@ -20,6 +20,7 @@ import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.QueueConsumer;
 import co.cask.cdap.data2.registry.RuntimeUsageRegistry;
+import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import co.cask.cdap.data2.transaction.stream.StreamConsumer;
 import co.cask.cdap.internal.app.runtime.DataFabricFacade;
 import co.cask.cdap.proto.id.EntityId;
@@ -48,6 +49,7 @@ final class ConsumerSupplier<T> implements Supplier<T>, Closeable {
   private final int numGroups;
   private final RuntimeUsageRegistry runtimeUsageRegistry;
   private final Iterable<? extends EntityId> owners;
+  private final QueueMetrics queueMetrics;
   private ConsumerConfig consumerConfig;
   private Closeable consumer;
 
@@ -55,26 +57,28 @@ final class ConsumerSupplier<T> implements Supplier<T>, Closeable {
                                         RuntimeUsageRegistry runtimeUsageRegistry,
                                         DataFabricFacade dataFabricFacade,
                                         QueueName queueName, ConsumerConfig consumerConfig) {
-    return create(owners, runtimeUsageRegistry, dataFabricFacade, queueName, consumerConfig, -1);
+    return create(owners, runtimeUsageRegistry, dataFabricFacade, queueName, consumerConfig, -1,
+                  QueueMetrics.NOOP_QUEUE_METRICS);
   }
 
   static <T> ConsumerSupplier<T> create(Iterable<? extends EntityId> owners,
                                         RuntimeUsageRegistry runtimeUsageRegistry,
                                         DataFabricFacade dataFabricFacade, QueueName queueName,
-                                        ConsumerConfig consumerConfig, int numGroups) {
+                                        ConsumerConfig consumerConfig, int numGroups, QueueMetrics queueMetrics) {
     return new ConsumerSupplier<>(owners, runtimeUsageRegistry, dataFabricFacade,
-                                   queueName, consumerConfig, numGroups);
+                                   queueName, consumerConfig, numGroups, queueMetrics);
   }
 
   private ConsumerSupplier(Iterable<? extends EntityId> owners, RuntimeUsageRegistry runtimeUsageRegistry,
                            DataFabricFacade dataFabricFacade, QueueName queueName,
-                           ConsumerConfig consumerConfig, int numGroups) {
+                           ConsumerConfig consumerConfig, int numGroups, QueueMetrics queueMetrics) {
     this.owners = owners;
     this.runtimeUsageRegistry = runtimeUsageRegistry;
     this.dataFabricFacade = dataFabricFacade;
     this.queueName = queueName;
     this.numGroups = numGroups;
     this.consumerConfig = consumerConfig;
+    this.queueMetrics = queueMetrics;
     open(consumerConfig.getGroupSize());
   }
 
@@ -96,7 +100,7 @@ final class ConsumerSupplier<T> implements Supplier<T>, Closeable {
                                     consumerConfig.getHashKey());
       }
       if (queueName.isQueue()) {
-        QueueConsumer queueConsumer = dataFabricFacade.createConsumer(queueName, config, numGroups);
+        QueueConsumer queueConsumer = dataFabricFacade.createConsumer(queueName, config, numGroups, queueMetrics);
         consumerConfig = queueConsumer.getConfig();
         consumer = queueConsumer;
       } else {
@@ -26,6 +26,9 @@ import co.cask.cdap.app.queue.InputDatum;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.common.logging.LoggingContextAccessor;
+import co.cask.cdap.common.metrics.LatencyHistogram;
+import co.cask.cdap.common.metrics.MetricHandle;
+import co.cask.cdap.common.metrics.MetricHandles;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.internal.app.queue.SingleItemQueueReader;
 import co.cask.cdap.internal.app.runtime.DataFabricFacade;
@@ -35,8 +38,10 @@ import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.tephra.TransactionContext;
@@ -47,43 +52,83 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 
 /**
  * This class responsible invoking process methods of a {@link Flowlet}.
+ * <p>
+ * By default, all process methods of a flowlet instance are invoked one at a time from a single thread. When the
+ * flowlet instance runs with more than one process thread, every {@link FlowletProcessWorker} is dispatched
+ * independently on a work-stealing {@link ForkJoinPool} once its next process entry is due, so that a slow input
+ * does not stall the others. A worker is never dispatched again before its previous dispatch completes, hence the
+ * datasets and the transaction context of a worker are only used by one thread at a time.
  */
 final class FlowletProcessDriver extends AbstractExecutionThreadService {
 
   private static final Logger LOG = LoggerFactory.getLogger(FlowletProcessDriver.class);
 
   private final BasicFlowletContext flowletContext;
-  private final DataFabricFacade dataFabricFacade;
-  private final Callback txCallback;
+  private final int processThreads;
   private final LoggingContext loggingContext;
-  private final PriorityQueue<FlowletProcessEntry<?>> processQueue;
+  private final List<WorkerQueue> workerQueues;
+  private final MetricHandle attemptReadMetric;
+  private final LoadingCache<String, MetricsContext> queueMetricsCollectors;
+  // Dequeue and process latencies keyed by input queue simple name, with an empty name for ticks and generators
+  private final ConcurrentMap<String, InputLatency> inputLatencies;
+  // Failure of a process thread that should fail the driver
+  private final AtomicReference<UnauthorizedException> processFailure;
 
   private Thread runThread;
   private ExecutorService processExecutor;
-
-  FlowletProcessDriver(BasicFlowletContext flowletContext,
-                       DataFabricFacade dataFabricFacade,
-                       Callback txCallback,
-                       Collection<? extends ProcessSpecification<?>> processSpecifications) {
+  private ForkJoinPool processPool;
+  // Workers that are not being processed, ordered by the time their next process entry is due
+  private DelayQueue<WorkerQueue> dispatchQueue;
+
+  FlowletProcessDriver(final BasicFlowletContext flowletContext,
+                       Collection<FlowletProcessWorker> workers, int processThreads) {
+    Preconditions.checkArgument(!workers.isEmpty(), "No process worker for flowlet %s", flowletContext);
+    Preconditions.checkArgument(processThreads > 1 || workers.size() == 1,
+                                "Multiple process workers require more than one process thread: %s", workers.size());
     this.flowletContext = flowletContext;
-    this.dataFabricFacade = dataFabricFacade;
-    this.txCallback = txCallback;
+    this.processThreads = processThreads;
     this.loggingContext = flowletContext.getLoggingContext();
-
-    processQueue = new PriorityQueue<>(processSpecifications.size());
-    for (ProcessSpecification<?> spec : processSpecifications) {
-      processQueue.offer(FlowletProcessEntry.create(spec));
+    this.attemptReadMetric = MetricHandles.get(flowletContext.getProgramMetrics(), "process.tuples.attempt.read");
+    this.queueMetricsCollectors = CacheBuilder.newBuilder()
+      .expireAfterAccess(1, TimeUnit.HOURS)
+      .build(new CacheLoader<String, MetricsContext>() {
+        @Override
+        public MetricsContext load(String key) throws Exception {
+          return flowletContext.getProgramMetrics().childContext(Constants.Metrics.Tag.FLOWLET_QUEUE, key);
+        }
+      });
+    this.inputLatencies = new ConcurrentHashMap<>();
+    this.processFailure = new AtomicReference<>();
+
+    ImmutableList.Builder<WorkerQueue> workerQueues = ImmutableList.builder();
+    for (FlowletProcessWorker worker : workers) {
+      PriorityQueue<FlowletProcessEntry<?>> processQueue = new PriorityQueue<>(worker.getProcessSpecs().size());
+      for (ProcessSpecification<?> spec : worker.getProcessSpecs()) {
+        processQueue.offer(FlowletProcessEntry.create(spec));
+      }
+      workerQueues.add(new WorkerQueue(worker, processQueue));
     }
+    this.workerQueues = workerQueues.build();
   }
 
   /**
@@ -94,11 +139,20 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     Preconditions.checkArgument(other.state() == State.TERMINATED, "FlowletProcessDriver is not terminated");
 
     this.flowletContext = other.flowletContext;
-    this.dataFabricFacade = other.dataFabricFacade;
-    this.txCallback = other.txCallback;
+    this.processThreads = other.processThreads;
     this.loggingContext = other.loggingContext;
-    this.processQueue = new PriorityQueue<>(other.processQueue.size());
-    Iterables.addAll(processQueue, other.processQueue);
+    this.attemptReadMetric = other.attemptReadMetric;
+    this.queueMetricsCollectors = other.queueMetricsCollectors;
+    this.inputLatencies = other.inputLatencies;
+    this.processFailure = new AtomicReference<>();
+
+    ImmutableList.Builder<WorkerQueue> workerQueues = ImmutableList.builder();
+    for (WorkerQueue workerQueue : other.workerQueues) {
+      PriorityQueue<FlowletProcessEntry<?>> processQueue = new PriorityQueue<>(workerQueue.processQueue.size());
+      Iterables.addAll(processQueue, workerQueue.processQueue);
+      workerQueues.add(new WorkerQueue(workerQueue.worker, processQueue));
+    }
+    this.workerQueues = workerQueues.build();
   }
 
   @Override
@@ -109,13 +163,41 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
   @Override
   protected void startUp() throws Exception {
     runThread = Thread.currentThread();
-    processExecutor = Executors.newSingleThreadExecutor(
-      Threads.createDaemonThreadFactory(getServiceName() + "-executor"));
+    if (processThreads > 1) {
+      // Process methods are never joined, hence the pool runs in async mode
+      processPool = new ForkJoinPool(Math.min(processThreads, workerQueues.size()),
+                                     new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+          ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+          thread.setName(getServiceName() + "-executor-" + thread.getPoolIndex());
+          return thread;
+        }
+      }, null, true);
+      dispatchQueue = new DelayQueue<>();
+      for (WorkerQueue workerQueue : workerQueues) {
+        if (!workerQueue.processQueue.isEmpty()) {
+          dispatchQueue.offer(workerQueue);
+        }
+      }
+    } else {
+      processExecutor = Executors.newSingleThreadExecutor(
+        Threads.createDaemonThreadFactory(getServiceName() + "-executor"));
+    }
   }
 
   @Override
   protected void shutDown() throws Exception {
-    processExecutor.shutdown();
+    if (processExecutor != null) {
+      processExecutor.shutdown();
+    }
+    if (processPool != null) {
+      stopProcessPool();
+    }
+    for (Map.Entry<String, InputLatency> entry : inputLatencies.entrySet()) {
+      LOG.debug("Latency of input '{}' in {}: dequeue {}, process {}", entry.getKey(), flowletContext,
+                entry.getValue().dequeueLatency, entry.getValue().processLatency);
+    }
   }
 
   @Override
@@ -126,11 +208,14 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
   @Override
   protected void run() throws Exception {
     LoggingContextAccessor.setLoggingContext(loggingContext);
+    if (processThreads > 1) {
+      runParallel();
+      return;
+    }
 
-    // Collection for draining the processQueue for invoking process methods
-    List<FlowletProcessEntry<?>> processList = Lists.newArrayListWithExpectedSize(processQueue.size() * 2);
-    Runnable processRunner = createProcessRunner(processQueue, processList,
-                                                 flowletContext.getProgram().getClassLoader());
+    WorkerQueue workerQueue = workerQueues.get(0);
+    PriorityQueue<FlowletProcessEntry<?>> processQueue = workerQueue.processQueue;
+    Runnable processRunner = createProcessRunner(workerQueue, flowletContext.getProgram().getClassLoader());
     while (isRunning()) {
       try {
         // If the queue head need to wait, we had to wait.
@@ -140,10 +225,6 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
         continue;
       }
 
-      processList.clear();
-      // Drain the process queue so that all entries in the queue will be inspected to see if it's time to process
-      drainQueue(processQueue, processList);
-
       // Execute the process method and block until it finished.
       Future<?> processFuture = processExecutor.submit(processRunner);
       while (!processFuture.isDone()) {
@@ -171,6 +252,44 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     }
   }
 
+  /**
+   * Dispatches the workers on the process pool whenever their next process entry is due, until the driver stops.
+   */
+  private void runParallel() throws Exception {
+    while (isRunning()) {
+      UnauthorizedException failure = processFailure.get();
+      if (failure != null) {
+        throw failure;
+      }
+      try {
+        processPool.execute(createDispatchRunner(dispatchQueue.take(), flowletContext.getProgram().getClassLoader()));
+      } catch (InterruptedException e) {
+        // Triggered by shutdown or a process failure, simply continue and let the checks to deal with that.
+      }
+    }
+  }
+
+  /**
+   * Shuts down the process pool and waits for the dispatched workers to complete.
+   */
+  private void stopProcessPool() {
+    processPool.shutdown();
+    boolean terminated = false;
+    while (!terminated) {
+      try {
+        // Wait uninterruptibly so that stop() won't kill the executing contexts
+        // We need a timeout so that in case it takes too long to complete, we have chance to force quit them.
+        terminated = processPool.awaitTermination(30, TimeUnit.SECONDS);
+        if (!terminated) {
+          LOG.info("Flowlet {} takes longer than 30 seconds to quit. Force quitting.", flowletContext.getFlowletId());
+          processPool.shutdownNow();
+        }
+      } catch (InterruptedException e) {
+        // Keep waiting
+      }
+    }
+  }
+
   private void drainQueue(PriorityQueue<FlowletProcessEntry<?>> queue,
                           List<? super FlowletProcessEntry<?>> collection) {
     FlowletProcessEntry<?> entry = queue.poll();
@@ -183,37 +302,92 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
   /**
    * Creates a {@link Runnable} for execution of calling flowlet process methods.
    */
-  private Runnable createProcessRunner(final PriorityQueue<FlowletProcessEntry<?>> processQueue,
-                                       final List<FlowletProcessEntry<?>> processList,
-                                       final ClassLoader classLoader) {
+  private Runnable createProcessRunner(final WorkerQueue workerQueue, final ClassLoader classLoader) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        Thread.currentThread().setContextClassLoader(classLoader);
+        processEntries(workerQueue);
+      }
+    };
+  }
+
+  /**
+   * Creates a {@link Runnable} for execution of calling flowlet process methods of the given worker on the process
+   * pool. The worker is dispatched again when the runner completes.
+   */
+  private Runnable createDispatchRunner(final WorkerQueue workerQueue, final ClassLoader classLoader) {
     return new Runnable() {
       @Override
       public void run() {
         Thread.currentThread().setContextClassLoader(classLoader);
-        for (FlowletProcessEntry<?> entry : processList) {
-          if (!handleProcessEntry(entry, processQueue)) {
-            // If an entry is not processed (because it's not the time yet), just put it back to the queue
-            // Otherwise, it's up to the process result callback to handle re-enqueue of the entry. The callback
-            // will determine what entry to put it back, as it can be the original entry or a retry entry wrapper,
-            // depending on the process result.
-            processQueue.offer(entry);
+        LoggingContextAccessor.setLoggingContext(loggingContext);
+        try {
+          processEntries(workerQueue);
+        } catch (Throwable t) {
+          LOG.error("Unexpected execution exception.", t);
+          // If the root cause is due to authorization error, then fail the driver
+          Throwable rootCause = Throwables.getRootCause(t);
+          if (rootCause instanceof UnauthorizedException) {
+            processFailure.compareAndSet(null, (UnauthorizedException) rootCause);
+            runThread.interrupt();
+          }
+        } finally {
+          dispatch();
+        }
+      }
+
+      private void dispatch() {
+        if (workerQueue.processQueue.isEmpty()) {
+          return;
+        }
+        // If the next entry is already due, fork to the pool directly, so that an idle thread can steal it.
+        if (isRunning() && workerQueue.getDelay(TimeUnit.NANOSECONDS) <= 0) {
+          try {
+            processPool.execute(this);
+            return;
+          } catch (RejectedExecutionException e) {
+            // The pool is shutting down
           }
         }
+        dispatchQueue.offer(workerQueue);
       }
     };
   }
 
+  /**
+   * Invokes the process methods of the given worker that are due.
+   */
+  private void processEntries(WorkerQueue workerQueue) {
+    PriorityQueue<FlowletProcessEntry<?>> processQueue = workerQueue.processQueue;
+    List<FlowletProcessEntry<?>> processList = workerQueue.processList;
+
+    processList.clear();
+    // Drain the process queue so that all entries in the queue will be inspected to see if it's time to process
+    drainQueue(processQueue, processList);
+    for (FlowletProcessEntry<?> entry : processList) {
+      if (!handleProcessEntry(workerQueue.worker, entry, processQueue)) {
+        // If an entry is not processed (because it's not the time yet), just put it back to the queue
+        // Otherwise, it's up to the process result callback to handle re-enqueue of the entry. The callback
+        // will determine what entry to put it back, as it can be the original entry or a retry entry wrapper,
+        // depending on the process result.
+        processQueue.offer(entry);
+      }
+    }
+  }
+
   /**
    * Invokes to perform dequeue and optionally invoke the user process input / tick method if dequeue gave a non
    * empty result.
    *
+   * @param worker The worker that provides the transaction context of the process method.
    * @param entry Contains information about the process method and queue.
-   * @param processQueue The queue for queuing up all process input methods in a flowlet instance.
+   * @param processQueue The queue for queuing up all process input methods of the worker.
    * @param <T> Type of input of the process method accepted.
    *
    * @return {@code true} if the entry is handled completely (regardless of process result), {@code false} otherwise.
    */
-  private <T> boolean handleProcessEntry(FlowletProcessEntry<T> entry,
+  private <T> boolean handleProcessEntry(FlowletProcessWorker worker, FlowletProcessEntry<T> entry,
                                          PriorityQueue<FlowletProcessEntry<?>> processQueue) {
     if (!entry.shouldProcess()) {
       return false;
@@ -221,16 +395,18 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
 
     ProcessMethod<T> processMethod = entry.getProcessSpec().getProcessMethod();
     if (processMethod.needsInput()) {
-      flowletContext.getProgramMetrics().increment("process.tuples.attempt.read", 1);
+      attemptReadMetric.increment(1);
     }
 
     // Begin transaction and dequeue
     try {
-      TransactionContext txContext = dataFabricFacade.createTransactionContext();
+      TransactionContext txContext = worker.getDataFabricFacade().createTransactionContext();
       txContext.start();
 
       try {
+        long dequeueStart = System.nanoTime();
         InputDatum<T> input = entry.getProcessSpec().getQueueReader().dequeue(0, TimeUnit.MILLISECONDS);
+        long dequeueNanos = System.nanoTime() - dequeueStart;
         if (!input.needProcess()) {
           entry.backOff();
           // End the transaction if nothing in the queue
@@ -243,8 +419,11 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
 
         // Call the process method and commit the transaction. The current process entry will put
         // back to queue in the postProcess method (either a retry copy or itself).
+        long processStart = System.nanoTime();
         ProcessMethod.ProcessResult<?> result = processMethod.invoke(input);
-        postProcess(processMethodCallback(processQueue, entry, input), txContext, input, result);
+        getInputLatency(input.getQueueName()).record(dequeueNanos, System.nanoTime() - processStart);
+        postProcess(processMethodCallback(worker, processQueue, entry, input), worker.getDataFabricFacade(),
+                    txContext, input, result);
         return true;
 
       } catch (Throwable t) {
@@ -269,11 +448,28 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     return false;
   }
 
+  /**
+   * Returns the {@link InputLatency} for the given input queue, or for ticks and generators if the queue is
+   * {@code null}.
+   */
+  private InputLatency getInputLatency(@Nullable QueueName inputQueueName) {
+    String key = inputQueueName == null ? "" : inputQueueName.getSimpleName();
+    InputLatency latency = inputLatencies.get(key);
+    if (latency == null) {
+      MetricsContext metrics = inputQueueName == null ? flowletContext.getProgramMetrics()
+                                                      : queueMetricsCollectors.getUnchecked(key);
+      latency = new InputLatency(metrics);
+      InputLatency existing = inputLatencies.putIfAbsent(key, latency);
+      latency = existing == null ? latency : existing;
+    }
+    return latency;
+  }
+
   /**
    * Process the process result. This method never throws.
    */
-  private void postProcess(ProcessMethodCallback callback, TransactionContext txContext,
-                           InputDatum input, ProcessMethod.ProcessResult result) {
+  private void postProcess(ProcessMethodCallback callback, DataFabricFacade dataFabricFacade,
+                           TransactionContext txContext, InputDatum input, ProcessMethod.ProcessResult result) {
     InputContext inputContext = input.getInputContext();
     Throwable failureCause = null;
     FailureReason.Type failureType = FailureReason.Type.IO_ERROR;
@@ -310,14 +506,15 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
       } else {
         callback.onFailure(result.getEvent(), inputContext,
                            new FailureReason(failureType, failureCause.getMessage(), failureCause),
-                           createInputAcknowledger(input));
+                           createInputAcknowledger(dataFabricFacade, input));
       }
     } catch (Throwable t) {
       LOG.error("Failed to invoke callback.", t);
     }
   }
 
-  private InputAcknowledger createInputAcknowledger(final InputDatum input) {
+  private InputAcknowledger createInputAcknowledger(final DataFabricFacade dataFabricFacade,
+                                                    final InputDatum input) {
     return new InputAcknowledger() {
       @Override
       public void ack() throws TransactionFailureException {
@@ -329,22 +526,15 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     };
   }
 
-  private <T> ProcessMethodCallback processMethodCallback(final PriorityQueue<FlowletProcessEntry<?>> processQueue,
+  private <T> ProcessMethodCallback processMethodCallback(FlowletProcessWorker worker,
+                                                          final PriorityQueue<FlowletProcessEntry<?>> processQueue,
                                                           final FlowletProcessEntry<T> processEntry,
                                                           final InputDatum<T> input) {
     // If it is generator flowlet, processCount is 1.
     final int processedCount = processEntry.getProcessSpec().getProcessMethod().needsInput() ? input.size() : 1;
+    final Callback txCallback = worker.getTxCallback();
 
     return new ProcessMethodCallback() {
-      private final LoadingCache<String, MetricsContext> queueMetricsCollectors = CacheBuilder.newBuilder()
-        .expireAfterAccess(1, TimeUnit.HOURS)
-        .build(new CacheLoader<String, MetricsContext>() {
-          @Override
-          public MetricsContext load(String key) throws Exception {
-            return flowletContext.getProgramMetrics().childContext(Constants.Metrics.Tag.FLOWLET_QUEUE, key);
-          }
-        });
-
       @Override
       public void onSuccess(Object object, InputContext inputContext) {
         try {
@@ -417,4 +607,59 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
       }
     };
   }
+
+  /**
+   * The process entries of a {@link FlowletProcessWorker}, which is {@link Delayed} until its next entry is due.
+   */
+  private static final class WorkerQueue implements Delayed {
+    private final FlowletProcessWorker worker;
+    private final PriorityQueue<FlowletProcessEntry<?>> processQueue;
+    // Collection for draining the processQueue for invoking process methods
+    private final List<FlowletProcessEntry<?>> processList;
+
+    private WorkerQueue(FlowletProcessWorker worker, PriorityQueue<FlowletProcessEntry<?>> processQueue) {
+      this.worker = worker;
+      this.processQueue = processQueue;
+      this.processList = Lists.newArrayListWithExpectedSize(processQueue.size() * 2);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      FlowletProcessEntry<?> entry = processQueue.peek();
+      if (entry == null) {
+        return Long.MAX_VALUE;
+      }
+      return unit.convert(entry.getNextDeque() - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+      return Longs.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+    }
+  }
+
+  /**
+   * Latencies of dequeuing from and invoking the process method for one flowlet input. The total time is emitted as
+   * counters in microseconds, so that the average latency can be derived from the number of events processed.
+   */
+  private static final class InputLatency {
+    private final MetricHandle dequeueTime;
+    private final MetricHandle processTime;
+    private final LatencyHistogram dequeueLatency;
+    private final LatencyHistogram processLatency;
+
+    private InputLatency(MetricsContext metrics) {
+      this.dequeueTime = MetricHandles.get(metrics, "process.dequeue.time.us");
+      this.processTime = MetricHandles.get(metrics, "process.time.us");
+      this.dequeueLatency = new LatencyHistogram();
+      this.processLatency = new LatencyHistogram();
+    }
+
+    void record(long dequeueNanos, long processNanos) {
+      dequeueTime.increment(TimeUnit.NANOSECONDS.toMicros(dequeueNanos));
+      processTime.increment(TimeUnit.NANOSECONDS.toMicros(processNanos));
+      dequeueLatency.record(dequeueNanos);
+      processLatency.record(processNanos);
+    }
+  }
 }
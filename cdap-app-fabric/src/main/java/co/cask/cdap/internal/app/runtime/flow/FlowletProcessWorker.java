@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.flow.flowlet.Callback;
+import co.cask.cdap.api.flow.flowlet.Flowlet;
+import co.cask.cdap.internal.app.runtime.DataFabricFacade;
+
+import java.util.Collection;
+
+/**
+ * A {@link Flowlet} object together with the context, datasets and transaction context that its process methods are
+ * invoked with. A flowlet instance has one worker for all of its process methods, unless it runs with more than one
+ * process thread, in which case every process method has its own worker, so that the process methods of different
+ * workers can be invoked concurrently.
+ */
+final class FlowletProcessWorker {
+
+  private final Flowlet flowlet;
+  private final BasicFlowletContext flowletContext;
+  private final DataFabricFacade dataFabricFacade;
+  private final Callback txCallback;
+  private final Collection<? extends ProcessSpecification<?>> processSpecs;
+
+  FlowletProcessWorker(Flowlet flowlet, BasicFlowletContext flowletContext, DataFabricFacade dataFabricFacade,
+                       Callback txCallback, Collection<? extends ProcessSpecification<?>> processSpecs) {
+    this.flowlet = flowlet;
+    this.flowletContext = flowletContext;
+    this.dataFabricFacade = dataFabricFacade;
+    this.txCallback = txCallback;
+    this.processSpecs = processSpecs;
+  }
+
+  Flowlet getFlowlet() {
+    return flowlet;
+  }
+
+  BasicFlowletContext getFlowletContext() {
+    return flowletContext;
+  }
+
+  DataFabricFacade getDataFabricFacade() {
+    return dataFabricFacade;
+  }
+
+  Callback getTxCallback() {
+    return txCallback;
+  }
+
+  Collection<? extends ProcessSpecification<?>> getProcessSpecs() {
+    return processSpecs;
+  }
+}
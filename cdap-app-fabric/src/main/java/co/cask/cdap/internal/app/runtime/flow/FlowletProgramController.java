@@ -36,6 +36,8 @@ final class FlowletProgramController extends AbstractProgramController {
   private static final Logger LOG = LoggerFactory.getLogger(FlowletProgramController.class);
 
   private final BasicFlowletContext flowletContext;
+  // Contexts of the process workers other than the one using the flowletContext
+  private final Collection<BasicFlowletContext> workerContexts;
   private final FlowletRuntimeService driver;
   private final Collection<ProducerSupplier> producerSuppliers;
   private final Collection<ConsumerSupplier<?>> consumerSuppliers;
@@ -44,11 +46,13 @@ final class FlowletProgramController extends AbstractProgramController {
    * Constructs an instance. The instance must be constructed before the flowlet driver starts.
    */
   FlowletProgramController(ProgramId programId, String flowletName,
-                           BasicFlowletContext flowletContext, FlowletRuntimeService driver,
+                           BasicFlowletContext flowletContext, Collection<BasicFlowletContext> workerContexts,
+                           FlowletRuntimeService driver,
                            Collection<ProducerSupplier> producerSuppliers,
                            Collection<ConsumerSupplier<?>> consumerSuppliers) {
     super(programId, flowletContext.getRunId(), flowletName);
     this.flowletContext = flowletContext;
+    this.workerContexts = workerContexts;
     this.driver = driver;
     this.producerSuppliers = producerSuppliers;
     this.consumerSuppliers = consumerSuppliers;
@@ -95,6 +99,9 @@ final class FlowletProgramController extends AbstractProgramController {
       for (ConsumerSupplier consumerSupplier : consumerSuppliers) {
         Closeables.closeQuietly(consumerSupplier);
       }
+      for (BasicFlowletContext workerContext : workerContexts) {
+        workerContext.close();
+      }
       flowletContext.close();
     }
     LOG.info("Flowlet stopped: " + flowletContext);
@@ -117,6 +124,9 @@ final class FlowletProgramController extends AbstractProgramController {
     Preconditions.checkState(getState() == State.SUSPENDED,
                              "Cannot change instance count of a flowlet without suspension.");
     flowletContext.setInstanceCount(instanceCount);
+    for (BasicFlowletContext workerContext : workerContexts) {
+      workerContext.setInstanceCount(instanceCount);
+    }
   }
 
   private void listenDriveState(FlowletRuntimeService driver) {
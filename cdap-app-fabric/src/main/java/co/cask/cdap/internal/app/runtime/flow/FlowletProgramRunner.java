@@ -50,6 +50,8 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.BinaryDecoder;
 import co.cask.cdap.common.lang.InstantiatorFactory;
 import co.cask.cdap.common.lang.PropertyFieldSetter;
+import co.cask.cdap.common.metrics.MetricHandle;
+import co.cask.cdap.common.metrics.MetricHandles;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
@@ -73,8 +75,10 @@ import co.cask.cdap.internal.app.runtime.DataSetFieldSetter;
 import co.cask.cdap.internal.app.runtime.MetricsFieldSetter;
 import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
 import co.cask.cdap.internal.app.runtime.ProgramRunners;
+import co.cask.cdap.internal.app.runtime.SystemArguments;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.DatumWriterFactory;
-import co.cask.cdap.internal.io.ReflectionDatumReader;
 import co.cask.cdap.internal.io.SchemaGenerator;
 import co.cask.cdap.internal.lang.Reflections;
 import co.cask.cdap.internal.specification.FlowletMethod;
@@ -131,6 +135,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
 
   private final SchemaGenerator schemaGenerator;
   private final DatumWriterFactory datumWriterFactory;
+  private final DatumReaderFactory datumReaderFactory;
   private final DataFabricFacadeFactory dataFabricFacadeFactory;
   private final StreamCoordinatorClient streamCoordinatorClient;
   private final QueueReaderFactory queueReaderFactory;
@@ -145,6 +150,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
   @Inject
   public FlowletProgramRunner(SchemaGenerator schemaGenerator,
                               DatumWriterFactory datumWriterFactory,
+                              DatumReaderFactory datumReaderFactory,
                               DataFabricFacadeFactory dataFabricFacadeFactory,
                               StreamCoordinatorClient streamCoordinatorClient,
                               QueueReaderFactory queueReaderFactory,
@@ -157,6 +163,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
                               SecureStoreManager secureStoreManager) {
     this.schemaGenerator = schemaGenerator;
     this.datumWriterFactory = datumWriterFactory;
+    this.datumReaderFactory = datumReaderFactory;
     this.dataFabricFacadeFactory = dataFabricFacadeFactory;
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.queueReaderFactory = queueReaderFactory;
@@ -173,6 +180,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
   @Override
   public ProgramController run(Program program, ProgramOptions options) {
     BasicFlowletContext flowletContext = null;
+    List<BasicFlowletContext> workerContexts = Lists.newArrayList();
     try {
       // Extract and verify parameters
       String flowletName = options.getName();
@@ -214,60 +222,60 @@ public final class FlowletProgramRunner implements ProgramRunner {
       Class<? extends Flowlet> flowletClass = (Class<? extends Flowlet>) clz;
 
       // Creates flowlet context
-      flowletContext = new BasicFlowletContext(program, options, flowletName, instanceId, instanceCount,
-                                               flowletDef.getDatasets(), flowletDef.getFlowletSpec(),
-                                               metricsCollectionService, discoveryServiceClient, txClient,
-                                               dsFramework, secureStore, secureStoreManager);
-
-      // Creates tx related objects
-      DataFabricFacade dataFabricFacade =
-        dataFabricFacadeFactory.create(program, flowletContext.getDatasetCache());
-      if (dataFabricFacade instanceof ProgramContextAware) {
-        ((ProgramContextAware) dataFabricFacade).initContext(run, flowletId);
-      }
+      flowletContext = createFlowletContext(program, options, flowletName, instanceId, instanceCount, flowletDef);
 
       // Creates QueueSpecification
       Table<Node, String, Set<QueueSpecification>> queueSpecs =
         new SimpleQueueSpecificationGenerator(new ApplicationId(program.getNamespaceId(), program.getApplicationId()))
           .create(flowSpec);
 
-      Flowlet flowlet = new InstantiatorFactory(false).get(TypeToken.of(flowletClass)).create();
       TypeToken<? extends Flowlet> flowletType = TypeToken.of(flowletClass);
 
       // Set the context classloader to the cdap classloader. It is needed for the DatumWriterFactory be able
       // to load cdap classes
       Thread.currentThread().setContextClassLoader(FlowletProgramRunner.class.getClassLoader());
 
-      // Inject DataSet, OutputEmitter, Metric fields
-      ImmutableList.Builder<ProducerSupplier> queueProducerSupplierBuilder = ImmutableList.builder();
-      Reflections.visit(flowlet, flowlet.getClass(),
-                        new PropertyFieldSetter(flowletDef.getFlowletSpec().getProperties()),
-                        new DataSetFieldSetter(flowletContext),
-                        new MetricsFieldSetter(flowletContext.getMetrics()),
-                        new OutputEmitterFieldSetter(outputEmitterFactory(flowletContext, flowletName,
-                                                                          dataFabricFacade,
-                                                                          queueProducerSupplierBuilder,
-                                                                          queueSpecs)));
+      // With more than one process thread, every process method is invoked by its own worker, which has its own
+      // flowlet object, datasets and transaction context. Otherwise one worker invokes all process methods.
+      int processThreads = SystemArguments.getFlowletProcessThreads(flowletContext.getRuntimeArguments());
+      List<Method> processMethods = getProcessMethods(flowletType);
+      List<List<Method>> workerMethods = processThreads > 1
+        ? Lists.partition(processMethods, 1)
+        : ImmutableList.of(processMethods);
 
+      SchemaCache schemaCache = createSchemaCache(program);
+      ImmutableList.Builder<ProducerSupplier> queueProducerSupplierBuilder = ImmutableList.builder();
       ImmutableList.Builder<ConsumerSupplier<?>> queueConsumerSupplierBuilder = ImmutableList.builder();
-      Collection<ProcessSpecification<?>> processSpecs =
-        createProcessSpecification(flowletContext, flowletType,
-                                   processMethodFactory(flowlet),
-                                   processSpecificationFactory(flowletContext, dataFabricFacade, queueReaderFactory,
-                                                               flowletName, queueSpecs, queueConsumerSupplierBuilder,
-                                                               createSchemaCache(program)),
-                                   Lists.<ProcessSpecification<?>>newLinkedList());
+      List<FlowletProcessWorker> workers = Lists.newArrayList();
+      for (List<Method> methods : workerMethods) {
+        BasicFlowletContext workerContext = flowletContext;
+        if (!workers.isEmpty()) {
+          workerContext = createFlowletContext(program, options, flowletName, instanceId, instanceCount, flowletDef);
+          workerContexts.add(workerContext);
+        }
+        FlowletProcessWorker worker = createProcessWorker(program, run, flowletId, workerContext, flowletDef,
+                                                          flowletType, methods, queueSpecs, schemaCache,
+                                                          queueProducerSupplierBuilder, queueConsumerSupplierBuilder);
+        if (worker != null) {
+          workers.add(worker);
+        } else if (workerContext != flowletContext) {
+          workerContexts.remove(workerContext);
+          workerContext.close();
+        }
+      }
+      Preconditions.checkArgument(!workers.isEmpty(),
+                                  "No inputs found for flowlet '%s' of flow '%s' of application '%s' (%s)",
+                                  flowletContext.getFlowletId(), flowletContext.getFlowId(),
+                                  flowletContext.getApplicationId(), flowletType);
       List<ConsumerSupplier<?>> consumerSuppliers = queueConsumerSupplierBuilder.build();
 
       // Create the flowlet driver
       AtomicReference<FlowletProgramController> controllerRef = new AtomicReference<>();
       Service serviceHook = createServiceHook(flowletName, consumerSuppliers, controllerRef);
-      FlowletRuntimeService driver = new FlowletRuntimeService(flowlet, flowletContext, processSpecs,
-                                                             createCallback(flowlet, flowletDef.getFlowletSpec()),
-                                                             dataFabricFacade, serviceHook);
+      FlowletRuntimeService driver = new FlowletRuntimeService(flowletContext, workers, processThreads, serviceHook);
 
       FlowletProgramController controller = new FlowletProgramController(program.getId(), flowletName,
-                                                                         flowletContext, driver,
+                                                                         flowletContext, workerContexts, driver,
                                                                          queueProducerSupplierBuilder.build(),
                                                                          consumerSuppliers);
       controllerRef.set(controller);
@@ -281,6 +289,9 @@ public final class FlowletProgramRunner implements ProgramRunner {
     } catch (Exception e) {
       // something went wrong before the flowlet even started. Make sure we release all resources (datasets, ...)
       // of the flowlet context.
+      for (BasicFlowletContext workerContext : workerContexts) {
+        workerContext.close();
+      }
       if (flowletContext != null) {
         flowletContext.close();
       }
@@ -288,21 +299,70 @@ public final class FlowletProgramRunner implements ProgramRunner {
     }
   }
 
+  private BasicFlowletContext createFlowletContext(Program program, ProgramOptions options, String flowletName,
+                                                   int instanceId, int instanceCount, FlowletDefinition flowletDef) {
+    return new BasicFlowletContext(program, options, flowletName, instanceId, instanceCount,
+                                   flowletDef.getDatasets(), flowletDef.getFlowletSpec(),
+                                   metricsCollectionService, discoveryServiceClient, txClient,
+                                   dsFramework, secureStore, secureStoreManager);
+  }
+
   /**
-   * Creates all {@link ProcessSpecification} for the process methods of the flowlet class.
+   * Creates a {@link FlowletProcessWorker} that invokes the given process methods on a new flowlet object, with the
+   * datasets and transactions of the given flowlet context.
    *
-   * @param flowletType Type of the flowlet class represented by {@link TypeToken}.
-   * @param processMethodFactory A {@link ProcessMethodFactory} for creating {@link ProcessMethod}.
-   * @param processSpecFactory A {@link ProcessSpecificationFactory} for creating {@link ProcessSpecification}.
-   * @param result A {@link Collection} for storing newly created {@link ProcessSpecification}.
-   * @return The same {@link Collection} as the {@code result} parameter.
+   * @return the worker, or {@code null} if none of the process methods has an input.
    */
-  @SuppressWarnings("unchecked")
-  private <T extends Collection<ProcessSpecification<?>>> T createProcessSpecification(
-    BasicFlowletContext flowletContext, TypeToken<? extends Flowlet> flowletType,
-    ProcessMethodFactory processMethodFactory, ProcessSpecificationFactory processSpecFactory, T result)
-    throws Exception {
+  @Nullable
+  private FlowletProcessWorker createProcessWorker(Program program, ProgramRunId run, FlowletId flowletId,
+                                                   BasicFlowletContext flowletContext, FlowletDefinition flowletDef,
+                                                   TypeToken<? extends Flowlet> flowletType,
+                                                   Iterable<Method> processMethods,
+                                                   Table<Node, String, Set<QueueSpecification>> queueSpecs,
+                                                   SchemaCache schemaCache,
+                                                   ImmutableList.Builder<ProducerSupplier> queueProducerSupplierBuilder,
+                                                   ImmutableList.Builder<ConsumerSupplier<?>>
+                                                     queueConsumerSupplierBuilder) throws Exception {
+    // Creates tx related objects
+    DataFabricFacade dataFabricFacade = dataFabricFacadeFactory.create(program, flowletContext.getDatasetCache());
+    if (dataFabricFacade instanceof ProgramContextAware) {
+      ((ProgramContextAware) dataFabricFacade).initContext(run, flowletId);
+    }
 
+    String flowletName = flowletId.getFlowlet();
+    Flowlet flowlet = new InstantiatorFactory(false).get(flowletType).create();
+    Collection<ProcessSpecification<?>> processSpecs =
+      createProcessSpecification(flowletContext, flowletType, processMethods,
+                                 processMethodFactory(flowlet),
+                                 processSpecificationFactory(flowletContext, dataFabricFacade, queueReaderFactory,
+                                                             flowletName, queueSpecs, queueConsumerSupplierBuilder,
+                                                             schemaCache),
+                                 Lists.<ProcessSpecification<?>>newLinkedList());
+    if (processSpecs.isEmpty()) {
+      return null;
+    }
+
+    // Inject DataSet, OutputEmitter, Metric fields
+    Reflections.visit(flowlet, flowlet.getClass(),
+                      new PropertyFieldSetter(flowletDef.getFlowletSpec().getProperties()),
+                      new DataSetFieldSetter(flowletContext),
+                      new MetricsFieldSetter(flowletContext.getMetrics()),
+                      new OutputEmitterFieldSetter(outputEmitterFactory(flowletContext, flowletName,
+                                                                        dataFabricFacade,
+                                                                        queueProducerSupplierBuilder,
+                                                                        queueSpecs)));
+
+    return new FlowletProcessWorker(flowlet, flowletContext, dataFabricFacade,
+                                    createCallback(flowlet, flowletDef.getFlowletSpec()), processSpecs);
+  }
+
+  /**
+   * Returns all process input and tick methods of the flowlet class.
+   *
+   * @param flowletType Type of the flowlet class represented by {@link TypeToken}.
+   */
+  private List<Method> getProcessMethods(TypeToken<? extends Flowlet> flowletType) {
+    List<Method> result = Lists.newArrayList();
     Set<FlowletMethod> seenMethods = Sets.newHashSet();
 
     // Walk up the hierarchy of flowlet class to get all ProcessInput and Tick methods
@@ -323,67 +383,84 @@ public final class FlowletProgramRunner implements ProgramRunner {
           continue;
         }
 
-        ProcessInput processInputAnnotation = method.getAnnotation(ProcessInput.class);
-        Tick tickAnnotation = method.getAnnotation(Tick.class);
-
-        if (processInputAnnotation == null && tickAnnotation == null) {
+        if (method.getAnnotation(ProcessInput.class) == null && method.getAnnotation(Tick.class) == null) {
           // Neither a process nor a tick method.
           continue;
         }
+        result.add(method);
+      }
+    }
+    return result;
+  }
 
-        int maxRetries = (tickAnnotation == null) ? processInputAnnotation.maxRetries() : tickAnnotation.maxRetries();
-
-        ProcessMethod processMethod = processMethodFactory.create(method, maxRetries);
-        Set<String> inputNames;
-        Schema schema;
-        TypeToken<?> dataType;
-        ConsumerConfig consumerConfig;
-        int batchSize = 1;
-
-        if (tickAnnotation != null) {
-          inputNames = ImmutableSet.of();
-          consumerConfig = new ConsumerConfig(0, 0, 1, DequeueStrategy.FIFO, null);
-          schema = Schema.of(Schema.Type.NULL);
-          dataType = TypeToken.of(void.class);
-        } else {
-          inputNames = Sets.newHashSet(processInputAnnotation.value());
-          if (inputNames.isEmpty()) {
-            // If there is no input name, it would be ANY_INPUT
-            inputNames.add(FlowletDefinition.ANY_INPUT);
-          }
-          // If batch mode then generate schema for Iterator's parameter type
-          dataType = flowletType.resolveType(method.getGenericParameterTypes()[0]);
-          consumerConfig = getConsumerConfig(flowletContext, method);
-          Integer processBatchSize = getBatchSize(method, flowletContext);
-
-          if (processBatchSize != null) {
-            if (dataType.getRawType().equals(Iterator.class)) {
-              Preconditions.checkArgument(dataType.getType() instanceof ParameterizedType,
-                                          "Only ParameterizedType is supported for batch Iterator.");
-              dataType = flowletType.resolveType(((ParameterizedType) dataType.getType()).getActualTypeArguments()[0]);
-            }
-            batchSize = processBatchSize;
-          }
+  /**
+   * Creates all {@link ProcessSpecification} for the given process methods of the flowlet class.
+   *
+   * @param flowletType Type of the flowlet class represented by {@link TypeToken}.
+   * @param processMethods The process input and tick methods of the flowlet class.
+   * @param processMethodFactory A {@link ProcessMethodFactory} for creating {@link ProcessMethod}.
+   * @param processSpecFactory A {@link ProcessSpecificationFactory} for creating {@link ProcessSpecification}.
+   * @param result A {@link Collection} for storing newly created {@link ProcessSpecification}.
+   * @return The same {@link Collection} as the {@code result} parameter.
+   */
+  @SuppressWarnings("unchecked")
+  private <T extends Collection<ProcessSpecification<?>>> T createProcessSpecification(
+    BasicFlowletContext flowletContext, TypeToken<? extends Flowlet> flowletType, Iterable<Method> processMethods,
+    ProcessMethodFactory processMethodFactory, ProcessSpecificationFactory processSpecFactory, T result)
+    throws Exception {
 
-          try {
-            schema = schemaGenerator.generate(dataType.getType());
-          } catch (UnsupportedTypeException e) {
-            throw Throwables.propagate(e);
+    for (Method method : processMethods) {
+      ProcessInput processInputAnnotation = method.getAnnotation(ProcessInput.class);
+      Tick tickAnnotation = method.getAnnotation(Tick.class);
+
+      int maxRetries = (tickAnnotation == null) ? processInputAnnotation.maxRetries() : tickAnnotation.maxRetries();
+
+      ProcessMethod processMethod = processMethodFactory.create(method, maxRetries);
+      Set<String> inputNames;
+      Schema schema;
+      TypeToken<?> dataType;
+      ConsumerConfig consumerConfig;
+      int batchSize = 1;
+
+      if (tickAnnotation != null) {
+        inputNames = ImmutableSet.of();
+        consumerConfig = new ConsumerConfig(0, 0, 1, DequeueStrategy.FIFO, null);
+        schema = Schema.of(Schema.Type.NULL);
+        dataType = TypeToken.of(void.class);
+      } else {
+        inputNames = Sets.newHashSet(processInputAnnotation.value());
+        if (inputNames.isEmpty()) {
+          // If there is no input name, it would be ANY_INPUT
+          inputNames.add(FlowletDefinition.ANY_INPUT);
+        }
+        // If batch mode then generate schema for Iterator's parameter type
+        dataType = flowletType.resolveType(method.getGenericParameterTypes()[0]);
+        consumerConfig = getConsumerConfig(flowletContext, method);
+        Integer processBatchSize = getBatchSize(method, flowletContext);
+
+        if (processBatchSize != null) {
+          if (dataType.getRawType().equals(Iterator.class)) {
+            Preconditions.checkArgument(dataType.getType() instanceof ParameterizedType,
+                                        "Only ParameterizedType is supported for batch Iterator.");
+            dataType = flowletType.resolveType(((ParameterizedType) dataType.getType()).getActualTypeArguments()[0]);
           }
+          batchSize = processBatchSize;
         }
 
-        ProcessSpecification processSpec = processSpecFactory.create(inputNames, schema, dataType, processMethod,
-                                                                     consumerConfig, batchSize, tickAnnotation);
-        // Add processSpec
-        if (processSpec != null) {
-          result.add(processSpec);
+        try {
+          schema = schemaGenerator.generate(dataType.getType());
+        } catch (UnsupportedTypeException e) {
+          throw Throwables.propagate(e);
         }
       }
+
+      ProcessSpecification processSpec = processSpecFactory.create(inputNames, schema, dataType, processMethod,
+                                                                   consumerConfig, batchSize, tickAnnotation);
+      // Add processSpec
+      if (processSpec != null) {
+        result.add(processSpec);
+      }
     }
-    Preconditions.checkArgument(!result.isEmpty(),
-                                "No inputs found for flowlet '%s' of flow '%s' of application '%s' (%s)",
-                                flowletContext.getFlowletId(), flowletContext.getFlowId(),
-                                flowletContext.getApplicationId(), flowletType);
     return result;
   }
 
@@ -501,27 +578,36 @@ public final class FlowletProgramRunner implements ProgramRunner {
             .childContext(Constants.Metrics.Tag.FLOWLET_QUEUE, outputName);
           final MetricsContext producerMetrics = metrics.childContext(
             Constants.Metrics.Tag.PRODUCER, flowletContext.getFlowletId());
-          final Iterable<MetricsContext> consumerMetrics =
-            Iterables.transform(consumerFlowlets, new Function<String, MetricsContext>() {
+          final MetricHandle eventsOut = MetricHandles.get(metrics, "process.events.out");
+          final List<MetricHandle> consumerPending = ImmutableList.copyOf(
+            Iterables.transform(consumerFlowlets, new Function<String, MetricHandle>() {
               @Override
-              public MetricsContext apply(String consumer) {
-                return producerMetrics.childContext(
-                  Constants.Metrics.Tag.CONSUMER, consumer);
-              }});
+              public MetricHandle apply(String consumer) {
+                return MetricHandles.get(producerMetrics.childContext(Constants.Metrics.Tag.CONSUMER, consumer),
+                                         "queue.pending");
+              }}));
 
           // create a queue metrics emitter that emit to all of the above collectors
           ProducerSupplier producerSupplier = new ProducerSupplier(queueName, queueClientFactory, new QueueMetrics() {
             @Override
             public void emitEnqueue(int count) {
-              metrics.increment("process.events.out", count);
-              for (MetricsContext collector : consumerMetrics) {
-                collector.increment("queue.pending", count);
+              eventsOut.increment(count);
+              for (MetricHandle pending : consumerPending) {
+                pending.increment(count);
               }
             }
             @Override
             public void emitEnqueueBytes(int bytes) {
               // no-op
             }
+            @Override
+            public void emitDequeueFetchSize(int rows) {
+              // no-op
+            }
+            @Override
+            public void emitDequeueCacheBytes(long bytes) {
+              // no-op
+            }
           });
           producerBuilder.add(producerSupplier);
           return new DatumOutputEmitter<>(producerSupplier, schema, datumWriterFactory.create(type, schema));
@@ -589,10 +675,12 @@ public final class FlowletProgramRunner implements ProgramRunner {
                   wrapInputDecoder(flowletContext, entry.getKey().getName(), // the producer flowlet,
                                    queueName, createInputDatumDecoder(dataType, schema, schemaCache));
 
+                QueueMetrics consumerMetrics = createConsumerMetrics(flowletContext, queueName);
                 ConsumerSupplier<QueueConsumer> consumerSupplier = ConsumerSupplier.create(flowletContext.getOwners(),
                                                                                            runtimeUsageRegistry,
                                                                                            dataFabricFacade, queueName,
-                                                                                           consumerConfig, numGroups);
+                                                                                           consumerConfig, numGroups,
+                                                                                           consumerMetrics);
                 queueConsumerSupplierBuilder.add(consumerSupplier);
                 queueReaders.add(queueReaderFactory.createQueueReader(consumerSupplier, batchSize, decoder));
               }
@@ -611,7 +699,7 @@ public final class FlowletProgramRunner implements ProgramRunner {
 
   private <T> Function<ByteBuffer, T> createInputDatumDecoder(final TypeToken<T> dataType, final Schema schema,
                                                               final SchemaCache schemaCache) {
-    final ReflectionDatumReader<T> datumReader = new ReflectionDatumReader<>(schema, dataType);
+    final DatumReader<T> datumReader = datumReaderFactory.create(dataType, schema);
     final ByteBufferInputStream byteBufferInput = new ByteBufferInputStream(null);
     final BinaryDecoder decoder = new BinaryDecoder(byteBufferInput);
 
@@ -639,6 +727,31 @@ public final class FlowletProgramRunner implements ProgramRunner {
     };
   }
 
+  /**
+   * Creates a {@link QueueMetrics} that emits the fetch size and entry cache size of a queue consumer as gauges.
+   */
+  private QueueMetrics createConsumerMetrics(BasicFlowletContext context, QueueName queueName) {
+    final MetricsContext metrics = context.getQueueMetrics(queueName.getSimpleName());
+    return new QueueMetrics() {
+      @Override
+      public void emitEnqueue(int count) {
+        // no-op
+      }
+      @Override
+      public void emitEnqueueBytes(int bytes) {
+        // no-op
+      }
+      @Override
+      public void emitDequeueFetchSize(int rows) {
+        metrics.gauge("process.queue.fetch.rows", rows);
+      }
+      @Override
+      public void emitDequeueCacheBytes(long bytes) {
+        metrics.gauge("process.queue.cache.bytes", bytes);
+      }
+    };
+  }
+
   private <S, T> Function<S, T> wrapInputDecoder(final BasicFlowletContext context,
                                                  final String producerName,
                                                  final QueueName queueName,
@@ -647,13 +760,17 @@ public final class FlowletProgramRunner implements ProgramRunner {
     final String queue = queueName.getSimpleName();
     final ImmutablePair<String, String> producerAndQueue = producerName == null ? null :
       new ImmutablePair<>(producerName, queue);
+    final MetricHandle eventsIn = MetricHandles.get(context.getQueueMetrics(queue), eventsMetricsName);
+    final MetricHandle tuplesRead = MetricHandles.get(context.getQueueMetrics(queue), "process.tuples.read");
+    final MetricHandle pending = producerAndQueue == null ? null :
+      MetricHandles.get(context.getProducerMetrics(producerAndQueue), "queue.pending");
     return new Function<S, T>() {
       @Override
       public T apply(S source) {
-        context.getQueueMetrics(queue).increment(eventsMetricsName, 1);
-        context.getQueueMetrics(queue).increment("process.tuples.read", 1);
-        if (producerAndQueue != null) {
-          context.getProducerMetrics(producerAndQueue).increment("queue.pending", -1);
+        eventsIn.increment(1);
+        tuplesRead.increment(1);
+        if (pending != null) {
+          pending.increment(-1);
         }
         return inputDecoder.apply(source);
       }
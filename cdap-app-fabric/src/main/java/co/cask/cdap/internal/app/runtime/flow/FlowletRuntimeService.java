@@ -19,14 +19,12 @@ package co.cask.cdap.internal.app.runtime.flow;
 import co.cask.cdap.api.TxRunnable;
 import co.cask.cdap.api.annotation.TransactionControl;
 import co.cask.cdap.api.data.DatasetContext;
-import co.cask.cdap.api.flow.flowlet.Callback;
 import co.cask.cdap.api.flow.flowlet.Flowlet;
 import co.cask.cdap.api.flow.flowlet.FlowletContext;
 import co.cask.cdap.common.lang.ClassLoaders;
 import co.cask.cdap.common.lang.CombineClassLoader;
 import co.cask.cdap.common.logging.LoggingContextAccessor;
 import co.cask.cdap.data2.transaction.Transactions;
-import co.cask.cdap.internal.app.runtime.DataFabricFacade;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.AbstractIdleService;
@@ -44,24 +42,18 @@ final class FlowletRuntimeService extends AbstractIdleService {
 
   private static final Logger LOG = LoggerFactory.getLogger(FlowletRuntimeService.class);
 
-  private final Flowlet flowlet;
   private final BasicFlowletContext flowletContext;
-  private final Collection<? extends ProcessSpecification<?>> processSpecs;
-  private final Callback txCallback;
-  private final DataFabricFacade dataFabricFacade;
+  private final Collection<FlowletProcessWorker> workers;
+  private final int processThreads;
   private final Service serviceHook;
 
   private FlowletProcessDriver flowletProcessDriver;
 
-  FlowletRuntimeService(Flowlet flowlet, BasicFlowletContext flowletContext,
-                        Collection<? extends ProcessSpecification<?>> processSpecs,
-                        Callback txCallback, DataFabricFacade dataFabricFacade,
-                        Service serviceHook) {
-    this.flowlet = flowlet;
+  FlowletRuntimeService(BasicFlowletContext flowletContext, Collection<FlowletProcessWorker> workers,
+                        int processThreads, Service serviceHook) {
     this.flowletContext = flowletContext;
-    this.processSpecs = processSpecs;
-    this.txCallback = txCallback;
-    this.dataFabricFacade = dataFabricFacade;
+    this.workers = workers;
+    this.processThreads = processThreads;
     this.serviceHook = serviceHook;
   }
 
@@ -69,10 +61,12 @@ final class FlowletRuntimeService extends AbstractIdleService {
   protected void startUp() throws Exception {
     LoggingContextAccessor.setLoggingContext(flowletContext.getLoggingContext());
     flowletContext.getProgramMetrics().increment("process.instance", 1);
-    flowletProcessDriver = new FlowletProcessDriver(flowletContext, dataFabricFacade, txCallback, processSpecs);
+    flowletProcessDriver = new FlowletProcessDriver(flowletContext, workers, processThreads);
 
     serviceHook.startAndWait();
-    initFlowlet();
+    for (FlowletProcessWorker worker : workers) {
+      initFlowlet(worker.getFlowlet(), worker.getFlowletContext());
+    }
     flowletProcessDriver.startAndWait();
   }
 
@@ -82,7 +76,9 @@ final class FlowletRuntimeService extends AbstractIdleService {
     if (flowletProcessDriver != null) {
       stopService(flowletProcessDriver);
     }
-    destroyFlowlet();
+    for (FlowletProcessWorker worker : workers) {
+      destroyFlowlet(worker.getFlowlet(), worker.getFlowletContext());
+    }
     stopService(serviceHook);
   }
 
@@ -108,7 +104,8 @@ final class FlowletRuntimeService extends AbstractIdleService {
     flowletProcessDriver.startAndWait();
   }
 
-  private void initFlowlet() throws InterruptedException {
+  private void initFlowlet(final Flowlet flowlet,
+                           final BasicFlowletContext flowletContext) throws InterruptedException {
     LOG.info("Initializing flowlet: " + flowletContext);
     TxRunnable runnable = new TxRunnable() {
       @Override
@@ -139,7 +136,7 @@ final class FlowletRuntimeService extends AbstractIdleService {
     }
   }
 
-  private void destroyFlowlet() {
+  private void destroyFlowlet(final Flowlet flowlet, final BasicFlowletContext flowletContext) {
     LOG.info("Destroying flowlet: " + flowletContext);
     TxRunnable runnable = new TxRunnable() {
       @Override
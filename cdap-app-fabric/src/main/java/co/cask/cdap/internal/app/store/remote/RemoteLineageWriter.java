@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.internal.remote.RemoteOpsClient;
 import co.cask.cdap.data2.metadata.lineage.AccessType;
+import co.cask.cdap.data2.metadata.lineage.DataAccess;
 import co.cask.cdap.data2.metadata.writer.BasicLineageWriter;
 import co.cask.cdap.data2.metadata.writer.LineageWriter;
 import co.cask.cdap.proto.id.DatasetId;
@@ -29,6 +30,9 @@ import co.cask.cdap.proto.id.StreamId;
 import com.google.inject.Inject;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import javax.annotation.Nullable;
@@ -76,6 +80,25 @@ public class RemoteLineageWriter extends RemoteOpsClient implements LineageWrite
     executeRequest("addStreamAccess", run, stream, accessType, component);
   }
 
+  @Override
+  public void addAccesses(Collection<DataAccess> accesses) {
+    // Each access is sent as a sequence of arguments, so that the type of each of them is sent too
+    List<Object> arguments = new ArrayList<>(accesses.size() * 5);
+    for (DataAccess access : accesses) {
+      if (alreadyRegistered(access.getRun(), access.getData(), access.getAccessType(), access.getComponent())) {
+        continue;
+      }
+      arguments.add(access.getRun());
+      arguments.add(access.getData());
+      arguments.add(access.getAccessType());
+      arguments.add(access.getAccessTimeMillis());
+      arguments.add(access.getComponent());
+    }
+    if (!arguments.isEmpty()) {
+      executeRequest("addAccesses", arguments.toArray());
+    }
+  }
+
   private boolean alreadyRegistered(ProgramRunId run, NamespacedEntityId data, AccessType accessType,
                                     @Nullable NamespacedEntityId component) {
     return registered.putIfAbsent(new BasicLineageWriter.DataAccessKey(run, data, accessType, component), true) != null;
@@ -24,6 +24,8 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.entity.EntityExistenceVerifier;
 import co.cask.cdap.data2.metadata.dataset.MetadataDataset;
 import co.cask.cdap.data2.metadata.store.MetadataStore;
+import co.cask.cdap.data2.metadata.store.SearchResults;
+import co.cask.cdap.data2.metadata.store.SortInfo;
 import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.id.NamespacedEntityId;
 import co.cask.cdap.proto.metadata.MetadataRecord;
@@ -40,6 +42,7 @@ import com.google.inject.Inject;
 
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link MetadataAdmin} that interacts directly with {@link MetadataStore}.
@@ -173,6 +176,15 @@ public class DefaultMetadataAdmin implements MetadataAdmin {
     return filterAuthorizedSearchResult(metadataStore.searchMetadataOnType(scope, namespaceId, searchQuery, types));
   }
 
+  @Override
+  public SearchResults search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types,
+                              SortInfo sortInfo, int offset, int limit, @Nullable String cursor) throws Exception {
+    Principal principal = authenticationContext.getPrincipal();
+    // Filter while ranking, so that the pages and the total only count the entities visible to the user
+    return metadataStore.search(namespaceId, searchQuery, types, sortInfo, offset, limit, cursor,
+                                authorizationEnforcer.createFilter(principal));
+  }
+
   /**
    * Filter a list of {@link MetadataSearchResultRecord} that ensures the logged-in user has a privilege on
    *
@@ -27,6 +27,7 @@ import co.cask.cdap.data2.metadata.lineage.LineageStore;
 import co.cask.cdap.data2.metadata.lineage.LineageStoreReader;
 import co.cask.cdap.data2.metadata.lineage.Relation;
 import co.cask.cdap.data2.metadata.store.MetadataStore;
+import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
 import co.cask.cdap.internal.app.store.RunRecordMeta;
 import co.cask.cdap.proto.ProgramRunStatus;
 import co.cask.cdap.proto.id.ApplicationId;
@@ -41,8 +42,11 @@ import co.cask.cdap.proto.metadata.MetadataScope;
 import co.cask.cdap.proto.metadata.lineage.CollapseType;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
@@ -70,6 +74,7 @@ import javax.annotation.Nullable;
  */
 public class LineageAdmin {
   private static final Logger LOG = LoggerFactory.getLogger(LineageAdmin.class);
+  private static final int WORKFLOW_RUN_CACHE_SIZE = 10000;
 
   private static final Function<Relation, ProgramId> RELATION_TO_PROGRAM_FUNCTION =
     new Function<Relation, ProgramId>() {
@@ -110,6 +115,7 @@ public class LineageAdmin {
   private final Store store;
   private final MetadataStore metadataStore;
   private final EntityExistenceVerifier entityExistenceVerifier;
+  private final Cache<ProgramRunId, Optional<ProgramRunId>> workflowRunCache;
 
   @Inject
   LineageAdmin(LineageStoreReader lineageStoreReader, Store store, MetadataStore metadataStore,
@@ -118,6 +124,7 @@ public class LineageAdmin {
     this.store = store;
     this.metadataStore = metadataStore;
     this.entityExistenceVerifier = entityExistenceVerifier;
+    this.workflowRunCache = CacheBuilder.newBuilder().maximumSize(WORKFLOW_RUN_CACHE_SIZE).build();
   }
 
   /**
@@ -200,39 +207,16 @@ public class LineageAdmin {
                                                RunIds.getTime(runId, TimeUnit.MILLISECONDS));
   }
 
-  @Nullable
-  private ProgramRunId getWorkflowProgramRunid (Relation relation, Map<ProgramRunId,
-    RunRecordMeta> runRecordMap, Map<String, ProgramRunId> workflowIdMap) {
-    ProgramRunId workflowProgramRunId = null;
-
-    RunRecordMeta runRecord = runRecordMap.get(
-      new ProgramRunId(relation.getProgram().getNamespace(), relation.getProgram().getApplication(),
-                       relation.getProgram().getType(), relation.getProgram().getProgram(),
-                       relation.getRun().getId()));
-    if (runRecord != null
-      && runRecord.getProperties().containsKey("workflowrunid")) {
-      String workflowRunId = runRecord.getProperties().get("workflowrunid");
-      workflowProgramRunId = workflowIdMap.get(workflowRunId);
-    }
-    return workflowProgramRunId;
-  }
-
-  private Multimap<RelationKey, Relation> getRollupRelations (Multimap<RelationKey, Relation> relations,
-                                                              Map<ProgramRunId, RunRecordMeta> runRecordMap,
-                                                              Map<String, ProgramRunId> workflowIdMap)
-    throws NotFoundException {
-
+  private Multimap<RelationKey, Relation> getRollupRelations(Multimap<RelationKey, Relation> relations,
+                                                             Map<ProgramRunId, ProgramRunId> workflowRuns) {
     Multimap<RelationKey, Relation> relationsNew = HashMultimap.create();
     for (Map.Entry<RelationKey, Collection<Relation>> entry : relations.asMap().entrySet()) {
       for (Relation relation : entry.getValue()) {
-        ProgramRunId workflowProgramRunId = getWorkflowProgramRunid(relation, runRecordMap, workflowIdMap);
+        ProgramRunId workflowProgramRunId = workflowRuns.get(toProgramRunId(relation));
         if (workflowProgramRunId == null) {
           relationsNew.put(entry.getKey(), relation);
         } else {
-          ProgramId workflowProgramId = new ProgramId(workflowProgramRunId.getNamespace(),
-                                                        workflowProgramRunId.getApplication(),
-                                                        workflowProgramRunId.getType(),
-                                                        workflowProgramRunId.getProgram());
+          ProgramId workflowProgramId = workflowProgramRunId.getParent();
           Relation workflowRelation;
           NamespacedEntityId data = relation.getData();
           if (data instanceof DatasetId) {
@@ -249,60 +233,107 @@ public class LineageAdmin {
     return relationsNew;
   }
 
-  private Set<String> getWorkflowIds (Multimap<RelationKey, Relation> relations,
-                                      Map<ProgramRunId, RunRecordMeta> runRecordMap) throws NotFoundException {
-
-    final Set<String> workflowIDs = new HashSet<>();
-    for (Relation relation : Iterables.concat(relations.values())) {
-      RunRecordMeta runRecord = runRecordMap.get(
-        new ProgramRunId(relation.getProgram().getNamespace(), relation.getProgram().getApplication(),
-                         relation.getProgram().getType(), relation.getProgram().getProgram(),
-                         relation.getRun().getId()));
-      if (runRecord != null && runRecord.getProperties().containsKey("workflowrunid")) {
-        String workflowRunId = runRecord.getProperties().get("workflowrunid");
-        workflowIDs.add(workflowRunId);
+  /**
+   * Returns the runs of the workflows that started the given program runs. Program runs not started by a workflow
+   * are not in the returned map. Lookups are cached, since the workflow of a program run never changes.
+   */
+  private Map<ProgramRunId, ProgramRunId> getWorkflowRuns(Set<ProgramRunId> programRuns) {
+    Map<ProgramRunId, ProgramRunId> workflowRuns = new HashMap<>();
+    Set<ProgramRunId> uncachedRuns = new HashSet<>();
+    for (ProgramRunId programRun : programRuns) {
+      Optional<ProgramRunId> workflowRun = workflowRunCache.getIfPresent(programRun);
+      if (workflowRun == null) {
+        uncachedRuns.add(programRun);
+      } else if (workflowRun.isPresent()) {
+        workflowRuns.put(programRun, workflowRun.get());
       }
     }
-
-    return workflowIDs;
-  }
-
-  private Multimap<RelationKey, Relation> doComputeRollupLineage(Multimap<RelationKey,
-    Relation> relations) throws NotFoundException {
-
-    // Make a set of all ProgramIDs in the relations
-    Set<ProgramRunId> programRunIdSet = new HashSet<>();
-    for (Relation relation : Iterables.concat(relations.values())) {
-      programRunIdSet.add(new ProgramRunId(relation.getProgram().getNamespace(), relation.getProgram().getApplication(),
-                                        relation.getProgram().getType(), relation.getProgram().getProgram(),
-                                        relation.getRun().getId()));
+    if (uncachedRuns.isEmpty()) {
+      return workflowRuns;
     }
 
-    // Get RunRecordMeta for all these ProgramRunIDs
-    final Map<ProgramRunId, RunRecordMeta> runRecordMap = store.getRuns(programRunIdSet);
+    // Get RunRecordMeta for all the program runs not in the cache
+    Map<ProgramRunId, String> unresolvedWorkflowRunIds = new HashMap<>();
+    Map<ProgramRunId, ProgramRunId> candidateWorkflowRuns = new HashMap<>();
+    for (Map.Entry<ProgramRunId, RunRecordMeta> entry : store.getRuns(uncachedRuns).entrySet()) {
+      ProgramRunId programRun = entry.getKey();
+      RunRecordMeta runRecord = entry.getValue();
+      String workflowRunId = runRecord.getProperties().get("workflowrunid");
+      if (workflowRunId == null) {
+        workflowRunCache.put(programRun, Optional.<ProgramRunId>absent());
+        continue;
+      }
+      unresolvedWorkflowRunIds.put(programRun, workflowRunId);
+      // A workflow runs programs of its own application, so the workflow name is enough to get its run id
+      Map<String, String> systemArgs = runRecord.getSystemArgs();
+      String workflowName = systemArgs == null ? null : systemArgs.get(ProgramOptionConstants.WORKFLOW_NAME);
+      if (workflowName != null) {
+        candidateWorkflowRuns.put(programRun,
+                                  programRun.getParent().getParent().workflow(workflowName).run(workflowRunId));
+      }
+    }
 
-    // Get workflow Run IDs for all the programs in the relations
-    final Set<String> workflowIDs = getWorkflowIds(relations, runRecordMap);
+    // Verify the workflow runs with a batched lookup of their run records
+    if (!candidateWorkflowRuns.isEmpty()) {
+      Set<ProgramRunId> existingWorkflowRuns =
+        store.getRuns(new HashSet<>(candidateWorkflowRuns.values())).keySet();
+      for (Map.Entry<ProgramRunId, ProgramRunId> entry : candidateWorkflowRuns.entrySet()) {
+        if (existingWorkflowRuns.contains(entry.getValue())) {
+          workflowRunCache.put(entry.getKey(), Optional.of(entry.getValue()));
+          workflowRuns.put(entry.getKey(), entry.getValue());
+          unresolvedWorkflowRunIds.remove(entry.getKey());
+        }
+      }
+    }
+    if (unresolvedWorkflowRunIds.isEmpty()) {
+      return workflowRuns;
+    }
 
-    // Get Program IDs for workflow Run IDs
+    // Fall back to a scan for the workflow runs that could not be found from the workflow name
     // TODO: These scans could be expensive. CDAP-7571.
+    final Set<String> workflowRunIds = new HashSet<>(unresolvedWorkflowRunIds.values());
     Map<ProgramRunId, RunRecordMeta> workflowRunRecordMap =
       store.getRuns(ProgramRunStatus.ALL,
                     new Predicate<RunRecordMeta>() {
                       @Override
                       public boolean apply(RunRecordMeta input) {
-                        return workflowIDs.contains(input.getPid());
+                        return workflowRunIds.contains(input.getPid());
                       }
                     });
 
-    // Create a map from RunId to ProgramId for all workflows
+    // Create a map from RunId to ProgramRunId for all workflows
     Map<String, ProgramRunId> workflowIdMap = new HashMap<>();
     for (Map.Entry<ProgramRunId, RunRecordMeta> entry : workflowRunRecordMap.entrySet()) {
       workflowIdMap.put(entry.getValue().getPid(), entry.getKey());
     }
+    for (Map.Entry<ProgramRunId, String> entry : unresolvedWorkflowRunIds.entrySet()) {
+      ProgramRunId workflowRun = workflowIdMap.get(entry.getValue());
+      if (workflowRun != null) {
+        workflowRunCache.put(entry.getKey(), Optional.of(workflowRun));
+        workflowRuns.put(entry.getKey(), workflowRun);
+      }
+    }
+    return workflowRuns;
+  }
+
+  private Multimap<RelationKey, Relation> doComputeRollupLineage(Multimap<RelationKey,
+    Relation> relations) throws NotFoundException {
+
+    // Make a set of all ProgramRunIds in the relations
+    Set<ProgramRunId> programRunIdSet = new HashSet<>();
+    for (Relation relation : Iterables.concat(relations.values())) {
+      programRunIdSet.add(toProgramRunId(relation));
+    }
+
+    // Get the workflow runs for all the program runs in the relations
+    Map<ProgramRunId, ProgramRunId> workflowRuns = getWorkflowRuns(programRunIdSet);
 
     // For all relations, replace ProgramIds with workflow ProgramIds
-    return getRollupRelations(relations, runRecordMap, workflowIdMap);
+    return getRollupRelations(relations, workflowRuns);
+  }
+
+  private ProgramRunId toProgramRunId(Relation relation) {
+    return relation.getProgram().run(relation.getRun().getId());
   }
 
   private Lineage doComputeLineage(final NamespacedEntityId sourceData, long startMillis, long endMillis,
@@ -326,40 +357,35 @@ public class LineageAdmin {
     Set<ProgramId> visitedPrograms = new HashSet<>();
     Set<ProgramId> toVisitPrograms = new HashSet<>();
 
+    // Each level reads the relations of all the entities to visit in one batched read
     toVisitDatasets.add(sourceData);
-    for (int i = 0; i < levels; ++i) {
+    for (int i = 0; i < levels && !toVisitDatasets.isEmpty(); ++i) {
       LOG.trace("Level {}", i);
+      toVisitDatasets.removeAll(visitedDatasets);
+      visitedDatasets.addAll(toVisitDatasets);
+      LOG.trace("Visiting datasets {}", toVisitDatasets);
+      // Fetch related programs
+      Set<Relation> programRelations = lineageStoreReader.getRelations(toVisitDatasets, scanRange.getStart(),
+                                                                       scanRange.getEnd(), scanRange.getFilter());
+      LOG.trace("Got program relations {}", programRelations);
+      for (Relation relation : programRelations) {
+        relations.put(new RelationKey(relation), relation);
+      }
       toVisitPrograms.clear();
-      for (NamespacedEntityId d : toVisitDatasets) {
-        if (visitedDatasets.add(d)) {
-          LOG.trace("Visiting dataset {}", d);
-          // Fetch related programs
-          Iterable<Relation> programRelations = getProgramRelations(d, scanRange.getStart(), scanRange.getEnd(),
-                                                                    scanRange.getFilter());
-          LOG.trace("Got program relations {}", programRelations);
-          for (Relation relation : programRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitPrograms, Iterables.transform(programRelations, RELATION_TO_PROGRAM_FUNCTION));
-        }
+      Iterables.addAll(toVisitPrograms, Iterables.transform(programRelations, RELATION_TO_PROGRAM_FUNCTION));
+
+      toVisitPrograms.removeAll(visitedPrograms);
+      visitedPrograms.addAll(toVisitPrograms);
+      LOG.trace("Visiting programs {}", toVisitPrograms);
+      // Fetch related datasets
+      Set<Relation> datasetRelations = lineageStoreReader.getRelations(toVisitPrograms, scanRange.getStart(),
+                                                                       scanRange.getEnd(), scanRange.getFilter());
+      LOG.trace("Got data relations {}", datasetRelations);
+      for (Relation relation : datasetRelations) {
+        relations.put(new RelationKey(relation), relation);
       }
-
       toVisitDatasets.clear();
-      for (ProgramId p : toVisitPrograms) {
-        if (visitedPrograms.add(p)) {
-          LOG.trace("Visiting program {}", p);
-          // Fetch related datasets
-          Iterable<Relation> datasetRelations = lineageStoreReader.getRelations(p, scanRange.getStart(),
-                                                                                scanRange.getEnd(),
-                                                                                scanRange.getFilter());
-          LOG.trace("Got data relations {}", datasetRelations);
-          for (Relation relation : datasetRelations) {
-            relations.put(new RelationKey(relation), relation);
-          }
-          Iterables.addAll(toVisitDatasets,
-                           Iterables.transform(datasetRelations, RELATION_TO_DATA_FUNCTION));
-        }
-      }
+      Iterables.addAll(toVisitDatasets, Iterables.transform(datasetRelations, RELATION_TO_DATA_FUNCTION));
     }
 
     if (rollup != null && rollup.contains("workflow")) {
@@ -372,19 +398,6 @@ public class LineageAdmin {
     return lineage;
   }
 
-  private Iterable<Relation> getProgramRelations(NamespacedEntityId data, long start, long end,
-                                                 Predicate<Relation> filter) {
-    if (data instanceof DatasetId) {
-      return lineageStoreReader.getRelations((DatasetId) data, start, end, filter);
-    }
-
-    if (data instanceof StreamId) {
-      return lineageStoreReader.getRelations((StreamId) data, start, end, filter);
-    }
-
-    throw new IllegalStateException("Unknown data type " + data);
-  }
-
   /**
    * Convert a set of runIds into a scan range based on earliest runtime and latest runtime of runIds.
    * Also, add a scan filter to include only runIds in the given set.
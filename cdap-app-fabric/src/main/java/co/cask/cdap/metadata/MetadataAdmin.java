@@ -18,6 +18,8 @@ package co.cask.cdap.metadata;
 
 import co.cask.cdap.common.InvalidMetadataException;
 import co.cask.cdap.common.NotFoundException;
+import co.cask.cdap.data2.metadata.store.SearchResults;
+import co.cask.cdap.data2.metadata.store.SortInfo;
 import co.cask.cdap.proto.id.NamespacedEntityId;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
@@ -26,6 +28,7 @@ import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Interface that the {@link MetadataHttpHandler} uses to interact with Metadata.
@@ -176,4 +179,22 @@ public interface MetadataAdmin {
    */
   Set<MetadataSearchResultRecord> searchMetadata(MetadataScope scope, String namespaceId, String searchQuery,
                                                  Set<MetadataSearchTargetType> types) throws Exception;
+
+  /**
+   * Executes a search for CDAP entities in the specified namespace with the specified search query and
+   * an optional set of {@link MetadataSearchTargetType entity types} in both
+   * {@link MetadataScope#USER} and {@link MetadataScope#SYSTEM}, and returns one page of the results.
+   *
+   * @param namespaceId The namespace to filter the search by
+   * @param searchQuery The search query
+   * @param types The types of CDAP entity to be searched. If empty all possible types will be searched
+   * @param sortInfo The order of the results
+   * @param offset The number of results to skip, counted from the cursor if one is given
+   * @param limit The maximum number of results to return
+   * @param cursor The cursor returned with the previous page, or {@code null} to start from the first result
+   * @return {@link SearchResults} containing a {@link MetadataSearchResultRecord} for each matching entity in the page
+   * @throws IllegalArgumentException if the cursor is invalid
+   */
+  SearchResults search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types,
+                       SortInfo sortInfo, int offset, int limit, @Nullable String cursor) throws Exception;
 }
@@ -71,4 +71,20 @@ public class SystemArgumentsTest {
     Assert.assertEquals(defaultResources, resources);
 
   }
+
+  @Test
+  public void testFlowletProcessThreads() {
+    // Nothing specified
+    Assert.assertEquals(1, SystemArguments.getFlowletProcessThreads(ImmutableMap.<String, String>of()));
+
+    // Specify threads
+    Assert.assertEquals(4, SystemArguments.getFlowletProcessThreads(
+      ImmutableMap.of("system.flowlet.process.threads", "4")));
+
+    // Specify invalid threads
+    Assert.assertEquals(1, SystemArguments.getFlowletProcessThreads(
+      ImmutableMap.of("system.flowlet.process.threads", "0")));
+    Assert.assertEquals(1, SystemArguments.getFlowletProcessThreads(
+      ImmutableMap.of("system.flowlet.process.threads", "abc")));
+  }
 }
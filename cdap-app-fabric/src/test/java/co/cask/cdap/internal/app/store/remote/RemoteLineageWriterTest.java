@@ -18,16 +18,19 @@ package co.cask.cdap.internal.app.store.remote;
 
 import co.cask.cdap.common.app.RunIds;
 import co.cask.cdap.data2.metadata.lineage.AccessType;
+import co.cask.cdap.data2.metadata.lineage.DataAccess;
 import co.cask.cdap.data2.metadata.lineage.LineageStore;
 import co.cask.cdap.data2.metadata.lineage.Relation;
 import co.cask.cdap.internal.app.services.http.AppFabricTestBase;
 import co.cask.cdap.proto.id.ApplicationId;
 import co.cask.cdap.proto.id.DatasetId;
+import co.cask.cdap.proto.id.FlowletId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.id.ProgramRunId;
 import co.cask.cdap.proto.id.StreamId;
 import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Injector;
 import org.apache.twill.api.RunId;
@@ -87,4 +90,25 @@ public class RemoteLineageWriterTest extends AppFabricTestBase {
     Assert.assertEquals(expectedRelations,
                         lineageStore.getRelations(flowId, now, now + 1, Predicates.<Relation>alwaysTrue()));
   }
+
+  @Test
+  public void testBatch() {
+    long now = System.currentTimeMillis();
+    ApplicationId appId = NamespaceId.DEFAULT.app("batch_app");
+    ProgramId flowId = appId.flow("batch_flow");
+    ProgramRunId runId = flowId.run(RunIds.generate(now).getId());
+    RunId twillRunId = RunIds.fromString(runId.getRun());
+    DatasetId datasetId = NamespaceId.DEFAULT.dataset("batch_dataset");
+    StreamId streamId = NamespaceId.DEFAULT.stream("batch_stream");
+    FlowletId flowletId = appId.flow("batch_flow").flowlet("batch_flowlet");
+
+    remoteLineageWriter.addAccesses(ImmutableList.of(
+      new DataAccess(runId, datasetId, AccessType.WRITE, now, flowletId),
+      new DataAccess(runId, streamId, AccessType.READ, now, null)));
+
+    Assert.assertEquals(ImmutableSet.of(new Relation(datasetId, flowId, AccessType.WRITE, twillRunId,
+                                                     ImmutableSet.of(flowletId)),
+                                        new Relation(streamId, flowId, AccessType.READ, twillRunId)),
+                        lineageStore.getRelations(flowId, now, now + 1, Predicates.<Relation>alwaysTrue()));
+  }
 }
@@ -34,6 +34,7 @@ import co.cask.cdap.common.discovery.RandomEndpointStrategy;
 import co.cask.cdap.common.namespace.NamespaceAdmin;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.common.stream.StreamEventCodec;
+import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.queue.QueueEntry;
 import co.cask.cdap.data2.queue.QueueProducer;
@@ -44,6 +45,7 @@ import co.cask.cdap.internal.app.runtime.BasicArguments;
 import co.cask.cdap.proto.NamespaceMeta;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.runtime.app.PendingMetricTestApp;
+import co.cask.cdap.runtime.app.ProcessThreadsTestApp;
 import co.cask.cdap.test.SlowTests;
 import com.google.common.base.Charsets;
 import com.google.common.base.Supplier;
@@ -79,6 +81,7 @@ import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -325,6 +328,55 @@ public class FlowTest {
     }
   }
 
+  @Test
+  public void testFlowletProcessThreads() throws Exception {
+    final ApplicationWithPrograms app = AppFabricTestHelper.deployApplicationWithManager(ProcessThreadsTestApp.class,
+                                                                                         TEMP_FOLDER_SUPPLIER);
+    final File tempFolder = TEMP_FOLDER_SUPPLIER.get();
+
+    ProgramController controller = null;
+    for (ProgramDescriptor programDescriptor : app.getPrograms()) {
+      if (programDescriptor.getProgramId().getType() == ProgramType.FLOW) {
+        Arguments args = new BasicArguments(ImmutableMap.of("temp", tempFolder.getAbsolutePath(), "count", "4",
+                                                            "system.flowlet.process.threads", "2"));
+        controller = AppFabricTestHelper.submit(app, programDescriptor.getSpecification().getClassName(),
+                                                args, TEMP_FOLDER_SUPPLIER);
+      }
+    }
+    Assert.assertNotNull(controller);
+
+    try {
+      // The consumer cannot process strings until the "strings" file exists, and each attempt blocks for 5 seconds.
+      // With a process thread per input, the ints are processed without waiting for the strings.
+      waitForFiles(tempFolder, "int-0", 30);
+      waitForFiles(tempFolder, ImmutableList.of("int-1", "int-2", "int-3"), 2);
+      Assert.assertFalse(new File(tempFolder, "string-0").exists());
+
+      Assert.assertTrue(new File(tempFolder, "strings").createNewFile());
+      waitForFiles(tempFolder, ImmutableList.of("string-0", "string-1", "string-2", "string-3"), 30);
+    } finally {
+      controller.stop().get();
+    }
+  }
+
+  private static void waitForFiles(File dir, String name, long seconds) throws Exception {
+    waitForFiles(dir, ImmutableList.of(name), seconds);
+  }
+
+  private static void waitForFiles(final File dir, final List<String> names, long seconds) throws Exception {
+    Tasks.waitFor(true, new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        for (String name : names) {
+          if (!new File(dir, name).exists()) {
+            return false;
+          }
+        }
+        return true;
+      }
+    }, seconds, TimeUnit.SECONDS, 50, TimeUnit.MILLISECONDS);
+  }
+
   private static long waitForPending(Map<String, String> tags, long expected, long millis)
     throws Exception {
     return waitForPending(tags, expected, null, millis);
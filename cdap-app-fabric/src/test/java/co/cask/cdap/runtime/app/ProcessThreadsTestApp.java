@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.runtime.app;
+
+import co.cask.cdap.api.annotation.Output;
+import co.cask.cdap.api.annotation.ProcessInput;
+import co.cask.cdap.api.annotation.Tick;
+import co.cask.cdap.api.app.AbstractApplication;
+import co.cask.cdap.api.flow.AbstractFlow;
+import co.cask.cdap.api.flow.flowlet.AbstractFlowlet;
+import co.cask.cdap.api.flow.flowlet.FlowletContext;
+import co.cask.cdap.api.flow.flowlet.OutputEmitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An app to test that the process methods of a flowlet running with more than one process thread do not stall
+ * each other.
+ */
+public class ProcessThreadsTestApp extends AbstractApplication {
+
+  @Override
+  public void configure() {
+    addFlow(new ProcessThreadsFlow());
+  }
+
+  /**
+   * A flow with a consumer flowlet that has two inputs.
+   */
+  public static class ProcessThreadsFlow extends AbstractFlow {
+
+    @Override
+    protected void configure() {
+      setName("ProcessThreadsFlow");
+      setDescription("A flow to test a flowlet with more than one process thread.");
+      addFlowlet("source", new Source());
+      addFlowlet("consumer", new Consumer());
+      connect("source", "consumer");
+    }
+  }
+
+  /**
+   * Emits the number of ints and strings given by the "count" runtime argument once.
+   */
+  public static class Source extends AbstractFlowlet {
+
+    private boolean generated;
+
+    @Output("ints")
+    private OutputEmitter<Integer> intOut;
+
+    @Output("strings")
+    private OutputEmitter<String> stringOut;
+
+    @Tick(delay = 1L, unit = TimeUnit.MILLISECONDS)
+    void generateOnce() throws InterruptedException {
+      if (generated) {
+        TimeUnit.MILLISECONDS.sleep(50);
+        return;
+      }
+      int count = Integer.parseInt(getContext().getRuntimeArguments().get("count"));
+      for (int i = 0; i < count; i++) {
+        intOut.emit(i);
+        stringOut.emit(Integer.toString(i));
+      }
+      generated = true;
+    }
+  }
+
+  /**
+   * Creates a file in the "temp" runtime argument directory for every int and string processed. Strings are only
+   * processed once the "strings" file exists.
+   */
+  public static class Consumer extends AbstractFlowlet {
+
+    private File tempFolder;
+
+    @Override
+    public void initialize(FlowletContext context) throws Exception {
+      super.initialize(context);
+      tempFolder = new File(context.getRuntimeArguments().get("temp"));
+    }
+
+    @ProcessInput
+    void processInt(int i) throws IOException {
+      new File(tempFolder, "int-" + i).createNewFile();
+    }
+
+    @ProcessInput
+    void processString(String s) throws Exception {
+      File fileToWaitFor = new File(tempFolder, "strings");
+      long timeoutTime = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+      while (!fileToWaitFor.exists()) {
+        if (System.currentTimeMillis() > timeoutTime) {
+          throw new RuntimeException("timeout waiting for file");
+        }
+        TimeUnit.MILLISECONDS.sleep(50);
+      }
+      new File(tempFolder, "string-" + s).createNewFile();
+    }
+  }
+}
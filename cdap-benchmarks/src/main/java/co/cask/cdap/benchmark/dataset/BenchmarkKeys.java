@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.dataset;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Helper methods for generating fixed size keys and values for benchmarks.
+ */
+public final class BenchmarkKeys {
+
+  private BenchmarkKeys() {
+  }
+
+  /**
+   * Generates {@code count} distinct keys of {@code size} bytes each. Keys are generated in ascending byte order,
+   * with the key index encoded in the last four bytes and the remaining bytes filled with {@code fill}.
+   */
+  public static byte[][] keys(int count, int size, byte fill) {
+    Preconditions.checkArgument(size >= Bytes.SIZEOF_INT, "Key size must be at least %s", Bytes.SIZEOF_INT);
+    byte[][] keys = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      byte[] key = new byte[size];
+      Arrays.fill(key, 0, size - Bytes.SIZEOF_INT, fill);
+      Bytes.putInt(key, size - Bytes.SIZEOF_INT, i);
+      keys[i] = key;
+    }
+    return keys;
+  }
+
+  /**
+   * Generates a random value of {@code size} bytes, using a fixed seed so that runs are reproducible.
+   */
+  public static byte[] value(int size) {
+    byte[] value = new byte[size];
+    new Random(size).nextBytes(value);
+    return value;
+  }
+}
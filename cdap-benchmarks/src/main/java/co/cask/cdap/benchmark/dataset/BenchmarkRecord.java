@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.dataset;
+
+/**
+ * The object type stored by {@link ObjectMappedTableBenchmark}.
+ */
+public final class BenchmarkRecord {
+  private final int intField;
+  private final Long longField;
+  private final double doubleField;
+  private final String stringField;
+  private final byte[] bytesField;
+
+  public BenchmarkRecord(int intField, Long longField, double doubleField, String stringField, byte[] bytesField) {
+    this.intField = intField;
+    this.longField = longField;
+    this.doubleField = doubleField;
+    this.stringField = stringField;
+    this.bytesField = bytesField;
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.dataset;
+
+import co.cask.cdap.api.dataset.DatasetAdmin;
+import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
+import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableAdmin;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTable;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableAdmin;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the table implementations exercised by the benchmarks directly, without going through the dataset
+ * framework, so that only the table code paths are measured.
+ */
+public final class BenchmarkTables implements Closeable {
+
+  /**
+   * Type of table to create. Benchmarks take this as a {@code @Param} so that results for different storage
+   * implementations are reported side by side.
+   */
+  public enum Type {
+    INMEMORY,
+    LEVELDB
+  }
+
+  private static final DatasetContext CONTEXT = DatasetContext.from("benchmark");
+
+  private final File localDir;
+  private final CConfiguration cConf;
+  private final LevelDBTableService levelDBTableService;
+  private final List<DatasetAdmin> admins;
+
+  public BenchmarkTables() throws IOException {
+    this.localDir = Files.createTempDir();
+    this.cConf = CConfiguration.create();
+    this.cConf.set(Constants.CFG_LOCAL_DATA_DIR, localDir.getAbsolutePath());
+    this.levelDBTableService = new LevelDBTableService();
+    this.levelDBTableService.setConfiguration(cConf);
+    this.admins = new ArrayList<>();
+  }
+
+  /**
+   * Creates a new {@link BufferingTable} of the given type with default properties.
+   */
+  public BufferingTable createTable(Type type, String name) throws IOException {
+    return createTable(type, name, ImmutableMap.<String, String>of());
+  }
+
+  /**
+   * Creates a new {@link BufferingTable} of the given type.
+   *
+   * @param type type of the table
+   * @param name name of the table
+   * @param properties dataset properties of the table
+   */
+  public BufferingTable createTable(Type type, String name, Map<String, String> properties) throws IOException {
+    DatasetSpecification spec = DatasetSpecification.builder(name, "table").properties(properties).build();
+    switch (type) {
+      case INMEMORY:
+        create(new InMemoryTableAdmin(CONTEXT, name, cConf));
+        return new InMemoryTable(CONTEXT, spec, cConf);
+      case LEVELDB:
+        create(new LevelDBTableAdmin(CONTEXT, spec, levelDBTableService, cConf));
+        return new LevelDBTable(CONTEXT, name, levelDBTableService, cConf, spec);
+      default:
+        throw new IllegalArgumentException("Unsupported table type " + type);
+    }
+  }
+
+  /**
+   * Creates a new {@link MetricsTable} of the given type.
+   */
+  public MetricsTable createMetricsTable(Type type, String name) throws IOException {
+    DatasetSpecification spec = DatasetSpecification.builder(name, "table").build();
+    switch (type) {
+      case INMEMORY:
+        create(new InMemoryTableAdmin(CONTEXT, name, cConf));
+        return new InMemoryMetricsTable(CONTEXT, name, cConf);
+      case LEVELDB:
+        create(new LevelDBTableAdmin(CONTEXT, spec, levelDBTableService, cConf));
+        return new LevelDBMetricsTable(CONTEXT, name, levelDBTableService, cConf);
+      default:
+        throw new IllegalArgumentException("Unsupported table type " + type);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Drop the tables first, so that LevelDB is closed before the files are removed
+    for (DatasetAdmin admin : admins) {
+      admin.drop();
+    }
+    admins.clear();
+    InMemoryTableService.reset();
+    DirUtils.deleteDirectoryContents(localDir);
+  }
+
+  private void create(DatasetAdmin admin) throws IOException {
+    admin.create();
+    admins.add(admin);
+  }
+}
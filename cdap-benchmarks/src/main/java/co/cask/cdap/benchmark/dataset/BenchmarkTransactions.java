@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.dataset;
+
+import org.apache.tephra.Transaction;
+import org.apache.tephra.TransactionAware;
+
+/**
+ * Drives the {@link TransactionAware} lifecycle of datasets under benchmark without a transaction manager.
+ * Transactions are issued sequentially, each one seeing everything committed by the previous ones, so that the
+ * measurements only include the cost of the dataset itself.
+ */
+public final class BenchmarkTransactions {
+
+  private static final long[] NO_EXCLUDES = new long[0];
+
+  private long writePointer;
+
+  /**
+   * Starts a new transaction on all the given {@link TransactionAware}s.
+   */
+  public Transaction start(TransactionAware... txAwares) {
+    writePointer++;
+    Transaction tx = new Transaction(writePointer - 1, writePointer, NO_EXCLUDES, NO_EXCLUDES,
+                                     Transaction.NO_TX_IN_PROGRESS);
+    for (TransactionAware txAware : txAwares) {
+      txAware.startTx(tx);
+    }
+    return tx;
+  }
+
+  /**
+   * Commits the current transaction on all the given {@link TransactionAware}s.
+   */
+  public void commit(TransactionAware... txAwares) throws Exception {
+    for (TransactionAware txAware : txAwares) {
+      // Collect the changes as the transaction manager would do for conflict detection
+      txAware.getTxChanges();
+    }
+    for (TransactionAware txAware : txAwares) {
+      if (!txAware.commitTx()) {
+        throw new IllegalStateException("Failed to commit transaction on " + txAware.getTransactionAwareName());
+      }
+    }
+    for (TransactionAware txAware : txAwares) {
+      txAware.postTxCommit();
+    }
+  }
+
+  /**
+   * Rollbacks the current transaction on all the given {@link TransactionAware}s.
+   */
+  public void rollback(TransactionAware... txAwares) throws Exception {
+    for (TransactionAware txAware : txAwares) {
+      txAware.rollbackTx();
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.dataset;
+
+import co.cask.cdap.api.dataset.table.Get;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the read path of {@link BufferingTable}. The table is populated with {@code persistedRows} rows,
+ * then a single transaction is kept open with {@code bufferDepth} uncommitted writes in the in-memory buffer, so
+ * every read has to merge the buffer with the persisted data.
+ *
+ * Run with {@code -prof gc} to get the {@code gc.alloc.rate.norm} per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BufferingTableReadBenchmark {
+
+  private static final int POPULATE_BATCH_SIZE = 1000;
+
+  @Param({"INMEMORY", "LEVELDB"})
+  private BenchmarkTables.Type tableType;
+
+  @Param({"16"})
+  private int rowSize;
+
+  @Param({"8"})
+  private int columnSize;
+
+  @Param({"8", "256"})
+  private int valueSize;
+
+  @Param({"0", "100", "10000"})
+  private int bufferDepth;
+
+  @Param({"10000"})
+  private int persistedRows;
+
+  @Param({"4"})
+  private int columnsPerRow;
+
+  @Param({"100"})
+  private int batchSize;
+
+  private BenchmarkTables tables;
+  private BenchmarkTransactions transactions;
+  private BufferingTable table;
+  private byte[][] rows;
+  private byte[][] columns;
+  private int nextRow;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    tables = new BenchmarkTables();
+    transactions = new BenchmarkTransactions();
+    table = tables.createTable(tableType, "read", Collections.<String, String>emptyMap());
+    rows = BenchmarkKeys.keys(persistedRows, rowSize, (byte) 'r');
+    columns = BenchmarkKeys.keys(columnsPerRow, columnSize, (byte) 'c');
+    byte[][] values = new byte[columnsPerRow][];
+    for (int i = 0; i < columnsPerRow; i++) {
+      values[i] = BenchmarkKeys.value(valueSize);
+    }
+
+    for (int i = 0; i < rows.length; i += POPULATE_BATCH_SIZE) {
+      transactions.start(table);
+      for (int j = i; j < Math.min(i + POPULATE_BATCH_SIZE, rows.length); j++) {
+        table.put(rows[j], columns, values);
+      }
+      transactions.commit(table);
+    }
+
+    // Leave a transaction open, with the in-memory buffer overwriting the first bufferDepth persisted rows,
+    // so that both gets and scans have to merge the buffer with the persisted data.
+    transactions.start(table);
+    byte[][] bufferedRows = BenchmarkKeys.keys(bufferDepth, rowSize, (byte) 'r');
+    for (int i = 0; i < bufferDepth; i++) {
+      table.put(bufferedRows[i], columns, values);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    transactions.rollback(table);
+    table.close();
+    tables.close();
+  }
+
+  @Benchmark
+  public Row getRow() {
+    return table.get(nextRow());
+  }
+
+  @Benchmark
+  public Row getColumns() {
+    return table.get(nextRow(), columns);
+  }
+
+  @Benchmark
+  public List<Row> multiGet() {
+    List<Get> gets = new ArrayList<>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      gets.add(new Get(nextRow()));
+    }
+    return table.get(gets);
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) {
+    int start = nextRow;
+    int stop = Math.min(start + batchSize, rows.length - 1);
+    nextRow = stop;
+    Scanner scanner = table.scan(rows[start], rows[stop]);
+    try {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        blackhole.consume(row);
+      }
+    } finally {
+      scanner.close();
+    }
+    if (nextRow >= rows.length - 1) {
+      nextRow = 0;
+    }
+  }
+
+  private byte[] nextRow() {
+    byte[] row = rows[nextRow];
+    nextRow = (nextRow + 1) % rows.length;
+    return row;
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.dataset;
+
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the write path of {@link BufferingTable}. Each benchmark invocation is one transaction that
+ * buffers {@code bufferDepth} writes and then commits them, so the numbers include buffering, conflict change
+ * collection and persisting. The {@code writeBuffer} parameter selects the structure used for the in-memory buffer,
+ * see {@link Constants.Dataset#TABLE_WRITE_BUFFER}.
+ *
+ * Run with {@code -prof gc} to get the {@code gc.alloc.rate.norm} per transaction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BufferingTableWriteBenchmark {
+
+  @Param({"INMEMORY", "LEVELDB"})
+  private BenchmarkTables.Type tableType;
+
+  @Param({"map", Constants.Dataset.TABLE_WRITE_BUFFER_PACKED})
+  private String writeBuffer;
+
+  @Param({"16"})
+  private int rowSize;
+
+  @Param({"8"})
+  private int columnSize;
+
+  @Param({"8", "256"})
+  private int valueSize;
+
+  @Param({"1", "100", "10000"})
+  private int bufferDepth;
+
+  @Param({"4"})
+  private int columnsPerRow;
+
+  private BenchmarkTables tables;
+  private BenchmarkTransactions transactions;
+  private BufferingTable table;
+  private byte[][] rows;
+  private byte[][] columns;
+  private byte[][] values;
+  private long[] amounts;
+  private int nextRow;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    tables = new BenchmarkTables();
+    transactions = new BenchmarkTransactions();
+    table = tables.createTable(tableType, "write",
+                               ImmutableMap.of(Constants.Dataset.TABLE_WRITE_BUFFER, writeBuffer));
+    rows = BenchmarkKeys.keys(Math.max(bufferDepth, 1024), rowSize, (byte) 'r');
+    columns = BenchmarkKeys.keys(columnsPerRow, columnSize, (byte) 'c');
+    values = new byte[columnsPerRow][];
+    amounts = new long[columnsPerRow];
+    for (int i = 0; i < columnsPerRow; i++) {
+      values[i] = BenchmarkKeys.value(valueSize);
+      amounts[i] = i + 1;
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    table.close();
+    tables.close();
+  }
+
+  @Benchmark
+  public void put() throws Exception {
+    transactions.start(table);
+    for (int i = 0; i < bufferDepth; i++) {
+      table.put(nextRow(), columns, values);
+    }
+    transactions.commit(table);
+  }
+
+  /**
+   * Buffers the puts and computes the conflict detection changes, but rolls back instead of persisting, to isolate
+   * the cost of the in-memory buffer.
+   */
+  @Benchmark
+  public void bufferPuts(Blackhole blackhole) throws Exception {
+    transactions.start(table);
+    for (int i = 0; i < bufferDepth; i++) {
+      table.put(nextRow(), columns, values);
+    }
+    blackhole.consume(table.getTxChanges());
+    transactions.rollback(table);
+  }
+
+  @Benchmark
+  public void increment() throws Exception {
+    transactions.start(table);
+    for (int i = 0; i < bufferDepth; i++) {
+      table.increment(nextRow(), columns, amounts);
+    }
+    transactions.commit(table);
+  }
+
+  @Benchmark
+  public void incrementAndGet(Blackhole blackhole) throws Exception {
+    transactions.start(table);
+    for (int i = 0; i < bufferDepth; i++) {
+      blackhole.consume(table.incrementAndGet(nextRow(), columns, amounts));
+    }
+    transactions.commit(table);
+  }
+
+  private byte[] nextRow() {
+    byte[] row = rows[nextRow];
+    nextRow = (nextRow + 1) % rows.length;
+    return row;
+  }
+}
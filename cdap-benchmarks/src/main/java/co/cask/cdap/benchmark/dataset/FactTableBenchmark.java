@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.dataset;
+
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.Fact;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScan;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link FactTable#add(List)} and {@link FactTable#scan(FactScan)}, which are on the path of every
+ * metric emitted by programs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@org.openjdk.jmh.annotations.Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FactTableBenchmark {
+
+  private static final int RESOLUTION = 1;
+  private static final int ROLL_TIME = 3600;
+
+  @Param({"INMEMORY", "LEVELDB"})
+  private BenchmarkTables.Type tableType;
+
+  @Param({"4", "8"})
+  private int numDimensions;
+
+  @Param({"100", "1000"})
+  private int factsPerBatch;
+
+  @Param({"10"})
+  private int numMeasures;
+
+  @Param({"60"})
+  private int scanSeconds;
+
+  private BenchmarkTables tables;
+  private FactTable factTable;
+  private List<DimensionValue> dimensionValues;
+  private List<Fact> facts;
+  private long timestamp;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    tables = new BenchmarkTables();
+    factTable = new FactTable(tables.createMetricsTable(tableType, "facts"),
+                              new EntityTable(tables.createMetricsTable(tableType, "entities")),
+                              RESOLUTION, ROLL_TIME);
+    dimensionValues = new ArrayList<>(numDimensions);
+    for (int i = 0; i < numDimensions; i++) {
+      dimensionValues.add(new DimensionValue("dim" + i, "value" + i));
+    }
+
+    timestamp = System.currentTimeMillis() / 1000;
+    facts = new ArrayList<>(factsPerBatch);
+    for (int i = 0; i < factsPerBatch; i++) {
+      MeasureType type = i % 2 == 0 ? MeasureType.COUNTER : MeasureType.GAUGE;
+      facts.add(new Fact(timestamp, dimensionValues, new Measurement("metric" + (i % numMeasures), type, i)));
+    }
+
+    // Populate the table with scanSeconds worth of data for the scan benchmark
+    for (int i = 0; i < scanSeconds; i++) {
+      factTable.add(createFacts(timestamp - i));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    factTable.close();
+    tables.close();
+  }
+
+  @Benchmark
+  public void add() {
+    factTable.add(facts);
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) {
+    FactScanner scanner = factTable.scan(new FactScan(timestamp - scanSeconds, timestamp, dimensionValues));
+    try {
+      while (scanner.hasNext()) {
+        FactScanResult result = scanner.next();
+        for (TimeValue timeValue : result) {
+          blackhole.consume(timeValue);
+        }
+      }
+    } finally {
+      scanner.close();
+    }
+  }
+
+  private List<Fact> createFacts(long ts) {
+    List<Fact> result = new ArrayList<>(numMeasures);
+    for (int i = 0; i < numMeasures; i++) {
+      result.add(new Fact(ts, dimensionValues, new Measurement("metric" + i, MeasureType.COUNTER, 1)));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.dataset;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.IndexedTable;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link IndexedTable}. Rows have one indexed column whose value is shared by
+ * {@code rowsPerIndexValue} rows, plus a number of non-indexed columns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IndexedTableBenchmark {
+
+  private static final byte[] INDEX_COLUMN = Bytes.toBytes("idx");
+
+  @Param({"INMEMORY", "LEVELDB"})
+  private BenchmarkTables.Type tableType;
+
+  @Param({"16"})
+  private int rowSize;
+
+  @Param({"8", "256"})
+  private int valueSize;
+
+  @Param({"1", "100"})
+  private int batchSize;
+
+  @Param({"10000"})
+  private int numRows;
+
+  @Param({"10"})
+  private int rowsPerIndexValue;
+
+  private BenchmarkTables tables;
+  private BenchmarkTransactions transactions;
+  private IndexedTable indexedTable;
+  private byte[][] rows;
+  private byte[][] indexValues;
+  private byte[][] columns;
+  private byte[][] values;
+  private int nextRow;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    tables = new BenchmarkTables();
+    transactions = new BenchmarkTransactions();
+
+    SortedSet<byte[]> columnsToIndex = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    columnsToIndex.add(INDEX_COLUMN);
+    indexedTable = new IndexedTable("indexed", tables.createTable(tableType, "indexed.d"),
+                                    tables.createTable(tableType, "indexed.i"), columnsToIndex);
+
+    rows = BenchmarkKeys.keys(numRows, rowSize, (byte) 'r');
+    indexValues = BenchmarkKeys.keys(Math.max(numRows / rowsPerIndexValue, 1), Bytes.SIZEOF_INT, (byte) 0);
+    columns = new byte[][] { INDEX_COLUMN, Bytes.toBytes("c1"), Bytes.toBytes("c2") };
+    values = new byte[][] { null, BenchmarkKeys.value(valueSize), BenchmarkKeys.value(valueSize) };
+
+    transactions.start(indexedTable);
+    for (int i = 0; i < numRows; i++) {
+      put(i);
+    }
+    transactions.commit(indexedTable);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    indexedTable.close();
+    tables.close();
+  }
+
+  @Benchmark
+  public void put() throws Exception {
+    transactions.start(indexedTable);
+    for (int i = 0; i < batchSize; i++) {
+      put(nextRow());
+    }
+    transactions.commit(indexedTable);
+  }
+
+  @Benchmark
+  public void get(Blackhole blackhole) throws Exception {
+    transactions.start(indexedTable);
+    for (int i = 0; i < batchSize; i++) {
+      blackhole.consume(indexedTable.get(rows[nextRow()]));
+    }
+    transactions.commit(indexedTable);
+  }
+
+  @Benchmark
+  public void readByIndex(Blackhole blackhole) throws Exception {
+    transactions.start(indexedTable);
+    for (int i = 0; i < batchSize; i++) {
+      Scanner scanner = indexedTable.readByIndex(INDEX_COLUMN, indexValues[nextRow() % indexValues.length]);
+      try {
+        Row row;
+        while ((row = scanner.next()) != null) {
+          blackhole.consume(row);
+        }
+      } finally {
+        scanner.close();
+      }
+    }
+    transactions.commit(indexedTable);
+  }
+
+  private void put(int rowIdx) {
+    values[0] = indexValues[rowIdx % indexValues.length];
+    indexedTable.put(rows[rowIdx], columns, values);
+  }
+
+  private int nextRow() {
+    int row = nextRow;
+    nextRow = (nextRow + 1) % rows.length;
+    return row;
+  }
+}
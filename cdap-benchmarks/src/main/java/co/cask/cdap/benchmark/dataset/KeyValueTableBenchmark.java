@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.dataset;
+
+import co.cask.cdap.api.dataset.lib.KeyValueTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link KeyValueTable}. Each benchmark invocation is one transaction performing {@code batchSize}
+ * operations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class KeyValueTableBenchmark {
+
+  @Param({"INMEMORY", "LEVELDB"})
+  private BenchmarkTables.Type tableType;
+
+  @Param({"16"})
+  private int keySize;
+
+  @Param({"8", "256"})
+  private int valueSize;
+
+  @Param({"1", "100"})
+  private int batchSize;
+
+  @Param({"10000"})
+  private int numKeys;
+
+  private BenchmarkTables tables;
+  private BenchmarkTransactions transactions;
+  private KeyValueTable kvTable;
+  private byte[][] keys;
+  private byte[][] counters;
+  private byte[] value;
+  private int nextKey;
+  private int nextCounter;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    tables = new BenchmarkTables();
+    transactions = new BenchmarkTransactions();
+    kvTable = new KeyValueTable("kv", tables.createTable(tableType, "kv"));
+    keys = BenchmarkKeys.keys(numKeys, keySize, (byte) 'k');
+    // Use a separate key space for counters, as increments require 8 bytes values
+    counters = BenchmarkKeys.keys(numKeys, keySize, (byte) 'n');
+    value = BenchmarkKeys.value(valueSize);
+
+    transactions.start(kvTable);
+    for (byte[] key : keys) {
+      kvTable.write(key, value);
+    }
+    transactions.commit(kvTable);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    kvTable.close();
+    tables.close();
+  }
+
+  @Benchmark
+  public void write() throws Exception {
+    transactions.start(kvTable);
+    for (int i = 0; i < batchSize; i++) {
+      kvTable.write(nextKey(), value);
+    }
+    transactions.commit(kvTable);
+  }
+
+  @Benchmark
+  public void read(Blackhole blackhole) throws Exception {
+    transactions.start(kvTable);
+    for (int i = 0; i < batchSize; i++) {
+      blackhole.consume(kvTable.read(nextKey()));
+    }
+    transactions.commit(kvTable);
+  }
+
+  @Benchmark
+  public void increment() throws Exception {
+    transactions.start(kvTable);
+    for (int i = 0; i < batchSize; i++) {
+      kvTable.increment(counters[nextCounter], 1L);
+      nextCounter = (nextCounter + 1) % counters.length;
+    }
+    transactions.commit(kvTable);
+  }
+
+  private byte[] nextKey() {
+    byte[] key = keys[nextKey];
+    nextKey = (nextKey + 1) % keys.length;
+    return key;
+  }
+}
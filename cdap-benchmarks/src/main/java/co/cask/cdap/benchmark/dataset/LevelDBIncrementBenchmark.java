@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.dataset;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for concurrent increments on a LevelDB {@link MetricsTable}, which are read-modify-write operations
+ * guarded by row locks. All threads share the same table instance and increment rows picked at random out of
+ * {@code numRows}, so {@code numRows = 1} measures a single contended counter.
+ *
+ * Run the {@link #main(String[])} method to get results for 1 to 32 threads, e.g.
+ * {@code java -cp cdap-benchmarks/target/benchmarks.jar co.cask.cdap.benchmark.dataset.LevelDBIncrementBenchmark}.
+ * Other JMH command line options are passed through.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class LevelDBIncrementBenchmark {
+
+  private static final int[] THREADS = { 1, 2, 4, 8, 16, 32 };
+  private static final byte[] COLUMN = Bytes.toBytes("c");
+
+  @Param({"1", "1024"})
+  private int numRows;
+
+  private BenchmarkTables tables;
+  private MetricsTable table;
+  private byte[][] rows;
+
+  /**
+   * Per thread state for picking the row to increment.
+   */
+  @State(Scope.Thread)
+  public static class RowPicker {
+    private final Random random = new Random();
+
+    byte[] next(byte[][] rows) {
+      return rows[random.nextInt(rows.length)];
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    tables = new BenchmarkTables();
+    table = tables.createMetricsTable(BenchmarkTables.Type.LEVELDB, "increment");
+    rows = BenchmarkKeys.keys(numRows, 16, (byte) 'r');
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    table.close();
+    tables.close();
+  }
+
+  @Benchmark
+  public void increment(RowPicker picker) {
+    Map<byte[], Long> increments = ImmutableMap.of(COLUMN, 1L);
+    table.increment(picker.next(rows), increments);
+  }
+
+  @Benchmark
+  public long incrementAndGet(RowPicker picker) {
+    return table.incrementAndGet(picker.next(rows), COLUMN, 1L);
+  }
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions cmdOptions = new CommandLineOptions(args);
+    for (int threads : THREADS) {
+      new Runner(new OptionsBuilder()
+                   .parent(cmdOptions)
+                   .include(LevelDBIncrementBenchmark.class.getSimpleName())
+                   .threads(threads)
+                   .build()).run();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.dataset;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.data2.dataset2.lib.table.ObjectMappedTableDataset;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import co.cask.cdap.internal.io.TypeRepresentation;
+import com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link ObjectMappedTableDataset}, which includes the reflection based object to columns mapping.
+ * Each benchmark invocation is one transaction performing {@code batchSize} operations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ObjectMappedTableBenchmark {
+
+  @Param({"INMEMORY", "LEVELDB"})
+  private BenchmarkTables.Type tableType;
+
+  @Param({"8", "256"})
+  private int stringSize;
+
+  @Param({"1", "100"})
+  private int batchSize;
+
+  @Param({"10000"})
+  private int numKeys;
+
+  private BenchmarkTables tables;
+  private BenchmarkTransactions transactions;
+  private ObjectMappedTableDataset<BenchmarkRecord> objTable;
+  private byte[][] keys;
+  private BenchmarkRecord record;
+  private int nextKey;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    tables = new BenchmarkTables();
+    transactions = new BenchmarkTransactions();
+    Schema schema = new ReflectionSchemaGenerator().generate(BenchmarkRecord.class);
+    objTable = new ObjectMappedTableDataset<>("objects", tables.createTable(tableType, "objects"),
+                                              new TypeRepresentation(BenchmarkRecord.class), schema,
+                                              getClass().getClassLoader());
+    keys = BenchmarkKeys.keys(numKeys, 16, (byte) 'k');
+    record = new BenchmarkRecord(1, 2L, 3.0d, Strings.repeat("s", stringSize), BenchmarkKeys.value(stringSize));
+
+    transactions.start(objTable);
+    for (byte[] key : keys) {
+      objTable.write(key, record);
+    }
+    transactions.commit(objTable);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    objTable.close();
+    tables.close();
+  }
+
+  @Benchmark
+  public void write() throws Exception {
+    transactions.start(objTable);
+    for (int i = 0; i < batchSize; i++) {
+      objTable.write(nextKey(), record);
+    }
+    transactions.commit(objTable);
+  }
+
+  @Benchmark
+  public void read(Blackhole blackhole) throws Exception {
+    transactions.start(objTable);
+    for (int i = 0; i < batchSize; i++) {
+      blackhole.consume(objTable.read(nextKey()));
+    }
+    transactions.commit(objTable);
+  }
+
+  private byte[] nextKey() {
+    byte[] key = keys[nextKey];
+    nextKey = (nextKey + 1) % keys.length;
+    return key;
+  }
+}
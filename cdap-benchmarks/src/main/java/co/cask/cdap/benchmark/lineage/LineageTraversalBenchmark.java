@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.benchmark.lineage;
+
+import co.cask.cdap.benchmark.dataset.BenchmarkTables;
+import co.cask.cdap.benchmark.dataset.BenchmarkTransactions;
+import co.cask.cdap.common.app.RunIds;
+import co.cask.cdap.data2.metadata.lineage.AccessType;
+import co.cask.cdap.data2.metadata.lineage.LineageDataset;
+import co.cask.cdap.data2.metadata.lineage.Relation;
+import co.cask.cdap.proto.id.DatasetId;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.NamespacedEntityId;
+import co.cask.cdap.proto.id.ProgramId;
+import co.cask.cdap.proto.id.ProgramRunId;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for computing the lineage of a dataset over a synthetic lineage graph, in milliseconds per lineage.
+ * The graph has {@code levels} layers of datasets. Each program of a layer reads two datasets of the layer and
+ * writes one dataset of the next layer, with runs spread over a month. The lineage of a dataset in the last layer
+ * is computed either with one scan per entity and one transaction per scan, or with one batched read of the
+ * adjacency index per level, as {@code LineageAdmin} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class LineageTraversalBenchmark {
+
+  private static final int WIDTH = 10;
+  private static final long START_TIME = TimeUnit.DAYS.toMillis(17000);
+  private static final long PERIOD = TimeUnit.DAYS.toMillis(30);
+  private static final Predicate<Relation> ALL_RELATIONS = Predicates.alwaysTrue();
+
+  @Param({"INMEMORY", "LEVELDB"})
+  private BenchmarkTables.Type tableType;
+
+  @Param({"10"})
+  private int levels;
+
+  @Param({"10", "100"})
+  private int runsPerProgram;
+
+  private BenchmarkTables tables;
+  private BenchmarkTransactions transactions;
+  private LineageDataset lineageDataset;
+  private DatasetId sourceDataset;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    tables = new BenchmarkTables();
+    transactions = new BenchmarkTransactions();
+    lineageDataset = new LineageDataset("lineage", tables.createTable(tableType, "lineage"));
+
+    for (int level = 0; level < levels; level++) {
+      for (int i = 0; i < WIDTH; i++) {
+        ProgramId program = NamespaceId.DEFAULT.app("app" + level).mr("program" + i);
+        transactions.start(lineageDataset);
+        for (int run = 0; run < runsPerProgram; run++) {
+          long startTime = START_TIME + run * PERIOD / runsPerProgram + i;
+          ProgramRunId programRun = program.run(RunIds.generate(startTime));
+          lineageDataset.addAccess(programRun, getDataset(level, i), AccessType.READ, startTime);
+          lineageDataset.addAccess(programRun, getDataset(level, (i + 1) % WIDTH), AccessType.READ, startTime);
+          lineageDataset.addAccess(programRun, getDataset(level + 1, i), AccessType.WRITE, startTime);
+        }
+        transactions.commit(lineageDataset);
+      }
+    }
+    sourceDataset = getDataset(levels, 0);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    lineageDataset.close();
+    tables.close();
+  }
+
+  @Benchmark
+  public int scanPerEntity() throws Exception {
+    Set<Relation> relations = new HashSet<>();
+    Set<NamespacedEntityId> visitedDatasets = new HashSet<>();
+    Set<ProgramId> visitedPrograms = new HashSet<>();
+    Set<DatasetId> toVisitDatasets = new HashSet<>();
+    Set<ProgramId> toVisitPrograms = new HashSet<>();
+
+    toVisitDatasets.add(sourceDataset);
+    for (int level = 0; level < levels; level++) {
+      toVisitPrograms.clear();
+      for (DatasetId dataset : toVisitDatasets) {
+        if (visitedDatasets.add(dataset)) {
+          transactions.start(lineageDataset);
+          for (Relation relation : lineageDataset.getRelations(dataset, START_TIME, START_TIME + PERIOD,
+                                                               ALL_RELATIONS)) {
+            relations.add(relation);
+            toVisitPrograms.add(relation.getProgram());
+          }
+          transactions.commit(lineageDataset);
+        }
+      }
+      toVisitDatasets.clear();
+      for (ProgramId program : toVisitPrograms) {
+        if (visitedPrograms.add(program)) {
+          transactions.start(lineageDataset);
+          for (Relation relation : lineageDataset.getRelations(program, START_TIME, START_TIME + PERIOD,
+                                                               ALL_RELATIONS)) {
+            relations.add(relation);
+            toVisitDatasets.add((DatasetId) relation.getData());
+          }
+          transactions.commit(lineageDataset);
+        }
+      }
+    }
+    return relations.size();
+  }
+
+  @Benchmark
+  public int batchedIndex() throws Exception {
+    Set<Relation> relations = new HashSet<>();
+    Set<NamespacedEntityId> visitedDatasets = new HashSet<>();
+    Set<ProgramId> visitedPrograms = new HashSet<>();
+    Set<NamespacedEntityId> toVisitDatasets = new HashSet<>();
+    Set<ProgramId> toVisitPrograms = new HashSet<>();
+
+    toVisitDatasets.add(sourceDataset);
+    for (int level = 0; level < levels && !toVisitDatasets.isEmpty(); level++) {
+      toVisitDatasets.removeAll(visitedDatasets);
+      visitedDatasets.addAll(toVisitDatasets);
+      toVisitPrograms.clear();
+      transactions.start(lineageDataset);
+      for (Relation relation : lineageDataset.getRelations(toVisitDatasets, START_TIME, START_TIME + PERIOD,
+                                                           ALL_RELATIONS)) {
+        relations.add(relation);
+        toVisitPrograms.add(relation.getProgram());
+      }
+      transactions.commit(lineageDataset);
+
+      toVisitPrograms.removeAll(visitedPrograms);
+      visitedPrograms.addAll(toVisitPrograms);
+      toVisitDatasets.clear();
+      transactions.start(lineageDataset);
+      for (Relation relation : lineageDataset.getRelations(toVisitPrograms, START_TIME, START_TIME + PERIOD,
+                                                           ALL_RELATIONS)) {
+        relations.add(relation);
+        toVisitDatasets.add(relation.getData());
+      }
+      transactions.commit(lineageDataset);
+    }
+    return relations.size();
+  }
+
+  private DatasetId getDataset(int level, int i) {
+    return NamespaceId.DEFAULT.dataset("dataset" + level + "_" + i);
+  }
+}
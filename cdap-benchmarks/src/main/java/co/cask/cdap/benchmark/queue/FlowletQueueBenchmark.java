@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.queue;
+
+import co.cask.cdap.benchmark.dataset.BenchmarkTransactions;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueResult;
+import co.cask.cdap.data2.queue.DequeueStrategy;
+import co.cask.cdap.data2.queue.QueueClientFactory;
+import co.cask.cdap.data2.queue.QueueConsumer;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.data2.transaction.queue.inmemory.InMemoryQueueClientFactory;
+import co.cask.cdap.data2.transaction.queue.inmemory.RingBufferQueueClientFactory;
+import co.cask.cdap.data2.transaction.queue.leveldb.LevelDBQueueClientFactory;
+import com.google.common.io.Files;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.apache.tephra.TransactionAware;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for passing entries from one flowlet to another in the same process through each queue implementation
+ * of standalone CDAP, in entries per second. Each invocation is a transaction of the producing flowlet that emits
+ * a batch of entries, followed by transactions of the consuming flowlet that dequeue and process all of them, as
+ * the flowlet driver does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FlowletQueueBenchmark {
+
+  private static final int ENTRIES = 1000;
+  private static final int ENTRY_SIZE = 100;
+
+  @Param({"leveldb", "inmemory", "ringbuffer"})
+  private String queueType;
+
+  @Param({"1", "100"})
+  private int dequeueBatchSize;
+
+  private File localDir;
+  private LevelDBTableService levelDBTableService;
+  private QueueProducer producer;
+  private QueueConsumer consumer;
+  private BenchmarkTransactions transactions;
+  private QueueEntry[] entries;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    localDir = Files.createTempDir();
+    final CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, localDir.getAbsolutePath());
+    levelDBTableService = new LevelDBTableService();
+    levelDBTableService.setConfiguration(cConf);
+
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(CConfiguration.class).toInstance(cConf);
+        bind(LevelDBTableService.class).toInstance(levelDBTableService);
+      }
+    });
+    QueueClientFactory factory;
+    switch (queueType) {
+      case "leveldb":
+        factory = injector.getInstance(LevelDBQueueClientFactory.class);
+        break;
+      case "inmemory":
+        factory = injector.getInstance(InMemoryQueueClientFactory.class);
+        break;
+      case "ringbuffer":
+        factory = injector.getInstance(RingBufferQueueClientFactory.class);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported queue type " + queueType);
+    }
+
+    QueueName queueName = QueueName.fromFlowlet("default", "app", "flow", "flowlet", "out");
+    producer = factory.createProducer(queueName);
+    consumer = factory.createConsumer(queueName, new ConsumerConfig(0L, 0, 1, DequeueStrategy.FIFO, null), 1);
+    transactions = new BenchmarkTransactions();
+
+    entries = new QueueEntry[ENTRIES];
+    for (int i = 0; i < ENTRIES; i++) {
+      byte[] data = new byte[ENTRY_SIZE];
+      Arrays.fill(data, (byte) i);
+      entries[i] = new QueueEntry(data);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    producer.close();
+    consumer.close();
+    levelDBTableService.clearTables();
+    DirUtils.deleteDirectoryContents(localDir);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ENTRIES)
+  public int emitAndProcess() throws Exception {
+    TransactionAware producerTx = (TransactionAware) producer;
+    transactions.start(producerTx);
+    for (QueueEntry entry : entries) {
+      producer.enqueue(entry);
+    }
+    transactions.commit(producerTx);
+
+    TransactionAware consumerTx = (TransactionAware) consumer;
+    int count = 0;
+    while (count < ENTRIES) {
+      transactions.start(consumerTx);
+      DequeueResult<byte[]> result = consumer.dequeue(dequeueBatchSize);
+      for (byte[] data : result) {
+        count += data.length == ENTRY_SIZE ? 1 : 0;
+      }
+      transactions.commit(consumerTx);
+    }
+    return count;
+  }
+}
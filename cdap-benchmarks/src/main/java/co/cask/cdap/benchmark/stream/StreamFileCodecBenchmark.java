@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.benchmark.stream;
+
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.data.stream.PositionStreamEvent;
+import co.cask.cdap.data.stream.StreamBlockCodec;
+import co.cask.cdap.data.stream.StreamDataFileConstants;
+import co.cask.cdap.data.stream.StreamDataFileReader;
+import co.cask.cdap.data.stream.StreamDataFileWriter;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for writing and reading stream files with each {@link StreamBlockCodec}, in events per second.
+ * Events are log lines like the ones commonly ingested into streams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StreamFileCodecBenchmark {
+
+  private static final int EVENTS = 100000;
+  private static final int EVENTS_PER_TIMESTAMP = 100;
+  private static final String[] LEVELS = { "INFO", "DEBUG", "WARN", "ERROR" };
+  private static final String[] PATHS = { "/index.html", "/v3/namespaces/default/apps", "/login", "/static/app.js" };
+
+  @Param({"none", "deflate", "snappy"})
+  private String codec;
+
+  private Location location;
+  private List<StreamEvent> events;
+  private Location eventFile;
+  private Location indexFile;
+  private int fileCount;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    location = new LocalLocationFactory(Files.createTempDir()).create("/");
+
+    Random random = new Random(0);
+    events = Lists.newArrayListWithCapacity(EVENTS);
+    for (int i = 0; i < EVENTS; i++) {
+      String body = String.format("%d 10.0.%d.%d %s GET %s %d %d", i / EVENTS_PER_TIMESTAMP,
+                                  random.nextInt(256), random.nextInt(256), LEVELS[random.nextInt(LEVELS.length)],
+                                  PATHS[random.nextInt(PATHS.length)], 200 + random.nextInt(4) * 100,
+                                  random.nextInt(100000));
+      events.add(new StreamEvent(ImmutableMap.<String, String>of(), Charsets.UTF_8.encode(body),
+                                 i / EVENTS_PER_TIMESTAMP));
+    }
+
+    // File for the read benchmark
+    eventFile = location.append("read.dat");
+    indexFile = location.append("read.idx");
+    writeFile(eventFile, indexFile);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    Locations.deleteQuietly(location, true);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EVENTS)
+  public void write() throws IOException {
+    int id = fileCount++;
+    Location writeEventFile = location.append("write" + id + ".dat");
+    Location writeIndexFile = location.append("write" + id + ".idx");
+    writeFile(writeEventFile, writeIndexFile);
+    writeEventFile.delete();
+    writeIndexFile.delete();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EVENTS)
+  public int read() throws IOException, InterruptedException {
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    try {
+      List<PositionStreamEvent> readEvents = Lists.newArrayListWithCapacity(1000);
+      int count = 0;
+      int len = reader.read(readEvents, 1000, 0, TimeUnit.SECONDS);
+      while (len >= 0) {
+        count += len;
+        readEvents.clear();
+        len = reader.read(readEvents, 1000, 0, TimeUnit.SECONDS);
+      }
+      return count;
+    } finally {
+      reader.close();
+    }
+  }
+
+  private void writeFile(Location eventFile, Location indexFile) throws IOException {
+    Map<String, String> properties = ImmutableMap.of(StreamDataFileConstants.Property.Key.BLOCK_CODEC, codec);
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile), 10000L,
+                                                           properties);
+    try {
+      for (StreamEvent event : events) {
+        writer.append(new StreamEvent(event.getHeaders(), event.getBody().duplicate(), event.getTimestamp()));
+      }
+    } finally {
+      writer.close();
+    }
+  }
+}
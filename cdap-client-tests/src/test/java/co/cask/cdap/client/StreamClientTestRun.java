@@ -30,6 +30,7 @@ import co.cask.cdap.proto.ViewSpecification;
 import co.cask.cdap.security.spi.authorization.UnauthorizedException;
 import co.cask.cdap.test.XSlowTests;
 import com.google.common.base.Charsets;
+import com.google.common.base.Function;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
@@ -151,6 +152,62 @@ public class StreamClientTestRun extends ClientTestBase {
     }
   }
 
+  /**
+   * Tests for the get event blocks call
+   */
+  @Test
+  public void testStreamEventBlocks() throws Exception {
+    Id.Stream streamId = Id.Stream.from(namespaceId, "testEventBlocks");
+    streamClient.create(streamId);
+
+    // Nothing to read from an empty stream
+    final List<StreamEvent> events = Lists.newArrayList();
+    Function<StreamEvent, Boolean> collector = new Function<StreamEvent, Boolean>() {
+      @Override
+      public Boolean apply(StreamEvent input) {
+        events.add(input);
+        return true;
+      }
+    };
+    streamClient.getEventBlocks(streamId, 0, Long.MAX_VALUE, collector);
+    Assert.assertTrue(events.isEmpty());
+
+    int eventCount = 1000;
+    for (int i = 0; i < eventCount; i++) {
+      streamClient.sendEvent(streamId, "Testing " + i);
+    }
+
+    // Events are written to a single stream file, hence must be in order
+    streamClient.getEventBlocks(streamId, 0, Long.MAX_VALUE, collector);
+    Assert.assertEquals(eventCount, events.size());
+    for (int i = 0; i < eventCount; i++) {
+      Assert.assertEquals("Testing " + i, Bytes.toString(events.get(i).getBody()));
+    }
+
+    // Reading from the timestamp of an event gives the same events as the get events call
+    long startTime = events.get(eventCount / 2).getTimestamp();
+    List<StreamEvent> expected = streamClient.getEvents(streamId, startTime, Long.MAX_VALUE, Integer.MAX_VALUE,
+                                                        Lists.<StreamEvent>newArrayList());
+    events.clear();
+    streamClient.getEventBlocks(streamId, startTime, Long.MAX_VALUE, collector);
+    Assert.assertEquals(expected.size(), events.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.get(i).getTimestamp(), events.get(i).getTimestamp());
+      Assert.assertEquals(Bytes.toString(expected.get(i).getBody()), Bytes.toString(events.get(i).getBody()));
+    }
+
+    // Stops reading when the callback returns false
+    final List<StreamEvent> firstEvents = Lists.newArrayList();
+    streamClient.getEventBlocks(streamId, 0, Long.MAX_VALUE, new Function<StreamEvent, Boolean>() {
+      @Override
+      public Boolean apply(StreamEvent input) {
+        firstEvents.add(input);
+        return firstEvents.size() < 5;
+      }
+    });
+    Assert.assertEquals(5, firstEvents.size());
+  }
+
   /**
    * Tests for async write to stream.
    */
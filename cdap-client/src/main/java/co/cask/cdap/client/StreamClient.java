@@ -19,11 +19,15 @@ package co.cask.cdap.client;
 import co.cask.cdap.api.annotation.Beta;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.client.config.ClientConfig;
 import co.cask.cdap.client.util.RESTClient;
 import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.common.StreamNotFoundException;
 import co.cask.cdap.common.UnauthenticatedException;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.stream.StreamEventDataCodec;
 import co.cask.cdap.common.stream.StreamEventTypeAdapter;
 import co.cask.cdap.common.utils.TimeMathParser;
 import co.cask.cdap.internal.io.SchemaTypeAdapter;
@@ -40,21 +44,28 @@ import co.cask.common.http.ObjectResponse;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import com.google.common.io.InputSupplier;
+import com.google.common.primitives.Longs;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -71,6 +82,9 @@ public class StreamClient {
 
   private static final Gson GSON = StreamEventTypeAdapter.register(
     new GsonBuilder().registerTypeAdapter(Schema.class, new SchemaTypeAdapter())).create();
+  private static final byte[] STREAM_FILE_MAGIC_HEADER = {'E', '2'};
+  private static final String STREAM_FILE_EVENT_HEADER_PREFIX = "event.";
+  private static final int BLOCK_BUFFER_SIZE = 64 * 1024;
 
   private final RESTClient restClient;
   private final ClientConfig config;
@@ -409,6 +423,94 @@ public class StreamClient {
     URL url = config.resolveNamespacedURLV3(streamId.getNamespace(),
                                             String.format("streams/%s/events?start=%d&end=%d&limit=%d",
                                                           streamId.getId(), startTime, endTime, limit));
+    HttpURLConnection urlConn = openEventsConnection(url, streamId);
+    try {
+      if (urlConn.getResponseCode() == HttpURLConnection.HTTP_NO_CONTENT) {
+        return;
+      }
+
+      // The response is an array of stream event object
+      InputStream inputStream = urlConn.getInputStream();
+      JsonReader jsonReader = new JsonReader(new InputStreamReader(inputStream, Charsets.UTF_8));
+      jsonReader.beginArray();
+      while (jsonReader.peek() != JsonToken.END_ARRAY) {
+        Boolean result = callback.apply(GSON.<StreamEvent>fromJson(jsonReader, StreamEvent.class));
+        if (result == null || !result) {
+          break;
+        }
+      }
+      drain(inputStream);
+      // No need to close reader, the urlConn.disconnect in finally will close all underlying streams
+    } finally {
+      urlConn.disconnect();
+    }
+  }
+
+  /**
+   * Reads events from a stream by fetching the data blocks of the stream files, which is faster than
+   * {@link #getEvents(Id.Stream, long, long, int, Function)} for reading large amount of events. Events are ordered
+   * by timestamp within each stream file, but not across stream files.
+   *
+   * @param streamId ID of the stream
+   * @param startTime Timestamp in milliseconds to start reading event from (inclusive)
+   * @param endTime Timestamp in milliseconds for the last event to read (exclusive)
+   * @param callback Callback to invoke for each stream event read. If the callback function returns {@code false}
+   *                 upon invocation, it will stops the reading
+   * @throws IOException If fails to read from stream
+   * @throws StreamNotFoundException If the given stream does not exists
+   */
+  public void getEventBlocks(Id.Stream streamId, long startTime, long endTime,
+                             Function<? super StreamEvent, Boolean> callback)
+    throws IOException, StreamNotFoundException, UnauthenticatedException {
+
+    getEventBlocks(streamId, String.valueOf(startTime), String.valueOf(endTime), callback);
+  }
+
+  /**
+   * Reads events from a stream by fetching the data blocks of the stream files, which is faster than
+   * {@link #getEvents(Id.Stream, String, String, int, Function)} for reading large amount of events. Events are
+   * ordered by timestamp within each stream file, but not across stream files.
+   *
+   * @param streamId ID of the stream
+   * @param start Timestamp in milliseconds or now-xs format to start reading event from (inclusive)
+   * @param end Timestamp in milliseconds or now-xs format for the last event to read (exclusive)
+   * @param callback Callback to invoke for each stream event read. If the callback function returns {@code false}
+   *                 upon invocation, it will stops the reading
+   * @throws IOException If fails to read from stream
+   * @throws StreamNotFoundException If the given stream does not exists
+   */
+  public void getEventBlocks(Id.Stream streamId, String start, String end,
+                             Function<? super StreamEvent, Boolean> callback)
+    throws IOException, StreamNotFoundException, UnauthenticatedException {
+
+    long startTime = TimeMathParser.parseTime(start, TimeUnit.MILLISECONDS);
+    long endTime = TimeMathParser.parseTime(end, TimeUnit.MILLISECONDS);
+
+    URL url = config.resolveNamespacedURLV3(streamId.getNamespace(),
+                                            String.format("streams/%s/events/blocks?start=%d&end=%d",
+                                                          streamId.getId(), startTime, endTime));
+    HttpURLConnection urlConn = openEventsConnection(url, streamId);
+    try {
+      if (urlConn.getResponseCode() == HttpURLConnection.HTTP_NO_CONTENT) {
+        return;
+      }
+
+      InputStream inputStream = new BufferedInputStream(urlConn.getInputStream(), BLOCK_BUFFER_SIZE);
+      if (readEventBlocks(inputStream, callback)) {
+        drain(inputStream);
+      }
+      // No need to close the input stream, the urlConn.disconnect in finally will close all underlying streams
+    } finally {
+      urlConn.disconnect();
+    }
+  }
+
+  /**
+   * Opens a connection for reading events from the given URL.
+   */
+  private HttpURLConnection openEventsConnection(URL url, Id.Stream streamId)
+    throws IOException, StreamNotFoundException, UnauthenticatedException {
+
     HttpURLConnection urlConn = (HttpURLConnection) url.openConnection();
     AccessToken accessToken = config.getAccessToken();
     if (accessToken != null) {
@@ -430,25 +532,77 @@ public class StreamClient {
       if (urlConn.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
         throw new StreamNotFoundException(streamId.toEntityId());
       }
-      if (urlConn.getResponseCode() == HttpURLConnection.HTTP_NO_CONTENT) {
-        return;
+    } catch (IOException | StreamNotFoundException | UnauthenticatedException e) {
+      urlConn.disconnect();
+      throw e;
+    }
+    return urlConn;
+  }
+
+  /**
+   * Reads the stream files returned by the stream blocks endpoint and invokes the callback for each event. Each stream
+   * file has the header "E" "2", the file properties, and data blocks, each with the timestamp, size and the encoded
+   * events, followed by a negative timestamp.
+   *
+   * @return {@code true} if all events are read, {@code false} if the callback stopped the reading
+   */
+  private boolean readEventBlocks(InputStream input,
+                                  Function<? super StreamEvent, Boolean> callback) throws IOException {
+    Decoder decoder = new BinaryDecoder(input);
+    byte[] magic = new byte[STREAM_FILE_MAGIC_HEADER.length];
+    byte[] timestamp = new byte[Longs.BYTES];
+    byte[] block = new byte[0];
+
+    int len = ByteStreams.read(input, magic, 0, magic.length);
+    while (len > 0) {
+      if (len != magic.length || !Arrays.equals(magic, STREAM_FILE_MAGIC_HEADER)) {
+        throw new IOException("Unsupported stream file format " + Arrays.toString(magic));
+      }
+      Map<String, String> defaultHeaders = getDefaultHeaders(decoder);
+
+      ByteStreams.readFully(input, timestamp);
+      long eventTimestamp = Longs.fromByteArray(timestamp);
+      while (eventTimestamp >= 0) {
+        int blockSize = decoder.readInt();
+        if (block.length < blockSize) {
+          block = new byte[blockSize];
+        }
+        ByteStreams.readFully(input, block, 0, blockSize);
+
+        ByteArrayInputStream blockInput = new ByteArrayInputStream(block, 0, blockSize);
+        Decoder blockDecoder = new BinaryDecoder(blockInput);
+        while (blockInput.available() > 0) {
+          StreamEventData data = StreamEventDataCodec.decode(blockDecoder, defaultHeaders);
+          Boolean result = callback.apply(new StreamEvent(data, eventTimestamp));
+          if (result == null || !result) {
+            return false;
+          }
+        }
+        ByteStreams.readFully(input, timestamp);
+        eventTimestamp = Longs.fromByteArray(timestamp);
       }
+      len = ByteStreams.read(input, magic, 0, magic.length);
+    }
+    return true;
+  }
 
-      // The response is an array of stream event object
-      InputStream inputStream = urlConn.getInputStream();
-      JsonReader jsonReader = new JsonReader(new InputStreamReader(inputStream, Charsets.UTF_8));
-      jsonReader.beginArray();
-      while (jsonReader.peek() != JsonToken.END_ARRAY) {
-        Boolean result = callback.apply(GSON.<StreamEvent>fromJson(jsonReader, StreamEvent.class));
-        if (result == null || !result) {
-          break;
+  /**
+   * Decodes the properties of a stream file and returns the default event headers in it.
+   */
+  private Map<String, String> getDefaultHeaders(Decoder decoder) throws IOException {
+    Map<String, String> headers = Maps.newHashMap();
+    int len = decoder.readInt();
+    while (len != 0) {
+      for (int i = 0; i < len; i++) {
+        String key = decoder.readString();
+        String value = decoder.readInt() == 0 ? decoder.readString() : (String) decoder.readNull();
+        if (key.startsWith(STREAM_FILE_EVENT_HEADER_PREFIX)) {
+          headers.put(key.substring(STREAM_FILE_EVENT_HEADER_PREFIX.length()), value);
         }
       }
-      drain(inputStream);
-      // No need to close reader, the urlConn.disconnect in finally will close all underlying streams
-    } finally {
-      urlConn.disconnect();
+      len = decoder.readInt();
     }
+    return Collections.unmodifiableMap(headers);
   }
 
   /**
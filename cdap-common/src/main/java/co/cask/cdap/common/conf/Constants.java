@@ -263,6 +263,11 @@ public final class Constants {
     // tables. Constant could be moved to Table after that is changed. See CDAP-1193 for more info
     public static final String TABLE_TX_DISABLED = "dataset.table.tx.disabled";
 
+    // Table dataset property that selects the structure used by BufferingTable to keep writes in memory until the
+    // transaction commits. "packed" appends writes to a compact log instead of inserting them into sorted maps.
+    public static final String TABLE_WRITE_BUFFER = "dataset.table.write.buffer";
+    public static final String TABLE_WRITE_BUFFER_PACKED = "packed";
+
     public static final String DATA_DIR = "dataset.data.dir";
     public static final String DEFAULT_DATA_DIR = "data";
 
@@ -348,12 +353,18 @@ public final class Constants {
     public static final String TTL = "stream.event.ttl";
     public static final String PARTITION_DURATION = "stream.partition.duration";
     public static final String INDEX_INTERVAL = "stream.index.interval";
+    public static final String INDEX_CACHE_SIZE = "stream.index.cache.size.bytes";
     public static final String FILE_PREFIX = "stream.file.prefix";
     public static final String INSTANCE_FILE_PREFIX = "stream.instance.file.prefix";
     public static final String CONSUMER_TABLE_PRESPLITS = "stream.consumer.table.presplits";
+    public static final String CONSUMER_PREFETCH_SIZE = "stream.consumer.prefetch.size";
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
     public static final String BATCH_BUFFER_THRESHOLD = "stream.batch.buffer.threshold";
     public static final String NOTIFICATION_THRESHOLD = "stream.notification.threshold";
+    public static final String BLOCK_CODEC = "stream.block.codec";
+    public static final String GROUP_COMMIT_ENABLED = "stream.group.commit.enabled";
+    public static final String GROUP_COMMIT_LINGER_MS = "stream.group.commit.linger.ms";
+    public static final String GROUP_COMMIT_MAX_BATCH_BYTES = "stream.group.commit.max.batch.bytes";
 
     // Stream http service configurations.
     public static final String STREAM_HANDLER = "stream.handler";
@@ -377,6 +388,8 @@ public final class Constants {
     /** How often to check for new file when reading from stream in milliseconds. **/
     public static final long NEW_FILE_CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(10);
     public static final int HBASE_WRITE_BUFFER_SIZE = 4 * 1024 * 1024;
+    public static final long DEFAULT_INDEX_CACHE_SIZE = 32 * 1024 * 1024;
+    public static final int DEFAULT_CONSUMER_PREFETCH_SIZE = 0;
 
     public static final String URL_PREFIX = "stream://";
     public static final String DESCRIPTION = "stream.description";
@@ -440,6 +453,8 @@ public final class Constants {
     public static final String SERVER_WORKER_THREADS = "router.server.worker.threads";
     public static final String CLIENT_BOSS_THREADS = "router.client.boss.threads";
     public static final String CLIENT_WORKER_THREADS = "router.client.worker.threads";
+    public static final String CLIENT_POOL_MAX_IDLE = "router.client.pool.max.idle";
+    public static final String CLIENT_POOL_MAX_IDLE_PER_HOST = "router.client.pool.max.idle.per.host";
     public static final String CONNECTION_TIMEOUT_SECS = "router.connection.idle.timeout.secs";
     public static final String ROUTER_USERSERVICE_FALLBACK_STRAGEY = "router.userservice.fallback.strategy";
 
@@ -485,6 +500,8 @@ public final class Constants {
 
     public static final String SERVER_ADDRESS = "metrics.query.bind.address";
     public static final String SERVER_PORT = "metrics.query.bind.port";
+    public static final String QUERY_CACHE_SIZE = "metrics.query.cache.size";
+    public static final String QUERY_CACHE_EXPIRE_SECONDS = "metrics.query.cache.expire.seconds";
 
     public static final String KAFKA_TOPIC_PREFIX = "metrics.kafka.topic.prefix";
     public static final String KAFKA_PARTITION_SIZE = "metrics.kafka.partition.size";
@@ -502,6 +519,8 @@ public final class Constants {
 
     public static final int DEFAULT_KAFKA_CONSUMER_PERSIST_THRESHOLD = 100;
     public static final int DEFAULT_KAFKA_PARTITION_SIZE = 1;
+    public static final int DEFAULT_QUERY_CACHE_SIZE = 0;
+    public static final long DEFAULT_QUERY_CACHE_EXPIRE_SECONDS = 10;
 
     /**
      * Metric's dataset related constants.
@@ -625,6 +644,16 @@ public final class Constants {
     public static final String METRICS_PROCESSOR_STATUS_HANDLER = "metrics.processor.status.handler";
     public static final String ADDRESS = "metrics.processor.status.bind.address";
 
+    public static final String PIPELINE_ENABLED = "metrics.processor.pipeline.enabled";
+    public static final String PIPELINE_DECODE_THREADS = "metrics.processor.pipeline.decode.threads";
+    public static final String PIPELINE_QUEUE_SIZE = "metrics.processor.pipeline.queue.size";
+    public static final String PIPELINE_BATCH_SIZE = "metrics.processor.pipeline.batch.size";
+
+    public static final boolean DEFAULT_PIPELINE_ENABLED = false;
+    public static final int DEFAULT_PIPELINE_DECODE_THREADS = 2;
+    public static final int DEFAULT_PIPELINE_QUEUE_SIZE = 16;
+    public static final int DEFAULT_PIPELINE_BATCH_SIZE = 10000;
+
     public static final String SERVICE_DESCRIPTION = "Service to process application and system metrics.";
   }
 
@@ -901,6 +930,7 @@ public final class Constants {
   public static final String CFG_DATA_LEVELDB_BLOCKSIZE = "data.local.storage.blocksize";
   public static final String CFG_DATA_LEVELDB_CACHESIZE = "data.local.storage.cachesize";
   public static final String CFG_DATA_LEVELDB_FSYNC = "data.local.storage.fsync";
+  public static final String CFG_DATA_LEVELDB_SCAN_READAHEAD = "data.local.storage.scan.readahead";
 
   /**
    * Defaults for Data Fabric.
@@ -909,6 +939,7 @@ public final class Constants {
   public static final int DEFAULT_DATA_LEVELDB_BLOCKSIZE = 1024;
   public static final long DEFAULT_DATA_LEVELDB_CACHESIZE = 1024 * 1024 * 100;
   public static final boolean DEFAULT_DATA_LEVELDB_FSYNC = true;
+  public static final int DEFAULT_DATA_LEVELDB_SCAN_READAHEAD = 100;
 
   /**
    * Config for Log Collection.
@@ -989,6 +1020,9 @@ public final class Constants {
     public static final String SERVICE_EXEC_THREADS = "metadata.service.exec.threads";
     public static final String HANDLERS_NAME = "metadata.handlers";
     public static final String MAX_CHARS_ALLOWED = "metadata.max.allowed.chars";
+    public static final String LINEAGE_WRITER_QUEUE_SIZE = "metadata.lineage.writer.queue.size";
+    public static final String LINEAGE_WRITER_BATCH_SIZE = "metadata.lineage.writer.batch.size";
+    public static final String LINEAGE_WRITER_FLUSH_INTERVAL_MS = "metadata.lineage.writer.flush.interval.ms";
   }
 
   /**
@@ -41,6 +41,7 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -99,10 +100,44 @@ public abstract class AbstractMetadataClient {
                                                Set<MetadataSearchTargetType> targets)
     throws IOException, UnauthenticatedException, UnauthorizedException {
 
-    String path = String.format("metadata/search?query=%s", query);
+    return searchMetadata(namespace, query, targets, null, 0, Integer.MAX_VALUE, null);
+  }
+
+  /**
+   * Searches entities in the specified namespace whose metadata matches the specified query, and returns one page
+   * of the results.
+   *
+   * @param namespace the namespace to search in
+   * @param query the query string with which to search
+   * @param targets {@link MetadataSearchTargetType}s to search. If empty, all possible types will be searched
+   * @param sort the sort field ('name' or 'weight') and order ('asc' or 'desc') separated by space,
+   *             or {@code null} to sort by name in ascending order
+   * @param offset the number of results to skip, counted from the cursor if one is given
+   * @param size the maximum number of results to return
+   * @param cursor the cursor returned with the previous page, or {@code null} to start from the first result
+   * @return the {@link MetadataSearchResponse} for the given query.
+   */
+  public MetadataSearchResponse searchMetadata(Id.Namespace namespace, String query,
+                                               Set<MetadataSearchTargetType> targets, @Nullable String sort,
+                                               int offset, int size, @Nullable String cursor)
+    throws IOException, UnauthenticatedException, UnauthorizedException {
+
+    String path = String.format("metadata/search?query=%s", URLEncoder.encode(query, "UTF-8"));
     for (MetadataSearchTargetType t : targets) {
       path += "&target=" + t;
     }
+    if (sort != null) {
+      path += "&sort=" + URLEncoder.encode(sort, "UTF-8");
+    }
+    if (offset != 0) {
+      path += "&offset=" + offset;
+    }
+    if (size != Integer.MAX_VALUE) {
+      path += "&size=" + size;
+    }
+    if (cursor != null) {
+      path += "&cursor=" + URLEncoder.encode(cursor, "UTF-8");
+    }
     URL searchURL = resolve(namespace, path);
     HttpResponse response = execute(HttpRequest.get(searchURL).build());
     return GSON.fromJson(response.getResponseBodyAsString(), MetadataSearchResponse.class);
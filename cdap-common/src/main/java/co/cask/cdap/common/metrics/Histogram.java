@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.common.metrics;
+
+import co.cask.cdap.api.metrics.MetricsCollector;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values, such as the number of bytes in a batch, with exponentially sized buckets, which
+ * can be updated concurrently without locking. Bucket {@code i > 0} counts values in the range [2^(i-1), 2^i) and
+ * bucket {@code 0} counts values of zero, so percentiles are reported as the upper bound of the bucket they fall in.
+ * The values can be published periodically with {@link #emit(MetricsCollector, String)}.
+ */
+public final class Histogram {
+
+  private static final int BUCKETS = 48;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong total = new AtomicLong();
+
+  /**
+   * Records a value.
+   *
+   * @param value the value, which is treated as zero if negative
+   */
+  public void record(long value) {
+    int bucket = value <= 0 ? 0 : Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(value));
+    counts.incrementAndGet(bucket);
+    total.addAndGet(Math.max(0L, value));
+  }
+
+  /**
+   * Returns the number of values recorded.
+   */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the mean of the recorded values, or {@code 0} if nothing was recorded.
+   */
+  public long getMean() {
+    long count = getCount();
+    return count == 0 ? 0L : total.get() / count;
+  }
+
+  /**
+   * Returns the upper bound of the bucket containing the given percentile of the recorded values, or {@code 0} if
+   * nothing was recorded.
+   *
+   * @param percentile the percentile, between 0 and 100
+   */
+  public long getPercentile(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    return getPercentile(snapshot, count, percentile);
+  }
+
+  /**
+   * Emits the values recorded since the last call to this method as metrics and resets the histogram. The number
+   * of values is emitted as the counter {@code <name>.count}, and the mean, median, 99th percentile and maximum as
+   * the gauges {@code <name>.mean}, {@code <name>.p50}, {@code <name>.p99} and {@code <name>.max}. Nothing is emitted
+   * if no value was recorded.
+   *
+   * @param collector the collector to emit the metrics to
+   * @param name the prefix of the metric names
+   */
+  public void emit(MetricsCollector collector, String name) {
+    emit(collector, name, "");
+  }
+
+  /**
+   * Same as {@link #emit(MetricsCollector, String)}, with the given unit suffix appended to the names of the gauges.
+   */
+  void emit(MetricsCollector collector, String name, String unitSuffix) {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.getAndSet(i, 0L);
+      count += snapshot[i];
+    }
+    long sum = total.getAndSet(0L);
+    if (count == 0) {
+      return;
+    }
+    collector.increment(name + ".count", count);
+    collector.gauge(name + ".mean" + unitSuffix, sum / count);
+    collector.gauge(name + ".p50" + unitSuffix, getPercentile(snapshot, count, 50));
+    collector.gauge(name + ".p99" + unitSuffix, getPercentile(snapshot, count, 99));
+    collector.gauge(name + ".max" + unitSuffix, getPercentile(snapshot, count, 100));
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d, mean=%d, p50<%d, p99<%d, max<%d", getCount(), getMean(),
+                         getPercentile(50), getPercentile(99), getPercentile(100));
+  }
+
+  private static long getPercentile(long[] snapshot, long count, double percentile) {
+    if (count == 0) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return 1L << i;
+      }
+    }
+    return 1L << (BUCKETS - 1);
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.metrics;
+
+import co.cask.cdap.api.metrics.MetricsCollector;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Histogram} of latencies in microseconds, which can be updated concurrently without locking. Latencies
+ * below one microsecond fall into the first bucket, and percentiles are reported as the upper bound of the bucket
+ * they fall in. The latencies can be published periodically with {@link #emit(MetricsCollector, String)}.
+ */
+public final class LatencyHistogram {
+
+  private final Histogram histogram = new Histogram();
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    histogram.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+  }
+
+  /**
+   * Returns the number of latencies recorded.
+   */
+  public long getCount() {
+    return histogram.getCount();
+  }
+
+  /**
+   * Returns the mean of the recorded latencies in microseconds, or {@code 0} if nothing was recorded.
+   */
+  public long getMeanMicros() {
+    return histogram.getMean();
+  }
+
+  /**
+   * Returns the upper bound in microseconds of the bucket containing the given percentile of the recorded latencies,
+   * or {@code 0} if nothing was recorded.
+   *
+   * @param percentile the percentile, between 0 and 100
+   */
+  public long getPercentileMicros(double percentile) {
+    return histogram.getPercentile(percentile);
+  }
+
+  /**
+   * Emits the latencies recorded since the last call to this method as metrics and resets the histogram. The number
+   * of latencies is emitted as the counter {@code <name>.count}, and the mean, median, 99th percentile and maximum
+   * in microseconds as the gauges {@code <name>.mean.us}, {@code <name>.p50.us}, {@code <name>.p99.us} and
+   * {@code <name>.max.us}. Nothing is emitted if no latency was recorded.
+   *
+   * @param collector the collector to emit the metrics to
+   * @param name the prefix of the metric names
+   */
+  public void emit(MetricsCollector collector, String name) {
+    histogram.emit(collector, name, ".us");
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d, mean=%dus, p50<%dus, p99<%dus, max<%dus", getCount(), getMeanMicros(),
+                         getPercentileMicros(50), getPercentileMicros(99), getPercentileMicros(100));
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.metrics;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+
+/**
+ * A single metric of a {@link MetricsContext}. Updating a metric through its handle avoids looking up the metric by
+ * name on every call, so code that emits metrics on a hot path should obtain the handle once with
+ * {@link MetricHandles#get(MetricsContext, String)} and keep it.
+ */
+public interface MetricHandle {
+
+  /**
+   * Increment the metric value at the current time.
+   * @param value value to increment by.
+   */
+  void increment(long value);
+
+  /**
+   * Gauge the metric value at the current time.
+   * @param value value of the metric.
+   */
+  void gauge(long value);
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.metrics;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+
+/**
+ * Implemented by {@link MetricsContext MetricsContexts} that can resolve a metric to a {@link MetricHandle}.
+ * Use {@link MetricHandles#get(MetricsContext, String)} rather than this interface directly, which also supports
+ * contexts that do not implement it.
+ */
+public interface MetricHandleProvider {
+
+  /**
+   * Returns a handle for updating the given metric of this context.
+   * @param metricName Name of the metric.
+   */
+  MetricHandle getMetricHandle(String metricName);
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.metrics;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+
+/**
+ * Utility methods to obtain {@link MetricHandle MetricHandles}.
+ */
+public final class MetricHandles {
+
+  private MetricHandles() {
+  }
+
+  /**
+   * Returns a handle for updating the given metric of a {@link MetricsContext}. If the context does not implement
+   * {@link MetricHandleProvider}, the handle updates the metric by name through the context.
+   *
+   * @param context the context of the metric
+   * @param metricName name of the metric
+   */
+  public static MetricHandle get(final MetricsContext context, final String metricName) {
+    if (context instanceof MetricHandleProvider) {
+      return ((MetricHandleProvider) context).getMetricHandle(metricName);
+    }
+    return new MetricHandle() {
+      @Override
+      public void increment(long value) {
+        context.increment(metricName, value);
+      }
+
+      @Override
+      public void gauge(long value) {
+        context.gauge(metricName, value);
+      }
+    };
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.internal.asm.ByteCodeClassLoader;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+/**
+ * A factory class for creating {@link DatumReader} instance for different data type and schema.
+ * The {@link DatumReader} created resolves the source schema the same way as {@link ReflectionDatumReader}, but
+ * reads with a class generated using ASM for each data type, target schema and source schema, so that the schema
+ * resolution is only done once instead of on every read. The generated classes are cached and softly referenced,
+ * so that they can be unloaded together with the data type classes.
+ */
+public final class ASMDatumReaderFactory implements DatumReaderFactory {
+
+  private final LoadingCache<CacheKey, DatumReader<?>> datumReaders;
+
+  /**
+   * Creates an instance that uses a new {@link ASMFieldAccessorFactory} for each generated reader, so that data types
+   * are not referenced by this factory once all the readers for them are unloaded. This is for factories that live
+   * longer than the data type classes.
+   */
+  public ASMDatumReaderFactory() {
+    this(null);
+  }
+
+  @Inject
+  public ASMDatumReaderFactory(@Nullable FieldAccessorFactory fieldAccessorFactory) {
+    this.datumReaders = CacheBuilder.newBuilder().softValues().build(new ASMCacheLoader(fieldAccessorFactory));
+  }
+
+  /**
+   * Creates a {@link DatumReader} that is able to decode given data type with the given {@link Schema}.
+   * The instance created is thread safe and reusable.
+   *
+   * @param type Type information of the data type to be decoded.
+   * @param schema Schema of the data type.
+   * @param <T> Type of the data type.
+   * @return A {@link DatumReader} instance.
+   */
+  @Override
+  public <T> DatumReader<T> create(TypeToken<T> type, Schema schema) {
+    return new ASMDatumReader<>(type, schema);
+  }
+
+  /**
+   * A {@link DatumReader} that delegates to the generated {@link DatumReader} for the source schema. The generated
+   * reader for the last source schema is kept, as the source schema is usually the same for all reads.
+   *
+   * @param <T> Type of the data type.
+   */
+  private final class ASMDatumReader<T> implements DatumReader<T> {
+
+    private final TypeToken<T> type;
+    private final Schema schema;
+    private volatile ResolvedReader resolvedReader;
+
+    private ASMDatumReader(TypeToken<T> type, Schema schema) {
+      this.type = type;
+      this.schema = schema;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T read(Decoder decoder, Schema sourceSchema) throws IOException {
+      ResolvedReader resolvedReader = this.resolvedReader;
+      if (resolvedReader == null || !resolvedReader.sourceSchema.equals(sourceSchema)) {
+        resolvedReader = new ResolvedReader(sourceSchema, getDatumReader(type, schema, sourceSchema));
+        this.resolvedReader = resolvedReader;
+      }
+      return (T) resolvedReader.datumReader.read(decoder, sourceSchema);
+    }
+  }
+
+  private DatumReader<?> getDatumReader(TypeToken<?> type, Schema schema, Schema sourceSchema) throws IOException {
+    try {
+      return datumReaders.get(new CacheKey(type, schema, sourceSchema));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new IOException(String.format("Failed to create reader to resolve %s to %s for type %s",
+                                          sourceSchema, schema, type), e.getCause());
+    }
+  }
+
+  /**
+   * A generated {@link DatumReader} together with the source schema it reads.
+   */
+  private static final class ResolvedReader {
+    private final Schema sourceSchema;
+    private final DatumReader<?> datumReader;
+
+    private ResolvedReader(Schema sourceSchema, DatumReader<?> datumReader) {
+      this.sourceSchema = sourceSchema;
+      this.datumReader = datumReader;
+    }
+  }
+
+  /**
+   * A private {@link CacheLoader} for generating different {@link DatumReader}. Since the generated classes
+   * have no state other than the constants given to the constructor, one instance is shared for each class.
+   */
+  private static final class ASMCacheLoader extends CacheLoader<CacheKey, DatumReader<?>> {
+
+    private final FieldAccessorFactory fieldAccessorFactory;
+
+    private ASMCacheLoader(@Nullable FieldAccessorFactory fieldAccessorFactory) {
+      this.fieldAccessorFactory = fieldAccessorFactory;
+    }
+
+    @Override
+    public DatumReader<?> load(CacheKey key) throws Exception {
+      DatumReaderGenerator generator = new DatumReaderGenerator(
+        fieldAccessorFactory == null ? new ASMFieldAccessorFactory() : fieldAccessorFactory);
+      ClassDefinition classDef = generator.generate(key.type, key.schema, key.sourceSchema);
+
+      // Each generated class has its own ClassLoader so that it can be unloaded when no longer used.
+      // The generated class has no reference to the data type class, hence the CDAP system ClassLoader is the parent.
+      ByteCodeClassLoader classloader = new ByteCodeClassLoader(ASMDatumReaderFactory.class.getClassLoader());
+      Class<?> readerClass = classloader.addClass(classDef).loadClass(classDef.getClassName());
+      return (DatumReader<?>) readerClass.getConstructor(Object[].class)
+                                         .newInstance(new Object[] { generator.getConstants() });
+    }
+  }
+
+  private static final class CacheKey {
+    private final TypeToken<?> type;
+    private final Schema schema;
+    private final Schema sourceSchema;
+
+    private CacheKey(TypeToken<?> type, Schema schema, Schema sourceSchema) {
+      this.type = type;
+      this.schema = schema;
+      this.sourceSchema = sourceSchema;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      CacheKey cacheKey = (CacheKey) o;
+      return type.equals(cacheKey.type) && schema.equals(cacheKey.schema)
+        && sourceSchema.equals(cacheKey.sourceSchema);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(type, schema, sourceSchema);
+    }
+  }
+}
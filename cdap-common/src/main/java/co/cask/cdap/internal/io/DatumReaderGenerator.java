@@ -0,0 +1,1061 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.asm.Methods;
+import co.cask.cdap.internal.asm.Signatures;
+import co.cask.cdap.internal.lang.Fields;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeParameter;
+import com.google.common.reflect.TypeToken;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+import org.objectweb.asm.commons.TableSwitchGenerator;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Class for generating {@link DatumReader} bytecodes using ASM. A class is generated for each combination of the
+ * data type, the target schema and the source schema. The source schema is resolved to the target schema while
+ * generating the class, following the same rules as {@link ReflectionDatumReader} does on every read.
+ * The class generated will have a skeleton looks like the following:
+ * <pre>
+ * {@code
+ *
+ *  public final class generatedClassName implements DatumReader<InputType> {
+ *    private final FieldAccessor constant0;
+ *    private final Instantiator constant1;
+ *
+ *    public generatedClassName(Object[] constants) {
+ *      this.constant0 = (FieldAccessor) constants[0];
+ *      this.constant1 = (Instantiator) constants[1];
+ *    }
+ *
+ *    @Override
+ *    public Object read(Decoder decoder, Schema sourceSchema) throws IOException {
+ *      return generatedReadMethod(decoder);
+ *    }
+ *
+ *    private Object generatedReadMethod(Decoder decoder) throws IOException {
+ *      // Do actual decoding by calling methods on decoder based on the source and target schema.
+ *    }
+ *
+ *    // Could have more generatedReadMethods...
+ *  }
+ * }
+ * </pre>
+ *
+ * For example, to decode a record with an int field, a generated {@link DatumReader} will looks like this after
+ * decompile.
+ * <pre>
+ * {@code
+ *
+ *   private Object readRecord7C0A0E0D...(Decoder decoder) throws IOException {
+ *     Object record = this.constant0.create();
+ *     this.constant1.setInt(record, readint9E688C58...(decoder));
+ *     return record;
+ *   }
+ *
+ *   private int readint9E688C58...(Decoder decoder) throws IOException {
+ *     return decoder.readInt();
+ *   }
+ * }
+ * </pre>
+ *
+ * The generated class only refers to the data type through the constants given to the constructor, hence it doesn't
+ * need to have access to the data type classes. Methods return primitive values if the data type is primitive and
+ * the value is not from a union, so that no boxing is needed for primitive record fields and arrays.
+ */
+@NotThreadSafe
+final class DatumReaderGenerator {
+
+  private static final Type DECODER_TYPE = Type.getType(Decoder.class);
+  private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+  private final FieldAccessorFactory fieldAccessorFactory;
+  private final InstantiatorFactory instantiatorFactory;
+  private final Map<String, Method> readMethods = Maps.newHashMap();
+  private final Map<String, String> constantFields = Maps.newHashMap();
+  private final List<Object> constants = Lists.newArrayList();
+  private final List<Type> constantTypes = Lists.newArrayList();
+  private ClassWriter classWriter;
+  private Type classType;
+
+  DatumReaderGenerator(FieldAccessorFactory fieldAccessorFactory) {
+    this.fieldAccessorFactory = fieldAccessorFactory;
+    this.instantiatorFactory = new InstantiatorFactory(true);
+  }
+
+  /**
+   * Generates a {@link DatumReader} class for decoding data of the given input type with the given schema.
+   * The class generated has a constructor that takes an {@code Object[]}, which should be the result of
+   * {@link #getConstants()}.
+   *
+   * @param inputType Type information of the input data type.
+   * @param schema Schema of the input data type.
+   * @param sourceSchema Schema of the encoded data.
+   * @return A {@link ClassDefinition} that contains generated class information.
+   */
+  ClassDefinition generate(TypeToken<?> inputType, Schema schema, Schema sourceSchema) {
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+    TypeToken<?> interfaceType = getInterfaceType(inputType);
+
+    // Generate the class
+    String className = getClassName(interfaceType, schema, sourceSchema);
+    classType = Type.getObjectType(className);
+    classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL,
+                      className, Signatures.getClassSignature(interfaceType),
+                      Type.getInternalName(Object.class),
+                      new String[]{Type.getInternalName(interfaceType.getRawType())});
+
+    // Read method
+    generateRead(inputType, schema, sourceSchema);
+
+    // Constructor
+    generateConstructor();
+
+    classWriter.visitEnd();
+
+    ClassDefinition classDefinition = new ClassDefinition(classWriter.toByteArray(), className);
+    // DEBUG block. Uncomment for debug
+//    co.cask.cdap.internal.asm.Debugs.debugByteCode(classDefinition, new java.io.PrintWriter(System.out));
+    // End DEBUG block
+    return classDefinition;
+  }
+
+  /**
+   * Returns the constants to pass to the constructor of the class generated by the last {@link #generate} call.
+   */
+  Object[] getConstants() {
+    return constants.toArray();
+  }
+
+  /**
+   * Generates the constructor. The constructor generated has signature {@code (Object[])} and stores each constant
+   * in a class field.
+   */
+  private void generateConstructor() {
+    Method constructor = getMethod(void.class, "<init>", Object[].class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+
+    // super(); // Calling Object constructor
+    mg.loadThis();
+    mg.invokeConstructor(OBJECT_TYPE, getMethod(void.class, "<init>"));
+
+    // this.constantX = (Type) constants[X];
+    for (int i = 0; i < constantTypes.size(); i++) {
+      Type constantType = constantTypes.get(i);
+      String fieldName = getConstantFieldName(i);
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, fieldName,
+                             constantType.getDescriptor(), null, null).visitEnd();
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.push(i);
+      mg.arrayLoad(OBJECT_TYPE);
+      mg.checkCast(constantType);
+      mg.putField(classType, fieldName, constantType);
+    }
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link DatumReader#read(Decoder, Schema)} method.
+   */
+  private void generateRead(TypeToken<?> inputType, Schema schema, Schema sourceSchema) {
+    Method readMethod = getMethod(Object.class, "read", Decoder.class, Schema.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, readMethod, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+
+    // return generatedReadMethod(decoder);
+    Method method = getReadMethod(inputType, sourceSchema, schema);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, method);
+    box(mg, method.getReturnType());
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns the read method for the given type and schemas. The same method will be returned if the same
+   * type and schemas has been passed to the method before.
+   *
+   * @param inputType Type information of the data type to read
+   * @param sourceSchema Schema of the encoded data
+   * @param targetSchema Schema of the data type
+   * @return A method with signature {@code (Decoder)} for reading the data.
+   */
+  private Method getReadMethod(TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    String key = String.format("%s%s%s", normalizeTypeName(inputType),
+                               sourceSchema.getSchemaHash(), targetSchema.getSchemaHash());
+
+    Method method = readMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    if (sourceSchema.getType() != Schema.Type.UNION && targetSchema.getType() == Schema.Type.UNION) {
+      // Reading non-union data to union type is the same as reading to the first union schema that matches
+      Schema unionSchema = resolveUnion(sourceSchema, targetSchema);
+      if (unionSchema != null) {
+        method = getReadMethod(inputType, sourceSchema, unionSchema);
+        readMethods.put(key, method);
+        return method;
+      }
+    }
+
+    method = getMethod(getReturnType(inputType, sourceSchema, targetSchema),
+                       String.format("read%s", key), Decoder.class);
+
+    // Put the method into map first before generating the body in order to support recursive data type.
+    readMethods.put(key, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+    generateReadBody(mg, inputType, sourceSchema, targetSchema, method.getReturnType());
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates the read method body. It either returns the value read or throws {@link IOException} if the source
+   * schema cannot be resolved to the target schema.
+   */
+  private void generateReadBody(GeneratorAdapter mg, TypeToken<?> inputType,
+                                Schema sourceSchema, Schema targetSchema, Type returnType) {
+    Schema.Type sourceType = sourceSchema.getType();
+    Schema.Type targetType = targetSchema.getType();
+
+    if (sourceType == Schema.Type.UNION) {
+      readUnion(mg, inputType, sourceSchema, targetSchema);
+      return;
+    }
+    if (targetType == Schema.Type.UNION) {
+      throwIOException(mg, String.format("No matching schema to resolve %s to %s", sourceSchema, targetSchema));
+      return;
+    }
+    if (!sourceType.isSimpleType() || sourceType == Schema.Type.NULL || sourceType == Schema.Type.BYTES) {
+      if (sourceType != targetType) {
+        throwIOException(mg, String.format("Fails to resolve %s to %s", sourceType, targetType));
+        return;
+      }
+    }
+
+    Type valueType;
+    switch (sourceType) {
+      case NULL:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(Object.class, "readNull"));
+        valueType = OBJECT_TYPE;
+        break;
+      case BYTES:
+        valueType = readBytes(mg, inputType);
+        break;
+      case ENUM:
+        valueType = readEnum(mg, inputType, sourceSchema, targetSchema);
+        break;
+      case ARRAY:
+        valueType = readArray(mg, inputType, sourceSchema, targetSchema);
+        break;
+      case MAP:
+        valueType = readMap(mg, inputType, sourceSchema, targetSchema);
+        break;
+      case RECORD:
+        valueType = readRecord(mg, inputType, sourceSchema, targetSchema);
+        break;
+      default:
+        valueType = readSimple(mg, inputType, sourceType, targetType);
+        if (valueType == null) {
+          throwIOException(mg, "Fail to resolve type " + sourceType + " to type " + targetType);
+        }
+    }
+
+    if (valueType == null) {
+      // An exception has been thrown
+      return;
+    }
+    if (!valueType.equals(returnType)) {
+      box(mg, valueType);
+    }
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for reading simple schema types other than {@code NULL} and {@code BYTES}, with
+   * type promotion.
+   *
+   * @return type of the value read or {@code null} if the source type cannot be resolved to the target type
+   */
+  @Nullable
+  private Type readSimple(GeneratorAdapter mg, TypeToken<?> inputType,
+                          Schema.Type sourceType, Schema.Type targetType) {
+    Class<?> resolvedClass = getResolvedClass(sourceType, targetType, inputType.getRawType());
+    if (resolvedClass == null) {
+      return null;
+    }
+
+    Type urlType = Type.getType(URL.class);
+    if (URL.class.equals(resolvedClass)) {
+      mg.newInstance(urlType);
+      mg.dup();
+    }
+
+    // decoder.readXXX()
+    Type sourceValueType;
+    mg.loadArg(0);
+    switch (sourceType) {
+      case BOOLEAN:
+        mg.invokeInterface(DECODER_TYPE, getMethod(boolean.class, "readBool"));
+        sourceValueType = Type.BOOLEAN_TYPE;
+        break;
+      case INT:
+        mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+        sourceValueType = Type.INT_TYPE;
+        break;
+      case LONG:
+        mg.invokeInterface(DECODER_TYPE, getMethod(long.class, "readLong"));
+        sourceValueType = Type.LONG_TYPE;
+        break;
+      case FLOAT:
+        mg.invokeInterface(DECODER_TYPE, getMethod(float.class, "readFloat"));
+        sourceValueType = Type.FLOAT_TYPE;
+        break;
+      case DOUBLE:
+        mg.invokeInterface(DECODER_TYPE, getMethod(double.class, "readDouble"));
+        sourceValueType = Type.DOUBLE_TYPE;
+        break;
+      default:
+        mg.invokeInterface(DECODER_TYPE, getMethod(String.class, "readString"));
+        sourceValueType = Type.getType(String.class);
+    }
+
+    if (String.class.equals(resolvedClass) && sourceType != Schema.Type.STRING) {
+      // String.valueOf(value)
+      Class<?> valueClass = getResolvedClass(sourceType, sourceType, Object.class);
+      mg.invokeStatic(Type.getType(String.class), getMethod(String.class, "valueOf", valueClass));
+      return Type.getType(String.class);
+    }
+    if (URI.class.equals(resolvedClass)) {
+      mg.invokeStatic(Type.getType(URI.class), getMethod(URI.class, "create", String.class));
+      return Type.getType(URI.class);
+    }
+    if (URL.class.equals(resolvedClass)) {
+      mg.invokeConstructor(urlType, getMethod(void.class, "<init>", String.class));
+      return urlType;
+    }
+    Type resolvedType = Type.getType(resolvedClass);
+    if (!resolvedType.equals(sourceValueType)) {
+      mg.cast(sourceValueType, resolvedType);
+    }
+    return resolvedType;
+  }
+
+  /**
+   * Generates method body for reading bytes, which is converted to byte array or {@link UUID} based on the
+   * data type.
+   */
+  private Type readBytes(GeneratorAdapter mg, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+    Type datumReadersType = Type.getType(DatumReaders.class);
+
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(ByteBuffer.class, "readBytes"));
+    if (byte[].class.equals(rawType)) {
+      mg.invokeStatic(datumReadersType, getMethod(byte[].class, "toBytes", ByteBuffer.class));
+      return Type.getType(byte[].class);
+    }
+    if (UUID.class.equals(rawType)) {
+      mg.invokeStatic(datumReadersType, getMethod(Object.class, "toUUID", ByteBuffer.class));
+      return OBJECT_TYPE;
+    }
+    return Type.getType(ByteBuffer.class);
+  }
+
+  /**
+   * Generates method body for reading enum value. A table of the enum constants indexed by the source schema index
+   * is created as a constant, with {@code null} for values that are missing in the target.
+   */
+  private Type readEnum(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    Class<?> rawType = inputType.getRawType();
+    Object[] values = new Object[sourceSchema.getEnumValues().size()];
+    for (String value : sourceSchema.getEnumValues()) {
+      int idx = sourceSchema.getEnumIndex(value);
+      if (idx < 0 || idx >= values.length || !targetSchema.getEnumValues().contains(value) || !rawType.isEnum()) {
+        continue;
+      }
+      for (Object constant : rawType.getEnumConstants()) {
+        if (((Enum<?>) constant).name().equals(value)) {
+          values[idx] = constant;
+        }
+      }
+    }
+
+    // DatumReaders.toEnum(values, sourceSchema, decoder.readInt());
+    String key = String.format("enum%s%s%s", inputType, sourceSchema.getSchemaHash(), targetSchema.getSchemaHash());
+    loadConstant(mg, key, values, Object[].class);
+    loadSchema(mg, sourceSchema);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.invokeStatic(Type.getType(DatumReaders.class),
+                    getMethod(Object.class, "toEnum", Object[].class, Schema.class, int.class));
+    return OBJECT_TYPE;
+  }
+
+  /**
+   * Generates method body for reading array value into either an array or a {@link Collection}.
+   */
+  @Nullable
+  private Type readArray(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    TypeToken<?> componentType = null;
+    if (inputType.isArray()) {
+      componentType = inputType.getComponentType();
+    } else if (Collection.class.isAssignableFrom(inputType.getRawType())) {
+      if (!(inputType.getType() instanceof ParameterizedType)) {
+        throwIOException(mg, "Only parameterized type is supported for collection.");
+        return null;
+      }
+      componentType = TypeToken.of(((ParameterizedType) inputType.getType()).getActualTypeArguments()[0]);
+    }
+    if (componentType == null) {
+      throwIOException(mg, "Only array or collection type is support for array value.");
+      return null;
+    }
+
+    Method componentMethod = getReadMethod(componentType, sourceSchema.getComponentSchema(),
+                                           targetSchema.getComponentSchema());
+    if (inputType.isArray()) {
+      return readArrayValues(mg, componentType.getRawType(), componentMethod);
+    }
+    return readCollection(mg, inputType, componentMethod);
+  }
+
+  /**
+   * Generates method body for reading array value into an array. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int len = decoder.readInt();
+   * T[] array = new T[Math.max(len, 0)];
+   * int size = 0;
+   * while (len != 0) {
+   *   if (size + len > array.length) {
+   *     array = Arrays.copyOf(array, size + len);
+   *   }
+   *   for (int i = 0; i < len; i++) {
+   *     array[size++] = readComponent(decoder);
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * if (size != array.length) {
+   *   array = Arrays.copyOf(array, size);
+   * }
+   * }
+   * </pre>
+   */
+  private Type readArrayValues(GeneratorAdapter mg, Class<?> componentClass, Method componentMethod) {
+    boolean isPrimitive = componentClass.isPrimitive();
+    Class<?> arrayClass = isPrimitive ? Array.newInstance(componentClass, 0).getClass() : Object[].class;
+    Type arrayType = Type.getType(arrayClass);
+    Type elementType = isPrimitive ? Type.getType(componentClass) : OBJECT_TYPE;
+    Method copyOf = getMethod(arrayClass, "copyOf", arrayClass, int.class);
+
+    int len = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+
+    // Create the array with the size of the first block
+    if (isPrimitive) {
+      mg.loadLocal(len);
+      mg.push(0);
+      mg.invokeStatic(Type.getType(Math.class), getMethod(int.class, "max", int.class, int.class));
+      mg.newArray(elementType);
+    } else {
+      loadConstant(mg, "class" + componentClass.getName(), componentClass, Class.class);
+      mg.loadLocal(len);
+      mg.push(0);
+      mg.invokeStatic(Type.getType(Math.class), getMethod(int.class, "max", int.class, int.class));
+      mg.invokeStatic(Type.getType(Array.class), getMethod(Object.class, "newInstance", Class.class, int.class));
+      mg.checkCast(arrayType);
+    }
+    int array = mg.newLocal(arrayType);
+    mg.storeLocal(array);
+
+    int size = mg.newLocal(Type.INT_TYPE);
+    mg.push(0);
+    mg.storeLocal(size);
+    int idx = mg.newLocal(Type.INT_TYPE);
+
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    // Grow the array to hold the block
+    Label noGrow = mg.newLabel();
+    mg.loadLocal(size);
+    mg.loadLocal(len);
+    mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    mg.loadLocal(array);
+    mg.arrayLength();
+    mg.ifICmp(GeneratorAdapter.LE, noGrow);
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    mg.loadLocal(len);
+    mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    mg.invokeStatic(Type.getType(Arrays.class), copyOf);
+    mg.storeLocal(array);
+    mg.mark(noGrow);
+
+    // for (int idx = 0; idx < len; idx++)
+    mg.push(0);
+    mg.storeLocal(idx);
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, componentMethod);
+    if (componentMethod.getReturnType().equals(elementType)) {
+      mg.arrayStore(elementType);
+    } else {
+      // Primitive array with a component value that is not of the same type, e.g. from a union.
+      box(mg, componentMethod.getReturnType());
+      if (isPrimitive) {
+        mg.invokeStatic(Type.getType(Array.class), getMethod(void.class, "set", Object.class, int.class, Object.class));
+      } else {
+        mg.arrayStore(OBJECT_TYPE);
+      }
+    }
+    mg.iinc(size, 1);
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+    mg.goTo(beginWhile);
+    mg.mark(endWhile);
+
+    // Trim the array to the actual size
+    Label trimmed = mg.newLabel();
+    mg.loadLocal(size);
+    mg.loadLocal(array);
+    mg.arrayLength();
+    mg.ifICmp(GeneratorAdapter.EQ, trimmed);
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    mg.invokeStatic(Type.getType(Arrays.class), copyOf);
+    mg.storeLocal(array);
+    mg.mark(trimmed);
+
+    mg.loadLocal(array);
+    return arrayType;
+  }
+
+  /**
+   * Generates method body for reading array value into a {@link Collection} created by the {@link Instantiator}
+   * of the collection type.
+   */
+  private Type readCollection(GeneratorAdapter mg, TypeToken<?> inputType, Method componentMethod) {
+    Type collectionType = Type.getType(Collection.class);
+
+    newInstance(mg, inputType);
+    mg.checkCast(collectionType);
+    int collection = mg.newLocal(collectionType);
+    mg.storeLocal(collection);
+
+    readBlocks(mg, collection, collectionType, getMethod(boolean.class, "add", Object.class), componentMethod);
+
+    mg.loadLocal(collection);
+    return collectionType;
+  }
+
+  /**
+   * Generates method body for reading map value into a {@link Map} created by the {@link Instantiator}
+   * of the map type.
+   */
+  @Nullable
+  private Type readMap(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    if (!Map.class.isAssignableFrom(inputType.getRawType())) {
+      throwIOException(mg, "Only map type is supported for map data.");
+      return null;
+    }
+    if (!(inputType.getType() instanceof ParameterizedType)) {
+      throwIOException(mg, "Only parameterized map is supported.");
+      return null;
+    }
+    java.lang.reflect.Type[] typeArgs = ((ParameterizedType) inputType.getType()).getActualTypeArguments();
+    Map.Entry<Schema, Schema> sourceEntry = sourceSchema.getMapSchema();
+    Map.Entry<Schema, Schema> targetEntry = targetSchema.getMapSchema();
+    Method keyMethod = getReadMethod(TypeToken.of(typeArgs[0]), sourceEntry.getKey(), targetEntry.getKey());
+    Method valueMethod = getReadMethod(TypeToken.of(typeArgs[1]), sourceEntry.getValue(), targetEntry.getValue());
+
+    Type mapType = Type.getType(Map.class);
+    newInstance(mg, inputType);
+    mg.checkCast(mapType);
+    int map = mg.newLocal(mapType);
+    mg.storeLocal(map);
+
+    readBlocks(mg, map, mapType, getMethod(Object.class, "put", Object.class, Object.class), keyMethod, valueMethod);
+
+    mg.loadLocal(map);
+    return mapType;
+  }
+
+  /**
+   * Generates the loop for reading blocks of values and adding them to a container. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     container.addMethod(readValue(decoder), ...);
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * }
+   * </pre>
+   *
+   * @param mg Method body generator
+   * @param container local variable index of the container
+   * @param containerType type of the container
+   * @param addMethod interface method of the container to add values
+   * @param valueMethods read methods for the arguments of the add method
+   */
+  private void readBlocks(GeneratorAdapter mg, int container, Type containerType,
+                          Method addMethod, Method...valueMethods) {
+    int len = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+    int idx = mg.newLocal(Type.INT_TYPE);
+
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    mg.push(0);
+    mg.storeLocal(idx);
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    mg.loadLocal(container);
+    for (Method valueMethod : valueMethods) {
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, valueMethod);
+      box(mg, valueMethod.getReturnType());
+    }
+    mg.invokeInterface(containerType, addMethod);
+    mg.pop();
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+    mg.goTo(beginWhile);
+    mg.mark(endWhile);
+  }
+
+  /**
+   * Generates method body for reading record. Fields in the source schema are set through {@link FieldAccessor}
+   * if they exist in the target schema, otherwise they are skipped.
+   */
+  private Type readRecord(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    Type fieldAccessorType = Type.getType(FieldAccessor.class);
+
+    newInstance(mg, inputType);
+    int record = mg.newLocal(OBJECT_TYPE);
+    mg.storeLocal(record);
+
+    for (Schema.Field sourceField : sourceSchema.getFields()) {
+      Schema.Field targetField = targetSchema.getField(sourceField.getName());
+      if (targetField == null) {
+        // DatumReaders.skip(decoder, fieldSchema);
+        mg.loadArg(0);
+        loadSchema(mg, sourceField.getSchema());
+        mg.invokeStatic(Type.getType(DatumReaders.class),
+                        getMethod(void.class, "skip", Decoder.class, Schema.class));
+        continue;
+      }
+
+      FieldAccessor fieldAccessor = fieldAccessorFactory.getFieldAccessor(inputType, sourceField.getName());
+      TypeToken<?> fieldType = getFieldType(inputType, sourceField.getName());
+      Method method = getReadMethod(fieldType, sourceField.getSchema(), targetField.getSchema());
+
+      // fieldAccessor.set(record, readField(decoder));
+      loadConstant(mg, String.format("accessor%s$%s", inputType, sourceField.getName()),
+                   fieldAccessor, FieldAccessor.class);
+      mg.loadLocal(record);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, method);
+      mg.invokeInterface(fieldAccessorType, getAccessorMethod(fieldType, method.getReturnType()));
+    }
+
+    mg.loadLocal(record);
+    return OBJECT_TYPE;
+  }
+
+  private TypeToken<?> getFieldType(TypeToken<?> recordType, String fieldName) {
+    try {
+      return recordType.resolveType(Fields.findField(recordType.getType(), fieldName).getGenericType());
+    } catch (NoSuchFieldException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Generates method body for reading union. Each schema in the source union is resolved to the target schema when
+   * generating the method, and the union index read is used to pick the read method.
+   */
+  private void readUnion(final GeneratorAdapter mg, TypeToken<?> inputType,
+                         final Schema sourceSchema, final Schema targetSchema) {
+    List<Schema> unionSchemas = sourceSchema.getUnionSchemas();
+    final Method[] methods = new Method[unionSchemas.size()];
+    int[] keys = new int[unionSchemas.size()];
+
+    for (int i = 0; i < unionSchemas.size(); i++) {
+      keys[i] = i;
+      Schema sourceValueSchema = unionSchemas.get(i);
+      Schema targetValueSchema = targetSchema;
+      if (targetSchema.getType() == Schema.Type.UNION) {
+        // Try the target schema with the same index first, then the first matching one.
+        targetValueSchema = targetSchema.getUnionSchema(i);
+        if (targetValueSchema == null || targetValueSchema.getType() != sourceValueSchema.getType()) {
+          targetValueSchema = resolveUnion(sourceValueSchema, targetSchema);
+        }
+      }
+      if (targetValueSchema != null) {
+        methods[i] = getReadMethod(inputType, sourceValueSchema, targetValueSchema);
+      }
+    }
+
+    // switch (decoder.readInt()) { case i: return readUnionValue_i(decoder); ... }
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.tableSwitch(keys, new TableSwitchGenerator() {
+      @Override
+      public void generateCase(int key, Label end) {
+        Method method = methods[key];
+        if (method == null) {
+          throwIOException(mg, String.format("Fail to resolve %s to %s", sourceSchema, targetSchema));
+          return;
+        }
+        mg.loadThis();
+        mg.loadArg(0);
+        mg.invokeVirtual(classType, method);
+        box(mg, method.getReturnType());
+        mg.returnValue();
+      }
+
+      @Override
+      public void generateDefault() {
+        throwIOException(mg, String.format("Invalid union index for schema %s", sourceSchema));
+      }
+    });
+  }
+
+  /**
+   * Returns the first schema in the target union that the source schema can be resolved to, or {@code null} if
+   * there is none.
+   */
+  @Nullable
+  private Schema resolveUnion(Schema sourceSchema, Schema targetSchema) {
+    for (Schema schema : targetSchema.getUnionSchemas()) {
+      if (isResolvable(sourceSchema, schema)) {
+        return schema;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns whether data of the given source schema can be read with the given non-union target schema.
+   * Same as the {@link ReflectionDatumReader}, only the schema types are checked.
+   */
+  private boolean isResolvable(Schema sourceSchema, Schema targetSchema) {
+    Schema.Type sourceType = sourceSchema.getType();
+    switch (sourceType) {
+      case UNION:
+        return true;
+      case NULL:
+      case BYTES:
+      case ENUM:
+      case ARRAY:
+      case MAP:
+      case RECORD:
+        return sourceType == targetSchema.getType();
+      default:
+        return getResolvedClass(sourceType, targetSchema.getType(), Object.class) != null;
+    }
+  }
+
+  /**
+   * Returns the class of the value read for simple schema types other than {@code NULL} and {@code BYTES}, or
+   * {@code null} if the source type cannot be resolved to the target type.
+   */
+  @Nullable
+  private Class<?> getResolvedClass(Schema.Type sourceType, Schema.Type targetType, Class<?> rawType) {
+    switch (sourceType) {
+      case BOOLEAN:
+        switch (targetType) {
+          case BOOLEAN:
+            return boolean.class;
+          case STRING:
+            return String.class;
+        }
+        break;
+      case INT:
+        switch (targetType) {
+          case INT:
+            if (byte.class.equals(rawType) || Byte.class.equals(rawType)) {
+              return byte.class;
+            }
+            if (char.class.equals(rawType) || Character.class.equals(rawType)) {
+              return char.class;
+            }
+            if (short.class.equals(rawType) || Short.class.equals(rawType)) {
+              return short.class;
+            }
+            return int.class;
+          case LONG:
+            return long.class;
+          case FLOAT:
+            return float.class;
+          case DOUBLE:
+            return double.class;
+          case STRING:
+            return String.class;
+        }
+        break;
+      case LONG:
+        switch (targetType) {
+          case LONG:
+            return long.class;
+          case FLOAT:
+            return float.class;
+          case DOUBLE:
+            return double.class;
+          case STRING:
+            return String.class;
+        }
+        break;
+      case FLOAT:
+        switch (targetType) {
+          case FLOAT:
+            return float.class;
+          case DOUBLE:
+            return double.class;
+          case STRING:
+            return String.class;
+        }
+        break;
+      case DOUBLE:
+        switch (targetType) {
+          case DOUBLE:
+            return double.class;
+          case STRING:
+            return String.class;
+        }
+        break;
+      case STRING:
+        if (targetType == Schema.Type.STRING) {
+          if (URI.class.equals(rawType)) {
+            return URI.class;
+          }
+          if (URL.class.equals(rawType)) {
+            return URL.class;
+          }
+          return String.class;
+        }
+        break;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the return type of the read method. A primitive type is returned only if the data type is primitive and
+   * the value read is of the same type.
+   */
+  private Class<?> getReturnType(TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    Class<?> rawType = inputType.getRawType();
+    if (rawType.isPrimitive()
+      && sourceSchema.getType() != Schema.Type.UNION && targetSchema.getType() != Schema.Type.UNION
+      && rawType.equals(getResolvedClass(sourceSchema.getType(), targetSchema.getType(), rawType))) {
+      return rawType;
+    }
+    return Object.class;
+  }
+
+  /**
+   * Returns the {@link FieldAccessor} method for setting a value of the given type to a field.
+   */
+  private Method getAccessorMethod(TypeToken<?> fieldType, Type valueType) {
+    Class<?> rawType = fieldType.getRawType();
+    if (rawType.isPrimitive() && Type.getType(rawType).equals(valueType)) {
+      return getMethod(void.class,
+                       String.format("set%c%s",
+                                     Character.toUpperCase(rawType.getName().charAt(0)),
+                                     rawType.getName().substring(1)),
+                       Object.class, rawType);
+    }
+    return getMethod(void.class, "set", Object.class, Object.class);
+  }
+
+  /**
+   * Generates code to create a new instance of the given type with an {@link Instantiator}.
+   */
+  private void newInstance(GeneratorAdapter mg, TypeToken<?> type) {
+    loadConstant(mg, "instantiator" + type, instantiatorFactory.get(type), Instantiator.class);
+    mg.invokeInterface(Type.getType(Instantiator.class), getMethod(Object.class, "create"));
+  }
+
+  /**
+   * Generates code to load the given {@link Schema} as a constant.
+   */
+  private void loadSchema(GeneratorAdapter mg, Schema schema) {
+    loadConstant(mg, "schema" + schema.getSchemaHash(), schema, Schema.class);
+  }
+
+  /**
+   * Generates code to load a constant from class field. The same class field is used for the same key.
+   *
+   * @param mg Method body generator
+   * @param key key to identify the constant
+   * @param value value of the constant
+   * @param type type of the class field for the constant
+   */
+  private void loadConstant(GeneratorAdapter mg, String key, Object value, Class<?> type) {
+    String fieldName = constantFields.get(key);
+    if (fieldName == null) {
+      fieldName = getConstantFieldName(constants.size());
+      constantFields.put(key, fieldName);
+      constants.add(value);
+      constantTypes.add(Type.getType(type));
+    }
+    mg.loadThis();
+    mg.getField(classType, fieldName, Type.getType(type));
+  }
+
+  private String getConstantFieldName(int idx) {
+    return "constant" + idx;
+  }
+
+  /**
+   * Generates code to box the value on the stack if it is of primitive type.
+   */
+  private void box(GeneratorAdapter mg, Type type) {
+    if (type.getSort() != Type.OBJECT && type.getSort() != Type.ARRAY) {
+      mg.valueOf(type);
+    }
+  }
+
+  private void throwIOException(GeneratorAdapter mg, String message) {
+    mg.throwException(Type.getType(IOException.class), message);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> TypeToken<DatumReader<T>> getInterfaceType(TypeToken<T> type) {
+    // Primitive types, such as the parameter type of a process method, can't be used as type argument
+    TypeToken<T> argType = type.getRawType().isPrimitive()
+      ? (TypeToken<T>) TypeToken.of(Primitives.wrap(type.getRawType())) : type;
+    return new TypeToken<DatumReader<T>>() {
+    }.where(new TypeParameter<T>() {
+    }, argType);
+  }
+
+  private String getClassName(TypeToken<?> interfaceType, Schema schema, Schema sourceSchema) {
+    return String.format("%s/%s%s%s%s",
+                         interfaceType.getRawType().getPackage().getName().replace('.', '/'),
+                         normalizeTypeName(TypeToken.of(((ParameterizedType) interfaceType.getType())
+                                                          .getActualTypeArguments()[0])),
+                         interfaceType.getRawType().getSimpleName(),
+                         schema.getSchemaHash(), sourceSchema.getSchemaHash());
+  }
+
+  private String normalizeTypeName(TypeToken<?> type) {
+    String typeName = type.toString();
+    int dimension = 0;
+    while (type.isArray()) {
+      type = type.getComponentType();
+      typeName = type.toString();
+      dimension++;
+    }
+
+    typeName = typeName.replace(".", "")
+                        .replace("<", "Of")
+                        .replace(">", "")
+                        .replace(",", "To")
+                        .replace(" ", "")
+                        .replace("$", "");
+    if (dimension > 0) {
+      typeName = "Array" + dimension + typeName;
+    }
+    return typeName;
+  }
+
+  private Method getMethod(Class<?> returnType, String name, Class<?>...args) {
+    return Methods.getMethod(returnType, name, args);
+  }
+}
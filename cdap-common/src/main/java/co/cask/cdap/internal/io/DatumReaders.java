@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.Decoder;
+import com.google.common.primitives.Longs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Helper methods for decoding data, used by the {@link DatumReader} classes generated by
+ * {@link DatumReaderGenerator} as well as the reflection based readers. This class is public as the generated
+ * classes are defined by a different {@link ClassLoader}.
+ */
+public final class DatumReaders {
+
+  /**
+   * Returns the content of the given {@link ByteBuffer} as a byte array. The backing array of the buffer is returned
+   * if it contains exactly the buffer content.
+   */
+  public static byte[] toBytes(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      byte[] array = buffer.array();
+      if (buffer.remaining() == array.length) {
+        return array;
+      }
+      byte[] bytes = new byte[buffer.remaining()];
+      System.arraycopy(array, buffer.arrayOffset() + buffer.position(), bytes, 0, buffer.remaining());
+      return bytes;
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Returns the {@link UUID} represented by the given {@link ByteBuffer}, or the buffer itself if it doesn't have
+   * the size of an {@link UUID}.
+   */
+  public static Object toUUID(ByteBuffer buffer) {
+    if (buffer.remaining() == Longs.BYTES * 2) {
+      return new UUID(buffer.getLong(), buffer.getLong());
+    }
+    return buffer;
+  }
+
+  /**
+   * Returns the enum constant for the given index of an enum value in the source schema.
+   *
+   * @param values enum constants indexed by the source schema index, with {@code null} for values that are
+   *               missing in the target
+   * @param sourceSchema the enum schema the value was written with
+   * @param idx index of the enum value in the source schema
+   * @throws IOException if the enum value is missing in the target
+   */
+  public static Object toEnum(Object[] values, Schema sourceSchema, int idx) throws IOException {
+    Object value = idx >= 0 && idx < values.length ? values[idx] : null;
+    if (value == null) {
+      throw new IOException(String.format("Enum value '%s' missing in target.", sourceSchema.getEnumValue(idx)));
+    }
+    return value;
+  }
+
+  /**
+   * Skips a value of the given schema.
+   */
+  public static void skip(Decoder decoder, Schema schema) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        decoder.readBool();
+        break;
+      case INT:
+        decoder.readInt();
+        break;
+      case LONG:
+        decoder.readLong();
+        break;
+      case FLOAT:
+        decoder.skipFloat();
+        break;
+      case DOUBLE:
+        decoder.skipDouble();
+        break;
+      case BYTES:
+        decoder.skipBytes();
+        break;
+      case STRING:
+        decoder.skipString();
+        break;
+      case ENUM:
+        decoder.readInt();
+        break;
+      case ARRAY:
+        skipArray(decoder, schema.getComponentSchema());
+        break;
+      case MAP:
+        skipMap(decoder, schema.getMapSchema());
+        break;
+      case RECORD:
+        skipRecord(decoder, schema);
+        break;
+      case UNION:
+        skip(decoder, schema.getUnionSchema(decoder.readInt()));
+        break;
+    }
+  }
+
+  private static void skipArray(Decoder decoder, Schema componentSchema) throws IOException {
+    int len = decoder.readInt();
+    while (len != 0) {
+      for (int i = 0; i < len; i++) {
+        skip(decoder, componentSchema);
+      }
+      len = decoder.readInt();
+    }
+  }
+
+  private static void skipMap(Decoder decoder, Map.Entry<Schema, Schema> mapSchema) throws IOException {
+    int len = decoder.readInt();
+    while (len != 0) {
+      for (int i = 0; i < len; i++) {
+        skip(decoder, mapSchema.getKey());
+        skip(decoder, mapSchema.getValue());
+      }
+      len = decoder.readInt();
+    }
+  }
+
+  private static void skipRecord(Decoder decoder, Schema recordSchema) throws IOException {
+    for (Schema.Field field : recordSchema.getFields()) {
+      skip(decoder, field.getSchema());
+    }
+  }
+
+  private DatumReaders() {
+  }
+}
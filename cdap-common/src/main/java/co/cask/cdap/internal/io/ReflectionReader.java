@@ -20,7 +20,6 @@ import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.common.lang.Instantiator;
 import co.cask.cdap.common.lang.InstantiatorFactory;
 import com.google.common.collect.Maps;
-import com.google.common.primitives.Longs;
 import com.google.common.reflect.TypeToken;
 
 import java.io.IOException;
@@ -128,21 +127,9 @@ public abstract class ReflectionReader<FROM, TO> {
         ByteBuffer buffer = readBytes(source);
 
         if (targetTypeToken.getRawType().equals(byte[].class)) {
-          if (buffer.hasArray()) {
-            byte[] array = buffer.array();
-            if (buffer.remaining() == array.length) {
-              return array;
-            }
-            byte[] bytes = new byte[buffer.remaining()];
-            System.arraycopy(array, buffer.arrayOffset() + buffer.position(), bytes, 0, buffer.remaining());
-            return bytes;
-          } else {
-            byte[] bytes = new byte[buffer.remaining()];
-            buffer.get(bytes);
-            return bytes;
-          }
-        } else if (targetTypeToken.getRawType().equals(UUID.class) && buffer.remaining() == Longs.BYTES * 2) {
-          return new UUID(buffer.getLong(), buffer.getLong());
+          return DatumReaders.toBytes(buffer);
+        } else if (targetTypeToken.getRawType().equals(UUID.class)) {
+          return DatumReaders.toUUID(buffer);
         }
         return buffer;
       case ENUM:
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.common.metrics;
+
+import co.cask.cdap.api.metrics.MetricsCollector;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * Tests for {@link Histogram}.
+ */
+public class HistogramTest {
+
+  @Test
+  public void testEmpty() {
+    Histogram histogram = new Histogram();
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getMean());
+    Assert.assertEquals(0, histogram.getPercentile(99));
+  }
+
+  @Test
+  public void testPercentiles() {
+    Histogram histogram = new Histogram();
+    // 90 small values of 1 and 10 large ones of 1000
+    for (int i = 0; i < 90; i++) {
+      histogram.record(1);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(1000);
+    }
+
+    Assert.assertEquals(100, histogram.getCount());
+    Assert.assertEquals(100, histogram.getMean());
+    // 1 falls into the [1, 2) bucket
+    Assert.assertEquals(2, histogram.getPercentile(50));
+    Assert.assertEquals(2, histogram.getPercentile(90));
+    // 1000 falls into the [512, 1024) bucket
+    Assert.assertEquals(1024, histogram.getPercentile(91));
+    Assert.assertEquals(1024, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void testOutOfRange() {
+    Histogram histogram = new Histogram();
+    histogram.record(-1);
+    histogram.record(Long.MAX_VALUE);
+    Assert.assertEquals(2, histogram.getCount());
+    Assert.assertEquals(1, histogram.getPercentile(50));
+    Assert.assertEquals(1L << 47, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void testEmit() {
+    final Map<String, Long> metrics = Maps.newHashMap();
+    MetricsCollector collector = new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        Long current = metrics.get(metricName);
+        metrics.put(metricName, current == null ? value : current + value);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        metrics.put(metricName, value);
+      }
+    };
+
+    Histogram histogram = new Histogram();
+    // nothing is emitted for an empty histogram
+    histogram.emit(collector, "batch.bytes");
+    Assert.assertTrue(metrics.isEmpty());
+
+    for (int i = 0; i < 99; i++) {
+      histogram.record(100);
+    }
+    histogram.record(10000);
+    histogram.emit(collector, "batch.bytes");
+    Assert.assertEquals(100L, (long) metrics.get("batch.bytes.count"));
+    Assert.assertEquals(199L, (long) metrics.get("batch.bytes.mean"));
+    // 100 falls into the [64, 128) bucket and 10000 into the [8192, 16384) bucket
+    Assert.assertEquals(128L, (long) metrics.get("batch.bytes.p50"));
+    Assert.assertEquals(128L, (long) metrics.get("batch.bytes.p99"));
+    Assert.assertEquals(16384L, (long) metrics.get("batch.bytes.max"));
+
+    // emitting resets the histogram
+    Assert.assertEquals(0, histogram.getCount());
+    histogram.record(100);
+    histogram.emit(collector, "batch.bytes");
+    Assert.assertEquals(101L, (long) metrics.get("batch.bytes.count"));
+    Assert.assertEquals(128L, (long) metrics.get("batch.bytes.max"));
+  }
+}
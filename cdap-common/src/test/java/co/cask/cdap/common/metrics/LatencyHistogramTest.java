@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.metrics;
+
+import co.cask.cdap.api.metrics.MetricsCollector;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getMeanMicros());
+    Assert.assertEquals(0, histogram.getPercentileMicros(99));
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    // 90 fast latencies of 100ns and 10 slow ones of 1ms
+    for (int i = 0; i < 90; i++) {
+      histogram.record(100);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    Assert.assertEquals(100, histogram.getCount());
+    Assert.assertEquals(100, histogram.getMeanMicros());
+    Assert.assertEquals(1, histogram.getPercentileMicros(50));
+    Assert.assertEquals(1, histogram.getPercentileMicros(90));
+    // 1000us falls into the [512, 1024) bucket
+    Assert.assertEquals(1024, histogram.getPercentileMicros(91));
+    Assert.assertEquals(1024, histogram.getPercentileMicros(100));
+  }
+
+  @Test
+  public void testOutOfRange() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-1);
+    histogram.record(Long.MAX_VALUE);
+    Assert.assertEquals(2, histogram.getCount());
+    Assert.assertEquals(1, histogram.getPercentileMicros(50));
+    Assert.assertEquals(1L << 47, histogram.getPercentileMicros(100));
+  }
+
+  @Test
+  public void testEmit() {
+    final Map<String, Long> metrics = Maps.newHashMap();
+    MetricsCollector collector = new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        Long current = metrics.get(metricName);
+        metrics.put(metricName, current == null ? value : current + value);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        metrics.put(metricName, value);
+      }
+    };
+
+    LatencyHistogram histogram = new LatencyHistogram();
+    // nothing is emitted for an empty histogram
+    histogram.emit(collector, "lookup");
+    Assert.assertTrue(metrics.isEmpty());
+
+    for (int i = 0; i < 99; i++) {
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+    }
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+    histogram.emit(collector, "lookup");
+    Assert.assertEquals(100L, (long) metrics.get("lookup.count"));
+    Assert.assertEquals(19L, (long) metrics.get("lookup.mean.us"));
+    Assert.assertEquals(16L, (long) metrics.get("lookup.p50.us"));
+    Assert.assertEquals(16L, (long) metrics.get("lookup.p99.us"));
+    Assert.assertEquals(1024L, (long) metrics.get("lookup.max.us"));
+
+    // emitting resets the histogram
+    Assert.assertEquals(0, histogram.getCount());
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+    histogram.emit(collector, "lookup");
+    Assert.assertEquals(101L, (long) metrics.get("lookup.count"));
+    Assert.assertEquals(16L, (long) metrics.get("lookup.max.us"));
+  }
+}
@@ -21,8 +21,10 @@ import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.common.io.BinaryDecoder;
 import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
 import co.cask.cdap.internal.io.ASMDatumWriterFactory;
 import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumReader;
 import co.cask.cdap.internal.io.DatumWriter;
 import co.cask.cdap.internal.io.ReflectionDatumReader;
 import co.cask.cdap.internal.io.ReflectionDatumWriter;
@@ -37,6 +39,7 @@ import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PipedInputStream;
@@ -55,6 +58,8 @@ public class ASMDatumCodecTest {
 
   private static final ASMDatumWriterFactory DATUM_WRITER_FACTORY
     = new ASMDatumWriterFactory(new ASMFieldAccessorFactory());
+  private static final ASMDatumReaderFactory DATUM_READER_FACTORY
+    = new ASMDatumReaderFactory(new ASMFieldAccessorFactory());
 
   /**
    *
@@ -72,6 +77,19 @@ public class ASMDatumCodecTest {
     return DATUM_WRITER_FACTORY.create(type, schema);
   }
 
+  private <T> DatumReader<T> getReader(TypeToken<T> type) throws UnsupportedTypeException {
+    return DATUM_READER_FACTORY.create(type, getSchema(type));
+  }
+
+  /**
+   * Encodes the value with the ASM generated writer and decodes it with the ASM generated reader.
+   */
+  private <T> T writeAndRead(TypeToken<T> type, T value) throws UnsupportedTypeException, IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    getWriter(type).encode(value, new BinaryEncoder(os));
+    return getReader(type).read(new BinaryDecoder(new ByteArrayInputStream(os.toByteArray())), getSchema(type));
+  }
+
   @Test
   public void testShort() throws UnsupportedTypeException, IOException {
     TypeToken<Short> type = new TypeToken<Short>() { };
@@ -144,6 +162,16 @@ public class ASMDatumCodecTest {
     Assert.assertEquals(uuid, value);
   }
 
+  @Test
+  public void testSimpleTypesWithASMReader() throws UnsupportedTypeException, IOException {
+    Assert.assertEquals((short) 3000, (short) writeAndRead(new TypeToken<Short>() { }, (short) 3000));
+    Assert.assertEquals(12234234, (int) writeAndRead(new TypeToken<Integer>() { }, 12234234));
+    Assert.assertEquals(3.14d, writeAndRead(new TypeToken<Double>() { }, 3.14d), 0.000001d);
+    Assert.assertEquals("Testing message", writeAndRead(new TypeToken<String>() { }, "Testing message"));
+    UUID uuid = UUID.randomUUID();
+    Assert.assertEquals(uuid, writeAndRead(new TypeToken<UUID>() { }, uuid));
+  }
+
   @Test
   public void testEnum() throws UnsupportedTypeException, IOException {
     TypeToken<TestEnum> type = new TypeToken<TestEnum>() { };
@@ -167,6 +195,14 @@ public class ASMDatumCodecTest {
     Assert.assertEquals(TestEnum.VALUE3, value);
   }
 
+  @Test
+  public void testEnumWithASMReader() throws UnsupportedTypeException, IOException {
+    TypeToken<TestEnum> type = new TypeToken<TestEnum>() { };
+    for (TestEnum value : TestEnum.values()) {
+      Assert.assertEquals(value, writeAndRead(type, value));
+    }
+  }
+
   @Test
   public void testPrimitiveArray() throws IOException, UnsupportedTypeException {
     TypeToken<int[]> type = new TypeToken<int[]>() { };
@@ -232,6 +268,22 @@ public class ASMDatumCodecTest {
     Assert.assertEquals(map, reader.read(new BinaryDecoder(is), getSchema(type)));
   }
 
+  @Test
+  public void testCollectionsWithASMReader() throws UnsupportedTypeException, IOException {
+    int[] ints = {1, 2, 3, 4, -5, -6, -7, -8};
+    Assert.assertArrayEquals(ints, writeAndRead(new TypeToken<int[]>() { }, ints));
+
+    String[] strings = {"1", "2", null, "3"};
+    Assert.assertArrayEquals(strings, writeAndRead(new TypeToken<String[]>() { }, strings));
+
+    List<Long> longs = ImmutableList.of(1L, 2L, 3L);
+    Assert.assertEquals(longs, writeAndRead(new TypeToken<List<Long>>() { }, longs));
+
+    Map<String, List<String>> map = ImmutableMap.<String, List<String>>of("k1", Lists.newArrayList("v1"),
+                                                                          "k2", Lists.newArrayList("v2", null));
+    Assert.assertEquals(map, writeAndRead(new TypeToken<Map<String, List<String>>>() { }, map));
+  }
+
   @Test
   public void testURI() throws IOException, UnsupportedTypeException {
     TypeToken<List<URI>> type = new TypeToken<List<URI>>() { };
@@ -246,6 +298,12 @@ public class ASMDatumCodecTest {
     Assert.assertEquals(writeValue, reader.read(new BinaryDecoder(is), getSchema(type)));
   }
 
+  @Test
+  public void testURIWithASMReader() throws IOException, UnsupportedTypeException {
+    List<URI> uris = ImmutableList.of(URI.create("http://www.abc.com"));
+    Assert.assertEquals(uris, writeAndRead(new TypeToken<List<URI>>() { }, uris));
+  }
+
   private static class Record {
     private int i;
     private String s;
@@ -329,6 +387,18 @@ public class ASMDatumCodecTest {
     Assert.assertArrayEquals(writeValue, value);
   }
 
+  @Test
+  public void testRecordsWithASMReader() throws IOException, UnsupportedTypeException {
+    Record record = new Record(10, "testing", ImmutableList.of("a", "b", "c"), TestEnum.VALUE2);
+    Assert.assertEquals(record, writeAndRead(new TypeToken<Record>() { }, record));
+
+    List<Record> records = ImmutableList.of(record, new Record(20, "", ImmutableList.<String>of(), TestEnum.VALUE4));
+    Assert.assertEquals(records, writeAndRead(new TypeToken<List<Record>>() { }, records));
+
+    Record[][] recordArray = {{record}};
+    Assert.assertArrayEquals(recordArray, writeAndRead(new TypeToken<Record[][]>() { }, recordArray));
+  }
+
   /**
    *
    */
@@ -387,6 +457,16 @@ public class ASMDatumCodecTest {
     Assert.assertEquals(root, value);
   }
 
+  @Test
+  public void testTreeWithASMReader() throws IOException, UnsupportedTypeException {
+    Node root = new Node((short) 1,
+                         new Node((short) 2, null,
+                                  new Node((short) 3, null, null)),
+                         new Node((short) 4,
+                                  new Node((short) 5, null, null), null));
+    Assert.assertEquals(root, writeAndRead(new TypeToken<Node>() { }, root));
+  }
+
   @Test
   public void testStreamEvent() throws IOException, UnsupportedTypeException {
     TypeToken<StreamEvent> type = new TypeToken<StreamEvent>() { };
@@ -405,6 +485,16 @@ public class ASMDatumCodecTest {
     Assert.assertEquals(event.getBody(), value.getBody());
   }
 
+  @Test
+  public void testStreamEventWithASMReader() throws IOException, UnsupportedTypeException {
+    StreamEvent event = new StreamEvent(ImmutableMap.of("key", "value"),
+                                        ByteBuffer.wrap("Testing message".getBytes(Charsets.UTF_8)));
+    StreamEvent value = writeAndRead(new TypeToken<StreamEvent>() { }, event);
+
+    Assert.assertEquals(event.getHeaders(), value.getHeaders());
+    Assert.assertEquals(event.getBody(), value.getBody());
+  }
+
   @Ignore
   @Test
   public void testSpeed() throws UnsupportedTypeException, IOException {
@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionDatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs the {@link DatumCodecTest} with the {@link DatumReader} created by {@link ASMDatumReaderFactory}, plus
+ * tests for schema resolution.
+ */
+public class ASMDatumReaderTest extends DatumCodecTest {
+
+  private static final ASMDatumReaderFactory DATUM_READER_FACTORY
+    = new ASMDatumReaderFactory(new ASMFieldAccessorFactory());
+
+  @Override
+  protected <T> DatumReader<T> createReader(TypeToken<T> type, Schema schema) {
+    return DATUM_READER_FACTORY.create(type, schema);
+  }
+
+  /**
+   *
+   */
+  public static final class Source {
+    int i;
+    Integer boxed;
+    long l;
+    float f;
+    int[] ints;
+    byte b;
+    short s;
+    List<String> removed;
+    String str;
+  }
+
+  /**
+   *
+   */
+  public static final class Target {
+    long i;
+    Long boxed;
+    double l;
+    double f;
+    long[] ints;
+    byte b;
+    short s;
+    String str;
+  }
+
+  @Test
+  public void testTypePromotion() throws IOException, UnsupportedTypeException {
+    Source source = new Source();
+    source.i = 1;
+    source.boxed = 2;
+    source.l = 3L;
+    source.f = 4.5f;
+    source.ints = new int[] {5, 6, 7};
+    source.b = 8;
+    source.s = 9;
+    source.removed = ImmutableList.of("a", "b", "c");
+    source.str = "str";
+
+    Schema sourceSchema = new ReflectionSchemaGenerator().generate(Source.class);
+    Schema targetSchema = new ReflectionSchemaGenerator().generate(Target.class);
+    byte[] encoded = encode(source, sourceSchema);
+
+    Target target = decode(createReader(TypeToken.of(Target.class), targetSchema), encoded, sourceSchema);
+    Assert.assertEquals(1L, target.i);
+    Assert.assertEquals(Long.valueOf(2L), target.boxed);
+    Assert.assertEquals(3d, target.l, 0d);
+    Assert.assertEquals(4.5d, target.f, 0d);
+    Assert.assertArrayEquals(new long[] {5L, 6L, 7L}, target.ints);
+    Assert.assertEquals(8, target.b);
+    Assert.assertEquals(9, target.s);
+    Assert.assertEquals("str", target.str);
+
+    // Null value in union
+    source.boxed = null;
+    source.ints = new int[0];
+    encoded = encode(source, sourceSchema);
+    target = decode(createReader(TypeToken.of(Target.class), targetSchema), encoded, sourceSchema);
+    Assert.assertNull(target.boxed);
+    Assert.assertArrayEquals(new long[0], target.ints);
+    Assert.assertEquals("str", target.str);
+
+    // Should be the same as the reflection reader
+    Target expected = decode(new ReflectionDatumReader<>(targetSchema, TypeToken.of(Target.class)),
+                             encoded, sourceSchema);
+    Assert.assertEquals(expected.i, target.i);
+    Assert.assertEquals(expected.boxed, target.boxed);
+    Assert.assertArrayEquals(expected.ints, target.ints);
+    Assert.assertEquals(expected.str, target.str);
+  }
+
+  @Test
+  public void testSourceSchemaChange() throws IOException, UnsupportedTypeException {
+    Schema sourceSchema = new ReflectionSchemaGenerator().generate(Source.class);
+    Schema targetSchema = new ReflectionSchemaGenerator().generate(Target.class);
+
+    Source source = new Source();
+    source.i = 10;
+    source.str = "source";
+    Target target = new Target();
+    target.i = 20L;
+    target.str = "target";
+
+    // The same reader reads data written with different schemas
+    DatumReader<Target> reader = createReader(TypeToken.of(Target.class), targetSchema);
+    byte[] sourceEncoded = encode(source, sourceSchema);
+    byte[] targetEncoded = encode(target, targetSchema);
+    for (int i = 0; i < 3; i++) {
+      Target result = decode(reader, sourceEncoded, sourceSchema);
+      Assert.assertEquals(10L, result.i);
+      Assert.assertEquals("source", result.str);
+
+      result = decode(reader, targetEncoded, targetSchema);
+      Assert.assertEquals(20L, result.i);
+      Assert.assertEquals("target", result.str);
+    }
+  }
+
+  @Test
+  public void testPrimitiveType() throws IOException, UnsupportedTypeException {
+    Schema intSchema = new ReflectionSchemaGenerator().generate(int.class);
+    Schema longSchema = new ReflectionSchemaGenerator().generate(long.class);
+    byte[] encoded = encode(10, intSchema);
+
+    Assert.assertEquals(Integer.valueOf(10), decode(createReader(TypeToken.of(int.class), intSchema),
+                                                    encoded, intSchema));
+    Assert.assertEquals(Long.valueOf(10L), decode(createReader(TypeToken.of(long.class), longSchema),
+                                                  encoded, intSchema));
+  }
+
+  @Test(expected = IOException.class)
+  public void testIncompatibleSchema()throws IOException, UnsupportedTypeException {
+    Schema sourceSchema = new ReflectionSchemaGenerator().generate(String.class);
+    Schema targetSchema = new ReflectionSchemaGenerator().generate(int.class);
+    byte[] encoded = encode("string", sourceSchema);
+    decode(createReader(TypeToken.of(int.class), targetSchema), encoded, sourceSchema);
+  }
+
+  private <T> byte[] encode(T value, Schema schema) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new ReflectionDatumWriter<T>(schema).encode(value, new BinaryEncoder(os));
+    return os.toByteArray();
+  }
+
+  private <T> T decode(DatumReader<T> reader, byte[] encoded, Schema sourceSchema) throws IOException {
+    return reader.read(new BinaryDecoder(new ByteArrayInputStream(encoded)), sourceSchema);
+  }
+}
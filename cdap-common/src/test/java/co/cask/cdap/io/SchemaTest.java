@@ -334,6 +334,19 @@ public class SchemaTest {
     verifyThrowsException("x array<>");
   }
 
+  @Test
+  public void testFieldIndex() {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("a", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("b", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("c", Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+    for (int i = 0; i < schema.getFields().size(); i++) {
+      Assert.assertEquals(i, schema.getFieldIndex(schema.getFields().get(i).getName()));
+    }
+    Assert.assertEquals(-1, schema.getFieldIndex("d"));
+    Assert.assertEquals(-1, Schema.of(Schema.Type.STRING).getFieldIndex("a"));
+  }
+
   @Test
   public void testSerializable() throws IOException, ClassNotFoundException {
     Schema schema = Schema.recordOf(
@@ -351,8 +364,9 @@ public class SchemaTest {
       Schema.Field.of("union", Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.STRING)))
     );
 
-    // Trigger the computation of the schemaString field
+    // Trigger the computation of the schemaString and fieldIndexes fields
     String schemaString = schema.toString();
+    Assert.assertEquals(10, schema.getFieldIndex("union"));
 
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     try (ObjectOutputStream oos = new ObjectOutputStream(os)) {
@@ -362,6 +376,10 @@ public class SchemaTest {
       Schema restoredSchema = (Schema) ois.readObject();
       Assert.assertEquals(schema, restoredSchema);
       Assert.assertEquals(schemaString, restoredSchema.toString());
+      // The field index is not serialized, but recomputed on demand
+      for (int i = 0; i < schema.getFields().size(); i++) {
+        Assert.assertEquals(i, restoredSchema.getFieldIndex(schema.getFields().get(i).getName()));
+      }
     }
   }
 
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
+import co.cask.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link StructuredRecord}.
+ */
+public class StructuredRecordTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("string", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("long", Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+
+  @Test
+  public void testFieldAccess() {
+    StructuredRecord byName = StructuredRecord.builder(SCHEMA)
+      .set("int", 1)
+      .set("string", "str")
+      .build();
+    StructuredRecord byIndex = StructuredRecord.builder(SCHEMA)
+      .set(0, 1)
+      .convertAndSet(1, "str")
+      .build();
+
+    Assert.assertEquals(byName, byIndex);
+    Assert.assertEquals(byName.hashCode(), byIndex.hashCode());
+    for (StructuredRecord record : new StructuredRecord[] { byName, byIndex }) {
+      Assert.assertEquals(1, (int) record.get("int"));
+      Assert.assertEquals(1, (int) record.get(0));
+      Assert.assertEquals("str", record.get("string"));
+      Assert.assertEquals("str", record.get(1));
+      Assert.assertNull(record.get("long"));
+      Assert.assertNull(record.get(2));
+      Assert.assertNull(record.get("unknown"));
+    }
+  }
+
+  @Test(expected = UnexpectedFormatException.class)
+  public void testMissingField() {
+    StructuredRecord.builder(SCHEMA).set(0, 1).build();
+  }
+
+  @Test(expected = UnexpectedFormatException.class)
+  public void testInvalidIndex() {
+    StructuredRecord.builder(SCHEMA).set(3, 1);
+  }
+
+  @Test(expected = UnexpectedFormatException.class)
+  public void testNullValue() {
+    StructuredRecord.builder(SCHEMA).set(1, null);
+  }
+}
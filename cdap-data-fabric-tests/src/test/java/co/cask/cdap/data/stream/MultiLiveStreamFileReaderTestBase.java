@@ -29,6 +29,7 @@ import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
 import org.junit.Assert;
@@ -39,6 +40,7 @@ import org.junit.rules.TemporaryFolder;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -262,6 +264,72 @@ public abstract class MultiLiveStreamFileReaderTestBase {
     reader.close();
   }
 
+  @Test
+  public void testPrefetchOffsets() throws Exception {
+    String streamName = "prefetchOffsets";
+    StreamId streamId = NamespaceId.DEFAULT.stream(streamName);
+    Location location = getLocationFactory().create(streamName);
+    location.mkdirs();
+
+    // Create a stream with 1 partition.
+    StreamConfig config = new StreamConfig(streamId, Long.MAX_VALUE, 10000, Long.MAX_VALUE, location, null, 1000);
+
+    // Write out 200 events in 5 files, with interleaving timestamps
+    for (int i = 0; i < 5; i++) {
+      FileWriter<StreamEvent> writer = createWriter(config, "bucket" + i);
+      for (int j = 0; j < 200; j++) {
+        long timestamp = j * 5 + i;
+        writer.append(StreamFileTestUtils.createEvent(timestamp, "Testing " + timestamp));
+      }
+      writer.close();
+    }
+
+    List<StreamFileOffset> sources = Lists.newArrayList();
+    Location partitionLocation = StreamUtils.createPartitionLocation(config.getLocation(), 0, Long.MAX_VALUE);
+    for (int i = 0; i < 5; i++) {
+      Location eventFile = StreamUtils.createStreamLocation(partitionLocation, "bucket" + i, 0, StreamFileType.EVENT);
+      sources.add(new StreamFileOffset(eventFile, 0L, 0));
+    }
+
+    // Read 250 events with a small prefetch buffer, so that the background readers are blocked on the buffer
+    MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(config, sources, 20);
+    reader.initialize();
+    List<StreamEvent> events = Lists.newArrayList();
+    while (events.size() < 250) {
+      Assert.assertTrue(reader.read(events, 250 - events.size(), 5, TimeUnit.SECONDS) > 0);
+    }
+
+    // Events that are read ahead but not returned are not covered by the offsets, hence are read again
+    sources = ImmutableList.copyOf(
+      Iterables.transform(reader.getPosition(), new Function<StreamFileOffset, StreamFileOffset>() {
+      @Override
+      public StreamFileOffset apply(StreamFileOffset input) {
+        return new StreamFileOffset(input);
+      }
+    }));
+    reader.close();
+
+    reader = new MultiLiveStreamFileReader(config, sources, 20);
+    reader.initialize();
+    while (events.size() < 1000) {
+      Assert.assertTrue(reader.read(events, 1000 - events.size(), 5, TimeUnit.SECONDS) > 0);
+    }
+    Assert.assertEquals(0, reader.read(events, 10, 1, TimeUnit.SECONDS));
+    reader.close();
+
+    // Each event is read exactly once, and events from the same file are read in order
+    long[] lastTimestamps = new long[] { -1L, -1L, -1L, -1L, -1L };
+    Set<Long> timestamps = Sets.newHashSet();
+    for (StreamEvent event : events) {
+      long timestamp = event.getTimestamp();
+      Assert.assertEquals("Testing " + timestamp, Charsets.UTF_8.decode(event.getBody()).toString());
+      Assert.assertTrue(timestamps.add(timestamp));
+      Assert.assertTrue(timestamp > lastTimestamps[(int) (timestamp % 5)]);
+      lastTimestamps[(int) (timestamp % 5)] = timestamp;
+    }
+    Assert.assertEquals(1000, timestamps.size());
+  }
+
   private FileWriter<StreamEvent> createWriter(StreamConfig config, String prefix) {
     return new TimePartitionedStreamFileWriter(config.getLocation(), config.getPartitionDuration(),
                                                prefix, config.getIndexInterval(), config.getStreamId(),
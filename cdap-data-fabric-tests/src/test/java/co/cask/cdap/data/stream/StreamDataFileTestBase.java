@@ -38,6 +38,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.io.Closeables;
 import com.google.common.io.Flushables;
@@ -55,6 +56,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
@@ -994,6 +996,193 @@ public abstract class StreamDataFileTestBase {
     reader.close();
   }
 
+  @Test
+  public void testBlockCodec() throws Exception {
+    Map<StreamBlockCodec, Long> fileSizes = Maps.newHashMap();
+    for (StreamBlockCodec codec : StreamBlockCodec.values()) {
+      Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+
+      StreamDataFileWriter writer = new StreamDataFileWriter(
+        Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10L,
+        ImmutableMap.of(StreamDataFileConstants.Property.Key.BLOCK_CODEC, codec.getName()));
+
+      // Write 10 events for each of 100 timestamps, followed by a block of 2000 empty events, which compresses
+      // to less bytes than the number of events in it
+      for (int i = 0; i < 100; i++) {
+        for (int j = 0; j < 10; j++) {
+          writer.append(StreamFileTestUtils.createEvent(i, "Testing " + i));
+        }
+      }
+      for (int i = 0; i < 2000; i++) {
+        writer.append(StreamFileTestUtils.createEvent(100, ""));
+      }
+      writer.close();
+      fileSizes.put(codec, eventFile.length());
+
+      // Read all events. Positions must be increasing.
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+      List<PositionStreamEvent> events = Lists.newArrayList();
+      Assert.assertEquals(3000, reader.read(events, 3000, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(-1, reader.read(Lists.<PositionStreamEvent>newArrayList(), 1, 0, TimeUnit.SECONDS));
+      reader.close();
+
+      long lastPosition = -1L;
+      for (int i = 0; i < events.size(); i++) {
+        PositionStreamEvent event = events.get(i);
+        String body = i < 1000 ? "Testing " + (i / 10) : "";
+        Assert.assertEquals(body, Charsets.UTF_8.decode(event.getBody().duplicate()).toString());
+        Assert.assertTrue(event.getStart() > lastPosition);
+        lastPosition = event.getStart();
+      }
+
+      // Reading from the position of an event or right after the previous event gives the event
+      for (int i = 1; i < events.size(); i += 7) {
+        PositionStreamEvent event = events.get(i);
+        for (long offset : new long[] { event.getStart(), events.get(i - 1).getStart() + 1 }) {
+          reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                         Locations.newInputSupplier(indexFile), offset);
+          List<PositionStreamEvent> readEvents = Lists.newArrayList();
+          Assert.assertEquals(1, reader.read(readEvents, 1, 0, TimeUnit.SECONDS));
+          reader.close();
+          Assert.assertEquals(event.getStart(), readEvents.get(0).getStart());
+          Assert.assertEquals(event.getBody(), readEvents.get(0).getBody());
+        }
+      }
+
+      // Seeking by time uses the index
+      reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                      Locations.newInputSupplier(indexFile), 55L);
+      List<PositionStreamEvent> readEvents = Lists.newArrayList();
+      Assert.assertEquals(1, reader.read(readEvents, 1, 0, TimeUnit.SECONDS));
+      reader.close();
+      Assert.assertEquals(events.get(550).getStart(), readEvents.get(0).getStart());
+    }
+
+    Assert.assertTrue(fileSizes.get(StreamBlockCodec.DEFLATE) < fileSizes.get(StreamBlockCodec.NONE));
+    Assert.assertTrue(fileSizes.get(StreamBlockCodec.SNAPPY) < fileSizes.get(StreamBlockCodec.NONE));
+  }
+
+  @Test
+  public void testBlockReader() throws Exception {
+    for (StreamBlockCodec codec : StreamBlockCodec.values()) {
+      Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+
+      StreamDataFileWriter writer = new StreamDataFileWriter(
+        Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10L,
+        ImmutableMap.of(StreamDataFileConstants.Property.Key.BLOCK_CODEC, codec.getName(),
+                        StreamDataFileConstants.Property.Key.EVENT_HEADER_PREFIX + "k", "v"));
+
+      // Write 10 events for each of 100 timestamps
+      for (int i = 0; i < 100; i++) {
+        for (int j = 0; j < 10; j++) {
+          writer.append(StreamFileTestUtils.createEvent(i, "Testing " + i + " " + j));
+        }
+      }
+      writer.close();
+
+      // Copy the blocks in [35, 60), which must be a stream file that has the events in the time range
+      Location copyFile = dir.getTempFile(".dat");
+      StreamDataFileBlockReader blockReader = StreamDataFileBlockReader.open(
+        Locations.newInputSupplier(eventFile), indexFile, StreamDataFileIndexCache.getDefault(), 35L);
+      try (OutputStream output = copyFile.getOutputStream()) {
+        Assert.assertTrue(blockReader.hasBlock(60L));
+        blockReader.writeHeader(output);
+        while (blockReader.copyBlock(60L, output)) {
+          // Keep copying
+        }
+        blockReader.writeEndMarker(output);
+      } finally {
+        blockReader.close();
+      }
+
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(copyFile));
+      List<PositionStreamEvent> events = Lists.newArrayList();
+      Assert.assertEquals(250, reader.read(events, 1000, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(-1, reader.read(Lists.<PositionStreamEvent>newArrayList(), 1, 0, TimeUnit.SECONDS));
+      reader.close();
+
+      for (int i = 0; i < events.size(); i++) {
+        PositionStreamEvent event = events.get(i);
+        int timestamp = 35 + i / 10;
+        Assert.assertEquals(timestamp, event.getTimestamp());
+        Assert.assertEquals("Testing " + timestamp + " " + (i % 10),
+                            Charsets.UTF_8.decode(event.getBody().duplicate()).toString());
+        Assert.assertEquals("v", event.getHeaders().get("k"));
+      }
+
+      // No block in a time range after the last event
+      blockReader = StreamDataFileBlockReader.open(Locations.newInputSupplier(eventFile), null,
+                                                   StreamDataFileIndexCache.getDefault(), 100L);
+      try {
+        Assert.assertFalse(blockReader.hasBlock(Long.MAX_VALUE));
+      } finally {
+        blockReader.close();
+      }
+    }
+  }
+
+  @Test
+  public void testIndexCache() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    // Write 10 events for each of 100 timestamps, with an index entry for every timestamp
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile), 1L);
+    for (int i = 0; i < 100; i++) {
+      for (int j = 0; j < 10; j++) {
+        writer.append(StreamFileTestUtils.createEvent(i, "Testing " + i));
+      }
+    }
+    writer.flush();
+
+    StreamDataFileIndexCache cache = new StreamDataFileIndexCache(CConfiguration.create(), null);
+
+    // Readers of the same index share the cached index, and seek to the same events as without the cache
+    for (long ts : new long[] { 10L, 33L, 99L }) {
+      List<PositionStreamEvent> expected = Lists.newArrayList();
+      try (StreamDataFileReader reader = StreamDataFileReader.createByStartTime(
+        Locations.newInputSupplier(eventFile), Locations.newInputSupplier(indexFile), ts)) {
+        reader.read(expected, 1, 0, TimeUnit.SECONDS);
+      }
+      List<PositionStreamEvent> events = Lists.newArrayList();
+      try (StreamDataFileReader reader = StreamDataFileReader.createByStartTime(
+        Locations.newInputSupplier(eventFile), indexFile, cache, ts)) {
+        reader.read(events, 1, 0, TimeUnit.SECONDS);
+      }
+      Assert.assertEquals(ts, events.get(0).getTimestamp());
+      Assert.assertEquals(expected.get(0).getStart(), events.get(0).getStart());
+    }
+    Assert.assertEquals(1, cache.getStats().missCount());
+    Assert.assertEquals(2, cache.getStats().hitCount());
+
+    // An evicted index stays usable until the last reader releases it
+    StreamDataFileIndex index = cache.getIndex(indexFile);
+    cache.invalidateAll();
+    Assert.assertFalse(index.isReleased());
+    Assert.assertTrue(index.floorPositionByTime(50L) > 0);
+    index.release();
+    Assert.assertTrue(index.isReleased());
+
+    // Index that grows is reloaded
+    for (int i = 0; i < 10; i++) {
+      writer.append(StreamFileTestUtils.createEvent(100, "Testing " + 100));
+    }
+    writer.close();
+    List<PositionStreamEvent> events = Lists.newArrayList();
+    try (StreamDataFileReader reader = StreamDataFileReader.createByStartTime(
+      Locations.newInputSupplier(eventFile), indexFile, cache, 100L)) {
+      Assert.assertEquals(10, reader.read(events, 100, 0, TimeUnit.SECONDS));
+    }
+    Assert.assertEquals(100L, events.get(0).getTimestamp());
+    Assert.assertEquals(2, cache.getStats().missCount());
+  }
+
   private FileWriter<StreamEvent> createWriter(StreamConfig config, String prefix) {
     return new TimePartitionedStreamFileWriter(config.getLocation(), config.getPartitionDuration(),
                                                prefix, config.getIndexInterval(), config.getStreamId(),
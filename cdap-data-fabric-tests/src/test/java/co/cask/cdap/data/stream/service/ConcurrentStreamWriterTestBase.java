@@ -20,6 +20,8 @@ import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.metrics.Histogram;
+import co.cask.cdap.common.metrics.LatencyHistogram;
 import co.cask.cdap.common.namespace.NamespacedLocationFactory;
 import co.cask.cdap.common.security.DefaultImpersonator;
 import co.cask.cdap.common.security.Impersonator;
@@ -94,14 +96,23 @@ public abstract class ConcurrentStreamWriterTestBase {
 
   @Test
   public void testConcurrentWrite() throws Exception {
-    final String streamName = "testConcurrentWrite";
+    testConcurrentWrite("testConcurrentWrite", false);
+  }
+
+  @Test
+  public void testGroupCommitWrite() throws Exception {
+    testConcurrentWrite("testGroupCommitWrite", true);
+  }
+
+  private void testConcurrentWrite(String streamName, boolean groupCommit) throws Exception {
     NamespaceId namespace = new NamespaceId("namespace");
     StreamId streamId = namespace.stream(streamName);
     StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000);
     int threads = Runtime.getRuntime().availableProcessors() * 4;
 
     StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
-    final ConcurrentStreamWriter streamWriter = createStreamWriter(streamId, streamAdmin, threads, fileWriterFactory);
+    final ConcurrentStreamWriter streamWriter = createStreamWriter(streamId, streamAdmin, threads, fileWriterFactory,
+                                                                   groupCommit);
 
     // Starts n threads to write events through stream writer, each thread write 1000 events
     final int msgPerThread = 1000;
@@ -210,11 +221,19 @@ public abstract class ConcurrentStreamWriterTestBase {
   private ConcurrentStreamWriter createStreamWriter(StreamId streamId, StreamAdmin streamAdmin,
                                                     int threads, StreamFileWriterFactory writerFactory)
     throws Exception {
+    return createStreamWriter(streamId, streamAdmin, threads, writerFactory, false);
+  }
+
+  private ConcurrentStreamWriter createStreamWriter(StreamId streamId, StreamAdmin streamAdmin,
+                                                    int threads, StreamFileWriterFactory writerFactory,
+                                                    boolean groupCommit) throws Exception {
     StreamConfig streamConfig = streamAdmin.getConfig(streamId);
     streamConfig.getLocation().mkdirs();
 
+    // Use a small batch size in the group commit mode, so that requests are written in multiple batches
     return new ConcurrentStreamWriter(COORDINATOR_CLIENT, streamAdmin,
-                                      writerFactory, threads, new TestMetricsCollectorFactory(), impersonator);
+                                      writerFactory, threads, new TestMetricsCollectorFactory(), impersonator,
+                                      groupCommit, 1L, 4096);
   }
 
   private Runnable createWriterTask(final StreamId streamId,
@@ -353,6 +372,12 @@ public abstract class ConcurrentStreamWriterTestBase {
         public void emitMetrics(long bytesWritten, long eventsWritten) {
           // No-op
         }
+
+        @Override
+        public void emitGroupCommitMetrics(Histogram batchBytes, LatencyHistogram queueLatency,
+                                           LatencyHistogram flushLatency) {
+          // No-op
+        }
       };
     }
   }
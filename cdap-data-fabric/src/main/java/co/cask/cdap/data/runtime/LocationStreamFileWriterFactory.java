@@ -71,7 +71,7 @@ public final class LocationStreamFileWriterFactory implements StreamFileWriterFa
 
       return new TimePartitionedStreamFileWriter(baseLocation, config.getPartitionDuration(),
                                                  filePrefix, config.getIndexInterval(),
-                                                 config.getStreamId(), impersonator);
+                                                 config.getStreamId(), impersonator, config.getBlockCodec());
     } catch (Exception e) {
       Throwables.propagateIfPossible(e, IOException.class);
       throw new IOException(e);
@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.common.stream.StreamEventDataCodec;
+
+import javax.annotation.Nullable;
+
+/**
+ * A stream event that may carry its data already encoded with {@link StreamEventDataCodec}, in which case the
+ * {@link StreamDataFileWriter} copies the encoded bytes into the data block instead of encoding the event.
+ */
+public interface EncodedStreamEvent {
+
+  /**
+   * Returns the encoded event data, or {@code null} if the event data is not encoded.
+   */
+  @Nullable
+  byte[] getEncodedData();
+}
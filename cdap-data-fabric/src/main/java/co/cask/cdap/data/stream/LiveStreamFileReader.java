@@ -41,6 +41,7 @@ public final class LiveStreamFileReader extends LiveFileReader<PositionStreamEve
   private final StreamFileOffset beginOffset;
   private final StreamConfig streamConfig;
   private final long maxFileCheckInterval;
+  private final StreamDataFileIndexCache indexCache;
   private StreamPositionTransformFileReader reader;
   private int retries;
   private long nextCheckTime = 0;
@@ -67,10 +68,24 @@ public final class LiveStreamFileReader extends LiveFileReader<PositionStreamEve
    * @param maxFileCheckInterval maximum interval in milliseconds for checking for new stream file.
    */
   public LiveStreamFileReader(StreamConfig streamConfig, StreamFileOffset beginOffset, long maxFileCheckInterval) {
+    this(streamConfig, beginOffset, maxFileCheckInterval, StreamDataFileIndexCache.getDefault());
+  }
+
+  /**
+   * Creates a new file reader.
+   *
+   * @param streamConfig the stream configuration.
+   * @param beginOffset the offset information to begin with.
+   * @param maxFileCheckInterval maximum interval in milliseconds for checking for new stream file.
+   * @param indexCache the cache to get the stream file indexes from.
+   */
+  public LiveStreamFileReader(StreamConfig streamConfig, StreamFileOffset beginOffset, long maxFileCheckInterval,
+                              StreamDataFileIndexCache indexCache) {
     this.streamConfig = streamConfig;
     this.beginOffset = beginOffset;
     this.maxFileCheckInterval = (maxFileCheckInterval <= 0) ? Constants.Stream.NEW_FILE_CHECK_INTERVAL
                                                             : maxFileCheckInterval;
+    this.indexCache = indexCache;
   }
 
   @Nullable
@@ -78,7 +93,7 @@ public final class LiveStreamFileReader extends LiveFileReader<PositionStreamEve
   protected FileReader<PositionStreamEvent, StreamFileOffset> renewReader() throws IOException {
     // If no reader has yet opened, start with the beginning offset.
     if (reader == null) {
-      reader = new StreamPositionTransformFileReader(beginOffset);
+      reader = new StreamPositionTransformFileReader(beginOffset, indexCache);
       reader.initialize();
       return reader;
     }
@@ -141,7 +156,7 @@ public final class LiveStreamFileReader extends LiveFileReader<PositionStreamEve
     }
 
     StreamPositionTransformFileReader reader =
-      new StreamPositionTransformFileReader(new StreamFileOffset(eventLocation, 0L, generation));
+      new StreamPositionTransformFileReader(new StreamFileOffset(eventLocation, 0L, generation), indexCache);
     reader.initialize();
     return reader;
   }
@@ -154,9 +169,10 @@ public final class LiveStreamFileReader extends LiveFileReader<PositionStreamEve
     private final Location partitionLocation;
     private StreamFileOffset offset;
 
-    private StreamPositionTransformFileReader(StreamFileOffset offset) throws IOException {
+    private StreamPositionTransformFileReader(StreamFileOffset offset,
+                                              StreamDataFileIndexCache indexCache) throws IOException {
       this.reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(offset.getEventLocation()),
-                                                          Locations.newInputSupplier(offset.getIndexLocation()),
+                                                          offset.getIndexLocation(), indexCache,
                                                           offset.getOffset());
       this.offset = new StreamFileOffset(offset);
       this.partitionLocation = Locations.getParent(offset.getEventLocation());
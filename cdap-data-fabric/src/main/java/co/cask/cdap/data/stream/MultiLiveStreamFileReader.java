@@ -15,6 +15,7 @@
  */
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.data.file.FileReader;
 import co.cask.cdap.data.file.PositionReporter;
@@ -50,10 +51,37 @@ public final class MultiLiveStreamFileReader implements FileReader<StreamEventOf
   private final Iterable<StreamFileOffset> offsetsView;
 
   public MultiLiveStreamFileReader(StreamConfig streamConfig, Iterable<? extends StreamFileOffset> offsets) {
+    this(streamConfig, offsets, 0);
+  }
+
+  /**
+   * Creates a reader that reads each stream file with a {@link PrefetchingStreamFileReader} if the prefetch size
+   * is larger than zero.
+   *
+   * @param streamConfig configuration of the stream
+   * @param offsets offsets of the stream files to read from
+   * @param prefetchSize maximum number of events read ahead from each stream file, or {@code 0} to not read ahead
+   */
+  public MultiLiveStreamFileReader(StreamConfig streamConfig, Iterable<? extends StreamFileOffset> offsets,
+                                   int prefetchSize) {
+    this(streamConfig, offsets, prefetchSize, StreamDataFileIndexCache.getDefault());
+  }
+
+  /**
+   * Creates a reader that reads each stream file with a {@link PrefetchingStreamFileReader} if the prefetch size
+   * is larger than zero.
+   *
+   * @param streamConfig configuration of the stream
+   * @param offsets offsets of the stream files to read from
+   * @param prefetchSize maximum number of events read ahead from each stream file, or {@code 0} to not read ahead
+   * @param indexCache the cache to get the stream file indexes from
+   */
+  public MultiLiveStreamFileReader(StreamConfig streamConfig, Iterable<? extends StreamFileOffset> offsets,
+                                   int prefetchSize, StreamDataFileIndexCache indexCache) {
     this.allSources = Sets.newTreeSet();
 
     for (StreamFileOffset source : offsets) {
-      StreamEventSource eventSource = new StreamEventSource(streamConfig, source);
+      StreamEventSource eventSource = new StreamEventSource(streamConfig, source, prefetchSize, indexCache);
       allSources.add(eventSource);
     }
 
@@ -165,8 +193,11 @@ public final class MultiLiveStreamFileReader implements FileReader<StreamEventOf
     private StreamFileOffset currentOffset;
     private StreamFileOffset nextOffset;
 
-    private StreamEventSource(StreamConfig streamConfig, StreamFileOffset beginOffset) {
-      this.reader = new LiveStreamFileReader(streamConfig, beginOffset);
+    private StreamEventSource(StreamConfig streamConfig, StreamFileOffset beginOffset, int prefetchSize,
+                              StreamDataFileIndexCache indexCache) {
+      LiveStreamFileReader liveReader = new LiveStreamFileReader(streamConfig, beginOffset,
+                                                                 Constants.Stream.NEW_FILE_CHECK_INTERVAL, indexCache);
+      this.reader = prefetchSize > 0 ? new PrefetchingStreamFileReader(liveReader, prefetchSize) : liveReader;
       this.events = Lists.newArrayListWithCapacity(1);
       this.currentOffset = new StreamFileOffset(beginOffset);
       this.nextOffset = beginOffset;
@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.data.file.FileReader;
+import co.cask.cdap.data.file.ReadFilter;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link FileReader} that reads stream events from another {@link FileReader} in a background thread into a
+ * bounded buffer, so that reads are served from memory. The background thread reads ahead until the buffer is full.
+ *
+ * The {@link ReadFilter} given to the read methods is applied when events are taken from the buffer, and
+ * {@link #getPosition()} is the position right after the last event taken from the buffer, including the events
+ * rejected by the filter, hence the position only covers events that are returned by this reader.
+ * Events that are read ahead but not yet returned when the reader is closed are read again by a new reader created
+ * with the position.
+ */
+@NotThreadSafe
+public final class PrefetchingStreamFileReader implements FileReader<PositionStreamEvent, StreamFileOffset> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PrefetchingStreamFileReader.class);
+  private static final long READ_TIMEOUT_MS = 100L;
+
+  private final FileReader<PositionStreamEvent, StreamFileOffset> reader;
+  private final BlockingQueue<Entry> buffer;
+  private final ExecutorService executor;
+  private StreamFileOffset position;
+  private IOException failure;
+  private volatile boolean stopped;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param reader the reader to read events from. This class is responsible for closing the reader.
+   * @param bufferSize maximum number of events read ahead
+   */
+  public PrefetchingStreamFileReader(FileReader<PositionStreamEvent, StreamFileOffset> reader, int bufferSize) {
+    Preconditions.checkArgument(bufferSize > 0, "Buffer size must be > 0.");
+    this.reader = reader;
+    this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    this.executor = Executors.newSingleThreadExecutor(Threads.createDaemonThreadFactory("stream-prefetch-%d"));
+  }
+
+  @Override
+  public void initialize() throws IOException {
+    if (position != null) {
+      return;
+    }
+    reader.initialize();
+    position = reader.getPosition();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        prefetch();
+      }
+    });
+  }
+
+  @Override
+  public int read(Collection<? super PositionStreamEvent> events, int maxEvents,
+                  long timeout, TimeUnit unit) throws IOException, InterruptedException {
+    return read(events, maxEvents, timeout, unit, ReadFilter.ALWAYS_ACCEPT);
+  }
+
+  @Override
+  public int read(Collection<? super PositionStreamEvent> events, int maxEvents,
+                  long timeout, TimeUnit unit, ReadFilter readFilter) throws IOException, InterruptedException {
+    if (failure != null) {
+      throw failure;
+    }
+    initialize();
+
+    long timeoutNano = unit.toNanos(timeout);
+    long startTime = System.nanoTime();
+    int eventCount = 0;
+
+    while (eventCount < maxEvents) {
+      Entry entry = buffer.poll();
+      if (entry == null) {
+        long waitNano = timeoutNano - (System.nanoTime() - startTime);
+        if (eventCount > 0 || waitNano <= 0) {
+          break;
+        }
+        entry = buffer.poll(waitNano, TimeUnit.NANOSECONDS);
+        if (entry == null) {
+          break;
+        }
+      }
+
+      if (entry.failure != null) {
+        failure = entry.failure;
+        if (eventCount > 0) {
+          break;
+        }
+        throw failure;
+      }
+
+      position = entry.position;
+      if (accept(readFilter, entry.event)) {
+        events.add(entry.event);
+        eventCount++;
+      }
+    }
+    return eventCount;
+  }
+
+  @Override
+  public void close() throws IOException {
+    stopped = true;
+    executor.shutdownNow();
+    try {
+      // Wait for the background read to finish before closing the underlying reader
+      if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+        LOG.warn("Timeout in stopping the prefetch thread of stream file reader at {}", position);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      buffer.clear();
+      reader.close();
+    }
+  }
+
+  @Override
+  public StreamFileOffset getPosition() {
+    Preconditions.checkState(position != null, "Reader position unknown.");
+    return position;
+  }
+
+  /**
+   * Reads events one by one, so that the position after each event can be recorded, until the reader is closed or
+   * failed to read.
+   */
+  private void prefetch() {
+    List<PositionStreamEvent> events = Lists.newArrayListWithCapacity(1);
+    try {
+      while (!stopped) {
+        long startTime = System.currentTimeMillis();
+        int eventCount = reader.read(events, 1, READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (eventCount > 0) {
+          buffer.put(new Entry(events.get(0), reader.getPosition(), null));
+          events.clear();
+        } else {
+          // The reader can return without waiting if the file is not yet created
+          long sleepMs = READ_TIMEOUT_MS - (System.currentTimeMillis() - startTime);
+          if (sleepMs > 0) {
+            TimeUnit.MILLISECONDS.sleep(sleepMs);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      // Interrupted by close
+    } catch (Throwable t) {
+      if (stopped) {
+        return;
+      }
+      LOG.debug("Failed to prefetch stream events", t);
+      IOException failure = t instanceof IOException ? (IOException) t : new IOException(t);
+      try {
+        buffer.put(new Entry(null, null, failure));
+      } catch (InterruptedException e) {
+        // Interrupted by close
+      }
+    }
+  }
+
+  private boolean accept(ReadFilter readFilter, PositionStreamEvent event) {
+    readFilter.reset();
+    return readFilter.acceptTimestamp(event.getTimestamp()) && readFilter.acceptOffset(event.getStart());
+  }
+
+  /**
+   * An event read ahead, together with the reader position after it, or the failure of the background read.
+   */
+  private static final class Entry {
+    private final PositionStreamEvent event;
+    private final StreamFileOffset position;
+    private final IOException failure;
+
+    private Entry(@Nullable PositionStreamEvent event, @Nullable StreamFileOffset position,
+                  @Nullable IOException failure) {
+      this.event = event;
+      this.position = position;
+      this.failure = failure;
+    }
+  }
+}
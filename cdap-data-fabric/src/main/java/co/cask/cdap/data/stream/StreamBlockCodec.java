@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codecs for compressing the data blocks in stream files. The codec used is recorded in the file properties
+ * under the {@link StreamDataFileConstants.Property.Key#BLOCK_CODEC} key.
+ */
+public enum StreamBlockCodec {
+
+  /**
+   * Data blocks are not compressed.
+   */
+  NONE("none") {
+    @Override
+    void compress(byte[] input, int length, OutputStream output) throws IOException {
+      output.write(input, 0, length);
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException {
+      if (length != outputLength) {
+        throw new IOException("Expected block of " + outputLength + " bytes, but got " + length + " bytes");
+      }
+      System.arraycopy(input, offset, output, 0, length);
+    }
+  },
+
+  /**
+   * Data blocks are compressed with the JDK {@link Deflater}.
+   */
+  DEFLATE("deflate") {
+    @Override
+    void compress(byte[] input, int length, OutputStream output) throws IOException {
+      Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+      try {
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+        byte[] buffer = new byte[Math.min(length + 64, 64 * 1024)];
+        while (!deflater.finished()) {
+          int len = deflater.deflate(buffer);
+          output.write(buffer, 0, len);
+        }
+      } finally {
+        deflater.end();
+      }
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException {
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(input, offset, length);
+        int bytesInflated = 0;
+        while (bytesInflated < outputLength && !inflater.finished()) {
+          int len = inflater.inflate(output, bytesInflated, outputLength - bytesInflated);
+          if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          bytesInflated += len;
+        }
+        if (bytesInflated != outputLength) {
+          throw new IOException("Expected to inflate " + outputLength + " bytes, but only got " + bytesInflated);
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupted deflate block", e);
+      } finally {
+        inflater.end();
+      }
+    }
+  },
+
+  /**
+   * Data blocks are compressed with Snappy.
+   */
+  SNAPPY("snappy") {
+    @Override
+    void compress(byte[] input, int length, OutputStream output) throws IOException {
+      byte[] buffer = new byte[Snappy.maxCompressedLength(length)];
+      int len = Snappy.compress(input, 0, length, buffer, 0);
+      output.write(buffer, 0, len);
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException {
+      if (Snappy.uncompressedLength(input, offset, length) != outputLength) {
+        throw new IOException("Snappy block does not uncompress to the expected " + outputLength + " bytes");
+      }
+      Snappy.uncompress(input, offset, length, output, 0);
+    }
+  };
+
+  private final String name;
+
+  StreamBlockCodec(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns the name of the codec as stored in the file properties.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Compresses the given bytes.
+   *
+   * @param input buffer containing the bytes to compress, starting at offset {@code 0}
+   * @param length number of bytes to compress
+   * @param output stream to write the compressed bytes to
+   */
+  abstract void compress(byte[] input, int length, OutputStream output) throws IOException;
+
+  /**
+   * Decompresses a block that was compressed by {@link #compress(byte[], int, OutputStream)}.
+   *
+   * @param input buffer containing the compressed block
+   * @param offset offset in the input buffer where the compressed block starts
+   * @param length size of the compressed block
+   * @param output buffer to decompress into, starting at offset {@code 0}
+   * @param outputLength the expected size of the decompressed block
+   * @throws IOException if the block is corrupted or doesn't decompress to the expected size
+   */
+  abstract void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException;
+
+  /**
+   * Returns the codec of the given name.
+   *
+   * @throws IllegalArgumentException if there is no codec of the given name
+   */
+  public static StreamBlockCodec fromName(String name) {
+    for (StreamBlockCodec codec : values()) {
+      if (codec.name.equalsIgnoreCase(name)) {
+        return codec;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported stream block codec '" + name + "'");
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.common.io.SeekableInputStream;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.InputSupplier;
+import com.google.common.primitives.Longs;
+import org.apache.twill.filesystem.Location;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Copies the data blocks of a stream file in a time range to an {@link OutputStream} without decoding the events
+ * in them. The output is itself a stream file in the version 2 format, as described in {@link StreamDataFileWriter}:
+ *
+ * <ul>
+ *   <li>The header is "E" "2" followed by the properties of the file, excluding the codec</li>
+ *   <li>Compressed data blocks are decompressed</li>
+ *   <li>If the file has a timestamp for all events, it replaces the timestamps of the data blocks</li>
+ *   <li>The end marker is {@code -1}, as the file may still be written to</li>
+ * </ul>
+ *
+ * The first data block copied is the first one with a timestamp that is not smaller than the start time, which is
+ * found by seeking through the index of the file. Since all events in a data block have the same timestamp, only
+ * the events in the time range are copied. A data block that is still being written is not copied.
+ */
+@NotThreadSafe
+public final class StreamDataFileBlockReader implements Closeable {
+
+  private static final byte[] END_MARKER = Longs.toByteArray(-1L);
+
+  private final SeekableInputStream eventInput;
+  private final Decoder decoder;
+  private final byte[] timestampBuffer;
+  private Map<String, String> properties;
+  private StreamBlockCodec codec;
+  private long templateTimestamp;
+  private byte[] blockBuffer;
+  private byte[] rawBuffer;
+  // Timestamp of the data block read ahead while seeking, or -1 if there is none
+  private long nextTimestamp;
+  private int nextLength;
+  private boolean eof;
+
+  /**
+   * Opens a stream file for copying the data blocks with timestamp that is larger than or equal to the given
+   * start time.
+   *
+   * @param eventInputSupplier provider of the stream to read the stream file
+   * @param indexLocation location of the index of the stream file, or {@code null} to scan the file from the
+   *                      beginning
+   * @param indexCache the cache to get the index from
+   * @param startTime timestamp in milliseconds of the first data block to copy
+   * @throws IOException if failed to open the file or to read its header
+   */
+  public static StreamDataFileBlockReader open(InputSupplier<? extends SeekableInputStream> eventInputSupplier,
+                                               @Nullable Location indexLocation,
+                                               StreamDataFileIndexCache indexCache,
+                                               long startTime) throws IOException {
+    SeekableInputStream eventInput = eventInputSupplier.getInput();
+    try {
+      StreamDataFileBlockReader reader = new StreamDataFileBlockReader(eventInput);
+      reader.init(indexLocation, indexCache, startTime);
+      return reader;
+    } catch (IOException e) {
+      eventInput.close();
+      throw e;
+    }
+  }
+
+  private StreamDataFileBlockReader(SeekableInputStream eventInput) {
+    this.eventInput = eventInput;
+    this.decoder = new BinaryDecoder(eventInput);
+    this.timestampBuffer = new byte[Bytes.SIZEOF_LONG];
+    this.blockBuffer = new byte[0];
+    this.rawBuffer = new byte[0];
+    this.nextTimestamp = -1L;
+  }
+
+  /**
+   * Writes the header of the stream file.
+   */
+  public void writeHeader(OutputStream output) throws IOException {
+    output.write(StreamDataFileConstants.MAGIC_HEADER_V2);
+    StreamUtils.encodeMap(properties, new BinaryEncoder(output));
+  }
+
+  /**
+   * Returns whether there is a next data block with a timestamp smaller than the given end time.
+   *
+   * @param endTime timestamp in milliseconds that the data block timestamp must be smaller than (exclusive)
+   * @throws IOException if failed to read the data block header
+   */
+  public boolean hasBlock(long endTime) throws IOException {
+    return readBlockHeader() && nextTimestamp < endTime;
+  }
+
+  /**
+   * Copies the next data block if it has a timestamp smaller than the given end time.
+   *
+   * @param endTime timestamp in milliseconds that the data block timestamp must be smaller than (exclusive)
+   * @param output the stream to write the data block to
+   * @return {@code true} if a data block is copied, {@code false} if there are no more data blocks in the time range
+   * @throws IOException if failed to read or write the data block
+   */
+  public boolean copyBlock(long endTime, OutputStream output) throws IOException {
+    if (!hasBlock(endTime)) {
+      return false;
+    }
+    long timestamp = nextTimestamp;
+    int length = nextLength;
+    nextTimestamp = -1L;
+
+    if (blockBuffer.length < length) {
+      blockBuffer = new byte[length];
+    }
+    try {
+      ByteStreams.readFully(eventInput, blockBuffer, 0, length);
+    } catch (EOFException e) {
+      // The data block is still being written
+      eof = true;
+      return false;
+    }
+
+    byte[] block = blockBuffer;
+    if (codec != StreamBlockCodec.NONE) {
+      // Block content is <raw_length> <compressed_length> <compressed_events> <padding>
+      ByteArrayInputStream blockInput = new ByteArrayInputStream(blockBuffer, 0, length);
+      Decoder blockDecoder = new BinaryDecoder(blockInput);
+      int rawLength = blockDecoder.readInt();
+      int compressedLength = blockDecoder.readInt();
+      int offset = length - blockInput.available();
+      if (rawLength < 0 || compressedLength < 0 || compressedLength > length - offset) {
+        throw new IOException("Corrupted data block with timestamp " + timestamp);
+      }
+      if (rawBuffer.length < rawLength) {
+        rawBuffer = new byte[rawLength];
+      }
+      codec.decompress(blockBuffer, offset, compressedLength, rawBuffer, rawLength);
+      block = rawBuffer;
+      length = rawLength;
+    }
+
+    output.write(Bytes.toBytes(timestamp));
+    Encoder encoder = new BinaryEncoder(output);
+    encoder.writeInt(length);
+    output.write(block, 0, length);
+    return true;
+  }
+
+  /**
+   * Writes the end marker of the stream file.
+   */
+  public void writeEndMarker(OutputStream output) throws IOException {
+    output.write(END_MARKER);
+  }
+
+  @Override
+  public void close() throws IOException {
+    eventInput.close();
+  }
+
+  private void init(@Nullable Location indexLocation, StreamDataFileIndexCache indexCache,
+                    long startTime) throws IOException {
+    byte[] magic = new byte[StreamDataFileConstants.MAGIC_HEADER_SIZE];
+    ByteStreams.readFully(eventInput, magic);
+    if (!Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V1)
+      && !Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V2)
+      && !Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V3)) {
+      throw new IOException("Unsupported stream file format " + Bytes.toStringBinary(magic));
+    }
+
+    Map<String, String> fileProperties = StreamUtils.decodeMap(decoder);
+    String codecName = fileProperties.get(StreamDataFileConstants.Property.Key.BLOCK_CODEC);
+    try {
+      codec = codecName == null ? StreamBlockCodec.NONE : StreamBlockCodec.fromName(codecName);
+    } catch (IllegalArgumentException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    templateTimestamp = getTemplateTimestamp(fileProperties);
+
+    properties = Maps.newHashMap(fileProperties);
+    properties.remove(StreamDataFileConstants.Property.Key.BLOCK_CODEC);
+    properties.remove(StreamDataFileConstants.Property.Key.UNI_TIMESTAMP);
+
+    if (templateTimestamp >= 0) {
+      // All data blocks have the same timestamp, hence either all or none of them are in the time range
+      eof = templateTimestamp < startTime;
+      return;
+    }
+
+    if (indexLocation != null && startTime > 0) {
+      StreamDataFileIndex index = indexCache.getIndex(indexLocation);
+      long position;
+      try {
+        position = index.floorPositionByTime(startTime);
+      } finally {
+        index.release();
+      }
+      if (position > 0) {
+        eventInput.seek(position);
+      }
+    }
+
+    // Skip data blocks before the start time
+    while (readBlockHeader() && nextTimestamp < startTime) {
+      eventInput.seek(eventInput.getPos() + nextLength);
+      nextTimestamp = -1L;
+    }
+  }
+
+  /**
+   * Reads the timestamp and length of the next data block, unless it is already read.
+   *
+   * @return {@code true} if there is a next data block
+   */
+  private boolean readBlockHeader() throws IOException {
+    if (eof) {
+      return false;
+    }
+    if (nextTimestamp >= 0) {
+      return true;
+    }
+    try {
+      ByteStreams.readFully(eventInput, timestampBuffer);
+      long timestamp = Bytes.toLong(timestampBuffer);
+      if (timestamp < 0) {
+        eof = true;
+        return false;
+      }
+      nextLength = decoder.readInt();
+      nextTimestamp = templateTimestamp >= 0 ? templateTimestamp : timestamp;
+      return true;
+    } catch (EOFException e) {
+      // Reached the end of a file that is still being written
+      eof = true;
+      return false;
+    }
+  }
+
+  /**
+   * Returns the timestamp for all events in the file, or {@code -1} if events have their own timestamps.
+   */
+  private long getTemplateTimestamp(Map<String, String> properties) throws IOException {
+    String uniTimestamp = properties.get(StreamDataFileConstants.Property.Key.UNI_TIMESTAMP);
+    if (uniTimestamp == null) {
+      return -1L;
+    }
+    if (!StreamDataFileConstants.Property.Value.CLOSE_TIMESTAMP.equals(uniTimestamp)) {
+      return Long.parseLong(uniTimestamp);
+    }
+    // Seek to the end - 8 of the stream to read the close timestamp
+    long pos = eventInput.getPos();
+    eventInput.seek(eventInput.size() - Bytes.SIZEOF_LONG);
+    ByteStreams.readFully(eventInput, timestampBuffer);
+    eventInput.seek(pos);
+    return Math.abs(Bytes.toLong(timestampBuffer));
+  }
+}
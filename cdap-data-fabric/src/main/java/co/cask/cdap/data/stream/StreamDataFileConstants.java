@@ -25,6 +25,8 @@ public final class StreamDataFileConstants {
   static final int MAGIC_HEADER_SIZE = 2;
   static final byte[] MAGIC_HEADER_V1 = {'E', '1'};
   static final byte[] MAGIC_HEADER_V2 = {'E', '2'};
+  // Version 3 is the same as version 2, except that data blocks are compressed with the codec in the properties
+  static final byte[] MAGIC_HEADER_V3 = {'E', '3'};
 
   static final byte[] INDEX_MAGIC_HEADER_V1 = {'I', '1'};
 
@@ -40,6 +42,9 @@ public final class StreamDataFileConstants {
       // Key for the data block schema
       public static final String SCHEMA = "stream.schema";
 
+      // Key for the name of the StreamBlockCodec used to compress data blocks
+      public static final String BLOCK_CODEC = "stream.block.codec";
+
       // Key to indicate all events in the file is of the same timestamp
       public static final String UNI_TIMESTAMP = "stream.uni.timestamp";
 
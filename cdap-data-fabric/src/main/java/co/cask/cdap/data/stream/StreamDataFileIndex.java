@@ -15,37 +15,51 @@
  */
 package co.cask.cdap.data.stream;
 
-import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.io.BinaryDecoder;
-import com.google.common.collect.Maps;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
 import com.google.common.io.InputSupplier;
 import com.google.common.primitives.Longs;
-import it.unimi.dsi.fastutil.longs.LongArrayList;
-import it.unimi.dsi.fastutil.longs.LongList;
-import it.unimi.dsi.fastutil.longs.LongListIterator;
-import it.unimi.dsi.fastutil.longs.LongLists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 
 /**
  * This class is for loading stream index file and lookup of the index.
+ *
+ * The (timestamp, position) pairs of the index are kept outside of the heap, either in a direct buffer or, for local
+ * index files, in a read-only memory mapped buffer of the file, so that loaded indexes can be shared by readers
+ * through the {@link StreamDataFileIndexCache}. Instances are immutable and safe to use from multiple threads.
+ *
+ * The buffer is freed once every holder of the index called {@link #release()}. The creator of an index holds it, and
+ * each additional holder must acquire it with {@link #retain()}.
  */
 final class StreamDataFileIndex {
 
   private static final Logger LOG = LoggerFactory.getLogger(StreamDataFileIndex.class);
 
   private static final byte[] INDEX_MAGIC_HEADER = {'I', '1'};
+  private static final int ENTRY_SIZE = Longs.BYTES * 2;
 
-  // Parallel array list for holding timestamps and corresponding positions in the index.
-  private final LongList timestamps;
-  private final LongList positions;
+  // The buffer holding the index entries, kept for freeing it
+  private final ByteBuffer buffer;
+  // Interleaved timestamps and positions of the index entries.
+  private final LongBuffer entries;
+  private final int size;
+  private final AtomicInteger refCount;
 
   /**
    * Constructs with the given input.
@@ -53,24 +67,68 @@ final class StreamDataFileIndex {
    * @param indexInputSupplier Provides {@link InputStream} for reading the index.
    */
   StreamDataFileIndex(InputSupplier<? extends InputStream> indexInputSupplier) {
-    LongList timestamps;
-    LongList positions;
+    this(loadOrEmpty(indexInputSupplier));
+  }
 
-    // Load the whole index into memory.
-    try {
-      Map.Entry<LongList, LongList> index;
-      try (InputStream indexInput = indexInputSupplier.getInput()) {
-        index = loadIndex(indexInput);
+  private StreamDataFileIndex(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.entries = buffer.asReadOnlyBuffer().asLongBuffer();
+    this.size = entries.capacity() / 2;
+    this.refCount = new AtomicInteger(1);
+  }
+
+  /**
+   * Loads the index with the given input.
+   *
+   * @param indexInputSupplier Provides {@link InputStream} for reading the index.
+   * @param localFile the index file if it is on the local file system, for memory mapping it, or {@code null}
+   * @throws IOException if failed to load the index
+   */
+  static StreamDataFileIndex load(InputSupplier<? extends InputStream> indexInputSupplier,
+                                  @Nullable File localFile) throws IOException {
+    return new StreamDataFileIndex(loadIndex(indexInputSupplier, localFile));
+  }
+
+  /**
+   * Acquires this index for an additional holder, unless it is already released by all its holders.
+   *
+   * @return {@code true} if acquired, {@code false} if the index is released and must not be used
+   */
+  boolean retain() {
+    while (true) {
+      int count = refCount.get();
+      if (count <= 0) {
+        return false;
+      }
+      if (refCount.compareAndSet(count, count + 1)) {
+        return true;
       }
-      timestamps = LongLists.unmodifiable(index.getKey());
-      positions = LongLists.unmodifiable(index.getValue());
-    } catch (IOException e) {
-      LOG.error("Failed to load stream index. Default to empty index.", e);
-      timestamps = LongLists.EMPTY_LIST;
-      positions = LongLists.EMPTY_LIST;
     }
-    this.timestamps = timestamps;
-    this.positions = positions;
+  }
+
+  /**
+   * Releases this index by one of its holders. The buffer of the index is freed when the last holder releases it,
+   * after which the index must not be used.
+   */
+  void release() {
+    if (refCount.decrementAndGet() == 0) {
+      free(buffer);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the index is released by all its holders.
+   */
+  @VisibleForTesting
+  boolean isReleased() {
+    return refCount.get() <= 0;
+  }
+
+  /**
+   * Returns the number of bytes used by the index entries.
+   */
+  long getSizeBytes() {
+    return (long) size * ENTRY_SIZE;
   }
 
   /**
@@ -81,58 +139,53 @@ final class StreamDataFileIndex {
    * @return The file position or {@code -1} if no record satisfied the requirement can be found.
    */
   long floorPositionByTime(long timestamp) {
-    if (timestamps.isEmpty()) {
+    if (size == 0) {
       return -1;
     }
 
     // Binary search for a timestamp that is larger than or equals to the given timestamp.
-    int idx = binarySearch(timestamps, timestamp);
+    int idx = binarySearch(0, timestamp);
     if (idx >= 0) {
-      return positions.getLong(idx);
+      return getPosition(idx);
     }
 
     // Return the position that has smaller timestamp than the one to search for.
     // If every timestamp in the index is larger than the given one, return -1.
-    return idx == -1 ? -1 : positions.getLong(-idx - 2);
+    return idx == -1 ? -1 : getPosition(-idx - 2);
   }
 
   /**
    * Finds the largest event file position recorded in the index that is smaller than or equal to a given offset.
    *
-   * @param offset an arbitrary file offset.
+   * @param offset an arbitrary event file offset.
    * @return largest event file position that is smaller than or equal to the given offset.
    *
    */
   long floorPosition(long offset) {
-    if (positions.isEmpty()) {
+    if (size == 0) {
       return 0L;
     }
 
-    int idx = binarySearch(positions, offset);
+    int idx = binarySearch(1, offset);
     if (idx >= 0) {
       return offset;
     }
 
-    return idx == -1 ? 0 : positions.getLong(-idx - 2);
+    return idx == -1 ? 0 : getPosition(-idx - 2);
   }
 
   /**
    * Returns a {@link StreamDataFileIndexIterator} for iterating over all (timestamp, position) pairs.
    */
   StreamDataFileIndexIterator indexIterator() {
-    final LongListIterator timestampIter = timestamps.iterator();
-    final LongListIterator positionIter = positions.iterator();
-
     return new StreamDataFileIndexIterator() {
 
-      private long timestamp;
-      private long position;
+      private int idx = -1;
 
       @Override
       public boolean nextIndexEntry() {
-        if (timestampIter.hasNext() && positionIter.hasNext()) {
-          timestamp = timestampIter.nextLong();
-          position = positionIter.nextLong();
+        if (idx + 1 < size) {
+          idx++;
           return true;
         }
         return false;
@@ -140,27 +193,36 @@ final class StreamDataFileIndex {
 
       @Override
       public long currentTimestamp() {
-        return timestamp;
+        return getTimestamp(idx);
       }
 
       @Override
       public long currentPosition() {
-        return position;
+        return getPosition(idx);
       }
     };
   }
 
+  private long getTimestamp(int idx) {
+    return entries.get(idx * 2);
+  }
+
+  private long getPosition(int idx) {
+    return entries.get(idx * 2 + 1);
+  }
+
   /**
-   * Same contract as {@link Collections#binarySearch(java.util.List, Object)}, except that it works on LongList.
+   * Same contract as {@link Collections#binarySearch(java.util.List, Object)}, except that it works on either the
+   * timestamps ({@code field == 0}) or the positions ({@code field == 1}) of the index entries.
    */
-  private int binarySearch(LongList list, long target) {
+  private int binarySearch(int field, long target) {
     // Binary search for a value that is larger than or equals to the given target
     int low = 0;
-    int high = list.size() - 1;
+    int high = size - 1;
 
     while (low <= high) {
       int mid = ((high - low) >> 1) + low;
-      long value = list.getLong(mid);
+      long value = entries.get(mid * 2 + field);
 
       if (value < target) {
         low = mid + 1;
@@ -175,27 +237,66 @@ final class StreamDataFileIndex {
     return -(low + 1);
   }
 
-  private Map.Entry<LongList, LongList> loadIndex(InputStream input) throws IOException {
-    byte[] magic = new byte[INDEX_MAGIC_HEADER.length];
-    ByteStreams.readFully(input, magic);
-
-    if (!Arrays.equals(magic, INDEX_MAGIC_HEADER)) {
-      throw new IOException("Unsupported index file format. Expected magic bytes as 'I' '1'");
+  private static ByteBuffer loadOrEmpty(InputSupplier<? extends InputStream> indexInputSupplier) {
+    try {
+      return loadIndex(indexInputSupplier, null);
+    } catch (IOException e) {
+      LOG.error("Failed to load stream index. Default to empty index.", e);
+      return ByteBuffer.allocate(0);
     }
+  }
+
+  private static ByteBuffer loadIndex(InputSupplier<? extends InputStream> indexInputSupplier,
+                                      @Nullable File localFile) throws IOException {
+    ByteBuffer buffer;
+    try (CountingInputStream input = new CountingInputStream(indexInputSupplier.getInput())) {
+      byte[] magic = new byte[INDEX_MAGIC_HEADER.length];
+      ByteStreams.readFully(input, magic);
 
-    // Decode the properties map. In current version, it is not used.
-    StreamUtils.decodeMap(new BinaryDecoder(input));
+      if (!Arrays.equals(magic, INDEX_MAGIC_HEADER)) {
+        throw new IOException("Unsupported index file format. Expected magic bytes as 'I' '1'");
+      }
 
-    // Read in all index (timestamp, position pairs).
-    LongList timestamps = new LongArrayList(1000);
-    LongList positions = new LongArrayList(1000);
-    byte[] buf = new byte[Longs.BYTES * 2];
+      // Decode the properties map. In current version, it is not used.
+      StreamUtils.decodeMap(new BinaryDecoder(input));
 
-    while (ByteStreams.read(input, buf, 0, buf.length) == buf.length) {
-      timestamps.add(Bytes.toLong(buf, 0));
-      positions.add(Bytes.toLong(buf, Longs.BYTES));
+      // The rest of the file is the (timestamp, position) pairs, with the last one possibly partially written.
+      if (localFile != null) {
+        long entriesStart = input.getCount();
+        try (RandomAccessFile file = new RandomAccessFile(localFile, "r")) {
+          long entriesSize = (file.length() - entriesStart) / ENTRY_SIZE * ENTRY_SIZE;
+          buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, entriesStart, Math.max(0L, entriesSize));
+        }
+      } else {
+        byte[] bytes = ByteStreams.toByteArray(input);
+        int entriesSize = bytes.length / ENTRY_SIZE * ENTRY_SIZE;
+        buffer = ByteBuffer.allocateDirect(entriesSize);
+        buffer.put(bytes, 0, entriesSize);
+        buffer.flip();
+      }
     }
+    return buffer;
+  }
 
-    return Maps.immutableEntry(timestamps, positions);
+  /**
+   * Unmaps a memory mapped buffer or frees a direct buffer, instead of leaving it to the garbage collector.
+   */
+  private static void free(ByteBuffer buffer) {
+    if (!buffer.isDirect()) {
+      return;
+    }
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        Method cleanMethod = cleaner.getClass().getMethod("clean");
+        cleanMethod.setAccessible(true);
+        cleanMethod.invoke(cleaner);
+      }
+    } catch (Exception e) {
+      // The buffer is freed when it is garbage collected
+      LOG.debug("Failed to free stream index buffer", e);
+    }
   }
 }
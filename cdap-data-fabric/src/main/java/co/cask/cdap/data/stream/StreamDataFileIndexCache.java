@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.Locations;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.io.InputSupplier;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of {@link StreamDataFileIndex}, so that all readers of the same stream file created with the same cache, such
+ * as the consumers of a stream and the input splits processed in the same process, share one loaded index. Indexes are
+ * keyed by the index file URI and length, hence an index that grows while the stream file is being written is
+ * reloaded. The total size of the cached indexes is bounded by {@link Constants.Stream#INDEX_CACHE_SIZE}.
+ *
+ * Each index returned by this class is acquired for the caller, who must {@link StreamDataFileIndex#release()} it
+ * when done. The buffer of an index is freed once it is evicted from the cache and released by all readers.
+ */
+public final class StreamDataFileIndexCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StreamDataFileIndexCache.class);
+  private static final StreamDataFileIndexCache DEFAULT =
+    new StreamDataFileIndexCache(Constants.Stream.DEFAULT_INDEX_CACHE_SIZE, null);
+
+  private final Cache<Key, StreamDataFileIndex> cache;
+  private final MetricsCollector metricsCollector;
+
+  /**
+   * Returns a process wide cache with the default size, for readers that have no configuration, such as the
+   * record readers of MapReduce jobs and Hive queries.
+   */
+  public static StreamDataFileIndexCache getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Creates a cache with the size from the given configuration.
+   *
+   * @param cConf the configuration to get the cache size from
+   * @param metricsCollector the collector for emitting the cache hit and miss counts, or {@code null} to not emit them
+   */
+  public StreamDataFileIndexCache(CConfiguration cConf, @Nullable MetricsCollector metricsCollector) {
+    this(cConf.getLong(Constants.Stream.INDEX_CACHE_SIZE, Constants.Stream.DEFAULT_INDEX_CACHE_SIZE),
+         metricsCollector);
+  }
+
+  @VisibleForTesting
+  StreamDataFileIndexCache(long maxSizeBytes, @Nullable MetricsCollector metricsCollector) {
+    this.cache = createCache(maxSizeBytes);
+    this.metricsCollector = metricsCollector;
+  }
+
+  /**
+   * Returns the statistics of the cache.
+   */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Removes all indexes from the cache. Indexes still used by readers are freed when the readers release them.
+   */
+  @VisibleForTesting
+  void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns the index at the given location, which the caller must release.
+   */
+  StreamDataFileIndex getIndex(Location indexLocation) {
+    URI uri = indexLocation.toURI();
+    InputSupplier<? extends InputStream> inputSupplier = Locations.newInputSupplier(indexLocation);
+    try {
+      File localFile = "file".equals(uri.getScheme()) ? new File(uri) : null;
+      return getIndex(new Key(uri, indexLocation.length()), inputSupplier, localFile);
+    } catch (IOException e) {
+      // Same as a reader without cache, it fails the index loading.
+      return new StreamDataFileIndex(inputSupplier);
+    }
+  }
+
+  /**
+   * Returns the index at the given path, which the caller must release.
+   */
+  StreamDataFileIndex getIndex(FileSystem fs, Path indexPath) {
+    InputSupplier<? extends InputStream> inputSupplier = Locations.newInputSupplier(fs, indexPath);
+    try {
+      FileStatus status = fs.getFileStatus(indexPath);
+      URI uri = status.getPath().toUri();
+      File localFile = "file".equals(uri.getScheme()) ? new File(uri) : null;
+      return getIndex(new Key(uri, status.getLen()), inputSupplier, localFile);
+    } catch (IOException e) {
+      return new StreamDataFileIndex(inputSupplier);
+    }
+  }
+
+  private StreamDataFileIndex getIndex(Key key, final InputSupplier<? extends InputStream> inputSupplier,
+                                       @Nullable final File localFile) throws IOException {
+    final AtomicReference<StreamDataFileIndex> loaded = new AtomicReference<>();
+    try {
+      StreamDataFileIndex index = cache.get(key, new Callable<StreamDataFileIndex>() {
+        @Override
+        public StreamDataFileIndex call() throws Exception {
+          StreamDataFileIndex loadedIndex = StreamDataFileIndex.load(inputSupplier, localFile);
+          // Acquired for the caller before it is cached, as it can be evicted right after being cached
+          loadedIndex.retain();
+          loaded.set(loadedIndex);
+          return loadedIndex;
+        }
+      });
+      if (index == loaded.get()) {
+        emit("stream.index.cache.miss.count");
+        return index;
+      }
+      if (index.retain()) {
+        emit("stream.index.cache.hit.count");
+        return index;
+      }
+      // Evicted and released after it was returned by the cache
+      emit("stream.index.cache.miss.count");
+      return StreamDataFileIndex.load(inputSupplier, localFile);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      emit("stream.index.cache.miss.count");
+      LOG.debug("Failed to load stream index {}", key.uri, e.getCause());
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private void emit(String metricName) {
+    if (metricsCollector != null) {
+      metricsCollector.increment(metricName, 1L);
+    }
+  }
+
+  private static Cache<Key, StreamDataFileIndex> createCache(long maxSizeBytes) {
+    return CacheBuilder.newBuilder()
+      .maximumWeight(maxSizeBytes)
+      .weigher(new Weigher<Key, StreamDataFileIndex>() {
+        @Override
+        public int weigh(Key key, StreamDataFileIndex index) {
+          // Count at least one so that empty indexes are also bounded
+          return (int) Math.min(Integer.MAX_VALUE, Math.max(1L, index.getSizeBytes()));
+        }
+      })
+      .removalListener(new RemovalListener<Key, StreamDataFileIndex>() {
+        @Override
+        public void onRemoval(RemovalNotification<Key, StreamDataFileIndex> notification) {
+          // Release the hold of the cache
+          notification.getValue().release();
+        }
+      })
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Key of a cached index.
+   */
+  private static final class Key {
+    private final URI uri;
+    private final long length;
+
+    private Key(URI uri, long length) {
+      this.uri = uri;
+      this.length = length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key other = (Key) o;
+      return length == other.length && uri.equals(other.uri);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(uri, length);
+    }
+  }
+}
@@ -27,11 +27,15 @@ import co.cask.cdap.data.file.FileReader;
 import co.cask.cdap.data.file.ReadFilter;
 import co.cask.cdap.internal.io.SchemaTypeAdapter;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.InputSupplier;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.stream.JsonReader;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.twill.filesystem.Location;
 
 import java.io.EOFException;
 import java.io.FileNotFoundException;
@@ -54,7 +58,7 @@ import javax.annotation.concurrent.NotThreadSafe;
 public final class StreamDataFileReader implements FileReader<PositionStreamEvent, Long> {
 
   private final InputSupplier<? extends SeekableInputStream> eventInputSupplier;
-  private final InputSupplier<? extends InputStream> indexInputSupplier;
+  private final Supplier<StreamDataFileIndex> indexSupplier;
   private final long startTime;
   private final long offset;
   private final byte[] timestampBuffer;
@@ -67,6 +71,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   private boolean eof;
   private Decoder decoder;
   private StreamEvent eventTemplate;
+  private StreamBlockCodec codec;
 
   /**
    * Opens a new {@link StreamDataFileReader} with the given inputs.
@@ -90,7 +95,23 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   public static StreamDataFileReader createByStartTime(
     InputSupplier<? extends SeekableInputStream> eventInputSupplier,
     @Nullable InputSupplier<? extends InputStream> indexInputSupplier, long startTime) {
-    return new StreamDataFileReader(eventInputSupplier, indexInputSupplier, startTime, 0L);
+    return new StreamDataFileReader(eventInputSupplier, createIndexSupplier(indexInputSupplier), startTime, 0L);
+  }
+
+  /**
+   * Opens a new {@link StreamDataFileReader} with the given inputs that starts reading events that are
+   * written at or after the given timestamp. The event index is shared through the {@link StreamDataFileIndexCache}.
+   *
+   * @param eventInputSupplier An {@link InputSupplier} for providing the stream to read events.
+   * @param indexLocation Location of the event index.
+   * @param indexCache The cache to get the event index from.
+   * @param startTime Timestamp in milliseconds for the event time to start reading with.
+   * @return A new instance of {@link StreamDataFileReader}.
+   */
+  public static StreamDataFileReader createByStartTime(
+    InputSupplier<? extends SeekableInputStream> eventInputSupplier, Location indexLocation,
+    StreamDataFileIndexCache indexCache, long startTime) {
+    return new StreamDataFileReader(eventInputSupplier, createIndexSupplier(indexLocation, indexCache), startTime, 0L);
   }
 
   /**
@@ -105,14 +126,49 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   public static StreamDataFileReader createWithOffset(InputSupplier<? extends SeekableInputStream> eventInputSupplier,
                                                       @Nullable InputSupplier<? extends InputStream> indexInputSupplier,
                                                       long offset) {
-    return new StreamDataFileReader(eventInputSupplier, indexInputSupplier, 0L, offset);
+    return new StreamDataFileReader(eventInputSupplier, createIndexSupplier(indexInputSupplier), 0L, offset);
+  }
+
+  /**
+   * Opens a new {@link StreamDataFileReader} with the given inputs, which starts reading events at a the smallest
+   * event position that is larger than or equal to the given offset. The event index is shared through the
+   * {@link StreamDataFileIndexCache}.
+   *
+   * @param eventInputSupplier An {@link InputSupplier} for providing the stream to read events.
+   * @param indexLocation Location of the event index.
+   * @param indexCache The cache to get the event index from.
+   * @param offset An arbitrary event file offset.
+   * @return A new instance of {@link StreamDataFileReader}.
+   */
+  public static StreamDataFileReader createWithOffset(InputSupplier<? extends SeekableInputStream> eventInputSupplier,
+                                                      Location indexLocation, StreamDataFileIndexCache indexCache,
+                                                      long offset) {
+    return new StreamDataFileReader(eventInputSupplier, createIndexSupplier(indexLocation, indexCache), 0L, offset);
+  }
+
+  /**
+   * Opens a new {@link StreamDataFileReader} with the given inputs, which starts reading events at a the smallest
+   * event position that is larger than or equal to the given offset. The event index is shared through the
+   * {@link StreamDataFileIndexCache}.
+   *
+   * @param eventInputSupplier An {@link InputSupplier} for providing the stream to read events.
+   * @param fs The {@link FileSystem} of the event index.
+   * @param indexPath Path of the event index or {@code null} if there is no index.
+   * @param indexCache The cache to get the event index from.
+   * @param offset An arbitrary event file offset.
+   * @return A new instance of {@link StreamDataFileReader}.
+   */
+  public static StreamDataFileReader createWithOffset(InputSupplier<? extends SeekableInputStream> eventInputSupplier,
+                                                      FileSystem fs, @Nullable Path indexPath,
+                                                      StreamDataFileIndexCache indexCache, long offset) {
+    return new StreamDataFileReader(eventInputSupplier, createIndexSupplier(fs, indexPath, indexCache), 0L, offset);
   }
 
   private StreamDataFileReader(InputSupplier<? extends SeekableInputStream> eventInputSupplier,
-                               @Nullable InputSupplier<? extends InputStream> indexInputSupplier,
+                               @Nullable Supplier<StreamDataFileIndex> indexSupplier,
                                long startTime, long offset) {
     this.eventInputSupplier = eventInputSupplier;
-    this.indexInputSupplier = indexInputSupplier;
+    this.indexSupplier = indexSupplier;
     this.streamEventBuffer = new StreamEventBuffer();
     this.startTime = startTime;
     this.offset = offset;
@@ -157,6 +213,10 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
       }
     } finally {
       closed = true;
+      if (index != null) {
+        index.release();
+        index = null;
+      }
     }
   }
 
@@ -229,12 +289,51 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     }
   }
 
+  @Nullable
+  private static Supplier<StreamDataFileIndex> createIndexSupplier(
+    @Nullable final InputSupplier<? extends InputStream> indexInputSupplier) {
+    if (indexInputSupplier == null) {
+      return null;
+    }
+    return new Supplier<StreamDataFileIndex>() {
+      @Override
+      public StreamDataFileIndex get() {
+        return new StreamDataFileIndex(indexInputSupplier);
+      }
+    };
+  }
+
+  private static Supplier<StreamDataFileIndex> createIndexSupplier(final Location indexLocation,
+                                                                   final StreamDataFileIndexCache indexCache) {
+    return new Supplier<StreamDataFileIndex>() {
+      @Override
+      public StreamDataFileIndex get() {
+        return indexCache.getIndex(indexLocation);
+      }
+    };
+  }
+
+  @Nullable
+  private static Supplier<StreamDataFileIndex> createIndexSupplier(final FileSystem fs,
+                                                                   @Nullable final Path indexPath,
+                                                                   final StreamDataFileIndexCache indexCache) {
+    if (indexPath == null) {
+      return null;
+    }
+    return new Supplier<StreamDataFileIndex>() {
+      @Override
+      public StreamDataFileIndex get() {
+        return indexCache.getIndex(fs, indexPath);
+      }
+    };
+  }
+
   /**
    * Returns the index for the stream data or {@code null} if index is absent.
    */
   private StreamDataFileIndex getIndex() {
-    if (index == null && indexInputSupplier != null) {
-      index = new StreamDataFileIndex(indexInputSupplier);
+    if (index == null && indexSupplier != null) {
+      index = indexSupplier.get();
     }
     return index;
   }
@@ -300,6 +399,12 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
 
     verifySchema(properties);
 
+    if (fileVersion >= 3) {
+      codec = getBlockCodec(properties);
+    } else {
+      codec = StreamBlockCodec.NONE;
+    }
+
     // Create event template
     if (fileVersion >= 2) {
       eventTemplate = createEventTemplate(properties);
@@ -323,13 +428,35 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V2)) {
       return 2;
     }
+    if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V3)) {
+      return 3;
+    }
     throw new IOException(
-      String.format("Unsupported stream file format. First two bytes must be %s or %s",
+      String.format("Unsupported stream file format. First two bytes must be %s, %s or %s",
                     Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V1),
-                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2))
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2),
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V3))
     );
   }
 
+  /**
+   * Returns the {@link StreamBlockCodec} the data blocks are compressed with.
+   *
+   * @throws IOException if the codec is missing or unsupported
+   */
+  private StreamBlockCodec getBlockCodec(Map<String, String> properties) throws IOException {
+    String codecKey = StreamDataFileConstants.Property.Key.BLOCK_CODEC;
+    String codecName = properties.get(codecKey);
+    if (codecName == null) {
+      throw new IOException("Missing '" + codecKey + "' property.");
+    }
+    try {
+      return StreamBlockCodec.fromName(codecName);
+    } catch (IllegalArgumentException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
   /**
    * Creates a {@link StreamEvent} that will be used as a template for all events consumable from this reader.
    */
@@ -485,7 +612,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     // Use the template timestamp if available
     timestamp = eventTemplate.getTimestamp() >= 0 ? eventTemplate.getTimestamp() : timestamp;
     if (acceptTimestamp(filter, timestamp)) {
-      streamEventBuffer.fillBuffer(eventInput, readLength());
+      streamEventBuffer.fillBuffer(eventInput, readLength(), codec);
       this.timestamp = timestamp;
       return;
     }
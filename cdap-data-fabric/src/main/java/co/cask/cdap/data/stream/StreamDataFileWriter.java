@@ -32,6 +32,7 @@ import com.google.common.io.OutputSupplier;
 import com.google.common.primitives.Longs;
 import org.apache.hadoop.fs.Syncable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -59,6 +60,26 @@ import javax.annotation.concurrent.NotThreadSafe;
  * }
  * </pre>
  *
+ * If a {@link StreamBlockCodec} other than {@link StreamBlockCodec#NONE} is set in the properties, the header is
+ * "E" "3" and all <stream_event>s in a data block are compressed:
+ *
+ * <pre>
+ * {@code
+ *
+ * data = <timestamp> <length> <raw_length> <compressed_length> <compressed_events> <padding>
+ * length = Avro encoded int32 for size in bytes of everything after it in the data block
+ * raw_length = Avro encoded int32 for size in bytes for all <stream_event>s before compression
+ * compressed_length = Avro encoded int32 for size in bytes of <compressed_events>
+ * compressed_events = <stream_event>+ compressed with the codec
+ * padding = zero bytes, such that <length> is at least the number of events in the data block
+ *
+ * }
+ * </pre>
+ *
+ * Since the events of a compressed data block cannot be located in the file, the position of an event in
+ * such a block is the position right after {@code <length>}, plus the index of the event in the block. The padding
+ * guarantees that positions of events are still unique and smaller than the position of the next data block.
+ *
  * Stream index file:
  *
  * <pre>
@@ -84,6 +105,10 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private final long indexInterval;
   private final BufferedEncoder encoder;
   private final BufferedEncoder lengthEncoder;
+  private final StreamBlockCodec codec;
+  private final BlockBuffer blockBuffer;
+  private final ByteArrayOutputStream compressedBuffer;
+  private final BufferedEncoder blockHeaderEncoder;
 
   // Timestamp for the current block
   private long currentTimestamp;
@@ -92,6 +117,8 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private boolean synced;
   private boolean closed;
   private long closeTimestamp;
+  // Number of events in the current block
+  private int blockEvents;
 
   /**
    * Constructs a new instance that writes to given outputs. Same as calling
@@ -110,7 +137,9 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
    * @param eventOutputSupplier the provider of the {@link OutputStream} for writing events
    * @param indexOutputSupplier the provider of the {@link OutputStream} for writing the index
    * @param indexInterval the time interval in milliseconds for emitting a new index entry
-   * @param properties the property set that will be stored as file properties
+   * @param properties the property set that will be stored as file properties. The data blocks are compressed
+   *                   with the {@link StreamBlockCodec} named by the
+   *                   {@link StreamDataFileConstants.Property.Key#BLOCK_CODEC} property if it is present
    * @throws IOException if there is an error in preparing the output streams
    */
   public StreamDataFileWriter(OutputSupplier<? extends OutputStream> eventOutputSupplier,
@@ -131,6 +160,18 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     this.encoder = new BufferedEncoder(BUFFER_SIZE, encoderFactory);
     this.lengthEncoder = new BufferedEncoder(5, encoderFactory);
 
+    String codecName = properties.get(StreamDataFileConstants.Property.Key.BLOCK_CODEC);
+    this.codec = codecName == null ? StreamBlockCodec.NONE : StreamBlockCodec.fromName(codecName);
+    if (codec == StreamBlockCodec.NONE) {
+      this.blockBuffer = null;
+      this.compressedBuffer = null;
+      this.blockHeaderEncoder = null;
+    } else {
+      this.blockBuffer = new BlockBuffer(BUFFER_SIZE);
+      this.compressedBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
+      this.blockHeaderEncoder = new BufferedEncoder(10, encoderFactory);
+    }
+
     try {
       init(properties);
     } catch (IOException e) {
@@ -220,8 +261,14 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
         position += Bytes.SIZEOF_LONG;
       }
 
-      // Encodes the event data into buffer.
-      StreamEventDataCodec.encode(event, encoder);
+      // Encodes the event data into buffer, unless it is already encoded.
+      byte[] encodedData = event instanceof EncodedStreamEvent ? ((EncodedStreamEvent) event).getEncodedData() : null;
+      if (encodedData == null) {
+        StreamEventDataCodec.encode(event, encoder);
+      } else {
+        encoder.writeRaw(encodedData);
+      }
+      blockEvents++;
 
       // Optionally flush if already filled up the buffer.
       if (encoder.size() >= flushLimit) {
@@ -235,10 +282,16 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
   private void init(Map<String, String> properties) throws IOException {
     // Writes the header for event file
-    encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
-
     Map<String, String> headers = Maps.newHashMap(properties);
     headers.put(StreamDataFileConstants.Property.Key.SCHEMA, StreamEventDataCodec.STREAM_DATA_SCHEMA.toString());
+    if (codec == StreamBlockCodec.NONE) {
+      // Keep writing version 2 files, which can be read by readers that don't know about compression
+      encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
+      headers.remove(StreamDataFileConstants.Property.Key.BLOCK_CODEC);
+    } else {
+      encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V3);
+      headers.put(StreamDataFileConstants.Property.Key.BLOCK_CODEC, codec.getName());
+    }
     StreamUtils.encodeMap(headers, encoder);
 
     long headerSize = encoder.size();
@@ -278,16 +331,22 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       indexOffset = position - Bytes.SIZEOF_LONG;
     }
 
-    // Writes the size of the encoded event
-    lengthEncoder.writeInt(encoder.size());
-    int size = lengthEncoder.size();
-    lengthEncoder.writeTo(eventOutput);
-    position += size;
+    if (codec == StreamBlockCodec.NONE) {
+      // Writes the size of the encoded event
+      lengthEncoder.writeInt(encoder.size());
+      int size = lengthEncoder.size();
+      lengthEncoder.writeTo(eventOutput);
+      position += size;
+
+      // Writes all encoded data from the buffer to the output.
+      size = encoder.size();
+      encoder.writeTo(eventOutput);
+      position += size;
+    } else {
+      writeCompressedBlock();
+    }
+    blockEvents = 0;
 
-    // Writes all encoded data from the buffer to the output.
-    size = encoder.size();
-    encoder.writeTo(eventOutput);
-    position += size;
     if (sync) {
       sync(eventOutput);
     }
@@ -310,6 +369,36 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     synced = sync;
   }
 
+  /**
+   * Compresses the encoded events in the buffer and writes them to the underlying output stream as the content
+   * of the current data block.
+   */
+  private void writeCompressedBlock() throws IOException {
+    int rawLength = encoder.size();
+    encoder.writeTo(blockBuffer);
+    try {
+      codec.compress(blockBuffer.getBuffer(), rawLength, compressedBuffer);
+    } finally {
+      blockBuffer.reset();
+    }
+
+    blockHeaderEncoder.writeInt(rawLength);
+    blockHeaderEncoder.writeInt(compressedBuffer.size());
+    int contentLength = blockHeaderEncoder.size() + compressedBuffer.size();
+    int padding = Math.max(0, blockEvents - contentLength);
+
+    lengthEncoder.writeInt(contentLength + padding);
+    position += lengthEncoder.size();
+    lengthEncoder.writeTo(eventOutput);
+    blockHeaderEncoder.writeTo(eventOutput);
+    compressedBuffer.writeTo(eventOutput);
+    compressedBuffer.reset();
+    if (padding > 0) {
+      eventOutput.write(new byte[padding]);
+    }
+    position += contentLength + padding;
+  }
+
   private void sync(OutputStream output) throws IOException {
     if (output instanceof Syncable) {
       ((Syncable) output).hsync();
@@ -337,4 +426,18 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       }
     };
   }
+
+  /**
+   * A {@link ByteArrayOutputStream} that exposes its buffer, to compress its content without copying it.
+   */
+  private static final class BlockBuffer extends ByteArrayOutputStream {
+
+    BlockBuffer(int size) {
+      super(size);
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
 }
@@ -32,7 +32,8 @@ import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * A buffer for holding encoded stream events. It is used by {@link StreamDataFileReader} for holding
- * encoded stream events in each data block.
+ * encoded stream events in each data block. Events of compressed data blocks are held decompressed, with positions
+ * assigned as described in {@link StreamDataFileWriter}.
  */
 @NotThreadSafe
 final class StreamEventBuffer {
@@ -42,12 +43,20 @@ final class StreamEventBuffer {
 
   private ByteBuffer buffer;
   private long basePosition;
+  // Buffer for reading compressed data blocks
+  private byte[] blockBuffer;
+  // Size of the data block content in the file if it is compressed, or -1 otherwise
+  private int blockSize;
+  // Index of the next event in a compressed data block
+  private int eventIndex;
 
   StreamEventBuffer() {
     this.buffer = ByteBuffers.EMPTY_BUFFER;
     this.bufferInput = new ByteBufferInputStream(buffer);
     this.decoder = new BinaryDecoder(bufferInput);
     this.basePosition = -1L;
+    this.blockBuffer = new byte[0];
+    this.blockSize = -1;
   }
 
   /**
@@ -55,29 +64,46 @@ final class StreamEventBuffer {
    *
    * @param input input stream to read from
    * @param size number of bytes to read
+   * @param codec codec the data block is compressed with
    * @throws IOException if failed to read from the stream
    * @throws EOFException if failed to read the given number of bytes from the input
    */
-  void fillBuffer(SeekableInputStream input, int size) throws IOException {
+  void fillBuffer(SeekableInputStream input, int size, StreamBlockCodec codec) throws IOException {
     buffer.clear();
-    buffer = ensureCapacity(buffer, size);
 
     try {
       basePosition = input.getPos();
-      int bytesRead = 0;
-      while (bytesRead != size) {
-        int len = input.read(buffer.array(), bytesRead, size - bytesRead);
-        if (len < 0) {
-          throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      if (codec == StreamBlockCodec.NONE) {
+        buffer = ensureCapacity(buffer, size);
+        readFully(input, buffer.array(), size);
+        buffer.limit(size);
+        blockSize = -1;
+      } else {
+        if (blockBuffer.length < size) {
+          blockBuffer = new byte[size];
         }
-        bytesRead += len;
+        readFully(input, blockBuffer, size);
+
+        // Block content is <raw_length> <compressed_length> <compressed_events> <padding>
+        ByteBuffer block = ByteBuffer.wrap(blockBuffer, 0, size);
+        Decoder blockDecoder = new BinaryDecoder(new ByteBufferInputStream(block));
+        int rawLength = blockDecoder.readInt();
+        int compressedLength = blockDecoder.readInt();
+        if (rawLength < 0 || compressedLength < 0 || compressedLength > block.remaining()) {
+          throw new IOException("Corrupted data block at " + basePosition);
+        }
+        buffer = ensureCapacity(buffer, rawLength);
+        codec.decompress(blockBuffer, block.position(), compressedLength, buffer.array(), rawLength);
+        buffer.limit(rawLength);
+        blockSize = size;
+        eventIndex = 0;
       }
-      buffer.limit(size);
       bufferInput.reset(buffer);
     } catch (IOException e) {
       // Make the buffer has nothing to read
       buffer.position(buffer.limit());
       basePosition = -1L;
+      blockSize = -1;
       throw e;
     }
   }
@@ -94,7 +120,13 @@ final class StreamEventBuffer {
    * read from the stream.
    */
   long getPosition() {
-    return basePosition >= 0 ? basePosition + buffer.position() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    if (blockSize < 0) {
+      return basePosition + buffer.position();
+    }
+    return hasEvent() ? basePosition + eventIndex : basePosition + blockSize;
   }
 
   /**
@@ -102,7 +134,10 @@ final class StreamEventBuffer {
    * been read from the stream.
    */
   long getEndPosition() {
-    return basePosition >= 0 ? basePosition + buffer.limit() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    return basePosition + (blockSize < 0 ? buffer.limit() : blockSize);
   }
 
   /**
@@ -120,7 +155,8 @@ final class StreamEventBuffer {
       throw new IOException("No more event in the buffer");
     }
 
-    long eventPos = basePosition + buffer.position();
+    long eventPos = getPosition();
+    eventIndex++;
     if (filter.acceptOffset(eventPos)) {
       return new PositionStreamEvent(StreamEventDataCodec.decode(decoder, defaultHeaders), timestamp, eventPos);
     }
@@ -128,6 +164,17 @@ final class StreamEventBuffer {
     return null;
   }
 
+  private void readFully(SeekableInputStream input, byte[] bytes, int size) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead != size) {
+      int len = input.read(bytes, bytesRead, size - bytesRead);
+      if (len < 0) {
+        throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      }
+      bytesRead += len;
+    }
+  }
+
   /**
    * Ensures that the given {@link ByteBuffer} is of sufficient size.
    *
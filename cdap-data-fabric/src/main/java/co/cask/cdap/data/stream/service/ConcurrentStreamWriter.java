@@ -18,6 +18,8 @@ package co.cask.cdap.data.stream.service;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.common.NotFoundException;
+import co.cask.cdap.common.metrics.Histogram;
+import co.cask.cdap.common.metrics.LatencyHistogram;
 import co.cask.cdap.common.security.Impersonator;
 import co.cask.cdap.data.file.FileWriter;
 import co.cask.cdap.data.stream.Refreshable;
@@ -34,6 +36,7 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.StreamId;
 import com.google.common.base.Function;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
@@ -60,8 +63,11 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -88,12 +94,20 @@ import javax.annotation.concurrent.ThreadSafe;
  * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
  * get written and flushed.
  *
+ * In the group commit mode, events are encoded in step 1 by the thread that received the request, so that the writer
+ * only copies the encoded events to the stream file. Before step 4, the writer waits up to a linger time for more
+ * events to be enqueued, and it writes at most a maximum number of bytes before the flush in step 5. The batch size,
+ * the time requests spent in the queue and the flush latency of each stream are emitted as stream metrics periodically
+ * and when the stream is closed.
  */
 @ThreadSafe
 public final class ConcurrentStreamWriter implements Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConcurrentStreamWriter.class);
 
+  // Interval between emitting the group commit histograms as metrics
+  private static final long GROUP_COMMIT_METRICS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
   private final StreamCoordinatorClient streamCoordinatorClient;
   private final StreamAdmin streamAdmin;
   private final int workerThreads;
@@ -104,10 +118,28 @@ public final class ConcurrentStreamWriter implements Closeable {
   private final List<Cancellable> cancellables;
   private final Lock createLock;
   private final Service eventQueueRefreshService;
+  private final boolean groupCommit;
+  private final long groupCommitLingerNanos;
+  private final int groupCommitMaxBatchBytes;
 
   ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
                          StreamFileWriterFactory writerFactory, int workerThreads,
                          StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator) {
+    this(streamCoordinatorClient, streamAdmin, writerFactory, workerThreads, metricsCollectorFactory, impersonator,
+         false, 0L, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Creates a writer that optionally writes in the group commit mode.
+   *
+   * @param groupCommit {@code true} to write in the group commit mode
+   * @param groupCommitLingerMs milliseconds to wait for more events before writing a batch in the group commit mode
+   * @param groupCommitMaxBatchBytes maximum number of encoded bytes written in a batch in the group commit mode
+   */
+  ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
+                         StreamFileWriterFactory writerFactory, int workerThreads,
+                         StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator,
+                         boolean groupCommit, long groupCommitLingerMs, int groupCommitMaxBatchBytes) {
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.streamAdmin = streamAdmin;
     this.workerThreads = workerThreads;
@@ -118,6 +150,9 @@ public final class ConcurrentStreamWriter implements Closeable {
     this.cancellables = Lists.newArrayList();
     this.createLock = new ReentrantLock();
     this.eventQueueRefreshService = scheduleWriterRefresh();
+    this.groupCommit = groupCommit;
+    this.groupCommitLingerNanos = TimeUnit.MILLISECONDS.toNanos(groupCommitLingerMs);
+    this.groupCommitMaxBatchBytes = groupCommitMaxBatchBytes;
   }
 
   private Service scheduleWriterRefresh() {
@@ -432,6 +467,9 @@ public final class ConcurrentStreamWriter implements Closeable {
    */
   private final class EventQueue implements Closeable {
 
+    // Time to park between the checks of the queue size while waiting for more events in the group commit mode
+    private static final long LINGER_PARK_NANOS = 100000L;
+
     private final StreamId streamId;
     private final StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector;
     private final Queue<WriteRequest> queue;
@@ -439,7 +477,12 @@ public final class ConcurrentStreamWriter implements Closeable {
     private final WriteRequest.Metrics metrics;
     private final MutableStreamEvent streamEvent;
     private final Function<StreamEventData, StreamEvent> eventTransformer;
+    private final AtomicLong queuedBytes;
+    private final Histogram batchBytes;
+    private final LatencyHistogram queueLatency;
+    private final LatencyHistogram flushLatency;
     private FileWriter<StreamEventData> fileWriter;
+    private long nextGroupCommitMetricsNanos;
     private boolean closed;
 
     EventQueue(StreamId streamId, StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector) {
@@ -449,6 +492,11 @@ public final class ConcurrentStreamWriter implements Closeable {
       this.writerFlag = new AtomicBoolean(false);
       this.metrics = new WriteRequest.Metrics();
       this.metricsCollector = metricsCollector;
+      this.queuedBytes = new AtomicLong();
+      this.batchBytes = new Histogram();
+      this.queueLatency = new LatencyHistogram();
+      this.flushLatency = new LatencyHistogram();
+      this.nextGroupCommitMetricsNanos = System.nanoTime() + GROUP_COMMIT_METRICS_INTERVAL_NANOS;
       this.eventTransformer = new Function<StreamEventData, StreamEvent>() {
         @Override
         public StreamEvent apply(StreamEventData data) {
@@ -463,8 +511,13 @@ public final class ConcurrentStreamWriter implements Closeable {
      * @param headers headers of the event
      * @param body body of the event
      * @return A {@link WriteRequest} that contains the status of the request
+     * @throws IOException if failed to encode the event in the group commit mode
      */
-    WriteRequest append(Map<String, String> headers, ByteBuffer body) {
+    WriteRequest append(Map<String, String> headers, ByteBuffer body) throws IOException {
+      if (groupCommit) {
+        StreamEventData data = new EncodedStreamEventData(new StreamEventData(headers, body));
+        return add(new EncodedWriteRequest(ImmutableList.of(data), false));
+      }
       WriteRequest request = new SingleWriteRequest(headers, body);
       queue.add(request);
       return request;
@@ -476,13 +529,42 @@ public final class ConcurrentStreamWriter implements Closeable {
      *
      * @param events an {@link Iterator} of {@link StreamEventData} containing the list of events to be written
      * @return A {@link WriteRequest} that contains the status of the request
+     * @throws IOException if failed to encode the events in the group commit mode
      */
-    WriteRequest append(Iterator<? extends StreamEventData> events) {
+    WriteRequest append(Iterator<? extends StreamEventData> events) throws IOException {
+      if (groupCommit) {
+        ImmutableList.Builder<StreamEventData> encoded = ImmutableList.builder();
+        while (events.hasNext()) {
+          encoded.add(new EncodedStreamEventData(events.next()));
+        }
+        return add(new EncodedWriteRequest(encoded.build(), true));
+      }
       WriteRequest request = new BatchWriteRequest(events);
       queue.add(request);
       return request;
     }
 
+    private WriteRequest add(EncodedWriteRequest request) {
+      queuedBytes.addAndGet(request.getEncodedSize());
+      queue.add(request);
+      return request;
+    }
+
+    /**
+     * Removes the next request from the queue, and deducts its size from the queued bytes in the group commit mode,
+     * whether the request gets written or not.
+     *
+     * @return the next request, or {@code null} if the queue is empty
+     */
+    @Nullable
+    private WriteRequest poll() {
+      WriteRequest request = queue.poll();
+      if (groupCommit && request != null) {
+        queuedBytes.addAndGet(-((EncodedWriteRequest) request).getEncodedSize());
+      }
+      return request;
+    }
+
     /**
      * Attempts to append a file to the stream.
      *
@@ -542,14 +624,37 @@ public final class ConcurrentStreamWriter implements Closeable {
         List<WriteRequest> processQueue = Lists.newArrayListWithExpectedSize(workerThreads);
         try {
           FileWriter<StreamEventData> writer = getFileWriter();
-          WriteRequest request = queue.poll();
+          if (groupCommit) {
+            linger();
+          }
+          WriteRequest request = poll();
           streamEvent.setTimestamp(System.currentTimeMillis());
+          long writeStartTime = System.nanoTime();
+          long encodedBytes = 0L;
           while (request != null) {
             processQueue.add(request);
             request.write(writer, metrics);
-            request = queue.poll();
+            if (groupCommit) {
+              EncodedWriteRequest encodedRequest = (EncodedWriteRequest) request;
+              queueLatency.record(writeStartTime - encodedRequest.getEnqueueTime());
+              encodedBytes += encodedRequest.getEncodedSize();
+              if (encodedBytes >= groupCommitMaxBatchBytes) {
+                break;
+              }
+            }
+            request = poll();
           }
+          long flushStartTime = System.nanoTime();
           writer.flush();
+          if (groupCommit) {
+            long flushEndTime = System.nanoTime();
+            flushLatency.record(flushEndTime - flushStartTime);
+            batchBytes.record(encodedBytes);
+            if (flushEndTime - nextGroupCommitMetricsNanos >= 0) {
+              nextGroupCommitMetricsNanos = flushEndTime + GROUP_COMMIT_METRICS_INTERVAL_NANOS;
+              metricsCollector.emitGroupCommitMetrics(batchBytes, queueLatency, flushLatency);
+            }
+          }
           for (WriteRequest processed : processQueue) {
             processed.completed(null);
           }
@@ -572,6 +677,19 @@ public final class ConcurrentStreamWriter implements Closeable {
       return true;
     }
 
+    /**
+     * Waits up to the linger time for more requests to be enqueued, until the enqueued requests reach the maximum
+     * batch size. This method should only be called from the writer leader thread.
+     */
+    private void linger() {
+      long remaining = groupCommitLingerNanos;
+      long deadline = System.nanoTime() + remaining;
+      while (remaining > 0 && queuedBytes.get() < groupCommitMaxBatchBytes) {
+        LockSupport.parkNanos(Math.min(remaining, LINGER_PARK_NANOS));
+        remaining = deadline - System.nanoTime();
+      }
+    }
+
     /**
      * Attempts to refresh the underlying FileWriter, if it is {@link Refreshable}.
      */
@@ -629,15 +747,18 @@ public final class ConcurrentStreamWriter implements Closeable {
       if (fileWriter != null) {
         Closeables.closeQuietly(fileWriter);
       }
+      if (groupCommit) {
+        metricsCollector.emitGroupCommitMetrics(batchBytes, queueLatency, flushLatency);
+      }
 
       // Drain the queue with failure. This could happen when
       // 1. Shutting down of http service, which is fine to set to failure as all connections are closed already.
       // 2. When stream generation change. In this case, the client would received failure.
-      WriteRequest data = queue.poll();
+      WriteRequest data = poll();
       Throwable writerClosedException = new IOException("Stream writer closed").fillInStackTrace();
       while (data != null) {
         data.completed(writerClosedException);
-        data = queue.poll();
+        data = poll();
       }
       closed = true;
     }
@@ -770,6 +891,55 @@ public final class ConcurrentStreamWriter implements Closeable {
     }
   }
 
+  /**
+   * A {@link WriteRequest} in the group commit mode, which contains events that are already encoded.
+   */
+  private static final class EncodedWriteRequest extends WriteRequest {
+
+    private final List<StreamEventData> events;
+    private final boolean batch;
+    private final int encodedSize;
+    private final long enqueueTime;
+
+    /**
+     * Creates a request.
+     *
+     * @param events list of {@link EncodedStreamEventData}
+     * @param batch {@code true} if the events are written with {@link FileWriter#appendAll(Iterator)}, hence are in
+     *              the same data block
+     */
+    EncodedWriteRequest(List<StreamEventData> events, boolean batch) {
+      int size = 0;
+      for (StreamEventData event : events) {
+        size += ((EncodedStreamEventData) event).getEncodedData().length;
+      }
+      this.events = events;
+      this.batch = batch;
+      this.encodedSize = size;
+      this.enqueueTime = System.nanoTime();
+    }
+
+    int getEncodedSize() {
+      return encodedSize;
+    }
+
+    long getEnqueueTime() {
+      return enqueueTime;
+    }
+
+    @Override
+    void write(FileWriter<StreamEventData> writer, Metrics metrics) throws IOException {
+      for (StreamEventData event : events) {
+        metrics.increment(((EncodedStreamEventData) event).getBodySize());
+      }
+      if (batch) {
+        writer.appendAll(events.iterator());
+      } else {
+        writer.append(events.get(0));
+      }
+    }
+  }
+
   /**
    * A {@link WriteRequest} that contains a list of stream events.
    */
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream.service;
+
+import co.cask.cdap.api.stream.StreamEventData;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.stream.StreamEventDataCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * A {@link StreamEventData} that is encoded with {@link StreamEventDataCodec} when it is created, so that the
+ * encoding is done by the thread that creates it instead of the thread that writes it to the stream file.
+ */
+final class EncodedStreamEventData extends StreamEventData {
+
+  private final byte[] encodedData;
+  private final int bodySize;
+
+  EncodedStreamEventData(StreamEventData data) throws IOException {
+    super(data.getHeaders(), data.getBody());
+    this.bodySize = data.getBody().remaining();
+
+    // The encoded size is the body plus the lengths and the headers
+    ByteArrayOutputStream output = new ByteArrayOutputStream(bodySize + 16);
+    StreamEventDataCodec.encode(data, new BinaryEncoder(output));
+    this.encodedData = output.toByteArray();
+  }
+
+  /**
+   * Returns the encoded event data.
+   */
+  byte[] getEncodedData() {
+    return encodedData;
+  }
+
+  /**
+   * Returns the size in bytes of the event body when this instance was created.
+   */
+  int getBodySize() {
+    return bodySize;
+  }
+}
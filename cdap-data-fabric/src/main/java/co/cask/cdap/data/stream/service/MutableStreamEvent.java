@@ -18,16 +18,18 @@ package co.cask.cdap.data.stream.service;
 
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.api.stream.StreamEventData;
+import co.cask.cdap.data.stream.EncodedStreamEvent;
 
 import java.nio.ByteBuffer;
 import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * A mutable {@link StreamEvent} that allows setting the data and timestamp.
  */
 @NotThreadSafe
-public final class MutableStreamEvent extends StreamEvent {
+public final class MutableStreamEvent extends StreamEvent implements EncodedStreamEvent {
 
   private StreamEventData data;
   private long timestamp;
@@ -77,4 +79,10 @@ public final class MutableStreamEvent extends StreamEvent {
   public Map<String, String> getHeaders() {
     return data.getHeaders();
   }
+
+  @Nullable
+  @Override
+  public byte[] getEncodedData() {
+    return data instanceof EncodedStreamEventData ? ((EncodedStreamEventData) data).getEncodedData() : null;
+  }
 }
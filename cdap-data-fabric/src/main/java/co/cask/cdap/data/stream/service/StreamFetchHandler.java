@@ -17,14 +17,18 @@
 package co.cask.cdap.data.stream.service;
 
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.security.Impersonator;
 import co.cask.cdap.common.stream.StreamEventTypeAdapter;
 import co.cask.cdap.common.utils.TimeMathParser;
 import co.cask.cdap.data.file.FileReader;
 import co.cask.cdap.data.file.ReadFilter;
 import co.cask.cdap.data.stream.MultiLiveStreamFileReader;
+import co.cask.cdap.data.stream.StreamDataFileBlockReader;
+import co.cask.cdap.data.stream.StreamDataFileIndexCache;
 import co.cask.cdap.data.stream.StreamEventOffset;
 import co.cask.cdap.data.stream.StreamFileOffset;
 import co.cask.cdap.data.stream.StreamFileType;
@@ -41,8 +45,10 @@ import co.cask.http.AbstractHttpHandler;
 import co.cask.http.ChunkResponder;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
 import com.google.common.io.Closeables;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -56,9 +62,11 @@ import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
@@ -77,6 +85,20 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
   private static final Gson GSON = StreamEventTypeAdapter.register(new GsonBuilder()).create();
   private static final int MAX_EVENTS_PER_READ = 100;
   private static final int CHUNK_SIZE = 8192;
+  private static final int BLOCK_CHUNK_SIZE = 256 * 1024;
+  private static final Ordering<Location> LOCATION_NAME_ORDERING = new Ordering<Location>() {
+    @Override
+    public int compare(Location left, Location right) {
+      return left.getName().compareTo(right.getName());
+    }
+  };
+  private static final Ordering<Location> PARTITION_ORDERING = new Ordering<Location>() {
+    @Override
+    public int compare(Location left, Location right) {
+      return Long.compare(StreamUtils.getPartitionStartTime(left.getName()),
+                          StreamUtils.getPartitionStartTime(right.getName()));
+    }
+  };
 
   private final CConfiguration cConf;
   private final StreamAdmin streamAdmin;
@@ -84,17 +106,24 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
   private final Impersonator impersonator;
   private final AuthorizationEnforcer authorizationEnforcer;
   private final AuthenticationContext authenticationContext;
+  private final StreamDataFileIndexCache indexCache;
 
   @Inject
   StreamFetchHandler(CConfiguration cConf, StreamAdmin streamAdmin, StreamMetaStore streamMetaStore,
                      Impersonator impersonator, AuthorizationEnforcer authorizationEnforcer,
-                     AuthenticationContext authenticationContext) {
+                     AuthenticationContext authenticationContext, MetricsCollectionService metricsCollectionService) {
     this.cConf = cConf;
     this.streamAdmin = streamAdmin;
     this.streamMetaStore = streamMetaStore;
     this.impersonator = impersonator;
     this.authorizationEnforcer = authorizationEnforcer;
     this.authenticationContext = authenticationContext;
+    // Index cache metrics are emitted with the stream handler metrics, as both handlers are in the same service
+    this.indexCache = new StreamDataFileIndexCache(cConf, metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                      Constants.Metrics.Tag.COMPONENT, Constants.Gateway.METRICS_CONTEXT,
+                      Constants.Metrics.Tag.HANDLER, Constants.Gateway.STREAM_HANDLER_NAME,
+                      Constants.Metrics.Tag.INSTANCE_ID, cConf.get(Constants.Stream.CONTAINER_INSTANCE_ID, "0"))));
   }
 
   /**
@@ -204,6 +233,146 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
 
   }
 
+  /**
+   * Handler for the HTTP API {@code /streams/[stream_name]/events/blocks?start=[start_ts]&end=[end_ts]}
+   * <p>
+   * Responds with:
+   * <ul>
+   * <li>404 if stream does not exist</li>
+   * <li>204 if no stream file has events in the given start/end time range</li>
+   * <li>200 if there is one or more stream files with events in the time range</li>
+   * </ul>
+   * </p>
+   * <p>
+   * Response body is the data blocks with events in the time range, copied without decoding the events. For each
+   * stream file, in the order of partitions and file names, the body contains a stream file in the version 2
+   * format, which has the file properties and the data blocks of the file in the time range. Events are ordered by
+   * timestamp within each of these files, but not across them.
+   * </p>
+   *
+   * @see StreamDataFileBlockReader StreamDataFileBlockReader for the format of each stream file
+   */
+  @GET
+  @Path("/{stream}/events/blocks")
+  public void fetchBlocks(HttpRequest request, final HttpResponder responder,
+                          @PathParam("namespace-id") String namespaceId,
+                          @PathParam("stream") String stream,
+                          @QueryParam("start") @DefaultValue("0") String start,
+                          @QueryParam("end") @DefaultValue("9223372036854775807") String end) throws Exception {
+    long startTime = TimeMathParser.parseTime(start, TimeUnit.MILLISECONDS);
+    long endTime = TimeMathParser.parseTime(end, TimeUnit.MILLISECONDS);
+
+    StreamId streamId = new StreamId(namespaceId, stream);
+    if (!verifyGetEventsRequest(streamId, startTime, endTime, 1, responder)) {
+      return;
+    }
+
+    // Make sure the user has READ permission on the stream since getConfig doesn't check for the same.
+    authorizationEnforcer.enforce(streamId, authenticationContext.getPrincipal(), Action.READ);
+    final StreamConfig streamConfig = streamAdmin.getConfig(streamId);
+    long now = System.currentTimeMillis();
+    final long streamStartTime = Math.max(startTime, now - streamConfig.getTTL());
+    final long streamEndTime = Math.min(endTime, now);
+    impersonator.doAs(new NamespaceId(namespaceId), new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        int generation = StreamUtils.getGeneration(streamConfig);
+        ChunkResponder chunkResponder = null;
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(BLOCK_CHUNK_SIZE);
+        ChannelBufferOutputStream output = new ChannelBufferOutputStream(buffer);
+
+        for (Location eventLocation : getEventLocations(streamConfig, generation, streamStartTime, streamEndTime)) {
+          Location indexLocation = new StreamFileOffset(eventLocation, 0L, generation).getIndexLocation();
+          StreamDataFileBlockReader reader;
+          try {
+            reader = StreamDataFileBlockReader.open(Locations.newInputSupplier(eventLocation),
+                                                    indexLocation.exists() ? indexLocation : null, indexCache,
+                                                    streamStartTime);
+          } catch (FileNotFoundException e) {
+            // The file is removed by TTL cleanup or truncate
+            continue;
+          }
+
+          try {
+            // Files without events in the time range are omitted
+            if (!reader.hasBlock(streamEndTime)) {
+              continue;
+            }
+            reader.writeHeader(output);
+            while (reader.copyBlock(streamEndTime, output)) {
+              if (buffer.readableBytes() >= BLOCK_CHUNK_SIZE) {
+                if (chunkResponder == null) {
+                  chunkResponder = startBlocksResponse(responder);
+                }
+                // Need to copy the buffer because the buffer will get reused and send chunk is an async operation
+                chunkResponder.sendChunk(buffer.copy());
+                buffer.clear();
+              }
+            }
+            reader.writeEndMarker(output);
+          } finally {
+            Closeables.closeQuietly(reader);
+          }
+        }
+
+        if (chunkResponder == null && !buffer.readable()) {
+          responder.sendStatus(HttpResponseStatus.NO_CONTENT);
+          return null;
+        }
+        if (chunkResponder == null) {
+          chunkResponder = startBlocksResponse(responder);
+        }
+        // Send the last chunk that still has data
+        if (buffer.readable()) {
+          chunkResponder.sendChunk(buffer);
+        }
+        Closeables.closeQuietly(chunkResponder);
+        return null;
+      }
+    });
+  }
+
+  private ChunkResponder startBlocksResponse(HttpResponder responder) {
+    return responder.sendChunkStart(HttpResponseStatus.OK,
+                                    ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, "application/octet-stream"));
+  }
+
+  /**
+   * Returns the locations of all event files in the partitions that overlap with the given time range, ordered by
+   * partition start time and then by file name.
+   */
+  private List<Location> getEventLocations(StreamConfig streamConfig, int generation,
+                                           long startTime, long endTime) throws IOException {
+    Location baseLocation = StreamUtils.createGenerationLocation(streamConfig.getLocation(), generation);
+    if (!baseLocation.isDirectory()) {
+      return Collections.emptyList();
+    }
+
+    List<Location> partitions = Lists.newArrayList();
+    for (Location location : baseLocation.list()) {
+      String name = location.getName();
+      if (!location.isDirectory() || !StreamUtils.isPartition(name)) {
+        continue;
+      }
+      if (StreamUtils.getPartitionStartTime(name) < endTime && StreamUtils.getPartitionEndTime(name) > startTime) {
+        partitions.add(location);
+      }
+    }
+    Collections.sort(partitions, PARTITION_ORDERING);
+
+    List<Location> eventLocations = Lists.newArrayList();
+    for (Location partition : partitions) {
+      List<Location> partitionEventLocations = Lists.newArrayList();
+      for (Location location : partition.list()) {
+        if (StreamFileType.EVENT.isMatched(location.getName())) {
+          partitionEventLocations.add(location);
+        }
+      }
+      eventLocations.addAll(LOCATION_NAME_ORDERING.sortedCopy(partitionEventLocations));
+    }
+    return eventLocations;
+  }
+
   /**
    * Reads events from the given reader.
    */
@@ -308,7 +477,7 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
       fileOffsets.add(new StreamFileOffset(eventLocation, 0, generation));
     }
 
-    MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, fileOffsets);
+    MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, fileOffsets, 0, indexCache);
     reader.initialize();
     return reader;
   }
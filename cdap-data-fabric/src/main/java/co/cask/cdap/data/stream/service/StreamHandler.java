@@ -26,6 +26,8 @@ import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.common.NotFoundException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.metrics.Histogram;
+import co.cask.cdap.common.metrics.LatencyHistogram;
 import co.cask.cdap.common.namespace.NamespaceQueryAdmin;
 import co.cask.cdap.common.security.Impersonator;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
@@ -148,7 +150,10 @@ public final class StreamHandler extends AbstractHttpHandler {
     StreamMetricsCollectorFactory metricsCollectorFactory = createStreamMetricsCollectorFactory();
     this.streamWriter = new ConcurrentStreamWriter(streamCoordinatorClient, streamAdmin, writerFactory,
                                                    cConf.getInt(Constants.Stream.WORKER_THREADS),
-                                                   metricsCollectorFactory, impersonator);
+                                                   metricsCollectorFactory, impersonator,
+                                                   cConf.getBoolean(Constants.Stream.GROUP_COMMIT_ENABLED),
+                                                   cConf.getLong(Constants.Stream.GROUP_COMMIT_LINGER_MS),
+                                                   cConf.getInt(Constants.Stream.GROUP_COMMIT_MAX_BATCH_BYTES));
     this.namespaceQueryAdmin = namespaceQueryAdmin;
     this.impersonator = impersonator;
     this.authorizationEnforcer = authorizationEnforcer;
@@ -362,6 +367,14 @@ public final class StreamHandler extends AbstractHttpHandler {
               childCollector.increment("collect.events", eventsWritten);
             }
           }
+
+          @Override
+          public void emitGroupCommitMetrics(Histogram batchBytes, LatencyHistogram queueLatency,
+                                             LatencyHistogram flushLatency) {
+            batchBytes.emit(childCollector, "collect.batch.bytes");
+            queueLatency.emit(childCollector, "collect.queue.latency");
+            flushLatency.emit(childCollector, "collect.flush.latency");
+          }
         };
       }
     };
@@ -16,6 +16,8 @@
 
 package co.cask.cdap.data.stream.service;
 
+import co.cask.cdap.common.metrics.Histogram;
+import co.cask.cdap.common.metrics.LatencyHistogram;
 import co.cask.cdap.proto.id.StreamId;
 
 /**
@@ -35,6 +37,15 @@ public interface StreamMetricsCollectorFactory {
      * @param eventsWritten number of events written to the stream
      */
     void emitMetrics(long bytesWritten, long eventsWritten);
+
+    /**
+     * Emit group commit metrics of a stream, which resets the given histograms.
+     *
+     * @param batchBytes sizes in bytes of the batches written to the stream
+     * @param queueLatency latencies of the events waiting in the queue before being written
+     * @param flushLatency latencies of flushing the batches to the stream file
+     */
+    void emitGroupCommitMetrics(Histogram batchBytes, LatencyHistogram queueLatency, LatencyHistogram flushLatency);
   }
 
   /**
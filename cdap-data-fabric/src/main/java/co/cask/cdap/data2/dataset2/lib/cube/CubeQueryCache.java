@@ -0,0 +1,330 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.data2.dataset2.lib.timeseries.Fact;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Table;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * A size bounded cache of the scanned results of {@link CubeQuery CubeQueries}, which is kept up to date with the
+ * facts added to the {@link DefaultCube}.
+ *
+ * Results are cached for a time range aligned to buckets of {@link #BUCKET_SIZE} resolution intervals, so that queries
+ * over a moving time window, as issued by dashboards, hit the same entry until the window crosses a bucket boundary.
+ * Sums of counters are updated in place as facts are added, while any other fact that falls into a cached result
+ * invalidates it. Entries also expire a fixed time after they are loaded, which bounds how stale they get when the
+ * cube is written by another process.
+ */
+final class CubeQueryCache {
+
+  /**
+   * Number of resolution intervals in a time range bucket.
+   */
+  static final int BUCKET_SIZE = 60;
+
+  private final Cache<Key, Table<Map<String, String>, String, Map<Long, Long>>> cache;
+  private final AtomicInteger writesInProgress;
+  // Guards the cached results and the writeVersion
+  private final Object lock;
+  private long writeVersion;
+
+  CubeQueryCache(int maxSize, long expireSeconds) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(maxSize)
+      .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+      .build();
+    this.writesInProgress = new AtomicInteger();
+    this.lock = new Object();
+  }
+
+  /**
+   * Creates the cache key for a query in the given aggregation.
+   */
+  Key createKey(String aggregationName, Aggregation aggregation, CubeQuery query) {
+    // Map with null values for the dimensions that match any value
+    Map<String, String> slice = Maps.newLinkedHashMap();
+    for (String dimensionName : aggregation.getDimensionNames()) {
+      slice.put(dimensionName, query.getDimensionValues().get(dimensionName));
+    }
+    long bucket = (long) query.getResolution() * BUCKET_SIZE;
+    long startTs = query.getStartTs() / bucket * bucket;
+    long endTs = query.getEndTs() / bucket;
+    endTs = endTs >= Long.MAX_VALUE / bucket - 1 ? Long.MAX_VALUE : (endTs + 1) * bucket - 1;
+
+    return new Key(aggregationName, query.getResolution(), Collections.unmodifiableMap(slice),
+                   ImmutableSortedSet.copyOf(query.getGroupByDimensions()),
+                   ImmutableMap.copyOf(query.getMeasurements()), startTs, endTs);
+  }
+
+  /**
+   * Returns the cached result for the given key with only the values in the given time range, or {@code null} if
+   * there is no cached result.
+   */
+  @Nullable
+  Table<Map<String, String>, String, Map<Long, Long>> get(Key key, long startTs, long endTs) {
+    synchronized (lock) {
+      Table<Map<String, String>, String, Map<Long, Long>> cached = cache.getIfPresent(key);
+      return cached == null ? null : filter(cached, startTs, endTs);
+    }
+  }
+
+  /**
+   * Returns the version to pass to {@link #put} for a result about to be scanned, or {@code -1} if the result
+   * must not be cached because facts are being added.
+   */
+  long startLoad() {
+    synchronized (lock) {
+      return writesInProgress.get() == 0 ? writeVersion : -1L;
+    }
+  }
+
+  /**
+   * Caches the result scanned for the given key, unless facts were added since the scan started.
+   *
+   * @param version the version returned by {@link #startLoad()} before the scan
+   */
+  void put(Key key, long version, Table<Map<String, String>, String, Map<Long, Long>> result) {
+    synchronized (lock) {
+      if (version >= 0 && version == writeVersion && writesInProgress.get() == 0) {
+        cache.put(key, result);
+      }
+    }
+  }
+
+  /**
+   * Must be called before facts are written to or deleted from the fact tables.
+   */
+  void startWrite() {
+    writesInProgress.incrementAndGet();
+  }
+
+  /**
+   * Must be called after facts are written to the fact tables, to update or invalidate the cached results they
+   * fall into.
+   *
+   * @param facts the facts written, each with the name of its aggregation
+   */
+  void finishWrite(Collection<ImmutablePair<String, Fact>> facts) {
+    try {
+      synchronized (lock) {
+        writeVersion++;
+        if (cache.size() == 0) {
+          return;
+        }
+        Map<String, List<Key>> keysByAggregation = Maps.newHashMap();
+        for (Key key : cache.asMap().keySet()) {
+          List<Key> keys = keysByAggregation.get(key.aggregation);
+          if (keys == null) {
+            keys = Lists.newArrayList();
+            keysByAggregation.put(key.aggregation, keys);
+          }
+          keys.add(key);
+        }
+        for (ImmutablePair<String, Fact> fact : facts) {
+          List<Key> keys = keysByAggregation.get(fact.getFirst());
+          if (keys != null) {
+            for (Key key : keys) {
+              update(key, fact.getSecond());
+            }
+          }
+        }
+      }
+    } finally {
+      writesInProgress.decrementAndGet();
+    }
+  }
+
+  /**
+   * Must be called instead of {@link #finishWrite} after facts are deleted from the fact tables, or writing them
+   * failed. Removes all cached results.
+   */
+  void finishWriteAndInvalidate() {
+    try {
+      synchronized (lock) {
+        writeVersion++;
+        cache.invalidateAll();
+      }
+    } finally {
+      writesInProgress.decrementAndGet();
+    }
+  }
+
+  /**
+   * Applies the given fact to the cached result of the given key, or invalidates the result if the fact cannot be
+   * applied in place.
+   */
+  private void update(Key key, Fact fact) {
+    long ts = fact.getTimestamp() / key.resolution * key.resolution;
+    if (ts < key.startTs || ts > key.endTs) {
+      return;
+    }
+    // Same as the scan, a fact matches if it has the values of the query dimensions
+    for (DimensionValue dimensionValue : fact.getDimensionValues()) {
+      String value = key.slice.get(dimensionValue.getName());
+      if (value != null && !value.equals(dimensionValue.getValue())) {
+        return;
+      }
+    }
+
+    Table<Map<String, String>, String, Map<Long, Long>> result = cache.getIfPresent(key);
+    if (result == null) {
+      return;
+    }
+    Map<String, String> seriesDimensions = null;
+    for (Measurement measurement : fact.getMeasurements()) {
+      AggregationFunction function = key.measurements.get(measurement.getName());
+      if (function == null) {
+        continue;
+      }
+      // Gauges overwrite and other functions depend on the stored values, which are unknown here
+      if (measurement.getType() != MeasureType.COUNTER || function != AggregationFunction.SUM) {
+        cache.invalidate(key);
+        return;
+      }
+      if (seriesDimensions == null) {
+        seriesDimensions = getSeriesDimensions(key.groupBy, fact);
+        if (seriesDimensions == null) {
+          return;
+        }
+      }
+      Map<Long, Long> timeValues = result.get(seriesDimensions, measurement.getName());
+      if (timeValues == null) {
+        timeValues = Maps.newHashMap();
+        result.put(seriesDimensions, measurement.getName(), timeValues);
+      }
+      Long value = timeValues.get(ts);
+      timeValues.put(ts, value == null ? measurement.getValue() : value + measurement.getValue());
+    }
+  }
+
+  /**
+   * Returns the values of the group by dimensions of the given fact, or {@code null} if the fact is not part of the
+   * query result because it has no value for one of them.
+   */
+  @Nullable
+  private Map<String, String> getSeriesDimensions(Set<String> groupBy, Fact fact) {
+    Map<String, String> seriesDimensions = Maps.newTreeMap();
+    for (DimensionValue dimensionValue : fact.getDimensionValues()) {
+      if (groupBy.contains(dimensionValue.getName())) {
+        if (dimensionValue.getValue() == null) {
+          return null;
+        }
+        seriesDimensions.put(dimensionValue.getName(), dimensionValue.getValue());
+      }
+    }
+    return seriesDimensions;
+  }
+
+  /**
+   * Returns a copy of the given result with only the values in the given time range.
+   */
+  static Table<Map<String, String>, String, Map<Long, Long>> filter(
+    Table<Map<String, String>, String, Map<Long, Long>> result, long startTs, long endTs) {
+
+    Table<Map<String, String>, String, Map<Long, Long>> filtered = HashBasedTable.create();
+    for (Table.Cell<Map<String, String>, String, Map<Long, Long>> cell : result.cellSet()) {
+      Map<Long, Long> timeValues = Maps.newHashMap();
+      for (Map.Entry<Long, Long> entry : cell.getValue().entrySet()) {
+        if (entry.getKey() >= startTs && entry.getKey() <= endTs) {
+          timeValues.put(entry.getKey(), entry.getValue());
+        }
+      }
+      if (!timeValues.isEmpty()) {
+        filtered.put(cell.getRowKey(), cell.getColumnKey(), timeValues);
+      }
+    }
+    return filtered;
+  }
+
+  /**
+   * Key of a cached result. The time range covers whole buckets, hence is usually larger than the queried range.
+   */
+  static final class Key {
+    private final String aggregation;
+    private final int resolution;
+    private final Map<String, String> slice;
+    private final Set<String> groupBy;
+    private final Map<String, AggregationFunction> measurements;
+    private final long startTs;
+    private final long endTs;
+
+    private Key(String aggregation, int resolution, Map<String, String> slice, Set<String> groupBy,
+                Map<String, AggregationFunction> measurements, long startTs, long endTs) {
+      this.aggregation = aggregation;
+      this.resolution = resolution;
+      this.slice = slice;
+      this.groupBy = groupBy;
+      this.measurements = measurements;
+      this.startTs = startTs;
+      this.endTs = endTs;
+    }
+
+    long getStartTs() {
+      return startTs;
+    }
+
+    long getEndTs() {
+      return endTs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key other = (Key) o;
+      return resolution == other.resolution
+        && startTs == other.startTs
+        && endTs == other.endTs
+        && aggregation.equals(other.aggregation)
+        && slice.equals(other.slice)
+        && groupBy.equals(other.groupBy)
+        && measurements.equals(other.measurements);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(aggregation, resolution, slice, groupBy, measurements, startTs, endTs);
+    }
+  }
+}
@@ -33,6 +33,7 @@ import co.cask.cdap.data2.dataset2.lib.timeseries.FactScan;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
@@ -67,6 +68,9 @@ public class DefaultCube implements Cube, MeteredDataset {
   private final Map<Integer, FactTable> resolutionToFactTable;
   private final Map<String, ? extends Aggregation> aggregations;
   private final Map<String, AggregationAlias> aggregationAliasMap;
+  @Nullable
+  private final CubeQueryCache queryCache;
+  private final int maxRecordsToScan;
 
   @Nullable
   private MetricsCollector metrics;
@@ -74,12 +78,37 @@ public class DefaultCube implements Cube, MeteredDataset {
   public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
                      Map<String, ? extends Aggregation> aggregations,
                      Map<String, AggregationAlias> aggregationAliasMap) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, 0, 0L);
+  }
+
+  /**
+   * Creates a cube that caches the results of up to the given number of queries.
+   *
+   * @param queryCacheSize maximum number of query results to cache, or {@code 0} to not cache any
+   * @param queryCacheExpireSeconds number of seconds after which a cached result expires, which bounds how stale
+   *                                results get when the cube is also written by other processes
+   */
+  public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+                     Map<String, ? extends Aggregation> aggregations,
+                     Map<String, AggregationAlias> aggregationAliasMap,
+                     int queryCacheSize, long queryCacheExpireSeconds) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, queryCacheSize, queryCacheExpireSeconds,
+         MAX_RECORDS_TO_SCAN);
+  }
+
+  @VisibleForTesting
+  DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+              Map<String, ? extends Aggregation> aggregations,
+              Map<String, AggregationAlias> aggregationAliasMap,
+              int queryCacheSize, long queryCacheExpireSeconds, int maxRecordsToScan) {
     this.aggregations = aggregations;
     this.resolutionToFactTable = Maps.newHashMap();
     for (int resolution : resolutions) {
       resolutionToFactTable.put(resolution, factTableSupplier.get(resolution, 3600));
     }
     this.aggregationAliasMap = aggregationAliasMap;
+    this.queryCache = queryCacheSize > 0 ? new CubeQueryCache(queryCacheSize, queryCacheExpireSeconds) : null;
+    this.maxRecordsToScan = maxRecordsToScan;
   }
 
   @Override
@@ -90,6 +119,9 @@ public class DefaultCube implements Cube, MeteredDataset {
   @Override
   public void add(Collection<? extends CubeFact> facts) {
     List<Fact> toWrite = Lists.newArrayList();
+    // Facts with the name of their aggregation, for updating the query cache
+    List<ImmutablePair<String, Fact>> cacheUpdates = queryCache == null ? null
+      : Lists.<ImmutablePair<String, Fact>>newArrayList();
     int dimValuesCount = 0;
     for (CubeFact fact : facts) {
       for (Map.Entry<String, ? extends Aggregation> aggEntry : aggregations.entrySet()) {
@@ -108,13 +140,34 @@ public class DefaultCube implements Cube, MeteredDataset {
             dimensionValues.add(new DimensionValue(dimensionName, fact.getDimensionValues().get(dimensionValueKey)));
             dimValuesCount++;
           }
-          toWrite.add(new Fact(fact.getTimestamp(), dimensionValues, fact.getMeasurements()));
+          Fact tsFact = new Fact(fact.getTimestamp(), dimensionValues, fact.getMeasurements());
+          toWrite.add(tsFact);
+          if (cacheUpdates != null) {
+            cacheUpdates.add(ImmutablePair.of(aggEntry.getKey(), tsFact));
+          }
         }
       }
     }
 
-    for (FactTable table : resolutionToFactTable.values()) {
-      table.add(toWrite);
+    if (queryCache == null) {
+      for (FactTable table : resolutionToFactTable.values()) {
+        table.add(toWrite);
+      }
+    } else {
+      queryCache.startWrite();
+      boolean written = false;
+      try {
+        for (FactTable table : resolutionToFactTable.values()) {
+          table.add(toWrite);
+        }
+        written = true;
+      } finally {
+        if (written) {
+          queryCache.finishWrite(cacheUpdates);
+        } else {
+          queryCache.finishWriteAndInvalidate();
+        }
+      }
     }
 
     incrementMetric("cube.cubeFact.add.request.count", 1);
@@ -204,13 +257,16 @@ public class DefaultCube implements Cube, MeteredDataset {
       dimensionValues.add(new DimensionValue(dimensionName, query.getDimensionValues().get(dimensionName)));
     }
 
-    FactScan scan = new FactScan(query.getStartTs(), query.getEndTs(),
-                                 query.getMeasurements().keySet(), dimensionValues);
-
-    // 3) execute scan query
+    // 3) execute scan query, or take the result from the cache
     FactTable table = resolutionToFactTable.get(query.getResolution());
-    FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    Table<Map<String, String>, String, Map<Long, Long>> resultMap;
+    if (queryCache == null) {
+      resultMap = HashBasedTable.create();
+      getTimeSeries(query, table.scan(new FactScan(query.getStartTs(), query.getEndTs(),
+                                                   query.getMeasurements().keySet(), dimensionValues)), resultMap);
+    } else {
+      resultMap = getCachedTimeSeries(query, aggName, agg, table, dimensionValues);
+    }
 
     incrementMetric("cube.query.request.success.count", 1);
     incrementMetric("cube.query.result.size", resultMap.size());
@@ -223,6 +279,19 @@ public class DefaultCube implements Cube, MeteredDataset {
 
   @Override
   public void delete(CubeDeleteQuery query) {
+    if (queryCache == null) {
+      deleteFacts(query);
+      return;
+    }
+    queryCache.startWrite();
+    try {
+      deleteFacts(query);
+    } finally {
+      queryCache.finishWriteAndInvalidate();
+    }
+  }
+
+  private void deleteFacts(CubeDeleteQuery query) {
     //this may be very inefficient and its better to use TTL, this is to only support existing old functionality.
     List<DimensionValue> dimensionValues = Lists.newArrayList();
     // find all the aggregations that match the dimensionValues in the query and
@@ -329,10 +398,46 @@ public class DefaultCube implements Cube, MeteredDataset {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
-    // {dimension values, measure} -> {time -> value}s
-    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
+  private Table<Map<String, String>, String, Map<Long, Long>> getCachedTimeSeries(CubeQuery query, String aggName,
+                                                                                Aggregation agg, FactTable table,
+                                                                                List<DimensionValue> dimensionValues) {
+    CubeQueryCache.Key cacheKey = queryCache.createKey(aggName, agg, query);
+    Table<Map<String, String>, String, Map<Long, Long>> result =
+      queryCache.get(cacheKey, query.getStartTs(), query.getEndTs());
+    if (result != null) {
+      incrementMetric("cube.query.cache.hit.count", 1);
+      return result;
+    }
+    incrementMetric("cube.query.cache.miss.count", 1);
+
+    // Scan the whole time range of the cache entry, to be able to serve the following queries in the same buckets
+    long version = queryCache.startLoad();
+    if (version >= 0) {
+      result = HashBasedTable.create();
+      boolean complete = getTimeSeries(query, table.scan(new FactScan(cacheKey.getStartTs(), cacheKey.getEndTs(),
+                                                                      query.getMeasurements().keySet(),
+                                                                      dimensionValues)), result);
+      if (complete) {
+        queryCache.put(cacheKey, version, result);
+        return CubeQueryCache.filter(result, query.getStartTs(), query.getEndTs());
+      }
+      // A result cut off by the scan limit can't be cached, and may miss values in the query time range that
+      // a scan of only that range finds
+    }
+    result = HashBasedTable.create();
+    getTimeSeries(query, table.scan(new FactScan(query.getStartTs(), query.getEndTs(),
+                                                 query.getMeasurements().keySet(), dimensionValues)), result);
+    return result;
+  }
 
+  /**
+   * Scans the time series of a query into the given result table, which maps {dimension values, measure} to
+   * {time -> value}s.
+   *
+   * @return {@code true} if all records were scanned, {@code false} if the scan stopped at the records limit
+   */
+  private boolean getTimeSeries(CubeQuery query, FactScanner scanner,
+                                Table<Map<String, String>, String, Map<Long, Long>> result) {
     int count = 0;
     while (scanner.hasNext()) {
       FactScanResult next = scanner.next();
@@ -393,11 +498,11 @@ public class DefaultCube implements Cube, MeteredDataset {
           throw new RuntimeException("Unknown MeasureType: " + function);
         }
       }
-      if (++count >= MAX_RECORDS_TO_SCAN) {
-        break;
+      if (++count >= maxRecordsToScan) {
+        return !scanner.hasNext();
       }
     }
-    return result;
+    return true;
   }
 
   private Collection<TimeSeries> convertToQueryResult(CubeQuery query,
@@ -99,8 +99,18 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // that the corresponded column was removed.
   private NavigableMap<byte[], NavigableMap<byte[], Update>> buff;
 
+  // Optional append-only log of puts. If present, puts are appended to it instead of to the buff. It is drained into
+  // the buff whenever the buff is read, and is persisted directly otherwise. See TableProperties#usePackedWriteBuffer.
+  @Nullable
+  private PackedWriteBuffer writeLog;
+  // Empty write log that replaces the write log when it is persisted
+  @Nullable
+  private PackedWriteBuffer spareWriteLog;
+
   // Keeps track of what was persisted so far
   private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
+  @Nullable
+  private PackedWriteBuffer toUndoLog;
 
   // Report data ops metrics to
   private MetricsCollector metricsCollector;
@@ -151,6 +161,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // Default uses the above scheme. Subclasses can change it by overriding the #getNameAsTxChangePrefix method
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) name.length()}, Bytes.toBytes(name));
     this.buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    this.writeLog = TableProperties.usePackedWriteBuffer(properties) ? new PackedWriteBuffer() : null;
   }
 
   /**
@@ -195,6 +206,28 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   protected abstract void undo(NavigableMap<byte[], NavigableMap<byte[], Update>> persisted)
     throws Exception;
 
+  /**
+   * Persists the puts buffered in the {@link PackedWriteBuffer} of a table that uses one, when there are no other
+   * buffered changes. The default implementation converts the buffer to the map of
+   * {@link #persist(NavigableMap)}, implementations should rather read the buffer with its
+   * {@link PackedWriteBuffer#cursor() cursor}.
+   * @param buff puts to persist, which only contains {@link PutValue PutValues}
+   * @throws Exception
+   */
+  protected void persist(PackedWriteBuffer buff) throws Exception {
+    persist(buff.toMap());
+  }
+
+  /**
+   * Undos changes previously persisted with {@link #persist(PackedWriteBuffer)}. The default implementation
+   * converts the buffer to the map of {@link #undo(NavigableMap)}.
+   * @param persisted previously persisted puts
+   * @throws Exception
+   */
+  protected void undo(PackedWriteBuffer persisted) throws Exception {
+    undo(persisted.toMap());
+  }
+
   /**
    * Fetches column->value pairs for set of columns from persistent store.
    * NOTE: persisted store can also be in-memory, it is called "persisted" to distinguish from in-memory buffer.
@@ -262,6 +295,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // releasing resources
     buff = null;
     toUndo = null;
+    writeLog = null;
+    spareWriteLog = null;
+    toUndoLog = null;
   }
 
   @Override
@@ -273,7 +309,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
     // starting with fresh buffer when tx starts
     buff.clear();
+    clearWriteLog();
     toUndo = null;
+    releaseUndoLog();
     this.tx = tx;
   }
 
@@ -294,13 +332,17 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   @Override
   public Collection<byte[]> getTxChanges() {
+    boolean onlyInWriteLog = isOnlyInWriteLog();
+    if (!onlyInWriteLog) {
+      drainWriteLog();
+    }
     switch (conflictLevel) {
       case NONE:
         return Collections.emptyList();
       case ROW:
-        return getRowChanges();
+        return onlyInWriteLog ? getRowChanges(writeLog) : getRowChanges();
       case COLUMN:
-        return getColumnChanges();
+        return onlyInWriteLog ? getColumnChanges(writeLog) : getColumnChanges();
       default:
         throw new RuntimeException("Unknown conflict detection level: " + conflictLevel);
     }
@@ -336,8 +378,48 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return changes;
   }
 
+  private Collection<byte[]> getRowChanges(PackedWriteBuffer log) {
+    byte[] prefix = getNameAsTxChangePrefix();
+    List<byte[]> changes = new ArrayList<>();
+    PackedWriteBuffer.Cursor cursor = log.cursor();
+    while (cursor.next()) {
+      if (cursor.isNewRow()) {
+        byte[] change = new byte[prefix.length + cursor.getRowLength()];
+        int pos = Bytes.putBytes(change, 0, prefix, 0, prefix.length);
+        Bytes.putBytes(change, pos, cursor.getBuffer(), cursor.getRowOffset(), cursor.getRowLength());
+        changes.add(change);
+      }
+    }
+    return changes;
+  }
+
+  private Collection<byte[]> getColumnChanges(PackedWriteBuffer log) {
+    byte[] prefix = getNameAsTxChangePrefix();
+    List<byte[]> changes = new ArrayList<>();
+    PackedWriteBuffer.Cursor cursor = log.cursor();
+    while (cursor.next()) {
+      // same format as the changes of the buff: prefix, row length, row, column
+      byte[] change = new byte[prefix.length + Bytes.SIZEOF_INT + cursor.getRowLength() + cursor.getColumnLength()];
+      int pos = Bytes.putBytes(change, 0, prefix, 0, prefix.length);
+      pos = Bytes.putInt(change, pos, cursor.getRowLength());
+      pos = Bytes.putBytes(change, pos, cursor.getBuffer(), cursor.getRowOffset(), cursor.getRowLength());
+      Bytes.putBytes(change, pos, cursor.getBuffer(), cursor.getColumnOffset(), cursor.getColumnLength());
+      changes.add(change);
+    }
+    return changes;
+  }
+
   @Override
   public boolean commitTx() throws Exception {
+    if (isOnlyInWriteLog()) {
+      // Same as below, the write log is persisted directly and replaced by an empty one
+      toUndoLog = writeLog;
+      writeLog = spareWriteLog == null ? new PackedWriteBuffer() : spareWriteLog;
+      spareWriteLog = null;
+      persist(toUndoLog);
+      return true;
+    }
+    drainWriteLog();
     if (!buff.isEmpty()) {
       // We first assume that all data will be persisted. So that if exception happen during persist we try to
       // rollback everything we had in in-memory buffer.
@@ -357,17 +439,24 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void postTxCommit() {
     // don't need buffer anymore: tx has been committed
     buff.clear();
+    clearWriteLog();
     toUndo = null;
+    releaseUndoLog();
     tx = null;
   }
 
   @Override
   public boolean rollbackTx() throws Exception {
     buff.clear();
+    clearWriteLog();
     if (toUndo != null) {
       undo(toUndo);
       toUndo = null;
     }
+    if (toUndoLog != null) {
+      undo(toUndoLog);
+      releaseUndoLog();
+    }
     tx = null;
     return true;
   }
@@ -414,6 +503,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public Row get(byte[] row, byte[] startColumn, byte[] stopColumn, int limit) {
     ensureTransactionIsStarted();
     reportRead(1);
+    drainWriteLog();
     // checking if the row was deleted inside this tx
     NavigableMap<byte[], Update> buffCols = buff.get(row);
 
@@ -454,6 +544,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         "Invalid number of rows fetched when performing multi-get. There must be one row for each get.");
 
       List<Row> result = Lists.newArrayListWithCapacity(persistedRows.size());
+      drainWriteLog();
 
       Iterator<Map<byte[], byte[]>> persistedRowsIter = persistedRows.iterator();
       Iterator<Get> getIter = gets.iterator();
@@ -500,6 +591,16 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   }
 
   private void putInternal(byte[] row, byte[][] columns, byte[][] values) {
+    if (writeLog != null) {
+      for (int i = 0; i < columns.length; i++) {
+        if (values[i] != null && values[i].length == 0) {
+          warnAboutEmptyValue(columns[i]);
+        }
+      }
+      // the log copies the passed byte arrays into its own storage
+      writeLog.put(row, columns, values);
+      return;
+    }
     NavigableMap<byte[], Update> colVals = buff.get(row);
     boolean newRow = false;
     if (colVals == null) {
@@ -620,6 +721,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void increment(byte[] row, byte[][] columns, long[] amounts) {
     ensureTransactionIsStarted();
     if (enableReadlessIncrements) {
+      // increments are merged with the buffered value of the cell, hence they are not appended to the write log
+      drainWriteLog();
       NavigableMap<byte[], Update> colVals = buff.get(row);
       if (colVals == null) {
         colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
@@ -709,6 +812,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
     byte[] startRow = scan.getStartRow();
     byte[] stopRow = scan.getStopRow();
+    drainWriteLog();
     if (startRow == null && stopRow == null) {
       bufferMap = buff;
     } else if (startRow == null) {
@@ -745,6 +849,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Map<byte[], byte[]> getRowMap(byte[] row) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    drainWriteLog();
     // checking if the row was deleted inside this tx
     NavigableMap<byte[], Update> buffCols = buff.get(row);
     boolean rowDeleted = buffCols == null && buff.containsKey(row);
@@ -766,6 +871,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Map<byte[], byte[]> getRowMap(byte[] row, byte[][] columns) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    drainWriteLog();
     // checking if the row was deleted inside this tx
     NavigableMap<byte[], Update> buffCols = buff.get(row);
 
@@ -805,6 +911,42 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return unwrapDeletes(result);
   }
 
+  /**
+   * Returns {@code true} if the table has a write log and all buffered changes are in it.
+   */
+  private boolean isOnlyInWriteLog() {
+    return writeLog != null && !writeLog.isEmpty() && buff.isEmpty();
+  }
+
+  /**
+   * Moves the writes appended to the write log, if there is one, into the in-memory buffer, so that they are visible
+   * to reads of the buffer.
+   */
+  private void drainWriteLog() {
+    if (writeLog != null && !writeLog.isEmpty()) {
+      writeLog.copyTo(buff);
+      writeLog.clear();
+    }
+  }
+
+  private void clearWriteLog() {
+    if (writeLog != null) {
+      writeLog.clear();
+    }
+  }
+
+  /**
+   * Releases the persisted write log once it can no longer be undone, to reuse it for the writes of a later
+   * transaction.
+   */
+  private void releaseUndoLog() {
+    if (toUndoLog != null) {
+      toUndoLog.clear();
+      spareWriteLog = toUndoLog;
+      toUndoLog = null;
+    }
+  }
+
   /**
    * Applies the buffered updates on top of the map of persisted values.  The persisted map is modified in place
    * with the updated values.
@@ -0,0 +1,371 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * An append-only log of buffered puts, used by {@link BufferingTable} instead of its row->(column->value) map when
+ * the table is created with the {@link TableProperties#usePackedWriteBuffer(java.util.Map) packed write buffer}.
+ * Rows, columns and values are copied into a single byte arena, and each write is recorded as a fixed number of
+ * offsets in an int array, so that a put creates no map entries, value wrappers or key copies. Both arrays are reused
+ * across transactions.
+ * <p>
+ * The log is read with a {@link Cursor}, which sorts the log once and returns the latest write of every cell in row
+ * and column order. Table implementations persist and undo the log through the cursor, without building a map.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class PackedWriteBuffer {
+
+  // Layout of an entry in the entries array
+  private static final int ROW_OFFSET = 0;
+  private static final int ROW_LENGTH = 1;
+  private static final int COLUMN_OFFSET = 2;
+  private static final int COLUMN_LENGTH = 3;
+  private static final int VALUE_OFFSET = 4;
+  private static final int VALUE_LENGTH = 5;
+  private static final int ENTRY_SIZE = 6;
+
+  // Value length of a put with null value, which is a delete of the column
+  private static final int NULL_VALUE = -1;
+
+  private static final int INITIAL_ARENA_SIZE = 4096;
+  private static final int INITIAL_ENTRIES = 256;
+  // Arrays larger than this are released when the log is cleared instead of being reused
+  private static final int MAX_RETAINED_ARENA_SIZE = 1024 * 1024;
+  private static final int MAX_RETAINED_ENTRIES = 64 * 1024;
+
+  private byte[] arena;
+  private int arenaSize;
+  private int[] entries;
+  private int[] order;
+  private int size;
+  // Whether the writes were appended in row and column order, in which case sorting can be skipped
+  private boolean appendedInOrder = true;
+  // Whether the order array is sorted for the current writes
+  private boolean sorted;
+
+  public PackedWriteBuffer() {
+    this.arena = new byte[INITIAL_ARENA_SIZE];
+    this.entries = new int[INITIAL_ENTRIES * ENTRY_SIZE];
+    this.order = new int[INITIAL_ENTRIES];
+  }
+
+  /**
+   * Appends puts of the given columns to the log. A {@code null} value means the column is deleted.
+   */
+  void put(byte[] row, byte[][] columns, byte[][] values) {
+    int rowOffset = append(row);
+    for (int i = 0; i < columns.length; i++) {
+      ensureEntryCapacity(size + 1);
+      int entry = size * ENTRY_SIZE;
+      entries[entry + ROW_OFFSET] = rowOffset;
+      entries[entry + ROW_LENGTH] = row.length;
+      entries[entry + COLUMN_OFFSET] = append(columns[i]);
+      entries[entry + COLUMN_LENGTH] = columns[i].length;
+      if (values[i] == null) {
+        entries[entry + VALUE_OFFSET] = 0;
+        entries[entry + VALUE_LENGTH] = NULL_VALUE;
+      } else {
+        entries[entry + VALUE_OFFSET] = append(values[i]);
+        entries[entry + VALUE_LENGTH] = values[i].length;
+      }
+      if (appendedInOrder && size > 0) {
+        appendedInOrder = compareRowAndColumn(size - 1, size) <= 0;
+      }
+      size++;
+    }
+    sorted = false;
+  }
+
+  /**
+   * Returns {@code true} if there is no write in the log.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the number of writes in the log, including the writes that are overwritten by later writes.
+   */
+  @VisibleForTesting
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns a {@link Cursor} over the latest write of every cell in the log. The log must not be modified while the
+   * cursor is used.
+   */
+  public Cursor cursor() {
+    sort();
+    return new Cursor();
+  }
+
+  /**
+   * Merges the latest write of every cell in the log into the given row->(column->value) map, overriding the
+   * values already in the map. The log is not modified.
+   */
+  void copyTo(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer) {
+    Cursor cursor = cursor();
+    NavigableMap<byte[], Update> columns = null;
+    while (cursor.next()) {
+      if (cursor.isNewRow()) {
+        byte[] row = cursor.getRow();
+        columns = buffer.get(row);
+        if (columns == null) {
+          columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+          buffer.put(row, columns);
+        }
+      }
+      columns.put(cursor.getColumn(), new PutValue(cursor.getValue()));
+    }
+  }
+
+  /**
+   * Returns the latest write of every cell in the log as a row->(column->value) map.
+   */
+  NavigableMap<byte[], NavigableMap<byte[], Update>> toMap() {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> buffer = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    copyTo(buffer);
+    return buffer;
+  }
+
+  /**
+   * Discards all writes in the log.
+   */
+  void clear() {
+    size = 0;
+    appendedInOrder = true;
+    sorted = false;
+    arenaSize = 0;
+    if (arena.length > MAX_RETAINED_ARENA_SIZE) {
+      arena = new byte[INITIAL_ARENA_SIZE];
+    }
+    if (order.length > MAX_RETAINED_ENTRIES) {
+      entries = new int[INITIAL_ENTRIES * ENTRY_SIZE];
+      order = new int[INITIAL_ENTRIES];
+    }
+  }
+
+  private int append(byte[] bytes) {
+    int offset = arenaSize;
+    if (arenaSize + bytes.length > arena.length) {
+      arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + bytes.length));
+    }
+    System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+    arenaSize += bytes.length;
+    return offset;
+  }
+
+  private void ensureEntryCapacity(int count) {
+    if (count > order.length) {
+      int newCapacity = Math.max(order.length * 2, count);
+      entries = Arrays.copyOf(entries, newCapacity * ENTRY_SIZE);
+      // the order array is rebuilt by every sort, hence it is not copied
+      order = new int[newCapacity];
+    }
+  }
+
+  /**
+   * Sorts the log by row, column and then by the sequence of writes, into the order array.
+   */
+  private void sort() {
+    if (sorted) {
+      return;
+    }
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    if (!appendedInOrder) {
+      quickSort(0, size - 1);
+    }
+    sorted = true;
+  }
+
+  private void quickSort(int low, int high) {
+    while (low < high) {
+      if (high - low < 16) {
+        insertionSort(low, high);
+        return;
+      }
+      int pivot = order[(low + high) >>> 1];
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (compare(order[i], pivot) < 0) {
+          i++;
+        }
+        while (compare(order[j], pivot) > 0) {
+          j--;
+        }
+        if (i <= j) {
+          int tmp = order[i];
+          order[i] = order[j];
+          order[j] = tmp;
+          i++;
+          j--;
+        }
+      }
+      // Recurse into the smaller partition to bound the stack depth
+      if (j - low < high - i) {
+        quickSort(low, j);
+        low = i;
+      } else {
+        quickSort(i, high);
+        high = j;
+      }
+    }
+  }
+
+  private void insertionSort(int low, int high) {
+    for (int i = low + 1; i <= high; i++) {
+      int current = order[i];
+      int j = i - 1;
+      while (j >= low && compare(order[j], current) > 0) {
+        order[j + 1] = order[j];
+        j--;
+      }
+      order[j + 1] = current;
+    }
+  }
+
+  private int compare(int left, int right) {
+    int cmp = compareRowAndColumn(left, right);
+    return cmp != 0 ? cmp : Integer.compare(left, right);
+  }
+
+  private int compareRowAndColumn(int left, int right) {
+    int cmp = compareRows(left, right);
+    return cmp != 0 ? cmp : compareField(left * ENTRY_SIZE + COLUMN_OFFSET, right * ENTRY_SIZE + COLUMN_OFFSET);
+  }
+
+  private int compareRows(int left, int right) {
+    return compareField(left * ENTRY_SIZE + ROW_OFFSET, right * ENTRY_SIZE + ROW_OFFSET);
+  }
+
+  private int compareField(int left, int right) {
+    if (entries[left] == entries[right] && entries[left + 1] == entries[right + 1]) {
+      // Same bytes in the arena, which is the case for the row of all columns of a single put
+      return 0;
+    }
+    return Bytes.compareTo(arena, entries[left], entries[left + 1], arena, entries[right], entries[right + 1]);
+  }
+
+  /**
+   * Iterates the latest write of every cell of a {@link PackedWriteBuffer}, in row and then column order. The rows,
+   * columns and values can either be copied out of the log, or read in place from the {@link #getBuffer() buffer}
+   * at the given offsets.
+   */
+  public final class Cursor {
+
+    // Position in the order array of the first write after the current cell
+    private int next;
+    // Index of the current and the previous write in the entries array, or -1 if there is none
+    private int current = -1;
+    private int previous = -1;
+
+    private Cursor() {
+    }
+
+    /**
+     * Moves to the next cell.
+     *
+     * @return {@code true} if there is a next cell, {@code false} if all cells were read
+     */
+    public boolean next() {
+      if (next >= size) {
+        current = -1;
+        return false;
+      }
+      // Writes of the same cell are ordered by the sequence they were made, hence the last one is the latest
+      int end = next + 1;
+      while (end < size && compareRowAndColumn(order[next], order[end]) == 0) {
+        end++;
+      }
+      previous = current;
+      current = order[end - 1];
+      next = end;
+      return true;
+    }
+
+    /**
+     * Returns {@code true} if the current cell is the first cell of its row.
+     */
+    public boolean isNewRow() {
+      return previous < 0 || compareRows(previous, current) != 0;
+    }
+
+    /**
+     * Returns the array that holds the rows, columns and values of the log.
+     */
+    public byte[] getBuffer() {
+      return arena;
+    }
+
+    public int getRowOffset() {
+      return entries[current * ENTRY_SIZE + ROW_OFFSET];
+    }
+
+    public int getRowLength() {
+      return entries[current * ENTRY_SIZE + ROW_LENGTH];
+    }
+
+    public int getColumnOffset() {
+      return entries[current * ENTRY_SIZE + COLUMN_OFFSET];
+    }
+
+    public int getColumnLength() {
+      return entries[current * ENTRY_SIZE + COLUMN_LENGTH];
+    }
+
+    /**
+     * Returns a copy of the row of the current cell.
+     */
+    public byte[] getRow() {
+      return copy(current * ENTRY_SIZE + ROW_OFFSET);
+    }
+
+    /**
+     * Returns a copy of the column of the current cell.
+     */
+    public byte[] getColumn() {
+      return copy(current * ENTRY_SIZE + COLUMN_OFFSET);
+    }
+
+    /**
+     * Returns a copy of the value of the current cell, or {@code null} if the cell is deleted.
+     */
+    @Nullable
+    public byte[] getValue() {
+      int entry = current * ENTRY_SIZE;
+      return entries[entry + VALUE_LENGTH] == NULL_VALUE ? null : copy(entry + VALUE_OFFSET);
+    }
+
+    private byte[] copy(int field) {
+      int offset = entries[field];
+      return Arrays.copyOfRange(arena, offset, offset + entries[field + 1]);
+    }
+  }
+}
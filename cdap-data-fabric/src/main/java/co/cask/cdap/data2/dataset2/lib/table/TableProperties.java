@@ -82,6 +82,15 @@ public class TableProperties {
     return "true".equalsIgnoreCase(props.get(Table.PROPERTY_READLESS_INCREMENT));
   }
 
+  /**
+   * Returns whether or not the dataset defined in the given specification should buffer writes in a compact
+   * append-only log rather than in sorted maps. Defaults to false.
+   */
+  public static boolean usePackedWriteBuffer(Map<String, String> props) {
+    String writeBuffer = props.get(Constants.Dataset.TABLE_WRITE_BUFFER);
+    return Constants.Dataset.TABLE_WRITE_BUFFER_PACKED.equalsIgnoreCase(writeBuffer);
+  }
+
   /**
    * Returns whether or not the dataset defined in the given specification is transactional.
    * Defaults to true.
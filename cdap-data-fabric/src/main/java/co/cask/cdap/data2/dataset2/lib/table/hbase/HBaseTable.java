@@ -29,6 +29,7 @@ import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.IncrementValue;
+import co.cask.cdap.data2.dataset2.lib.table.PackedWriteBuffer;
 import co.cask.cdap.data2.dataset2.lib.table.PutValue;
 import co.cask.cdap.data2.dataset2.lib.table.TableProperties;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
@@ -228,6 +229,40 @@ public class HBaseTable extends BufferingTable {
     }
   }
 
+  @Override
+  protected void persist(PackedWriteBuffer updates) throws Exception {
+    if (updates.isEmpty()) {
+      return;
+    }
+
+    List<Put> puts = Lists.newArrayList();
+    PackedWriteBuffer.Cursor cursor = updates.cursor();
+    PutBuilder put = null;
+    while (cursor.next()) {
+      if (cursor.isNewRow()) {
+        if (put != null && !put.isEmpty()) {
+          puts.add(put.build());
+        }
+        put = tableUtil.buildPut(cursor.getRow());
+      }
+      // we want support tx and non-tx modes
+      if (tx != null) {
+        // TODO: hijacking timestamp... bad
+        put.add(columnFamily, cursor.getColumn(), tx.getWritePointer(), wrapDeleteIfNeeded(cursor.getValue()));
+      } else {
+        put.add(columnFamily, cursor.getColumn(), cursor.getValue());
+      }
+    }
+    if (put != null && !put.isEmpty()) {
+      puts.add(put.build());
+    }
+    if (!puts.isEmpty()) {
+      hbasePut(puts);
+    } else {
+      LOG.info("No writes to persist!");
+    }
+  }
+
   @WriteOnly
   private void hbasePut(List<Put> puts) throws InterruptedIOException, RetriesExhaustedWithDetailsException {
     hTable.put(puts);
@@ -271,6 +306,38 @@ public class HBaseTable extends BufferingTable {
     }
   }
 
+  @Override
+  protected void undo(PackedWriteBuffer persisted) throws Exception {
+    if (persisted.isEmpty()) {
+      return;
+    }
+
+    // NOTE: we use Delete with the write pointer as the specific version to delete.
+    List<Delete> deletes = Lists.newArrayList();
+    PackedWriteBuffer.Cursor cursor = persisted.cursor();
+    DeleteBuilder delete = null;
+    while (cursor.next()) {
+      if (cursor.isNewRow()) {
+        if (delete != null) {
+          deletes.add(delete.build());
+        }
+        delete = tableUtil.buildDelete(cursor.getRow());
+      }
+      // we want support tx and non-tx modes
+      if (tx != null) {
+        delete.setAttribute(TxConstants.TX_ROLLBACK_ATTRIBUTE_KEY, new byte[0]);
+        // TODO: hijacking timestamp... bad
+        delete.deleteColumn(columnFamily, cursor.getColumn(), tx.getWritePointer());
+      } else {
+        delete.deleteColumns(columnFamily, cursor.getColumn());
+      }
+    }
+    if (delete != null) {
+      deletes.add(delete.build());
+    }
+    hbaseDelete(deletes);
+  }
+
   @WriteOnly
   private void hbaseDelete(List<Delete> deletes) throws IOException {
     hTable.delete(deletes);
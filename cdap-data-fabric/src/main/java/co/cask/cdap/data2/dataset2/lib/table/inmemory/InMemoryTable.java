@@ -29,6 +29,7 @@ import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import co.cask.cdap.data2.dataset2.lib.table.PackedWriteBuffer;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.AbstractIterator;
@@ -100,6 +101,19 @@ public class InMemoryTable extends BufferingTable {
     InMemoryTableService.merge(getTableName(), updates, tx.getWritePointer());
   }
 
+  @Override
+  protected void persist(PackedWriteBuffer updates) {
+    if (updates.isEmpty()) {
+      return;
+    }
+    persistUpdates(updates);
+  }
+
+  @WriteOnly
+  private void persistUpdates(PackedWriteBuffer updates) {
+    InMemoryTableService.merge(getTableName(), updates, tx.getWritePointer());
+  }
+
   @Override
   protected void undo(NavigableMap<byte[], NavigableMap<byte[], Update>> persisted) {
     if (persisted.isEmpty()) {
@@ -114,6 +128,19 @@ public class InMemoryTable extends BufferingTable {
     InMemoryTableService.undo(getTableName(), persisted, tx.getWritePointer());
   }
 
+  @Override
+  protected void undo(PackedWriteBuffer persisted) {
+    if (persisted.isEmpty()) {
+      return;
+    }
+    undoPersisted(persisted);
+  }
+
+  @WriteOnly
+  private void undoPersisted(PackedWriteBuffer persisted) {
+    InMemoryTableService.undo(getTableName(), persisted, tx.getWritePointer());
+  }
+
   @Override
   protected NavigableMap<byte[], byte[]> getPersisted(byte[] row, byte[] startColumn, byte[] stopColumn, int limit)
     throws Exception {
@@ -18,6 +18,7 @@ package co.cask.cdap.data2.dataset2.lib.table.inmemory;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.data2.dataset2.lib.table.IncrementValue;
+import co.cask.cdap.data2.dataset2.lib.table.PackedWriteBuffer;
 import co.cask.cdap.data2.dataset2.lib.table.PutValue;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import co.cask.cdap.data2.dataset2.lib.table.Updates;
@@ -107,6 +108,31 @@ public class InMemoryTableService {
 
   // todo: remove it from here: only used by "system" metrics table, which should be revised
   @Deprecated
+  public static synchronized void merge(String tableName, PackedWriteBuffer changes, long version) {
+    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+    PackedWriteBuffer.Cursor cursor = changes.cursor();
+    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = null;
+    while (cursor.next()) {
+      // the cursor returns copies of the rows, columns and values, hence they are not copied again
+      if (cursor.isNewRow()) {
+        byte[] row = cursor.getRow();
+        rowMap = table.get(row);
+        if (rowMap == null) {
+          rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+          table.put(row, rowMap);
+        }
+      }
+      byte[] column = cursor.getColumn();
+      NavigableMap<Long, Update> colMap = rowMap.get(column);
+      if (colMap == null) {
+        colMap = Maps.newTreeMap();
+        rowMap.put(column, colMap);
+      }
+      // a put replaces any other update of the cell with the same version
+      colMap.put(version, new PutValue(cursor.getValue()));
+    }
+  }
+
   public static synchronized Map<byte[], Long> increment(String tableName, byte[] row, Map<byte[], Long> increments) {
     Map<byte[], Long> resultMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
@@ -195,6 +221,23 @@ public class InMemoryTableService {
     }
   }
 
+  public static synchronized void undo(String tableName, PackedWriteBuffer changes, long version) {
+    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+    PackedWriteBuffer.Cursor cursor = changes.cursor();
+    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = null;
+    while (cursor.next()) {
+      if (cursor.isNewRow()) {
+        rowMap = table.get(cursor.getRow());
+      }
+      if (rowMap != null) {
+        NavigableMap<Long, Update> values = rowMap.get(cursor.getColumn());
+        if (values != null) {
+          values.remove(version);
+        }
+      }
+    }
+  }
+
   public static synchronized void delete(String tableName, Iterable<byte[]> rows) {
     ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
     for (byte[] row : rows) {
@@ -22,6 +22,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
@@ -29,12 +30,14 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.IncrementValue;
+import co.cask.cdap.data2.dataset2.lib.table.PackedWriteBuffer;
 import co.cask.cdap.data2.dataset2.lib.table.PutValue;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
 import com.google.common.collect.Maps;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import javax.annotation.Nullable;
@@ -102,6 +105,19 @@ public class LevelDBTable extends BufferingTable {
     core.persist(puts, persistedVersion);
   }
 
+  @Override
+  protected void persist(PackedWriteBuffer changes) throws Exception {
+    persistedVersion = tx == null ? System.currentTimeMillis() : tx.getWritePointer();
+    if (!changes.isEmpty()) {
+      persistPuts(changes);
+    }
+  }
+
+  @WriteOnly
+  private void persistPuts(PackedWriteBuffer puts) throws IOException {
+    core.persist(puts, persistedVersion);
+  }
+
   @Override
   protected void undo(NavigableMap<byte[], NavigableMap<byte[], Update>> persisted) throws Exception {
     if (persisted.isEmpty()) {
@@ -115,6 +131,19 @@ public class LevelDBTable extends BufferingTable {
     core.undo(persisted, persistedVersion);
   }
 
+  @Override
+  protected void undo(PackedWriteBuffer persisted) throws Exception {
+    if (persisted.isEmpty()) {
+      return;
+    }
+    undoPersisted(persisted);
+  }
+
+  @WriteOnly
+  private void undoPersisted(PackedWriteBuffer persisted) throws IOException {
+    core.undo(persisted, persistedVersion);
+  }
+
   @ReadOnly
   @Override
   protected NavigableMap<byte[], byte[]> getPersisted(byte[] row, @Nullable byte[][] columns) throws Exception {
@@ -128,6 +157,12 @@ public class LevelDBTable extends BufferingTable {
     return core.getRow(row, null, startColumn, stopColumn, limit, tx);
   }
 
+  @ReadOnly
+  @Override
+  protected List<Map<byte[], byte[]>> getPersisted(List<Get> gets) throws Exception {
+    return core.getRows(gets, tx);
+  }
+
   @ReadOnly
   @Override
   protected Scanner scanPersisted(Scan scan) throws Exception {
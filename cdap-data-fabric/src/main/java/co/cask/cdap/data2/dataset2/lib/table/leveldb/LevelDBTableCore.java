@@ -17,16 +17,21 @@
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Result;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import co.cask.cdap.data2.dataset2.lib.table.PackedWriteBuffer;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 import org.apache.tephra.Transaction;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
@@ -36,12 +41,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
 /**
@@ -77,10 +87,14 @@ public class LevelDBTableCore {
 
   private final String tableName;
   private final LevelDBTableService service;
+  // Guards the read-modify-write operations (increments and swaps) of a row. Operations on rows that map
+  // to different stripes run in parallel.
+  private final Striped<Lock> rowLocks;
 
   public LevelDBTableCore(String tableName, LevelDBTableService service) throws IOException {
     this.tableName = tableName;
     this.service = service;
+    this.rowLocks = service.getRowLocks(tableName);
   }
 
   private DB getDB() throws IOException {
@@ -92,48 +106,88 @@ public class LevelDBTableCore {
   }
 
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
-    }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    List<Lock> locks = lockRows(Collections.singleton(row));
+    try {
+      byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+      // verify
+      if (oldValue == null && existing != null) {
+        return false;
+      }
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+        return false;
+      }
+      // write
+      if (newValue == null) {
+        // to-do
+        deleteColumn(row, column);
+      } else {
+        persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+      }
+      return true;
+    } finally {
+      unlock(locks);
     }
-    return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
-    Map<byte[], Long> result = getResultMap(row, increments);
-    Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-      replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+    List<Lock> locks = lockRows(Collections.singleton(row));
+    try {
+      Map<byte[], Long> result = getResultMap(row, increments);
+      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+      }
+      persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
+      return result;
+    } finally {
+      unlock(locks);
     }
-    persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
-    return result;
   }
 
 
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
-    Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
-    for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
-      NavigableMap<byte[], Long> increments = row.getValue();
-      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      Map<byte[], Long> result = getResultMap(row.getKey(), increments);
-      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    List<Lock> locks = lockRows(updates.keySet());
+    try {
+      Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
+      for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+        NavigableMap<byte[], Long> increments = row.getValue();
+        Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        Map<byte[], Long> result = getResultMap(row.getKey(), increments);
+        for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+          replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+        }
+        resultMap.put(row.getKey(), replacing);
       }
-      resultMap.put(row.getKey(), replacing);
+      persist(resultMap, System.currentTimeMillis());
+    } finally {
+      unlock(locks);
+    }
+  }
+
+  /**
+   * Acquires the locks of the given rows. Locks are always acquired in stripe order, so that concurrent calls
+   * locking multiple rows cannot deadlock.
+   *
+   * @return the acquired locks, to be released with {@link #unlock(List)}
+   */
+  private List<Lock> lockRows(Collection<byte[]> rows) {
+    // byte[] doesn't implement hashCode based on the content, hence use the content hash as the key
+    List<Integer> keys = Lists.newArrayListWithCapacity(rows.size());
+    for (byte[] row : rows) {
+      keys.add(Bytes.hashCode(row));
+    }
+    List<Lock> locks = ImmutableList.copyOf(rowLocks.bulkGet(keys));
+    for (Lock lock : locks) {
+      lock.lock();
+    }
+    return locks;
+  }
+
+  private void unlock(List<Lock> locks) {
+    for (Lock lock : Lists.reverse(locks)) {
+      lock.unlock();
     }
-    persist(resultMap, System.currentTimeMillis());
   }
 
   private Map<byte[], Long> getResultMap(byte[] row, Map<byte[], Long> increments) throws IOException {
@@ -170,6 +224,21 @@ public class LevelDBTableCore {
     db.write(batch, service.getWriteOptions());
   }
 
+  /**
+   * Writes the puts of a {@link PackedWriteBuffer} with the given version. The keys are built from the buffer of the
+   * log, without copying the rows and columns first.
+   */
+  public void persist(PackedWriteBuffer changes, long version) throws IOException {
+    DB db = getDB();
+    WriteBatch batch = db.createWriteBatch();
+    PackedWriteBuffer.Cursor cursor = changes.cursor();
+    while (cursor.next()) {
+      byte[] value = cursor.getValue();
+      batch.put(createPutKey(cursor, version), value == null ? DELETE_MARKER : value);
+    }
+    db.write(batch, service.getWriteOptions());
+  }
+
   public void put(byte[] row, byte[] column, byte[] value, long version) throws IOException {
     getDB().put(createPutKey(row, column, version), value);
   }
@@ -189,6 +258,19 @@ public class LevelDBTableCore {
     db.write(batch, service.getWriteOptions());
   }
 
+  public void undo(PackedWriteBuffer persisted, long version) throws IOException {
+    if (persisted.isEmpty()) {
+      return;
+    }
+    DB db = getDB();
+    WriteBatch batch = db.createWriteBatch();
+    PackedWriteBuffer.Cursor cursor = persisted.cursor();
+    while (cursor.next()) {
+      batch.delete(createPutKey(cursor, version));
+    }
+    db.write(batch, service.getWriteOptions());
+  }
+
   public Scanner scan(byte[] startRow, byte[] stopRow,
                       @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns, @Nullable Transaction tx)
     throws IOException {
@@ -203,7 +285,7 @@ public class LevelDBTableCore {
     DBIterator iterator = getDB().iterator();
     seekToStart(iterator, startRow);
     byte[] endKey = stopRow == null ? null : createEndKey(stopRow);
-    return new LevelDBScanner(iterator, endKey, filter, columns, tx);
+    return new LevelDBScanner(iterator, endKey, filter, columns, tx, service.getScanReadAhead());
   }
 
   /**
@@ -212,10 +294,61 @@ public class LevelDBTableCore {
   public NavigableMap<byte[], byte[]> getRow(byte[] row, @Nullable byte[][] columns,
                                              byte[] startCol, byte[] stopCol,
                                              int limit, Transaction tx) throws IOException {
-    if (columns != null) {
-      if (columns.length == 0) {
-        return EMPTY_ROW_MAP;
+    if (columns != null && columns.length == 0) {
+      return EMPTY_ROW_MAP;
+    }
+    try (DBIterator iterator = getDB().iterator()) {
+      return getRow(iterator, row, columns, startCol, stopCol, limit, tx);
+    }
+  }
+
+  /**
+   * Reads the rows of multiple gets with a single iterator. The gets are served in the order of their row keys,
+   * so that the iterator only moves forward through the table.
+   *
+   * @return the column maps of the rows, in the same order as the gets
+   */
+  public List<Map<byte[], byte[]>> getRows(final List<Get> gets, @Nullable Transaction tx) throws IOException {
+    Integer[] order = new Integer[gets.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer left, Integer right) {
+        return Bytes.compareTo(gets.get(left).getRow(), gets.get(right).getRow());
+      }
+    });
+
+    Map<byte[], byte[]>[] results = newResultArray(gets.size());
+    try (DBIterator iterator = getDB().iterator()) {
+      for (int index : order) {
+        Get get = gets.get(index);
+        List<byte[]> getColumns = get.getColumns();
+        if (getColumns != null && getColumns.isEmpty()) {
+          results[index] = EMPTY_ROW_MAP;
+          continue;
+        }
+        byte[][] columns = getColumns == null ? null : getColumns.toArray(new byte[getColumns.size()][]);
+        results[index] = getRow(iterator, get.getRow(), columns, null, null, -1, tx);
       }
+    }
+    return Arrays.asList(results);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<byte[], byte[]>[] newResultArray(int size) {
+    return (Map<byte[], byte[]>[]) new Map[size];
+  }
+
+  /**
+   * Reads one row using the given iterator, which is positioned at the start of the row first. The given columns
+   * must not be empty.
+   */
+  private NavigableMap<byte[], byte[]> getRow(DBIterator iterator, byte[] row, @Nullable byte[][] columns,
+                                              byte[] startCol, byte[] stopCol,
+                                              int limit, Transaction tx) throws IOException {
+    if (columns != null) {
       columns = Arrays.copyOf(columns, columns.length);
       Arrays.sort(columns, Bytes.BYTES_COMPARATOR);
       limit = columns.length;
@@ -223,10 +356,8 @@ public class LevelDBTableCore {
 
     byte[] startKey = createStartKey(row, columns == null ? startCol : columns[0]);
     byte[] endKey = createEndKey(row, columns == null ? stopCol : upperBound(columns[columns.length - 1]));
-    try (DBIterator iterator = getDB().iterator()) {
-      iterator.seek(startKey);
-      return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
-    }
+    iterator.seek(startKey);
+    return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
   }
 
   private static Scanner createEmptyScanner() {
@@ -405,7 +536,7 @@ public class LevelDBTableCore {
     DBIterator deleteIterator = db.iterator();
     seekToStart(deleteIterator, startRow);
     final int deletesPerRound = 1024; // todo make configurable
-    try (Scanner scanner = new LevelDBScanner(iterator, endKey, filter, columns, null)) {
+    try (Scanner scanner = new LevelDBScanner(iterator, endKey, filter, columns, null, service.getScanReadAhead())) {
       Row rowValues;
       WriteBatch batch = db.createWriteBatch();
       int deletesInBatch = 0;
@@ -481,7 +612,8 @@ public class LevelDBTableCore {
   }
 
   /**
-   * A scanner for a range of rows.
+   * A scanner for a range of rows. Rows are read ahead from the iterator in batches of up to {@code readAhead}
+   * rows, and the iterator is released as soon as the end of the range is reached.
    */
   private static class LevelDBScanner implements Scanner {
 
@@ -490,51 +622,83 @@ public class LevelDBTableCore {
     private final DBIterator iterator;
     private final byte[][] columns;
     private final FuzzyRowFilter filter;
+    private final int readAhead;
+    private final Deque<Row> rows;
+    private boolean exhausted;
+    private boolean closed;
 
     LevelDBScanner(DBIterator iterator, byte[] endKey,
-                   @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns, @Nullable Transaction tx) {
+                   @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns, @Nullable Transaction tx,
+                   int readAhead) {
       this.tx = tx;
       this.endKey = endKey;
       this.iterator = iterator;
       this.filter = filter;
       this.columns = columns;
+      this.readAhead = Math.max(1, readAhead);
+      this.rows = new ArrayDeque<>(this.readAhead);
     }
 
     @Override
     public Row next() {
+      if (rows.isEmpty() && !exhausted) {
+        readAhead();
+      }
+      return rows.poll();
+    }
+
+    private void readAhead() {
       try {
-        while (true) {
-          ImmutablePair<byte[], NavigableMap<byte[], byte[]>> result = getRow(iterator, endKey, tx, true, columns, -1);
-          if (result.getFirst() == null) {
-            return null;
-          }
-          // apply row filter if any
-          if (filter != null) {
-            FuzzyRowFilter.ReturnCode code = filter.filterRow(result.getFirst());
-            switch (code) {
-              case DONE: {
-                return null;
-              }
-              case SEEK_NEXT_USING_HINT: {
-                // row does not match but another one could. seek to next possible matching row and iterate
-                byte[] seekToRow = filter.getNextRowHint(result.getFirst());
-                iterator.seek(createStartKey(seekToRow));
-                continue;
-              }
-              case INCLUDE: {
-                break;
-              }
-            }
+        while (rows.size() < readAhead) {
+          Row row = readNext();
+          if (row == null) {
+            // nothing more to read from the iterator, release it
+            exhausted = true;
+            close();
+            return;
           }
-          return new Result(result.getFirst(), result.getSecond());
+          rows.add(row);
         }
       } catch (Exception e) {
         throw Throwables.propagate(e);
       }
     }
 
+    @Nullable
+    private Row readNext() throws IOException {
+      while (true) {
+        ImmutablePair<byte[], NavigableMap<byte[], byte[]>> result = getRow(iterator, endKey, tx, true, columns, -1);
+        if (result.getFirst() == null) {
+          return null;
+        }
+        // apply row filter if any
+        if (filter != null) {
+          FuzzyRowFilter.ReturnCode code = filter.filterRow(result.getFirst());
+          switch (code) {
+            case DONE: {
+              return null;
+            }
+            case SEEK_NEXT_USING_HINT: {
+              // row does not match but another one could. seek to next possible matching row and iterate
+              byte[] seekToRow = filter.getNextRowHint(result.getFirst());
+              iterator.seek(createStartKey(seekToRow));
+              continue;
+            }
+            case INCLUDE: {
+              break;
+            }
+          }
+        }
+        return new Result(result.getFirst(), result.getSecond());
+      }
+    }
+
     @Override
     public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
       try {
         iterator.close();
       } catch (Exception e) {
@@ -550,6 +714,13 @@ public class LevelDBTableCore {
     return new KeyValue(rowKey, DATA_COLFAM, columnKey, version, KeyValue.Type.Put).getKey();
   }
 
+  private static byte[] createPutKey(PackedWriteBuffer.Cursor cursor, long version) {
+    byte[] buffer = cursor.getBuffer();
+    return new KeyValue(buffer, cursor.getRowOffset(), cursor.getRowLength(), DATA_COLFAM, 0, DATA_COLFAM.length,
+                        buffer, cursor.getColumnOffset(), cursor.getColumnLength(), version, KeyValue.Type.Put,
+                        null, 0, 0).getKey();
+  }
+
   private static byte[] createStartKey(byte[] row) { // the first possible key of a row
     return new KeyValue(row, DATA_COLFAM, null, KeyValue.LATEST_TIMESTAMP, KeyValue.Type.Maximum).getKey();
   }
@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.iq80.leveldb.DB;
@@ -43,6 +44,7 @@ import java.net.URLEncoder;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -54,12 +56,17 @@ public class LevelDBTableService {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableService.class);
 
+  // Number of locks used to guard read-modify-write operations on the rows of a table
+  private static final int ROW_LOCK_STRIPES = 256;
+
   private int blockSize;
   private long cacheSize;
   private String basePath;
   private WriteOptions writeOptions;
+  private int scanReadAhead;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, Striped<Lock>> rowLocks = Maps.newConcurrentMap();
 
   private static final LevelDBTableService SINGLETON = new LevelDBTableService();
 
@@ -86,6 +93,8 @@ public class LevelDBTableService {
     cacheSize = config.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE);
     writeOptions = new WriteOptions().sync(
       config.getBoolean(Constants.CFG_DATA_LEVELDB_FSYNC, Constants.DEFAULT_DATA_LEVELDB_FSYNC));
+    scanReadAhead = config.getInt(Constants.CFG_DATA_LEVELDB_SCAN_READAHEAD,
+                                  Constants.DEFAULT_DATA_LEVELDB_SCAN_READAHEAD);
   }
 
   /**
@@ -153,6 +162,13 @@ public class LevelDBTableService {
     return writeOptions;
   }
 
+  /**
+   * Returns the number of rows that scanners read ahead of the caller.
+   */
+  public int getScanReadAhead() {
+    return scanReadAhead;
+  }
+
   public DB getTable(String tableName) throws IOException {
     DB db = tables.get(tableName);
     if (db == null) {
@@ -167,6 +183,24 @@ public class LevelDBTableService {
     return db;
   }
 
+  /**
+   * Returns the locks to use for read-modify-write operations on rows of the given table. The same locks are
+   * returned for all callers of a table, so that operations through different {@link LevelDBTableCore} instances
+   * of the same table exclude each other. The locks are kept for the lifetime of this service, even if the table is
+   * dropped, because a {@link LevelDBTableCore} keeps the locks it was created with and can outlive the drop.
+   */
+  public Striped<Lock> getRowLocks(String tableName) {
+    Striped<Lock> locks = rowLocks.get(tableName);
+    if (locks == null) {
+      locks = Striped.lock(ROW_LOCK_STRIPES);
+      Striped<Lock> existing = rowLocks.putIfAbsent(tableName, locks);
+      if (existing != null) {
+        locks = existing;
+      }
+    }
+    return locks;
+  }
+
   public void ensureTableExists(String tableName) throws IOException {
     DB db = tables.get(tableName);
     if (db == null) {
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.metadata.dataset;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.data2.dataset2.lib.table.MDSKey;
 import co.cask.cdap.proto.id.ApplicationId;
 import co.cask.cdap.proto.id.ArtifactId;
@@ -25,6 +26,8 @@ import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.proto.id.StreamViewId;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 import javax.annotation.Nullable;
 
 /**
@@ -32,7 +35,10 @@ import javax.annotation.Nullable;
  */
 final class MdsKey {
   private static final byte[] VALUE_ROW_PREFIX = {'v'}; // value row prefix to store metadata value
-  private static final byte[] INDEX_ROW_PREFIX = {'i'}; // index row prefix used for metadata search
+  private static final byte[] INDEX_ROW_PREFIX = {'i'}; // index row prefix used to find the indexes of a value
+  private static final byte[] POSTING_ROW_PREFIX = {'t'}; // posting row prefix used for metadata search
+  private static final byte TERM_SEPARATOR = 0;
+  private static final byte TERM_ESCAPE = 1;
 
   static String getMetadataKey(String type, byte[] rowKey) {
     MDSKey.Splitter keySplitter = new MDSKey(rowKey).split();
@@ -147,6 +153,62 @@ final class MdsKey {
     return key.getKey();
   }
 
+  static byte[] getPostingRowPrefix() {
+    MDSKey key = new MDSKey.Builder().add(MdsKey.POSTING_ROW_PREFIX).build();
+    return key.getKey();
+  }
+
+  /**
+   * Creates a key for metadata posting row in the format:
+   * [{@link #POSTING_ROW_PREFIX}][escaped namespacedIndex][{@link #TERM_SEPARATOR}][value row key], so that the
+   * posting rows of an index are sorted by the target and then the metadata key.
+   */
+  static byte[] getPostingKey(String namespacedIndex, MDSKey valueKey) {
+    return Bytes.add(getPostingTermPrefix(namespacedIndex, true), valueKey.getKey());
+  }
+
+  /**
+   * Returns the prefix of the posting rows of the given term.
+   *
+   * @param namespacedTerm the namespaced index, or the prefix of it
+   * @param exact {@code true} to match the index exactly, {@code false} to match all indexes starting with the term
+   */
+  static byte[] getPostingTermPrefix(String namespacedTerm, boolean exact) {
+    byte[] prefix = Bytes.add(getPostingRowPrefix(), escapeTerm(Bytes.toBytes(namespacedTerm)));
+    return exact ? Bytes.add(prefix, new byte[] { TERM_SEPARATOR }) : prefix;
+  }
+
+  /**
+   * Escapes the {@link #TERM_SEPARATOR} and {@link #TERM_ESCAPE} bytes of a term, so that the escaped term never
+   * contains the separator. Since each byte is escaped on its own, the escaped prefix of a term is a prefix of the
+   * escaped term.
+   */
+  private static byte[] escapeTerm(byte[] term) {
+    ByteArrayOutputStream escaped = new ByteArrayOutputStream(term.length);
+    for (byte b : term) {
+      if (b == TERM_SEPARATOR || b == TERM_ESCAPE) {
+        escaped.write(TERM_ESCAPE);
+        escaped.write(b + 1);
+      } else {
+        escaped.write(b);
+      }
+    }
+    return escaped.toByteArray();
+  }
+
+  /**
+   * Returns the value row key that a posting row key refers to.
+   */
+  static byte[] getValueKeyFromPostingKey(byte[] postingKey) {
+    // The terms are escaped, hence never contain the separator byte
+    for (int i = getPostingRowPrefix().length; i < postingKey.length; i++) {
+      if (postingKey[i] == TERM_SEPARATOR) {
+        return Arrays.copyOfRange(postingKey, i + 1, postingKey.length);
+      }
+    }
+    throw new IllegalArgumentException("Invalid posting row key " + Bytes.toStringBinary(postingKey));
+  }
+
   private static MDSKey.Builder getMDSKeyPrefix(NamespacedEntityId targetId, byte[] rowPrefix) {
     String targetType = KeyHelper.getTargetType(targetId);
     MDSKey.Builder builder = new MDSKey.Builder();
@@ -20,6 +20,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.AbstractDataset;
 import co.cask.cdap.api.dataset.lib.IndexedTable;
 import co.cask.cdap.api.dataset.table.Delete;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
@@ -64,6 +65,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
@@ -80,8 +82,14 @@ public class MetadataDataset extends AbstractDataset {
   private static final Pattern SPACE_SEPARATOR_PATTERN = Pattern.compile("\\s+");
 
   private static final String HISTORY_COLUMN = "h"; // column for metadata history
-  private static final String VALUE_COLUMN = "v";  // column for metadata value
   private static final String TAGS_SEPARATOR = ",";
+  private static final String REQUIRED_TERM_PREFIX = "+";
+  private static final byte[] POSTING_MARKER = {'p'};
+
+  // Metadata values up to this length are also stored in the posting rows, so that a search doesn't need to read
+  // the value row for every posting matched. Longer values, such as schema, are read in batches.
+  private static final int MAX_INDEXED_VALUE_LENGTH = 1024;
+  private static final int SEARCH_VALUE_BATCH_SIZE = 1000;
 
   // Fuzzy key is of form <row key, key mask>. We want to compare row keys.
   private static final Comparator<ImmutablePair<byte[], byte[]>> FUZZY_KEY_COMPARATOR =
@@ -92,7 +100,12 @@ public class MetadataDataset extends AbstractDataset {
       }
     };
 
-  static final String INDEX_COLUMN = "i";          // column for metadata indexes
+  // column for metadata indexes, indexed by the IndexedTable. It is not written anymore since searches read the
+  // posting rows, but is still read to delete the index rows that have it.
+  static final String INDEX_COLUMN = "i";
+  static final String NAMESPACED_INDEX_COLUMN = "n"; // column for metadata indexes, not indexed by the IndexedTable
+  static final String VALUE_COLUMN = "v";          // column for metadata value
+  static final String POSTING_COLUMN = "p";        // column that marks a posting row
 
   public static final String TAGS_KEY = "tags";
   public static final String KEYVALUE_SEPARATOR = ":";
@@ -508,51 +521,224 @@ public class MetadataDataset extends AbstractDataset {
    * for the specified {@link MetadataSearchTargetType}.
    *
    * @param namespaceId the namespace to search in
-   * @param searchQuery the search query, which could be of two forms: [key]:[value] or just [value] and can have '*'
-   *                    at the end for a prefix search
+   * @param searchQuery the search query, which is a space separated list of terms. A term could be of two forms:
+   *                    [key]:[value] or just [value] and can have '*' at the end for a prefix search. Entities
+   *                    that match any of the terms are returned, unless some terms are prefixed with '+', in which
+   *                    case only the entities that match all the '+' terms are returned
    * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
    */
   public List<MetadataEntry> search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types) {
-    boolean includeAllTypes = types.isEmpty() || types.contains(MetadataSearchTargetType.ALL);
-    List<MetadataEntry> results = new ArrayList<>();
-    for (String searchTerm : getSearchTerms(namespaceId, searchQuery)) {
-      Scanner scanner;
-      if (searchTerm.endsWith("*")) {
-        // if prefixed search get start and stop key
-        byte[] startKey = Bytes.toBytes(searchTerm.substring(0, searchTerm.lastIndexOf("*")));
-        byte[] stopKey = Bytes.stopKeyForPrefix(startKey);
-        scanner = indexedTable.scanByIndex(Bytes.toBytes(INDEX_COLUMN), startKey, stopKey);
+    final List<MetadataEntry> results = new ArrayList<>();
+    search(namespaceId, searchQuery, types, new SearchResultHandler() {
+      @Override
+      public void handle(NamespacedEntityId targetId, String key, byte[] value) {
+        results.add(new MetadataEntry(targetId, key, Bytes.toString(value)));
+      }
+    });
+    return results;
+  }
+
+  /**
+   * Searches entities that match the specified search query in the specified namespace and {@link NamespaceId#SYSTEM}
+   * for the specified {@link MetadataSearchTargetType}, and returns the weight of each matching entity, which is the
+   * number of metadata indexes of the entity that match the search query. Unlike
+   * {@link #search(String, String, Set)}, the matching metadata entries are not collected.
+   *
+   * @param namespaceId the namespace to search in
+   * @param searchQuery the search query, as described in {@link #search(String, String, Set)}
+   * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
+   * @return a {@link Map} from the matching entities to their weights
+   */
+  public Map<NamespacedEntityId, Integer> searchWeights(String namespaceId, String searchQuery,
+                                                        Set<MetadataSearchTargetType> types) {
+    final Map<NamespacedEntityId, Integer> weights = new HashMap<>();
+    search(namespaceId, searchQuery, types, new SearchResultHandler() {
+      @Override
+      public void handle(NamespacedEntityId targetId, String key, byte[] value) {
+        Integer weight = weights.get(targetId);
+        weights.put(targetId, weight == null ? 1 : weight + 1);
+      }
+    });
+    return weights;
+  }
+
+  private void search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types,
+                      SearchResultHandler handler) {
+    List<String> requiredTerms = new ArrayList<>();
+    List<String> optionalTerms = new ArrayList<>();
+    for (String term : getSearchTerms(searchQuery)) {
+      if (term.startsWith(REQUIRED_TERM_PREFIX)) {
+        requiredTerms.add(term.substring(REQUIRED_TERM_PREFIX.length()));
       } else {
-        byte[] value = Bytes.toBytes(searchTerm);
-        scanner = indexedTable.readByIndex(Bytes.toBytes(INDEX_COLUMN), value);
+        optionalTerms.add(term);
       }
-      try {
-        Row next;
-        while ((next = scanner.next()) != null) {
-          String rowValue = next.getString(INDEX_COLUMN);
-          if (rowValue == null) {
-            continue;
-          }
-
-          final byte[] rowKey = next.getRow();
-          String targetType = MdsKey.getTargetType(rowKey);
-
-          // Filter on target type if not set to include all types
-          if (!includeAllTypes &&
-            !types.contains(MetadataSearchTargetType.valueOfSerializedForm(targetType))) {
-            continue;
-          }
-
-          NamespacedEntityId targetId = MdsKey.getNamespacedIdFromKey(targetType, rowKey);
-          String key = MdsKey.getMetadataKey(targetType, rowKey);
-          MetadataEntry entry = getMetadata(targetId, key);
-          results.add(entry);
+    }
+
+    // Gets for the values that are not stored in the posting rows
+    List<Get> valueGets = new ArrayList<>();
+    if (requiredTerms.isEmpty()) {
+      // Without required terms, every posting of every term is a result, hence the postings are handled while they
+      // are scanned, without being merged by entity
+      for (String term : optionalTerms) {
+        for (String namespacedTerm : getNamespacedTerms(namespaceId, term)) {
+          handlePostings(namespacedTerm, null, types, valueGets, handler);
         }
-      } finally {
-        scanner.close();
       }
+      handleValues(valueGets, handler);
+      return;
+    }
+
+    // With required terms, the entities matching all of them are found by intersecting their posting lists, and
+    // the optional terms only add to the weights of those entities. Since the posting lists of prefix terms only
+    // keep the entity keys, the postings of the prefix terms are read again once the matching entities are known.
+    List<String> prefixTerms = new ArrayList<>();
+    List<PostingList> requiredLists = new ArrayList<>();
+    for (String term : requiredTerms) {
+      List<PostingList> lists = new ArrayList<>();
+      for (String namespacedTerm : getNamespacedTerms(namespaceId, term)) {
+        if (isPrefixTerm(namespacedTerm)) {
+          prefixTerms.add(namespacedTerm);
+          lists.add(PostingList.forIndexPrefix(indexedTable, getPrefix(namespacedTerm)));
+        } else {
+          lists.add(PostingList.forIndex(indexedTable, namespacedTerm));
+        }
+      }
+      requiredLists.add(PostingList.union(lists));
+    }
+    List<PostingList> optionalLists = new ArrayList<>();
+    for (String term : optionalTerms) {
+      for (String namespacedTerm : getNamespacedTerms(namespaceId, term)) {
+        if (isPrefixTerm(namespacedTerm)) {
+          prefixTerms.add(namespacedTerm);
+        } else {
+          optionalLists.add(PostingList.forIndex(indexedTable, namespacedTerm));
+        }
+      }
+    }
+
+    PostingList results = PostingList.intersection(requiredLists);
+    PostingList optionalResults = optionalLists.isEmpty() ? null : PostingList.union(optionalLists);
+    Set<byte[]> matchedEntityKeys = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    List<PostingList.Posting> postings = new ArrayList<>();
+    try {
+      while (results.next()) {
+        byte[] entityKey = results.getEntityKey();
+        if (!isIncluded(entityKey, types)) {
+          continue;
+        }
+        if (!prefixTerms.isEmpty()) {
+          matchedEntityKeys.add(entityKey);
+        }
+
+        postings.clear();
+        results.collect(postings);
+        if (optionalResults != null && optionalResults.seek(entityKey)
+          && Bytes.equals(entityKey, optionalResults.getEntityKey())) {
+          optionalResults.collect(postings);
+        }
+        for (PostingList.Posting posting : postings) {
+          handlePosting(posting, valueGets, handler);
+        }
+      }
+    } finally {
+      results.close();
+      if (optionalResults != null) {
+        optionalResults.close();
+      }
+    }
+
+    if (!matchedEntityKeys.isEmpty()) {
+      for (String prefixTerm : prefixTerms) {
+        handlePostings(prefixTerm, matchedEntityKeys, types, valueGets, handler);
+      }
+    }
+    handleValues(valueGets, handler);
+  }
+
+  /**
+   * Returns a search term prefixed with the specified namespace and with {@link NamespaceId#SYSTEM}.
+   */
+  private List<String> getNamespacedTerms(String namespaceId, String searchTerm) {
+    List<String> namespacedTerms = new ArrayList<>();
+    namespacedTerms.add(namespaceId + KEYVALUE_SEPARATOR + searchTerm);
+    // for non-system namespaces, also add the system namespace, so entities from system namespace are surfaced
+    // in the search results as well
+    if (!NamespaceId.SYSTEM.getEntityName().equals(namespaceId)) {
+      namespacedTerms.add(NamespaceId.SYSTEM.getEntityName() + KEYVALUE_SEPARATOR + searchTerm);
+    }
+    return namespacedTerms;
+  }
+
+  private boolean isPrefixTerm(String searchTerm) {
+    return searchTerm.endsWith("*");
+  }
+
+  private String getPrefix(String prefixTerm) {
+    return prefixTerm.substring(0, prefixTerm.lastIndexOf("*"));
+  }
+
+  private boolean isIncluded(byte[] entityKey, Set<MetadataSearchTargetType> types) {
+    // Filter on target type if not set to include all types
+    return types.isEmpty() || types.contains(MetadataSearchTargetType.ALL)
+      || types.contains(MetadataSearchTargetType.valueOfSerializedForm(MdsKey.getTargetType(entityKey)));
+  }
+
+  /**
+   * Scans the postings of a namespaced search term and passes them to the handler.
+   *
+   * @param namespacedTerm the search term prefixed with the namespace, which can end with '*' for a prefix search
+   * @param entityKeys if not {@code null}, only the postings of these entities are handled
+   */
+  private void handlePostings(String namespacedTerm, @Nullable Set<byte[]> entityKeys,
+                              Set<MetadataSearchTargetType> types, List<Get> valueGets, SearchResultHandler handler) {
+    boolean exact = !isPrefixTerm(namespacedTerm);
+    try (PostingList.PostingScanner scanner =
+           PostingList.scan(indexedTable, exact ? namespacedTerm : getPrefix(namespacedTerm), exact)) {
+      PostingList.Posting posting;
+      while ((posting = scanner.next()) != null) {
+        byte[] entityKey = posting.getEntityKey();
+        if ((entityKeys == null || entityKeys.contains(entityKey)) && isIncluded(entityKey, types)) {
+          handlePosting(posting, valueGets, handler);
+        }
+      }
+    }
+  }
+
+  /**
+   * Passes a posting to the handler if its value is in the posting row, or adds a {@link Get} for its value
+   * otherwise. The {@link Get Gets} are read in batches of {@link #SEARCH_VALUE_BATCH_SIZE}.
+   */
+  private void handlePosting(PostingList.Posting posting, List<Get> valueGets, SearchResultHandler handler) {
+    if (posting.getValue() != null) {
+      handler.handle(posting.getTargetId(), posting.getKey(), posting.getValue());
+      return;
+    }
+    // The value is too long to be in the posting row
+    valueGets.add(new Get(posting.getValueKey(), Bytes.toBytes(VALUE_COLUMN)));
+    if (valueGets.size() >= SEARCH_VALUE_BATCH_SIZE) {
+      handleValues(valueGets, handler);
+      valueGets.clear();
+    }
+  }
+
+  /**
+   * Reads the value rows of the given {@link Get Gets} in one batch and passes the existing values to the handler.
+   */
+  private void handleValues(List<Get> valueGets, SearchResultHandler handler) {
+    if (valueGets.isEmpty()) {
+      return;
+    }
+    for (Row row : indexedTable.get(valueGets)) {
+      byte[] value = row.get(VALUE_COLUMN);
+      if (value == null) {
+        // The row still exists without value when all tags are removed one by one
+        continue;
+      }
+      byte[] rowKey = row.getRow();
+      String targetType = MdsKey.getTargetType(rowKey);
+      handler.handle(MdsKey.getNamespacedIdFromKey(targetType, rowKey),
+                     MdsKey.getMetadataKey(targetType, rowKey), value);
     }
-    return results;
   }
 
   /**
@@ -560,30 +746,28 @@ public class MetadataDataset extends AbstractDataset {
    * <ol>
    *   <li>Splitting on {@link #SPACE_SEPARATOR_PATTERN} and trimming</li>
    *   <li>Handling {@link #KEYVALUE_SEPARATOR}, so searches of the pattern key:value* can be supported</li>
-   *   <li>Prepending the result with the specified namespaceId and {@link NamespaceId#SYSTEM} so the search can
-   *   be restricted to entities in the specified namespace and {@link NamespaceId#SYSTEM}.</li>
-   * </ol>t
+   * </ol>
+   * The terms are not namespaced, and required terms keep the {@link #REQUIRED_TERM_PREFIX}.
    *
-   * @param namespaceId the namespaceId to search in
    * @param searchQuery the user specified search query
-   * @return formatted search query which is namespaced
+   * @return formatted search terms
    */
-  private Iterable<String> getSearchTerms(String namespaceId, String searchQuery) {
+  private Iterable<String> getSearchTerms(String searchQuery) {
     List<String> searchTerms = new ArrayList<>();
     for (String term : Splitter.on(SPACE_SEPARATOR_PATTERN).omitEmptyStrings().trimResults().split(searchQuery)) {
       String formattedSearchTerm = term.toLowerCase();
+      String prefix = "";
+      if (formattedSearchTerm.startsWith(REQUIRED_TERM_PREFIX) && formattedSearchTerm.length() > 1) {
+        prefix = REQUIRED_TERM_PREFIX;
+        formattedSearchTerm = formattedSearchTerm.substring(REQUIRED_TERM_PREFIX.length());
+      }
       // if this is a key:value search remove  spaces around the separator too
       if (formattedSearchTerm.contains(KEYVALUE_SEPARATOR)) {
         // split the search query in two parts on first occurrence of KEYVALUE_SEPARATOR and the trim the key and value
         String[] split = formattedSearchTerm.split(KEYVALUE_SEPARATOR, 2);
         formattedSearchTerm = split[0].trim() + KEYVALUE_SEPARATOR + split[1].trim();
       }
-      searchTerms.add(namespaceId + KEYVALUE_SEPARATOR + formattedSearchTerm);
-      // for non-system namespaces, also add the system namespace, so entities from system namespace are surfaced
-      // in the search results as well
-      if (!NamespaceId.SYSTEM.getEntityName().equals(namespaceId)) {
-        searchTerms.add(NamespaceId.SYSTEM.getEntityName() + KEYVALUE_SEPARATOR + formattedSearchTerm);
-      }
+      searchTerms.add(prefix + formattedSearchTerm);
     }
     return searchTerms;
   }
@@ -596,7 +780,7 @@ public class MetadataDataset extends AbstractDataset {
     // add the metadata value
     put.add(Bytes.toBytes(VALUE_COLUMN), Bytes.toBytes(entry.getValue()));
     indexedTable.put(put);
-    storeIndexes(targetId, entry.getKey(), indexer.getIndexes(entry));
+    storeIndexes(targetId, entry.getKey(), entry.getValue(), indexer.getIndexes(entry));
     writeHistory(targetId);
   }
 
@@ -605,33 +789,55 @@ public class MetadataDataset extends AbstractDataset {
    *
    * @param targetId the {@link NamespacedEntityId} from which the metadata indexes has to be stored
    * @param metadataKey the metadata key for which the indexes are to be stored
+   * @param metadataValue the metadata value for which the indexes are to be stored
    * @param indexes {@link Set<String>} of indexes to store for this {@link MetadataEntry}
    */
-  private void storeIndexes(NamespacedEntityId targetId, String metadataKey, Set<String> indexes) {
+  private void storeIndexes(NamespacedEntityId targetId, String metadataKey, String metadataValue,
+                            Set<String> indexes) {
     // Delete existing indexes for targetId-key
     deleteIndexes(targetId, metadataKey);
 
+    byte[] value = metadataValue.length() <= MAX_INDEXED_VALUE_LENGTH ? Bytes.toBytes(metadataValue) : null;
     for (String index : indexes) {
       // store the index with key of the metadata, so that we allow searches of the form [key]:[value]
-      indexedTable.put(getIndexPut(targetId, metadataKey, metadataKey + KEYVALUE_SEPARATOR + index));
+      storeIndex(targetId, metadataKey, metadataKey + KEYVALUE_SEPARATOR + index, value);
       // store just the index value
-      indexedTable.put(getIndexPut(targetId, metadataKey, index));
+      storeIndex(targetId, metadataKey, index, value);
     }
   }
 
+  /**
+   * Stores the index row and the posting row of a metadata index. The index row is used to find the indexes of a
+   * metadata entry, while the posting row is used for search.
+   *
+   * @param value the metadata value to store in the {@link #VALUE_COLUMN} of the posting row, or {@code null} to
+   *              not store it
+   */
+  private void storeIndex(NamespacedEntityId targetId, String metadataKey, String index, @Nullable byte[] value) {
+    indexedTable.put(getIndexPut(targetId, metadataKey, index));
+
+    String namespacedIndex = targetId.getNamespace() + KEYVALUE_SEPARATOR + index.toLowerCase();
+    Put postingPut = new Put(MdsKey.getPostingKey(namespacedIndex, MdsKey.getMDSValueKey(targetId, metadataKey)));
+    postingPut.add(Bytes.toBytes(POSTING_COLUMN), POSTING_MARKER);
+    if (value != null) {
+      postingPut.add(Bytes.toBytes(VALUE_COLUMN), value);
+    }
+    indexedTable.put(postingPut);
+  }
+
   /**
    * Creates a {@link Put} for the a metadata index
    *
    * @param targetId the {@link NamespacedEntityId} from which the metadata index has to be created
    * @param metadataKey the key of the metadata entry
    * @param index the index for this metadata
-   * @return {@link Put} which is a index row with the value to be indexed in the {@link #INDEX_COLUMN}
+   * @return {@link Put} which is a index row with the namespaced index in the {@link #NAMESPACED_INDEX_COLUMN}
    */
   private Put getIndexPut(NamespacedEntityId targetId, String metadataKey, String index) {
     MDSKey mdsIndexKey = MdsKey.getMDSIndexKey(targetId, metadataKey, index.toLowerCase());
     String namespacedIndex = MdsKey.getNamespaceId(mdsIndexKey) + KEYVALUE_SEPARATOR + index.toLowerCase();
     Put put = new Put(mdsIndexKey.getKey());
-    put.add(Bytes.toBytes(INDEX_COLUMN), Bytes.toBytes(namespacedIndex));
+    put.add(Bytes.toBytes(NAMESPACED_INDEX_COLUMN), Bytes.toBytes(namespacedIndex));
     return put;
   }
 
@@ -678,7 +884,7 @@ public class MetadataDataset extends AbstractDataset {
         }
         Set<String> indexes = indexer.getIndexes(metadataEntry);
         // storeIndexes deletes old indexes
-        storeIndexes(namespacedEntityId, metadataKey, indexes);
+        storeIndexes(namespacedEntityId, metadataKey, metadataEntry.getValue(), indexes);
         limit--;
       }
       Row startRowForNextBatch = scanner.next();
@@ -719,7 +925,7 @@ public class MetadataDataset extends AbstractDataset {
   }
 
   /**
-   * Deletes a row if the value in the index column is non-null. This is necessary because at least in the
+   * Deletes a row if the namespaced index in it is non-null. This is necessary because at least in the
    * InMemoryTable implementation, after deleting the index row, the index column still has a {@code null} value in it.
    * A {@link Scanner} on the table after the delete returns the deleted rows with {@code null} values.
    *
@@ -727,10 +933,27 @@ public class MetadataDataset extends AbstractDataset {
    * @return {@code true} if the row was deleted, {@code false} otherwise
    */
   private boolean deleteIndexRow(Row row) {
-    if (row.get(INDEX_COLUMN) == null) {
+    byte[] namespacedIndex = row.get(NAMESPACED_INDEX_COLUMN);
+    if (namespacedIndex == null) {
+      // Index rows written with the indexed column
+      namespacedIndex = row.get(INDEX_COLUMN);
+    }
+    if (namespacedIndex == null) {
       return false;
     }
-    indexedTable.delete(new Delete(row.getRow()));
+    byte[] rowKey = row.getRow();
+    String targetType = MdsKey.getTargetType(rowKey);
+    MDSKey valueKey = MdsKey.getMDSValueKey(MdsKey.getNamespacedIdFromKey(targetType, rowKey),
+                                            MdsKey.getMetadataKey(targetType, rowKey));
+    indexedTable.delete(new Delete(MdsKey.getPostingKey(Bytes.toString(namespacedIndex), valueKey)));
+    indexedTable.delete(new Delete(rowKey));
     return true;
   }
+
+  /**
+   * Handler for the metadata entries matched by a search.
+   */
+  private interface SearchResultHandler {
+    void handle(NamespacedEntityId targetId, String key, byte[] value);
+  }
 }
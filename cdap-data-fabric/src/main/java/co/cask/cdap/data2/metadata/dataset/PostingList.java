@@ -0,0 +1,547 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.metadata.dataset;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.IndexedTable;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.proto.id.NamespacedEntityId;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * A list of metadata index postings of the entities that have a search term in their metadata, ordered by the
+ * entity key, which is the value row key prefix of the entity. The list is iterated entity by entity, with
+ * {@link #next()} to move to the next entity, and {@link #seek(byte[])} to skip the entities before a given key,
+ * so that the lists of multiple terms can be intersected without reading all of them.
+ */
+abstract class PostingList implements Closeable {
+
+  /**
+   * Moves to the next entity in the list.
+   *
+   * @return {@code true} if there is a next entity, {@code false} if the list is exhausted
+   */
+  abstract boolean next();
+
+  /**
+   * Moves to the first entity with a key that is larger than or equal to the given key. If the current entity
+   * already satisfies it, the list is not moved.
+   *
+   * @return {@code true} if there is such entity, {@code false} if the list is exhausted
+   */
+  abstract boolean seek(byte[] entityKey);
+
+  /**
+   * Returns the key of the current entity. Only valid after {@link #next()} or {@link #seek(byte[])} returned
+   * {@code true}.
+   */
+  abstract byte[] getEntityKey();
+
+  /**
+   * Adds the postings of the current entity to the given collection.
+   */
+  abstract void collect(Collection<? super Posting> postings);
+
+  @Override
+  public abstract void close();
+
+  /**
+   * Creates a {@link PostingList} of the entities that have the given index.
+   *
+   * @param table the table that stores the posting rows
+   * @param namespacedIndex the index prefixed with the namespace of the entities
+   */
+  static PostingList forIndex(IndexedTable table, String namespacedIndex) {
+    return new ScanPostingList(table, MdsKey.getPostingTermPrefix(namespacedIndex, true));
+  }
+
+  /**
+   * Creates a {@link PostingList} of the entities that have an index starting with the given prefix. Since the
+   * posting rows are sorted by index first, the keys of all the matching entities are read into memory. The
+   * postings themselves are not kept, hence {@link #collect(Collection)} adds nothing, and the postings of the
+   * matching entities have to be read again with {@link #scan(IndexedTable, String, boolean)}.
+   *
+   * @param table the table that stores the posting rows
+   * @param namespacedPrefix the index prefix, prefixed with the namespace of the entities
+   */
+  static PostingList forIndexPrefix(IndexedTable table, String namespacedPrefix) {
+    NavigableSet<byte[]> entityKeys = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    try (PostingScanner scanner = scan(table, namespacedPrefix, false)) {
+      Posting posting;
+      while ((posting = scanner.next()) != null) {
+        entityKeys.add(posting.getEntityKey());
+      }
+    }
+    return new EntityKeyPostingList(entityKeys);
+  }
+
+  /**
+   * Creates a {@link PostingScanner} that reads the postings of an index, or of all the indexes starting with a
+   * prefix, one by one in the order of the index and then the entity.
+   *
+   * @param table the table that stores the posting rows
+   * @param namespacedTerm the index or the index prefix, prefixed with the namespace of the entities
+   * @param exact {@code true} to read the index exactly, {@code false} to read all indexes starting with the term
+   */
+  static PostingScanner scan(IndexedTable table, String namespacedTerm, boolean exact) {
+    byte[] startKey = MdsKey.getPostingTermPrefix(namespacedTerm, exact);
+    return new PostingScanner(table.scan(startKey, Bytes.stopKeyForPrefix(startKey)));
+  }
+
+  /**
+   * Creates a {@link PostingList} of the entities that are in any of the given lists.
+   */
+  static PostingList union(List<PostingList> lists) {
+    return lists.size() == 1 ? lists.get(0) : new UnionPostingList(lists);
+  }
+
+  /**
+   * Creates a {@link PostingList} of the entities that are in all the given lists.
+   */
+  static PostingList intersection(List<PostingList> lists) {
+    return lists.size() == 1 ? lists.get(0) : new IntersectionPostingList(lists);
+  }
+
+  /**
+   * A metadata entry of an entity that matches a search term.
+   */
+  static final class Posting {
+    private final NamespacedEntityId targetId;
+    private final String key;
+    private final byte[] entityKey;
+    private final byte[] valueKey;
+    private final byte[] value;
+
+    /**
+     * Creates a {@link Posting} from a posting row, or returns {@code null} if the row is deleted.
+     */
+    @Nullable
+    static Posting fromRow(Row row) {
+      if (row.get(MetadataDataset.POSTING_COLUMN) == null) {
+        // Deleted rows are returned with null values by the in-memory table
+        return null;
+      }
+      byte[] valueKey = MdsKey.getValueKeyFromPostingKey(row.getRow());
+      String targetType = MdsKey.getTargetType(valueKey);
+      NamespacedEntityId targetId = MdsKey.getNamespacedIdFromKey(targetType, valueKey);
+      return new Posting(targetId, MdsKey.getMetadataKey(targetType, valueKey),
+                         MdsKey.getMDSValueKey(targetId, null).getKey(), valueKey,
+                         row.get(MetadataDataset.VALUE_COLUMN));
+    }
+
+    private Posting(NamespacedEntityId targetId, String key, byte[] entityKey, byte[] valueKey,
+                    @Nullable byte[] value) {
+      this.targetId = targetId;
+      this.key = key;
+      this.entityKey = entityKey;
+      this.valueKey = valueKey;
+      this.value = value;
+    }
+
+    NamespacedEntityId getTargetId() {
+      return targetId;
+    }
+
+    String getKey() {
+      return key;
+    }
+
+    byte[] getEntityKey() {
+      return entityKey;
+    }
+
+    /**
+     * Returns the key of the value row of the metadata entry.
+     */
+    byte[] getValueKey() {
+      return valueKey;
+    }
+
+    /**
+     * Returns the metadata value, or {@code null} if it is too long to be stored in the posting row.
+     */
+    @Nullable
+    byte[] getValue() {
+      return value;
+    }
+  }
+
+  /**
+   * Reads postings from posting rows one by one, skipping the deleted rows.
+   */
+  static final class PostingScanner implements Closeable {
+
+    private final Scanner scanner;
+
+    private PostingScanner(Scanner scanner) {
+      this.scanner = scanner;
+    }
+
+    /**
+     * Returns the next posting, or {@code null} if there is no more postings.
+     */
+    @Nullable
+    Posting next() {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        Posting posting = Posting.fromRow(row);
+        if (posting != null) {
+          return posting;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public void close() {
+      scanner.close();
+    }
+  }
+
+  /**
+   * A {@link PostingList} that scans the posting rows of an index. Seeking reads a few rows forward before
+   * reopening the scanner at the target key, since opening a scanner is more expensive than reading a few rows.
+   */
+  private static final class ScanPostingList extends PostingList {
+
+    private static final int MAX_SEEK_ROWS = 16;
+
+    private final IndexedTable table;
+    private final byte[] termPrefix;
+    private final byte[] stopKey;
+    private final List<Posting> postings;
+    private PostingScanner scanner;
+    // The first posting of the next entity
+    private Posting nextPosting;
+    private byte[] entityKey;
+    private boolean exhausted;
+
+    ScanPostingList(IndexedTable table, byte[] termPrefix) {
+      this.table = table;
+      this.termPrefix = termPrefix;
+      this.stopKey = Bytes.stopKeyForPrefix(termPrefix);
+      this.postings = new ArrayList<>();
+    }
+
+    @Override
+    boolean next() {
+      if (scanner == null) {
+        open(termPrefix);
+      }
+      return readEntity();
+    }
+
+    @Override
+    boolean seek(byte[] key) {
+      if (exhausted) {
+        return false;
+      }
+      if (entityKey != null && Bytes.compareTo(entityKey, key) >= 0) {
+        return true;
+      }
+      if (scanner == null) {
+        open(Bytes.add(termPrefix, key));
+        return readEntity();
+      }
+      int rows = 0;
+      while (nextPosting != null && Bytes.compareTo(nextPosting.getEntityKey(), key) < 0) {
+        if (++rows > MAX_SEEK_ROWS) {
+          scanner.close();
+          open(Bytes.add(termPrefix, key));
+          break;
+        }
+        nextPosting = scanner.next();
+      }
+      return readEntity();
+    }
+
+    @Override
+    byte[] getEntityKey() {
+      return entityKey;
+    }
+
+    @Override
+    void collect(Collection<? super Posting> postings) {
+      postings.addAll(this.postings);
+    }
+
+    @Override
+    public void close() {
+      if (scanner != null) {
+        scanner.close();
+      }
+    }
+
+    private void open(byte[] startKey) {
+      scanner = new PostingScanner(table.scan(startKey, stopKey));
+      nextPosting = scanner.next();
+    }
+
+    /**
+     * Reads the postings of the next entity.
+     */
+    private boolean readEntity() {
+      postings.clear();
+      if (nextPosting == null) {
+        exhausted = true;
+        entityKey = null;
+        return false;
+      }
+      entityKey = nextPosting.getEntityKey();
+      while (nextPosting != null && Bytes.equals(entityKey, nextPosting.getEntityKey())) {
+        postings.add(nextPosting);
+        nextPosting = scanner.next();
+      }
+      return true;
+    }
+  }
+
+  /**
+   * A {@link PostingList} of entity keys in memory, without the postings.
+   */
+  private static final class EntityKeyPostingList extends PostingList {
+
+    private final NavigableSet<byte[]> entityKeys;
+    private byte[] current;
+    private boolean started;
+
+    EntityKeyPostingList(NavigableSet<byte[]> entityKeys) {
+      this.entityKeys = entityKeys;
+    }
+
+    @Override
+    boolean next() {
+      current = started ? (current == null ? null : entityKeys.higher(current)) : first();
+      started = true;
+      return current != null;
+    }
+
+    @Override
+    boolean seek(byte[] key) {
+      if (started && (current == null || Bytes.compareTo(current, key) >= 0)) {
+        return current != null;
+      }
+      current = entityKeys.ceiling(key);
+      started = true;
+      return current != null;
+    }
+
+    @Override
+    byte[] getEntityKey() {
+      return current;
+    }
+
+    @Override
+    void collect(Collection<? super Posting> postings) {
+      // Only the entity keys are kept
+    }
+
+    @Override
+    public void close() {
+      // No-op
+    }
+
+    @Nullable
+    private byte[] first() {
+      return entityKeys.isEmpty() ? null : entityKeys.first();
+    }
+  }
+
+  /**
+   * A {@link PostingList} of the entities in any of a few other lists.
+   */
+  private static final class UnionPostingList extends PostingList {
+
+    private final List<PostingList> lists;
+    // The lists that are not exhausted
+    private final List<PostingList> active;
+    private byte[] entityKey;
+    private boolean started;
+
+    UnionPostingList(List<PostingList> lists) {
+      this.lists = lists;
+      this.active = new ArrayList<>(lists);
+    }
+
+    @Override
+    boolean next() {
+      for (int i = active.size() - 1; i >= 0; i--) {
+        PostingList list = active.get(i);
+        if ((!started || Bytes.equals(entityKey, list.getEntityKey())) && !list.next()) {
+          active.remove(i);
+        }
+      }
+      started = true;
+      return updateEntityKey();
+    }
+
+    @Override
+    boolean seek(byte[] key) {
+      if (started && (entityKey == null || Bytes.compareTo(entityKey, key) >= 0)) {
+        return entityKey != null;
+      }
+      for (int i = active.size() - 1; i >= 0; i--) {
+        if (!active.get(i).seek(key)) {
+          active.remove(i);
+        }
+      }
+      started = true;
+      return updateEntityKey();
+    }
+
+    @Override
+    byte[] getEntityKey() {
+      return entityKey;
+    }
+
+    @Override
+    void collect(Collection<? super Posting> postings) {
+      for (PostingList list : active) {
+        if (Bytes.equals(entityKey, list.getEntityKey())) {
+          list.collect(postings);
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      for (PostingList list : lists) {
+        list.close();
+      }
+    }
+
+    private boolean updateEntityKey() {
+      entityKey = null;
+      for (PostingList list : active) {
+        if (entityKey == null || Bytes.compareTo(list.getEntityKey(), entityKey) < 0) {
+          entityKey = list.getEntityKey();
+        }
+      }
+      return entityKey != null;
+    }
+  }
+
+  /**
+   * A {@link PostingList} of the entities in all of a few other lists. Each list skips to the largest entity key
+   * of all lists, until all of them are on the same entity.
+   */
+  private static final class IntersectionPostingList extends PostingList {
+
+    private final List<PostingList> lists;
+    private byte[] entityKey;
+    private boolean started;
+    private boolean exhausted;
+
+    IntersectionPostingList(List<PostingList> lists) {
+      this.lists = lists;
+    }
+
+    @Override
+    boolean next() {
+      if (exhausted) {
+        return false;
+      }
+      if (!started) {
+        started = true;
+        for (PostingList list : lists) {
+          if (!list.next()) {
+            return exhaust();
+          }
+        }
+      } else if (!lists.get(0).next()) {
+        return exhaust();
+      }
+      return align();
+    }
+
+    @Override
+    boolean seek(byte[] key) {
+      if (exhausted) {
+        return false;
+      }
+      if (started && Bytes.compareTo(entityKey, key) >= 0) {
+        return true;
+      }
+      started = true;
+      for (PostingList list : lists) {
+        if (!list.seek(key)) {
+          return exhaust();
+        }
+      }
+      return align();
+    }
+
+    @Override
+    byte[] getEntityKey() {
+      return entityKey;
+    }
+
+    @Override
+    void collect(Collection<? super Posting> postings) {
+      for (PostingList list : lists) {
+        list.collect(postings);
+      }
+    }
+
+    @Override
+    public void close() {
+      for (PostingList list : lists) {
+        list.close();
+      }
+    }
+
+    /**
+     * Moves all lists to the same entity.
+     */
+    private boolean align() {
+      while (true) {
+        byte[] maxKey = lists.get(0).getEntityKey();
+        for (PostingList list : lists) {
+          if (Bytes.compareTo(list.getEntityKey(), maxKey) > 0) {
+            maxKey = list.getEntityKey();
+          }
+        }
+        boolean aligned = true;
+        for (PostingList list : lists) {
+          if (!list.seek(maxKey)) {
+            return exhaust();
+          }
+          aligned = aligned && Bytes.equals(list.getEntityKey(), maxKey);
+        }
+        if (aligned) {
+          entityKey = maxKey;
+          return true;
+        }
+      }
+    }
+
+    private boolean exhaust() {
+      exhausted = true;
+      entityKey = null;
+      return false;
+    }
+  }
+}
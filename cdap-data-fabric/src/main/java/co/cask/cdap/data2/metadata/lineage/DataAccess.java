@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.metadata.lineage;
+
+import co.cask.cdap.proto.id.DatasetId;
+import co.cask.cdap.proto.id.NamespacedEntityId;
+import co.cask.cdap.proto.id.ProgramRunId;
+import co.cask.cdap.proto.id.StreamId;
+
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Represents an access of a dataset or a stream by a program run, at a given time.
+ */
+public final class DataAccess {
+  private final ProgramRunId run;
+  private final NamespacedEntityId data;
+  private final AccessType accessType;
+  private final long accessTimeMillis;
+  private final NamespacedEntityId component;
+
+  public DataAccess(ProgramRunId run, DatasetId datasetInstance, AccessType accessType,
+                    long accessTimeMillis, @Nullable NamespacedEntityId component) {
+    this(run, (NamespacedEntityId) datasetInstance, accessType, accessTimeMillis, component);
+  }
+
+  public DataAccess(ProgramRunId run, StreamId stream, AccessType accessType,
+                    long accessTimeMillis, @Nullable NamespacedEntityId component) {
+    this(run, (NamespacedEntityId) stream, accessType, accessTimeMillis, component);
+  }
+
+  private DataAccess(ProgramRunId run, NamespacedEntityId data, AccessType accessType,
+                     long accessTimeMillis, @Nullable NamespacedEntityId component) {
+    this.run = run;
+    this.data = data;
+    this.accessType = accessType;
+    this.accessTimeMillis = accessTimeMillis;
+    this.component = component;
+  }
+
+  public ProgramRunId getRun() {
+    return run;
+  }
+
+  /**
+   * @return the {@link DatasetId} or {@link StreamId} accessed
+   */
+  public NamespacedEntityId getData() {
+    return data;
+  }
+
+  public AccessType getAccessType() {
+    return accessType;
+  }
+
+  public long getAccessTimeMillis() {
+    return accessTimeMillis;
+  }
+
+  @Nullable
+  public NamespacedEntityId getComponent() {
+    return component;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    DataAccess that = (DataAccess) o;
+    return accessTimeMillis == that.accessTimeMillis &&
+      Objects.equals(run, that.run) &&
+      Objects.equals(data, that.data) &&
+      accessType == that.accessType &&
+      Objects.equals(component, that.component);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(run, data, accessType, accessTimeMillis, component);
+  }
+
+  @Override
+  public String toString() {
+    return "DataAccess{" +
+      "run=" + run +
+      ", data=" + data +
+      ", accessType=" + accessType +
+      ", accessTimeMillis=" + accessTimeMillis +
+      ", component=" + component +
+      '}';
+  }
+}
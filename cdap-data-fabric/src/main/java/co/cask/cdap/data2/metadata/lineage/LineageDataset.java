@@ -18,6 +18,7 @@ package co.cask.cdap.data2.metadata.lineage;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.AbstractDataset;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
@@ -39,6 +40,8 @@ import org.apache.twill.api.RunId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -68,6 +71,20 @@ public class LineageDataset extends AbstractDataset {
   // -------------------------------------------------------------------------------
   // | p | <id.run>     | <inverted-start-time> | s | <id.stream>  | <access-type> |
   // -------------------------------------------------------------------------------
+  //
+  // Adjacency index, with one row per entity and time bucket of the program run start time, and one column
+  // per access:
+  // ------------------------------------------------------------------------------------------------------------
+  // | a | <id.dataset> | <start-time-bucket> | column: | p | <id.program>    | <id.run> | <access-type> | <comp> |
+  // ------------------------------------------------------------------------------------------------------------
+  // | a | <id.stream>  | <start-time-bucket> | column: | p | <id.program>    | <id.run> | <access-type> | <comp> |
+  // ------------------------------------------------------------------------------------------------------------
+  // | a | <id.program> | <start-time-bucket> | column: | d | <id.dataset>    | <id.run> | <access-type> | <comp> |
+  // |   |              |                     |         | s | <id.stream>     |          |               |        |
+  // ------------------------------------------------------------------------------------------------------------
+  //
+  // The index is written together with the access rows, so that the relations of all the entities in one level
+  // of a lineage graph can be read with a single batched get.
 
   private static final Logger LOG = LoggerFactory.getLogger(LineageDataset.class);
   // Column used to store access time
@@ -78,6 +95,12 @@ public class LineageDataset extends AbstractDataset {
   private static final char FLOWLET_MARKER = 'f';
   private static final char STREAM_MARKER = 's';
   private static final char NONE_MARKER = '0';
+  private static final char ADJACENCY_MARKER = 'a';
+
+  // Size of the time buckets of the adjacency index
+  private static final long ADJACENCY_BUCKET_MILLIS = TimeUnit.DAYS.toMillis(7);
+  // If a period covers more buckets than this, the adjacency rows are scanned instead of fetched with gets
+  private static final int MAX_ADJACENCY_GETS_PER_ENTITY = 32;
 
   private Table accessRegistryTable;
 
@@ -115,6 +138,7 @@ public class LineageDataset extends AbstractDataset {
                             ACCESS_TIME_COLS_BYTE, Bytes.toBytes(accessTimeMillis));
     accessRegistryTable.put(getProgramKey(run, datasetInstance, accessType, component),
                             ACCESS_TIME_COLS_BYTE, Bytes.toBytes(accessTimeMillis));
+    addAdjacency(datasetInstance, run, accessType, accessTimeMillis, component);
   }
 
   /**
@@ -147,6 +171,7 @@ public class LineageDataset extends AbstractDataset {
                             ACCESS_TIME_COLS_BYTE, Bytes.toBytes(accessTimeMillis));
     accessRegistryTable.put(getProgramKey(run, stream, accessType, component),
                             ACCESS_TIME_COLS_BYTE, Bytes.toBytes(accessTimeMillis));
+    addAdjacency(stream, run, accessType, accessTimeMillis, component);
   }
 
   /**
@@ -217,6 +242,84 @@ public class LineageDataset extends AbstractDataset {
                          filter);
   }
 
+  /**
+   * Fetch the access information of a set of datasets, streams and programs for a given period from the adjacency
+   * index. All the index rows of the entities are read with one batched get.
+   *
+   * @param entities datasets, streams and programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return program-dataset and program-stream access information
+   */
+  public Set<Relation> getRelations(Collection<? extends NamespacedEntityId> entities, long start, long end,
+                                    Predicate<Relation> filter) {
+    if (entities.isEmpty() || end <= start) {
+      return ImmutableSet.of();
+    }
+
+    long startBucket = getBucket(Math.max(start, 0L));
+    long endBucket = getBucket(end - 1);
+    ImmutableSet.Builder<Relation> relationsBuilder = ImmutableSet.builder();
+
+    if (endBucket - startBucket >= MAX_ADJACENCY_GETS_PER_ENTITY) {
+      for (NamespacedEntityId entity : entities) {
+        try (Scanner scanner = accessRegistryTable.scan(getAdjacencyRowKey(entity, startBucket),
+                                                        getAdjacencyRowKey(entity, endBucket + 1))) {
+          Row row;
+          while ((row = scanner.next()) != null) {
+            addAdjacentRelations(row, start, end, filter, relationsBuilder);
+          }
+        }
+      }
+      return relationsBuilder.build();
+    }
+
+    List<Get> gets = new ArrayList<>();
+    for (NamespacedEntityId entity : entities) {
+      for (long bucket = startBucket; bucket <= endBucket; bucket++) {
+        gets.add(new Get(getAdjacencyRowKey(entity, bucket)));
+      }
+    }
+    for (Row row : accessRegistryTable.get(gets)) {
+      if (!row.isEmpty()) {
+        addAdjacentRelations(row, start, end, filter, relationsBuilder);
+      }
+    }
+    return relationsBuilder.build();
+  }
+
+  /**
+   * Rebuilds the adjacency index from the program access rows in batches.
+   *
+   * @param startRowKey the key of the row to start the scan for the current batch with
+   * @param limit the batch size
+   * @return the row key of the last row scanned in the current batch, {@code null} if there are no more rows to scan.
+   */
+  @Nullable
+  public byte[] rebuildAdjacencyIndex(@Nullable byte[] startRowKey, int limit) {
+    byte[] programRowPrefix = new MDSKey.Builder().add(PROGRAM_MARKER).build().getKey();
+    startRowKey = startRowKey == null ? programRowPrefix : startRowKey;
+    try (Scanner scanner = accessRegistryTable.scan(startRowKey, Bytes.stopKeyForPrefix(programRowPrefix))) {
+      Row row;
+      while ((limit > 0) && (row = scanner.next()) != null) {
+        MDSKey.Splitter splitter = new MDSKey(row.getRow()).split();
+        char marker = (char) splitter.getInt();
+        ProgramId program = (ProgramId) toEntityId(splitter, marker);
+        splitter.skipLong(); // inverted start time
+        marker = (char) splitter.getInt();
+        NamespacedEntityId data = toEntityId(splitter, marker);
+        ProgramRunId run = program.run(splitter.getString());
+        AccessType accessType = AccessType.fromType((char) splitter.getInt());
+        NamespacedEntityId component = toComponent(splitter, program);
+        addAdjacency(data, run, accessType, Bytes.toLong(row.get(ACCESS_TIME_COLS_BYTE)), component);
+        limit--;
+      }
+      Row startRowForNextBatch = scanner.next();
+      return startRowForNextBatch == null ? null : startRowForNextBatch.getRow();
+    }
+  }
+
   /**
    * @return a set of access times (for program and data it accesses) associated with a program run.
    */
@@ -256,6 +359,66 @@ public class LineageDataset extends AbstractDataset {
     return relationsBuilder.build();
   }
 
+  private void addAdjacency(NamespacedEntityId data, ProgramRunId run, AccessType accessType,
+                            long accessTimeMillis, @Nullable NamespacedEntityId component) {
+    long bucket = getBucket(RunIds.getTime(RunIds.fromString(run.getEntityName()), TimeUnit.MILLISECONDS));
+    byte[] accessTime = Bytes.toBytes(accessTimeMillis);
+    accessRegistryTable.put(getAdjacencyRowKey(data, bucket),
+                            getAdjacencyColumn(run.getParent(), run, accessType, component), accessTime);
+    accessRegistryTable.put(getAdjacencyRowKey(run.getParent(), bucket),
+                            getAdjacencyColumn(data, run, accessType, component), accessTime);
+  }
+
+  private void addAdjacentRelations(Row row, long start, long end, Predicate<Relation> filter,
+                                    ImmutableSet.Builder<Relation> relationsBuilder) {
+    MDSKey.Splitter rowSplitter = new MDSKey(row.getRow()).split();
+    rowSplitter.skipInt(); // adjacency marker
+    NamespacedEntityId entity = toEntityId(rowSplitter, (char) rowSplitter.getInt());
+    // Only the runs in the first and last buckets can start outside of the period
+    long bucket = rowSplitter.getLong();
+    boolean checkStartTime = bucket == getBucket(start) || bucket == getBucket(end - 1);
+
+    for (byte[] column : row.getColumns().keySet()) {
+      MDSKey.Splitter splitter = new MDSKey(column).split();
+      NamespacedEntityId adjacent = toEntityId(splitter, (char) splitter.getInt());
+      RunId runId = RunIds.fromString(splitter.getString());
+      if (checkStartTime) {
+        long startTime = RunIds.getTime(runId, TimeUnit.MILLISECONDS);
+        if (startTime < start || startTime >= end) {
+          continue;
+        }
+      }
+      AccessType accessType = AccessType.fromType((char) splitter.getInt());
+      NamespacedEntityId data = entity instanceof ProgramId ? adjacent : entity;
+      ProgramId program = (ProgramId) (entity instanceof ProgramId ? entity : adjacent);
+      Relation relation = createRelation(data, program, accessType, runId, toComponent(splitter, program));
+      if (filter.apply(relation)) {
+        relationsBuilder.add(relation);
+      }
+    }
+  }
+
+  private byte[] getAdjacencyRowKey(NamespacedEntityId entity, long bucket) {
+    MDSKey.Builder builder = new MDSKey.Builder().add(ADJACENCY_MARKER);
+    addEntity(builder, entity);
+    builder.add(bucket);
+    return builder.build().getKey();
+  }
+
+  private byte[] getAdjacencyColumn(NamespacedEntityId adjacent, ProgramRunId run,
+                                    AccessType accessType, @Nullable NamespacedEntityId component) {
+    MDSKey.Builder builder = new MDSKey.Builder();
+    addEntity(builder, adjacent);
+    builder.add(run.getEntityName());
+    builder.add(accessType.getType());
+    addComponent(builder, component);
+    return builder.build().getKey();
+  }
+
+  private long getBucket(long timeMillis) {
+    return timeMillis / ADJACENCY_BUCKET_MILLIS;
+  }
+
   private byte[] getDatasetKey(DatasetId datasetInstance, ProgramRunId run,
                                AccessType accessType, @Nullable NamespacedEntityId component) {
     MDSKey.Builder builder = new MDSKey.Builder();
@@ -430,6 +593,18 @@ public class LineageDataset extends AbstractDataset {
       .add(program.getEntityName());
   }
 
+  private void addEntity(MDSKey.Builder keyBuilder, NamespacedEntityId entity) {
+    if (entity instanceof DatasetId) {
+      addDataset(keyBuilder, (DatasetId) entity);
+    } else if (entity instanceof StreamId) {
+      addStream(keyBuilder, (StreamId) entity);
+    } else if (entity instanceof ProgramId) {
+      addProgram(keyBuilder, (ProgramId) entity);
+    } else {
+      throw new IllegalArgumentException("Lineage is not recorded for entity " + entity);
+    }
+  }
+
   private void addComponent(MDSKey.Builder keyBuilder, EntityId component) {
     if (component instanceof FlowletId) {
       keyBuilder.add(FLOWLET_MARKER)
@@ -512,23 +687,18 @@ public class LineageDataset extends AbstractDataset {
     NamespacedEntityId component = toComponent(splitter, program);
     LOG.trace("Got component {}", component);
 
-    if (stream == null) {
-      return new Relation(datasetInstance,
-                          program,
-                          accessType,
-                          runId,
-                          component == null ?
-                            ImmutableSet.<NamespacedEntityId>of() :
-                            ImmutableSet.of((NamespacedEntityId) component));
-    }
+    return createRelation(stream == null ? datasetInstance : stream, program, accessType, runId, component);
+  }
 
-    return new Relation(stream,
-                        program,
-                        accessType,
-                        runId,
-                        component == null ?
-                          ImmutableSet.<NamespacedEntityId>of() :
-                          ImmutableSet.of((NamespacedEntityId) component));
+  private Relation createRelation(NamespacedEntityId data, ProgramId program, AccessType accessType, RunId runId,
+                                  @Nullable NamespacedEntityId component) {
+    Set<NamespacedEntityId> components = component == null ?
+      ImmutableSet.<NamespacedEntityId>of() :
+      ImmutableSet.of(component);
+    if (data instanceof StreamId) {
+      return new Relation((StreamId) data, program, accessType, runId, components);
+    }
+    return new Relation((DatasetId) data, program, accessType, runId, components);
   }
 
   private static final class RowKey {
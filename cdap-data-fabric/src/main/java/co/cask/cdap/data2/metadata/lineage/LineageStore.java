@@ -31,11 +31,15 @@ import co.cask.cdap.proto.id.StreamId;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import org.apache.tephra.TransactionExecutor;
 import org.apache.tephra.TransactionExecutorFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -44,7 +48,9 @@ import javax.annotation.Nullable;
  * Store for storing/retrieving lineage information for a Dataset.
  */
 public class LineageStore implements LineageStoreReader, LineageStoreWriter {
+  private static final Logger LOG = LoggerFactory.getLogger(LineageStore.class);
   private static final DatasetId LINEAGE_DATASET_ID = NamespaceId.SYSTEM.dataset("lineage");
+  private static final int REBUILD_BATCH_SIZE = 1000;
 
   private final TransactionExecutorFactory executorFactory;
   private final DatasetFramework datasetFramework;
@@ -132,6 +138,27 @@ public class LineageStore implements LineageStoreReader, LineageStoreWriter {
     });
   }
 
+  @Override
+  public void addAccesses(final Collection<DataAccess> accesses) {
+    if (accesses.isEmpty()) {
+      return;
+    }
+    execute(new TransactionExecutor.Procedure<LineageDataset>() {
+      @Override
+      public void apply(LineageDataset input) throws Exception {
+        for (DataAccess access : accesses) {
+          if (access.getData() instanceof DatasetId) {
+            input.addAccess(access.getRun(), (DatasetId) access.getData(), access.getAccessType(),
+                            access.getAccessTimeMillis(), access.getComponent());
+          } else {
+            input.addAccess(access.getRun(), (StreamId) access.getData(), access.getAccessType(),
+                            access.getAccessTimeMillis(), access.getComponent());
+          }
+        }
+      }
+    });
+  }
+
   /**
    * @return a set of entities (program and data it accesses) associated with a program run.
    */
@@ -205,6 +232,40 @@ public class LineageStore implements LineageStoreReader, LineageStoreWriter {
     });
   }
 
+  /**
+   * Fetch access information for a set of datasets, streams and programs for a given period.
+   *
+   * @param entities datasets, streams and programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return program-dataset and program-stream access information
+   */
+  @Override
+  public Set<Relation> getRelations(final Collection<? extends NamespacedEntityId> entities, final long start,
+                                    final long end, final Predicate<Relation> filter) {
+    if (entities.isEmpty()) {
+      return ImmutableSet.of();
+    }
+    return execute(new TransactionExecutor.Function<LineageDataset, Set<Relation>>() {
+      @Override
+      public Set<Relation> apply(LineageDataset input) throws Exception {
+        return input.getRelations(entities, start, end, filter);
+      }
+    });
+  }
+
+  /**
+   * Rebuilds the adjacency index of the lineage dataset from the recorded accesses. Used by the upgrade tool to
+   * index the accesses recorded before the index existed.
+   */
+  public void rebuildAdjacencyIndex() {
+    byte[] row = null;
+    while ((row = rebuildAdjacencyIndex(row)) != null) {
+      LOG.debug("Completed a batch for rebuilding the lineage adjacency index.");
+    }
+  }
+
   /**
    * @return a set of access times (for program and data it accesses) associated with a program run.
    */
@@ -230,6 +291,15 @@ public class LineageStore implements LineageStoreReader, LineageStoreWriter {
     txExecutor.executeUnchecked(func, lineageDataset);
   }
 
+  private byte[] rebuildAdjacencyIndex(@Nullable final byte[] startRowKey) {
+    return execute(new TransactionExecutor.Function<LineageDataset, byte[]>() {
+      @Override
+      public byte[] apply(LineageDataset input) throws Exception {
+        return input.rebuildAdjacencyIndex(startRowKey, REBUILD_BATCH_SIZE);
+      }
+    });
+  }
+
   private LineageDataset newLineageDataset() {
     try {
       return DatasetsUtil.getOrCreateDataset(
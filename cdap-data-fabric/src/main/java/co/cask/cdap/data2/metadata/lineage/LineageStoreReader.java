@@ -23,6 +23,7 @@ import co.cask.cdap.proto.id.ProgramRunId;
 import co.cask.cdap.proto.id.StreamId;
 import com.google.common.base.Predicate;
 
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -71,4 +72,16 @@ public interface LineageStoreReader {
    */
   Set<Relation> getRelations(ProgramId program, long start, long end,
                              Predicate<Relation> filter);
+
+  /**
+   * Fetch access information for a set of datasets, streams and programs for a given period, in one batched read.
+   *
+   * @param entities datasets, streams and programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return program-dataset and program-stream access information
+   */
+  Set<Relation> getRelations(Collection<? extends NamespacedEntityId> entities, long start, long end,
+                             Predicate<Relation> filter);
 }
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.metadata.store;
 
+import co.cask.cdap.api.Predicate;
 import co.cask.cdap.api.dataset.DatasetDefinition;
 import co.cask.cdap.api.dataset.DatasetManagementException;
 import co.cask.cdap.api.dataset.DatasetProperties;
@@ -31,15 +32,18 @@ import co.cask.cdap.data2.metadata.indexer.Indexer;
 import co.cask.cdap.data2.transaction.Transactions;
 import co.cask.cdap.proto.audit.AuditType;
 import co.cask.cdap.proto.id.DatasetId;
+import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.NamespacedEntityId;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import org.apache.tephra.TransactionExecutor;
@@ -56,6 +60,7 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nullable;
@@ -80,6 +85,24 @@ public class DefaultMetadataStore implements MetadataStore {
       }
     };
 
+  private static final Comparator<Map.Entry<NamespacedEntityId, Integer>> SEARCH_RESULT_ASC_NAME_COMPARATOR =
+    new Comparator<Map.Entry<NamespacedEntityId, Integer>>() {
+      @Override
+      public int compare(Map.Entry<NamespacedEntityId, Integer> o1, Map.Entry<NamespacedEntityId, Integer> o2) {
+        return compareByName(o1.getKey(), o2.getKey());
+      }
+    };
+
+  private static final Comparator<Map.Entry<NamespacedEntityId, Integer>> SEARCH_RESULT_ASC_WEIGHT_COMPARATOR =
+    new Comparator<Map.Entry<NamespacedEntityId, Integer>>() {
+      @Override
+      public int compare(Map.Entry<NamespacedEntityId, Integer> o1, Map.Entry<NamespacedEntityId, Integer> o2) {
+        int compareResult = Integer.compare(o1.getValue(), o2.getValue());
+        // break ties by name, so that the order is the same across pages
+        return compareResult != 0 ? compareResult : compareByName(o1.getKey(), o2.getKey());
+      }
+    };
+
   private final TransactionExecutorFactory txExecutorFactory;
   private final DatasetFramework dsFramework;
   private AuditPublisher auditPublisher;
@@ -378,25 +401,8 @@ public class DefaultMetadataStore implements MetadataStore {
   public Set<MetadataSearchResultRecord> searchMetadataOnType(final MetadataScope scope, final String namespaceId,
                                                               final String searchQuery,
                                                               final Set<MetadataSearchTargetType> types) {
-    // Execute search query
-    Iterable<MetadataEntry> results = execute(new TransactionExecutor.Function<MetadataDataset,
-      Iterable<MetadataEntry>>() {
-      @Override
-      public Iterable<MetadataEntry> apply(MetadataDataset input) throws Exception {
-        return input.search(namespaceId, searchQuery, types);
-      }
-    }, scope);
-
-    // Score results
-    final Map<NamespacedEntityId, Integer> weightedResults = new HashMap<>();
-    for (MetadataEntry metadataEntry : results) {
-      //TODO Remove this null check after CDAP-7228 resolved. Since previous CDAP version may have null value.
-      if (metadataEntry != null) {
-        Integer score = weightedResults.get(metadataEntry.getTargetId());
-        score = score == null ? 0 : score;
-        weightedResults.put(metadataEntry.getTargetId(), score + 1);
-      }
-    }
+    // Execute search query and score results
+    Map<NamespacedEntityId, Integer> weightedResults = searchWeights(scope, namespaceId, searchQuery, types);
 
     // Sort the results by score
     List<Map.Entry<NamespacedEntityId, Integer>> resultList = new ArrayList<>(weightedResults.entrySet());
@@ -411,6 +417,133 @@ public class DefaultMetadataStore implements MetadataStore {
     return addMetadataToResults(resultList, systemMetadata, userMetadata);
   }
 
+  @Override
+  public SearchResults search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types,
+                              SortInfo sortInfo, int offset, int limit, @Nullable String cursor,
+                              Predicate<? super NamespacedEntityId> filter) {
+    Preconditions.checkArgument(offset >= 0, "Offset must not be negative.");
+    Preconditions.checkArgument(limit >= 0, "Limit must not be negative.");
+    Comparator<Map.Entry<NamespacedEntityId, Integer>> comparator = getSearchResultComparator(sortInfo);
+    Map.Entry<NamespacedEntityId, Integer> cursorEntry = cursor == null ? null : decodeCursor(cursor);
+
+    // Score results in both scopes
+    Map<NamespacedEntityId, Integer> weightedResults = searchWeights(MetadataScope.USER, namespaceId,
+                                                                     searchQuery, types);
+    for (Map.Entry<NamespacedEntityId, Integer> entry :
+      searchWeights(MetadataScope.SYSTEM, namespaceId, searchQuery, types).entrySet()) {
+      Integer score = weightedResults.get(entry.getKey());
+      weightedResults.put(entry.getKey(), score == null ? entry.getValue() : score + entry.getValue());
+    }
+
+    // Keep the top results up to the end of the page in a heap, which has the last of them at the head
+    int maxResults = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+    PriorityQueue<Map.Entry<NamespacedEntityId, Integer>> topResults =
+      new PriorityQueue<>(Math.max(1, Math.min(maxResults, weightedResults.size())),
+                          Collections.reverseOrder(comparator));
+    int total = 0;
+    int afterCursor = 0;
+    for (Map.Entry<NamespacedEntityId, Integer> entry : weightedResults.entrySet()) {
+      if (!filter.apply(entry.getKey())) {
+        continue;
+      }
+      total++;
+      if (cursorEntry != null && comparator.compare(entry, cursorEntry) <= 0) {
+        continue;
+      }
+      afterCursor++;
+      if (topResults.size() < maxResults) {
+        topResults.add(entry);
+      } else if (maxResults > 0 && comparator.compare(entry, topResults.peek()) < 0) {
+        topResults.poll();
+        topResults.add(entry);
+      }
+    }
+
+    List<Map.Entry<NamespacedEntityId, Integer>> sortedResults = new ArrayList<>(topResults.size());
+    while (!topResults.isEmpty()) {
+      sortedResults.add(topResults.poll());
+    }
+    Collections.reverse(sortedResults);
+    List<Map.Entry<NamespacedEntityId, Integer>> page =
+      offset >= sortedResults.size() ? Collections.<Map.Entry<NamespacedEntityId, Integer>>emptyList()
+                                     : sortedResults.subList(offset, sortedResults.size());
+    String nextCursor = null;
+    if (!page.isEmpty() && afterCursor > offset + page.size()) {
+      nextCursor = encodeCursor(page.get(page.size() - 1));
+    }
+    if (page.isEmpty()) {
+      return new SearchResults(Collections.<MetadataSearchResultRecord>emptyList(), total, nextCursor);
+    }
+
+    // Fetch metadata only for the entities in the page
+    Set<NamespacedEntityId> pageEntities = new HashSet<>();
+    for (Map.Entry<NamespacedEntityId, Integer> entry : page) {
+      pageEntities.add(entry.getKey());
+    }
+    Map<NamespacedEntityId, Metadata> systemMetadata = fetchMetadata(pageEntities, MetadataScope.SYSTEM);
+    Map<NamespacedEntityId, Metadata> userMetadata = fetchMetadata(pageEntities, MetadataScope.USER);
+    return new SearchResults(new ArrayList<>(addMetadataToResults(page, systemMetadata, userMetadata)),
+                             total, nextCursor);
+  }
+
+  private Map<NamespacedEntityId, Integer> searchWeights(MetadataScope scope, final String namespaceId,
+                                                         final String searchQuery,
+                                                         final Set<MetadataSearchTargetType> types) {
+    return execute(new TransactionExecutor.Function<MetadataDataset, Map<NamespacedEntityId, Integer>>() {
+      @Override
+      public Map<NamespacedEntityId, Integer> apply(MetadataDataset input) throws Exception {
+        return input.searchWeights(namespaceId, searchQuery, types);
+      }
+    }, scope);
+  }
+
+  private Comparator<Map.Entry<NamespacedEntityId, Integer>> getSearchResultComparator(SortInfo sortInfo) {
+    Comparator<Map.Entry<NamespacedEntityId, Integer>> comparator =
+      sortInfo.getSortBy() == SortInfo.SortBy.NAME ? SEARCH_RESULT_ASC_NAME_COMPARATOR
+                                                   : SEARCH_RESULT_ASC_WEIGHT_COMPARATOR;
+    return sortInfo.getSortOrder() == SortInfo.SortOrder.ASC ? comparator : Collections.reverseOrder(comparator);
+  }
+
+  /**
+   * Compares entities by name, then by entity type, namespace and parent entities.
+   */
+  private static int compareByName(NamespacedEntityId entityId1, NamespacedEntityId entityId2) {
+    int compareResult = entityId1.getEntityName().compareTo(entityId2.getEntityName());
+    if (compareResult != 0) {
+      return compareResult;
+    }
+    compareResult = entityId1.getEntityType().compareTo(entityId2.getEntityType());
+    if (compareResult != 0) {
+      return compareResult;
+    }
+    compareResult = entityId1.getNamespace().compareTo(entityId2.getNamespace());
+    if (compareResult != 0) {
+      return compareResult;
+    }
+    // same name, entity type and namespace, the string form contains the parent entities
+    return entityId1.toString().compareTo(entityId2.toString());
+  }
+
+  /**
+   * Encodes the last result of a page as the cursor, in the form of [weight]:[entity id].
+   */
+  private String encodeCursor(Map.Entry<NamespacedEntityId, Integer> entry) {
+    return entry.getValue() + MetadataDataset.KEYVALUE_SEPARATOR + entry.getKey();
+  }
+
+  private Map.Entry<NamespacedEntityId, Integer> decodeCursor(String cursor) {
+    String[] split = cursor.split(MetadataDataset.KEYVALUE_SEPARATOR, 2);
+    try {
+      if (split.length == 2) {
+        NamespacedEntityId entityId = EntityId.fromString(split[1]);
+        return Maps.immutableEntry(entityId, Integer.parseInt(split[0]));
+      }
+    } catch (IllegalArgumentException | ClassCastException e) {
+      // Fall through to the invalid cursor error
+    }
+    throw new IllegalArgumentException("Invalid search cursor " + cursor);
+  }
+
   private Map<NamespacedEntityId, Metadata> fetchMetadata(final Set<NamespacedEntityId> namespacedEntityIds,
                                                           MetadataScope scope) {
     Set<Metadata> metadataSet =
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.metadata.store;
 
+import co.cask.cdap.api.Predicate;
 import co.cask.cdap.data2.metadata.dataset.MetadataDataset;
 import co.cask.cdap.data2.metadata.indexer.Indexer;
 import co.cask.cdap.proto.id.NamespacedEntityId;
@@ -197,6 +198,27 @@ public interface MetadataStore {
   Set<MetadataSearchResultRecord> searchMetadataOnType(MetadataScope scope, String namespaceId, String searchQuery,
                                                        Set<MetadataSearchTargetType> types);
 
+  /**
+   * Search the Metadata Dataset for the specified target types in both {@link MetadataScope#USER} and
+   * {@link MetadataScope#SYSTEM}, and return one page of the matching entities in the specified order. Only the
+   * entities up to the end of the page are kept while ranking, and metadata is fetched for the entities in the page
+   * only.
+   *
+   * @param namespaceId the namespace to search in
+   * @param searchQuery the search query, which could be of two forms: [key]:[value] or just [value]
+   * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
+   * @param sortInfo the order of the results
+   * @param offset the number of results to skip, counted from the cursor if one is given
+   * @param limit the maximum number of results to return
+   * @param cursor the cursor returned with a previous page of the same search to continue after,
+   *               or {@code null} to start from the first result
+   * @param filter only the entities accepted by this {@link Predicate} are included in the results
+   * @throws IllegalArgumentException if the cursor is invalid
+   */
+  SearchResults search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types,
+                       SortInfo sortInfo, int offset, int limit, @Nullable String cursor,
+                       Predicate<? super NamespacedEntityId> filter);
+
   /**
    * Returns the snapshot of the metadata for entities on or before the given time in both {@link MetadataScope#USER}
    * and {@link MetadataScope#SYSTEM}.
@@ -15,6 +15,7 @@
  */
 package co.cask.cdap.data2.metadata.store;
 
+import co.cask.cdap.api.Predicate;
 import co.cask.cdap.data2.metadata.indexer.Indexer;
 import co.cask.cdap.proto.id.NamespacedEntityId;
 import co.cask.cdap.proto.metadata.MetadataRecord;
@@ -26,6 +27,7 @@ import com.google.common.collect.ImmutableSet;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link MetadataStore} used in memory mode.
@@ -137,6 +139,13 @@ public class NoOpMetadataStore implements MetadataStore {
     return Collections.emptySet();
   }
 
+  @Override
+  public SearchResults search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types,
+                              SortInfo sortInfo, int offset, int limit, @Nullable String cursor,
+                              Predicate<? super NamespacedEntityId> filter) {
+    return new SearchResults(Collections.<MetadataSearchResultRecord>emptyList(), 0, null);
+  }
+
   @Override
   public Set<MetadataRecord> getSnapshotBeforeTime(Set<NamespacedEntityId> namespacedEntityIds, long timeMillis) {
     return ImmutableSet.<MetadataRecord>builder()
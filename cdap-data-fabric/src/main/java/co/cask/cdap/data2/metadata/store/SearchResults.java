@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.metadata.store;
+
+import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
+
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * One page of the results of a metadata search.
+ */
+public final class SearchResults {
+
+  private final List<MetadataSearchResultRecord> results;
+  private final int total;
+  private final String cursor;
+
+  public SearchResults(List<MetadataSearchResultRecord> results, int total, @Nullable String cursor) {
+    this.results = results;
+    this.total = total;
+    this.cursor = cursor;
+  }
+
+  /**
+   * Returns the results in this page, in the requested sort order.
+   */
+  public List<MetadataSearchResultRecord> getResults() {
+    return results;
+  }
+
+  /**
+   * Returns the total number of entities matching the search.
+   */
+  public int getTotal() {
+    return total;
+  }
+
+  /**
+   * Returns the cursor to get the page following this one, or {@code null} if this is the last page.
+   */
+  @Nullable
+  public String getCursor() {
+    return cursor;
+  }
+}
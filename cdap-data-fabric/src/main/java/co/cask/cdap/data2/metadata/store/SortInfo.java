@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.metadata.store;
+
+/**
+ * Represents the order of the results of a metadata search.
+ */
+public final class SortInfo {
+
+  /**
+   * Fields to sort the search results by.
+   */
+  public enum SortBy {
+    // name of the entity
+    NAME,
+    // number of metadata indexes of the entity matching the search query
+    WEIGHT
+  }
+
+  /**
+   * Sort orders of the search results.
+   */
+  public enum SortOrder {
+    ASC,
+    DESC
+  }
+
+  public static final SortInfo DEFAULT = new SortInfo(SortBy.NAME, SortOrder.ASC);
+
+  private final SortBy sortBy;
+  private final SortOrder sortOrder;
+
+  public SortInfo(SortBy sortBy, SortOrder sortOrder) {
+    this.sortBy = sortBy;
+    this.sortOrder = sortOrder;
+  }
+
+  public SortBy getSortBy() {
+    return sortBy;
+  }
+
+  public SortOrder getSortOrder() {
+    return sortOrder;
+  }
+
+  @Override
+  public String toString() {
+    return sortBy.name().toLowerCase() + " " + sortOrder.name().toLowerCase();
+  }
+}
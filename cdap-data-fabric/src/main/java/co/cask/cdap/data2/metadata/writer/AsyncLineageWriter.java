@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.metadata.writer;
+
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.service.RetryStrategies;
+import co.cask.cdap.common.service.RetryStrategy;
+import co.cask.cdap.data2.metadata.lineage.AccessType;
+import co.cask.cdap.data2.metadata.lineage.DataAccess;
+import co.cask.cdap.proto.id.DatasetId;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.NamespacedEntityId;
+import co.cask.cdap.proto.id.ProgramRunId;
+import co.cask.cdap.proto.id.StreamId;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link LineageWriter} that buffers accesses in a bounded queue and writes them in batches to another
+ * {@link LineageWriter} in a background thread, so that programs don't wait for a lineage write on every new
+ * access. A batch is written once every flush interval, or as soon as there are enough accesses for a batch. When
+ * the queue is full, adding an access blocks until there is space in the queue. A failed batch is retried with the
+ * {@link RetryStrategy} of this writer, and if it still fails, its accesses can be added again.
+ *
+ * All queued accesses are written when this service stops. Accesses added while this service is not running are
+ * written synchronously.
+ */
+public class AsyncLineageWriter extends AbstractExecutionThreadService implements LineageWriter {
+
+  /**
+   * Name of the {@link LineageWriter} that the accesses are written to.
+   */
+  public static final String DELEGATE = "lineage.writer.delegate";
+
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncLineageWriter.class);
+  private static final long MAX_POLL_MILLIS = 100L;
+
+  private final LineageWriter delegate;
+  private final MetricsContext metricsContext;
+  private final BlockingQueue<DataAccess> queue;
+  private final int batchSize;
+  private final long flushIntervalMillis;
+  private final RetryStrategy retryStrategy;
+  private final ConcurrentMap<BasicLineageWriter.DataAccessKey, Boolean> registered = new ConcurrentHashMap<>();
+
+  @Inject
+  AsyncLineageWriter(CConfiguration cConf, @Named(DELEGATE) LineageWriter delegate,
+                     MetricsCollectionService metricsCollectionService) {
+    this(delegate, metricsCollectionService,
+         cConf.getInt(Constants.Metadata.LINEAGE_WRITER_QUEUE_SIZE),
+         cConf.getInt(Constants.Metadata.LINEAGE_WRITER_BATCH_SIZE),
+         cConf.getLong(Constants.Metadata.LINEAGE_WRITER_FLUSH_INTERVAL_MS),
+         RetryStrategies.limit(5, RetryStrategies.exponentialDelay(100L, 2000L, TimeUnit.MILLISECONDS)));
+  }
+
+  AsyncLineageWriter(LineageWriter delegate, MetricsCollectionService metricsCollectionService,
+                     int queueSize, int batchSize, long flushIntervalMillis, RetryStrategy retryStrategy) {
+    Preconditions.checkArgument(queueSize > 0, "Queue size must be > 0.");
+    Preconditions.checkArgument(batchSize > 0, "Batch size must be > 0.");
+    Preconditions.checkArgument(flushIntervalMillis > 0, "Flush interval must be > 0.");
+    this.delegate = delegate;
+    this.metricsContext = metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getEntityName(),
+                      Constants.Metrics.Tag.COMPONENT, "lineage.writer"));
+    this.queue = new LinkedBlockingQueue<>(queueSize);
+    this.batchSize = batchSize;
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.retryStrategy = retryStrategy;
+  }
+
+  @Override
+  public void addAccess(ProgramRunId run, DatasetId datasetInstance, AccessType accessType) {
+    addAccess(run, datasetInstance, accessType, null);
+  }
+
+  @Override
+  public void addAccess(ProgramRunId run, DatasetId datasetInstance, AccessType accessType,
+                        @Nullable NamespacedEntityId component) {
+    if (alreadyRegistered(run, datasetInstance, accessType, component)) {
+      return;
+    }
+    enqueue(new DataAccess(run, datasetInstance, accessType, System.currentTimeMillis(), component));
+  }
+
+  @Override
+  public void addAccess(ProgramRunId run, StreamId stream, AccessType accessType) {
+    addAccess(run, stream, accessType, null);
+  }
+
+  @Override
+  public void addAccess(ProgramRunId run, StreamId stream, AccessType accessType,
+                        @Nullable NamespacedEntityId component) {
+    if (alreadyRegistered(run, stream, accessType, component)) {
+      return;
+    }
+    enqueue(new DataAccess(run, stream, accessType, System.currentTimeMillis(), component));
+  }
+
+  @Override
+  public void addAccesses(Collection<DataAccess> accesses) {
+    for (DataAccess access : accesses) {
+      if (!alreadyRegistered(access.getRun(), access.getData(), access.getAccessType(), access.getComponent())) {
+        enqueue(access);
+      }
+    }
+  }
+
+  @Override
+  protected void run() throws Exception {
+    List<DataAccess> batch = new ArrayList<>(batchSize);
+    while (isRunning()) {
+      long deadline = System.currentTimeMillis() + flushIntervalMillis;
+      long waitMillis = flushIntervalMillis;
+      // Wait in short polls, so that stopping this service is not delayed by the flush interval
+      while (isRunning() && batch.size() < batchSize && waitMillis > 0) {
+        DataAccess access = queue.poll(Math.min(waitMillis, MAX_POLL_MILLIS), TimeUnit.MILLISECONDS);
+        if (access != null) {
+          batch.add(access);
+          queue.drainTo(batch, batchSize - batch.size());
+        }
+        waitMillis = deadline - System.currentTimeMillis();
+      }
+      flush(batch);
+    }
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    // Writes all the accesses added before stopping
+    List<DataAccess> batch = new ArrayList<>(batchSize);
+    while (queue.drainTo(batch, batchSize) > 0) {
+      flush(batch);
+    }
+  }
+
+  @Override
+  protected String getServiceName() {
+    return "lineage-writer";
+  }
+
+  private void enqueue(DataAccess access) {
+    try {
+      while (isRunning()) {
+        if (queue.offer(access, MAX_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+          metricsContext.gauge("lineage.queue.size", queue.size());
+          if (!isRunning()) {
+            // Stopped while adding, in which case the queue may have been drained already
+            writeRemaining();
+          }
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // Write synchronously if not running or interrupted while waiting for the queue
+    writeSynchronously(Collections.singletonList(access));
+  }
+
+  private void writeRemaining() {
+    List<DataAccess> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    if (!remaining.isEmpty()) {
+      writeSynchronously(remaining);
+    }
+  }
+
+  private void writeSynchronously(List<DataAccess> accesses) {
+    try {
+      delegate.addAccesses(accesses);
+    } catch (RuntimeException e) {
+      unregister(accesses);
+      throw e;
+    }
+  }
+
+  /**
+   * Writes the given batch of accesses to the delegate, retrying on failure, and clears the batch. If the batch
+   * cannot be written, its accesses are unregistered so that they are written again when they are added again.
+   */
+  private void flush(List<DataAccess> batch) {
+    metricsContext.gauge("lineage.queue.size", queue.size());
+    if (batch.isEmpty()) {
+      return;
+    }
+    long startTime = System.currentTimeMillis();
+    int failures = 0;
+    try {
+      while (true) {
+        try {
+          delegate.addAccesses(batch);
+          metricsContext.increment("lineage.accesses.written", batch.size());
+          return;
+        } catch (Throwable t) {
+          long retryMillis = retryStrategy.nextRetry(++failures, startTime);
+          if (retryMillis < 0 || !sleep(retryMillis)) {
+            LOG.error("Failed to write {} lineage accesses after {} attempts: {}", batch.size(), failures, batch, t);
+            metricsContext.increment("lineage.accesses.failed", batch.size());
+            unregister(batch);
+            return;
+          }
+          LOG.warn("Failed to write {} lineage accesses, retrying in {} ms", batch.size(), retryMillis, t);
+        }
+      }
+    } finally {
+      metricsContext.gauge("lineage.flush.latency.ms", System.currentTimeMillis() - startTime);
+      batch.clear();
+    }
+  }
+
+  /**
+   * Sleeps for the given time.
+   *
+   * @return {@code false} if interrupted while sleeping, {@code true} otherwise
+   */
+  private boolean sleep(long millis) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private boolean alreadyRegistered(ProgramRunId run, NamespacedEntityId data, AccessType accessType,
+                                    @Nullable NamespacedEntityId component) {
+    return registered.putIfAbsent(new BasicLineageWriter.DataAccessKey(run, data, accessType, component), true) != null;
+  }
+
+  private void unregister(Collection<DataAccess> accesses) {
+    for (DataAccess access : accesses) {
+      registered.remove(new BasicLineageWriter.DataAccessKey(access.getRun(), access.getData(),
+                                                             access.getAccessType(), access.getComponent()));
+    }
+  }
+}
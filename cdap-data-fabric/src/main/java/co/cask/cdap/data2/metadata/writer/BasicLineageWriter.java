@@ -17,6 +17,7 @@
 package co.cask.cdap.data2.metadata.writer;
 
 import co.cask.cdap.data2.metadata.lineage.AccessType;
+import co.cask.cdap.data2.metadata.lineage.DataAccess;
 import co.cask.cdap.data2.metadata.lineage.LineageStore;
 import co.cask.cdap.data2.metadata.lineage.LineageStoreWriter;
 import co.cask.cdap.proto.id.DatasetId;
@@ -27,6 +28,9 @@ import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -83,6 +87,21 @@ public class BasicLineageWriter implements LineageWriter {
     lineageStoreWriter.addAccess(run, stream, accessType, accessTime, component);
   }
 
+  @Override
+  public void addAccesses(Collection<DataAccess> accesses) {
+    List<DataAccess> newAccesses = new ArrayList<>(accesses.size());
+    for (DataAccess access : accesses) {
+      if (!alreadyRegistered(access.getRun(), access.getData(), access.getAccessType(), access.getComponent())) {
+        newAccesses.add(access);
+      }
+    }
+    if (newAccesses.isEmpty()) {
+      return;
+    }
+    LOG.debug("Writing {} accesses: {}", newAccesses.size(), newAccesses);
+    lineageStoreWriter.addAccesses(newAccesses);
+  }
+
   private boolean alreadyRegistered(ProgramRunId run, NamespacedEntityId data, AccessType accessType,
                                     @Nullable NamespacedEntityId component) {
     return registered.putIfAbsent(new DataAccessKey(run, data, accessType, component), true) != null;
@@ -17,11 +17,13 @@
 package co.cask.cdap.data2.metadata.writer;
 
 import co.cask.cdap.data2.metadata.lineage.AccessType;
+import co.cask.cdap.data2.metadata.lineage.DataAccess;
 import co.cask.cdap.proto.id.DatasetId;
 import co.cask.cdap.proto.id.NamespacedEntityId;
 import co.cask.cdap.proto.id.ProgramRunId;
 import co.cask.cdap.proto.id.StreamId;
 
+import java.util.Collection;
 import javax.annotation.Nullable;
 
 /**
@@ -49,4 +51,9 @@ public class NoOpLineageWriter implements LineageWriter {
                         @Nullable NamespacedEntityId component) {
     // no-op
   }
+
+  @Override
+  public void addAccesses(Collection<DataAccess> accesses) {
+    // no-op
+  }
 }
@@ -30,4 +30,7 @@ public interface QueueClientFactory {
   QueueProducer createProducer(QueueName queueName, QueueMetrics queueMetrics) throws IOException;
 
   QueueConsumer createConsumer(QueueName queueName, ConsumerConfig consumerConfig, int numGroups) throws IOException;
+
+  QueueConsumer createConsumer(QueueName queueName, ConsumerConfig consumerConfig, int numGroups,
+                               QueueMetrics queueMetrics) throws IOException;
 }
@@ -29,6 +29,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
@@ -58,12 +59,14 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
   private static final Logger LOG = LoggerFactory.getLogger(AbstractQueueConsumer.class);
   private static final DequeueResult<byte[]> EMPTY_RESULT = DequeueResult.Empty.result();
 
-  // TODO: Make these configurable.
   // Minimum number of rows to fetch per scan.
   private static final int MIN_FETCH_ROWS = 100;
-  // Multiple of batches to fetch per scan.
-  // Number of rows to scan = max(MIN_FETCH_ROWS, dequeueBatchSize * groupSize * PREFETCH_BATCHES)
+  // Multiple of batches to fetch per scan before the process rate is known.
   private static final int PREFETCH_BATCHES = 10;
+  // Number of rows to scan is the number of entries processed in this amount of time at the observed rate.
+  private static final long PREFETCH_MILLIS = 1000L;
+  // Weight of a new sample in the moving averages used for computing the number of rows to scan.
+  private static final double SAMPLE_WEIGHT = 0.2d;
 
   private static final Function<SimpleQueueEntry, byte[]> ENTRY_TO_BYTE_ARRAY =
     new Function<SimpleQueueEntry, byte[]>() {
@@ -82,6 +85,18 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
 
   // Maximum amount of time spent in dequeue to avoid transaction timeout.
   private final long maxDequeueMillis;
+  private final long maxCacheBytes;
+  private final int maxFetchRows;
+
+  private QueueMetrics queueMetrics;
+  private long entryCacheBytes;
+
+  // Moving averages of the entries processed per millisecond, the rows scanned per millisecond and the entry size
+  private double processRate;
+  private double scanRate;
+  private double entrySize;
+  private long lastDequeueTime;
+  private int lastDequeueSize;
 
   private byte[] scanStartRow;
   private boolean committed;
@@ -117,6 +132,18 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
                                 "Invalid value for %s", QueueConstants.ConfigKeys.DEQUEUE_TX_PERCENT);
     long txTimeout = TimeUnit.SECONDS.toMillis(cConf.getLong(TxConstants.Manager.CFG_TX_TIMEOUT));
     this.maxDequeueMillis = txTimeout * dequeuePercent / 100;
+    this.maxCacheBytes = cConf.getLong(QueueConstants.ConfigKeys.DEQUEUE_CACHE_MAX_BYTES,
+                                       QueueConstants.DEFAULT_DEQUEUE_CACHE_MAX_BYTES);
+    this.maxFetchRows = cConf.getInt(QueueConstants.ConfigKeys.DEQUEUE_FETCH_MAX_ROWS,
+                                     QueueConstants.DEFAULT_DEQUEUE_FETCH_MAX_ROWS);
+    this.queueMetrics = QueueMetrics.NOOP_QUEUE_METRICS;
+  }
+
+  /**
+   * Sets the {@link QueueMetrics} for emitting the number of rows fetched per scan and the size of the entry cache.
+   */
+  public void setQueueMetrics(QueueMetrics queueMetrics) {
+    this.queueMetrics = queueMetrics;
   }
 
   @Override
@@ -183,7 +210,9 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     }
 
     // Put the consuming entries back to cache
-    entryCache.putAll(consumingEntries);
+    for (SimpleQueueEntry entry : consumingEntries.values()) {
+      cacheEntry(entry);
+    }
 
     // If not committed, no need to update HBase.
     if (!committed) {
@@ -202,6 +231,23 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     return true;
   }
 
+  /**
+   * Claims a batch of FIFO entries in one call, as an alternative to calling {@link #claimEntry(byte[], byte[])}
+   * for each entry.
+   *
+   * @param rowKeys row keys of the entries to claim
+   * @param stateContent the claimed state to set
+   * @param timeoutMillis time left before the dequeue time limit is reached, after which no more calls should be
+   *                      made to claim entries
+   * @return row keys of the entries claimed, compared with {@link Bytes#BYTES_COMPARATOR}, or {@code null} if
+   *         claiming a batch of entries is not supported, in which case entries are claimed one by one
+   */
+  @Nullable
+  protected Set<byte[]> claimEntries(List<byte[]> rowKeys, byte[] stateContent,
+                                     long timeoutMillis) throws IOException {
+    return null;
+  }
+
   /**
    * Called when the start row is updated.
    */
@@ -211,6 +257,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
 
   private DequeueResult<byte[]> performDequeue(int maxBatchSize) throws IOException {
     Preconditions.checkArgument(maxBatchSize > 0, "Batch size must be > 0.");
+    updateProcessRate();
 
     // pre-compute the "claimed" state content in case of FIFO.
     byte[] claimedStateValue = null;
@@ -230,7 +277,8 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
       // always all entries, while others are idle.
 
       // For FIFO, need to try claiming the entry if group size > 1
-      if (getConfig().getDequeueStrategy() == DequeueStrategy.FIFO && getConfig().getGroupSize() > 1) {
+      if (getConfig().getDequeueStrategy() == DequeueStrategy.FIFO && getConfig().getGroupSize() > 1
+        && !claimEntries(claimedStateValue, stopwatch)) {
         Iterator<Map.Entry<byte[], SimpleQueueEntry>> iterator = consumingEntries.entrySet().iterator();
         while (iterator.hasNext()) {
           SimpleQueueEntry entry = iterator.next().getValue();
@@ -274,9 +322,39 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
                maxDequeueMillis, maxBatchSize, consumingEntries.size());
     }
 
+    lastDequeueSize = consumingEntries.size();
     return new SimpleDequeueResult(consumingEntries.values());
   }
 
+  /**
+   * Claims the consuming entries that are not yet claimed by this consumer in one call to
+   * {@link #claimEntries(List, byte[], long)}, and removes the ones that cannot be claimed.
+   *
+   * @return {@code false} if claiming a batch of entries is not supported
+   */
+  private boolean claimEntries(byte[] claimedStateValue, Stopwatch stopwatch) throws IOException {
+    List<byte[]> rowKeys = Lists.newArrayList();
+    for (SimpleQueueEntry entry : consumingEntries.values()) {
+      if (entry.getState() == null ||
+        QueueEntryRow.getStateInstanceId(entry.getState()) >= getConfig().getGroupSize()) {
+        rowKeys.add(entry.getRowKey());
+      }
+    }
+    if (rowKeys.isEmpty()) {
+      return true;
+    }
+    Set<byte[]> claimed = claimEntries(rowKeys, claimedStateValue, maxDequeueMillis - stopwatch.elapsedMillis());
+    if (claimed == null) {
+      return false;
+    }
+    for (byte[] rowKey : rowKeys) {
+      if (!claimed.contains(rowKey)) {
+        consumingEntries.remove(rowKey);
+      }
+    }
+    return true;
+  }
+
   /**
    * Try to dequeue (claim) entries up to a maximum size.
    * @param entries For claimed entries to fill in.
@@ -306,29 +384,78 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     while (entries.size() < maxBatchSize && iterator.hasNext()) {
       Map.Entry<byte[], SimpleQueueEntry> entry = iterator.next();
       entries.put(entry.getKey(), entry.getValue());
+      entryCacheBytes -= getEntrySize(entry.getValue());
       iterator.remove();
     }
     return true;
   }
 
+  private void cacheEntry(SimpleQueueEntry entry) {
+    SimpleQueueEntry replaced = entryCache.put(entry.getRowKey(), entry);
+    entryCacheBytes += getEntrySize(entry) - (replaced == null ? 0 : getEntrySize(replaced));
+  }
+
+  private long getEntrySize(SimpleQueueEntry entry) {
+    return entry.getRowKey().length + entry.getData().length;
+  }
+
+  /**
+   * Updates the moving average of the number of entries processed per millisecond, based on the number of entries
+   * returned by the last dequeue and the time since then.
+   */
+  private void updateProcessRate() {
+    long now = System.currentTimeMillis();
+    if (lastDequeueTime > 0 && lastDequeueSize > 0) {
+      processRate = average(processRate, (double) lastDequeueSize / Math.max(1L, now - lastDequeueTime));
+    }
+    lastDequeueTime = now;
+    lastDequeueSize = 0;
+  }
+
+  /**
+   * Returns the number of rows to fetch in one scan. It is the number of entries processed in
+   * {@link #PREFETCH_MILLIS} at the observed rate, but at least one batch, and at most the number of rows that can be
+   * scanned in half of the dequeue time limit, or that fill up the entry cache.
+   */
+  private int getFetchRows(int maxBatchSize) {
+    long rows = processRate > 0 ? (long) (processRate * PREFETCH_MILLIS) : (long) maxBatchSize * PREFETCH_BATCHES;
+    rows = Math.max(rows, Math.max(MIN_FETCH_ROWS, maxBatchSize));
+    if (scanRate > 0) {
+      rows = Math.min(rows, Math.max(maxBatchSize, (long) (scanRate * maxDequeueMillis / 2)));
+    }
+    if (entrySize > 0) {
+      rows = Math.min(rows, Math.max(maxBatchSize, (long) (maxCacheBytes / entrySize)));
+    }
+    return (int) Math.max(1L, Math.min(rows, maxFetchRows));
+  }
+
+  private static double average(double average, double sample) {
+    return average <= 0 ? sample : average * (1 - SAMPLE_WEIGHT) + sample * SAMPLE_WEIGHT;
+  }
+
   private void populateRowCache(Set<byte[]> excludeRows, int maxBatchSize, Stopwatch stopwatch) throws IOException {
 
     long readPointer = transaction.getReadPointer();
 
     // Scan the table for queue entries.
-    int numRows = Math.max(MIN_FETCH_ROWS, maxBatchSize * PREFETCH_BATCHES);
+    int numRows = getFetchRows(maxBatchSize);
+    int scannedRows = 0;
+    int cachedEntries = 0;
+    long cachedBytes = 0L;
+    long scanStartTime = System.nanoTime();
     QueueScanner scanner = getScanner(scanStartRow,
                                       QueueEntryRow.getStopRowForTransaction(queueRowPrefix, transaction),
                                       numRows);
     try {
       // Try fill up the cache
       boolean firstScannedRow = true;
-      while (entryCache.size() < numRows) {
+      while (entryCache.size() < numRows && entryCacheBytes < maxCacheBytes) {
         ImmutablePair<byte[], Map<byte[], byte[]>> entry = scanner.next();
         if (entry == null) {
           // No more result, breaking out.
           break;
         }
+        scannedRows++;
 
         byte[] rowKey = entry.getFirst();
         if (excludeRows.contains(rowKey)) {
@@ -370,7 +497,10 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
           continue;
         }
 
-        entryCache.put(rowKey, new SimpleQueueEntry(rowKey, dataBytes, stateBytes));
+        SimpleQueueEntry queueEntry = new SimpleQueueEntry(rowKey, dataBytes, stateBytes);
+        cacheEntry(queueEntry);
+        cachedEntries++;
+        cachedBytes += getEntrySize(queueEntry);
 
         // Check here to make sure there is at least one entry read to make sure there is some progress
         if (stopwatch.elapsedMillis() >= maxDequeueMillis) {
@@ -380,6 +510,16 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     } finally {
       scanner.close();
     }
+
+    long scanMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scanStartTime);
+    if (scannedRows > 0 && scanMillis > 0) {
+      scanRate = average(scanRate, (double) scannedRows / scanMillis);
+    }
+    if (cachedEntries > 0) {
+      entrySize = average(entrySize, (double) cachedBytes / cachedEntries);
+    }
+    queueMetrics.emitDequeueFetchSize(numRows);
+    queueMetrics.emitDequeueCacheBytes(entryCacheBytes);
   }
 
   private byte[] encodeStateColumn(ConsumerEntryState state) {
@@ -441,7 +581,10 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
       // Simply put all entries into consumingEntries and clear those up from the entry cache as well.
       for (SimpleQueueEntry entry : entries) {
         consumingEntries.put(entry.getRowKey(), entry);
-        entryCache.remove(entry.getRowKey());
+        SimpleQueueEntry removed = entryCache.remove(entry.getRowKey());
+        if (removed != null) {
+          entryCacheBytes -= getEntrySize(removed);
+        }
       }
     }
 
@@ -29,6 +29,11 @@ public final class QueueConstants {
     public static final String QUEUE_TABLE_COPROCESSOR_DIR = "data.queue.table.coprocessor.dir";
     public static final String QUEUE_TABLE_PRESPLITS = "data.queue.table.presplits";
     public static final String DEQUEUE_TX_PERCENT = "data.queue.dequeue.tx.percent";
+    public static final String DEQUEUE_BATCH_CLAIM = "data.queue.dequeue.batch.claim";
+    public static final String DEQUEUE_CACHE_MAX_BYTES = "data.queue.dequeue.cache.max.bytes";
+    public static final String DEQUEUE_FETCH_MAX_ROWS = "data.queue.dequeue.fetch.max.rows";
+    public static final String INMEMORY_RING_BUFFER = "data.queue.inmemory.ring.buffer";
+    public static final String INMEMORY_RING_BUFFER_SIZE = "data.queue.inmemory.ring.buffer.size";
   }
 
   // This is a hardcoded value for the row key distributor bucket size before CDAP-1946
@@ -36,6 +41,10 @@ public final class QueueConstants {
 
   public static final String DEFAULT_QUEUE_TABLE_COPROCESSOR_DIR = "/queue";
 
+  public static final long DEFAULT_DEQUEUE_CACHE_MAX_BYTES = 8 * 1024 * 1024;
+  public static final int DEFAULT_DEQUEUE_FETCH_MAX_ROWS = 10000;
+  public static final int DEFAULT_INMEMORY_RING_BUFFER_SIZE = 65536;
+
   public static final long MAX_CREATE_TABLE_WAIT = 5000L;    // Maximum wait of 5 seconds for table creation.
 
   // How frequently (in seconds) to update the ConsumerConfigCache data for the HBaseQueueRegionObserver
@@ -24,6 +24,16 @@ public interface QueueMetrics {
 
   void emitEnqueueBytes(int bytes);
 
+  /**
+   * Emits the number of rows fetched by a queue consumer in one scan.
+   */
+  void emitDequeueFetchSize(int rows);
+
+  /**
+   * Emits the size in bytes of the entries cached by a queue consumer.
+   */
+  void emitDequeueCacheBytes(long bytes);
+
   QueueMetrics NOOP_QUEUE_METRICS = new QueueMetrics() {
     @Override
     public void emitEnqueue(int count) {
@@ -34,5 +44,15 @@ public interface QueueMetrics {
     public void emitEnqueueBytes(int bytes) {
       // no-op
     }
+
+    @Override
+    public void emitDequeueFetchSize(int rows) {
+      // no-op
+    }
+
+    @Override
+    public void emitDequeueCacheBytes(long bytes) {
+      // no-op
+    }
   };
 }
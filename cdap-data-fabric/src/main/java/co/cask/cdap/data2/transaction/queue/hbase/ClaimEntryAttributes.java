@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue.hbase;
+
+import org.apache.hadoop.hbase.client.OperationWithAttributes;
+import org.apache.hadoop.hbase.client.Put;
+
+import javax.annotation.Nullable;
+
+/**
+ * Deals with the attribute of a {@link Put} that claims a queue entry. The queue region observer turns such put into
+ * a check and put of the consumer state column, so that a FIFO consumer can claim a batch of entries in one call.
+ */
+public final class ClaimEntryAttributes {
+  private static final String ATTR_STATE_COLUMN = "cdap.queue.dequeue.claim.stateColumn";
+
+  /**
+   * Marks the given {@link Put} as a claim of the entry if the given state column is not yet set.
+   */
+  public static Put setClaim(Put put, byte[] stateColumnName) {
+    put.setAttribute(ATTR_STATE_COLUMN, stateColumnName);
+    return put;
+  }
+
+  /**
+   * Returns the state column name to check if the given operation is a claim, or {@code null} otherwise.
+   */
+  @Nullable
+  public static byte[] getStateColumn(OperationWithAttributes operation) {
+    return operation.getAttribute(ATTR_STATE_COLUMN);
+  }
+
+  /**
+   * Removes the claim attribute from the given {@link Put}.
+   */
+  public static void clearClaim(Put put) {
+    put.setAttribute(ATTR_STATE_COLUMN, null);
+  }
+
+  private ClaimEntryAttributes() {
+  }
+}
@@ -127,8 +127,14 @@ public class HBaseQueueClientFactory implements QueueClientFactory, ProgramConte
   }
 
   @Override
-  public QueueConsumer createConsumer(final QueueName queueName,
-                                      final ConsumerConfig consumerConfig, int numGroups) throws IOException {
+  public QueueConsumer createConsumer(QueueName queueName,
+                                      ConsumerConfig consumerConfig, int numGroups) throws IOException {
+    return createConsumer(queueName, consumerConfig, numGroups, QueueMetrics.NOOP_QUEUE_METRICS);
+  }
+
+  @Override
+  public QueueConsumer createConsumer(final QueueName queueName, final ConsumerConfig consumerConfig,
+                                      int numGroups, final QueueMetrics queueMetrics) throws IOException {
     final HBaseQueueAdmin admin = ensureTableExists(queueName);
     try {
       final long groupId = consumerConfig.getGroupId();
@@ -190,9 +196,11 @@ public class HBaseQueueClientFactory implements QueueClientFactory, ProgramConte
             HBaseQueueStrategy strategy = (state.getPreviousBarrier() == null)
                                           ? new SaltedHBaseQueueStrategy(hBaseTableUtil, distributorBuckets)
                                           : new ShardedHBaseQueueStrategy(hBaseTableUtil, distributorBuckets);
-            consumers.add(queueUtil.getQueueConsumer(cConf, hTable, queueName, state,
-                                                     admin.getConsumerStateStore(queueName),
-                                                     strategy));
+            HBaseQueueConsumer consumer = queueUtil.getQueueConsumer(cConf, hTable, queueName, state,
+                                                                     admin.getConsumerStateStore(queueName),
+                                                                     strategy);
+            consumer.setQueueMetrics(queueMetrics);
+            consumers.add(consumer);
           }
           return consumers;
         }
@@ -21,18 +21,26 @@ import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.DequeueResult;
 import co.cask.cdap.data2.transaction.queue.AbstractQueueConsumer;
+import co.cask.cdap.data2.transaction.queue.QueueConstants;
 import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.data2.transaction.queue.QueueScanner;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.io.Closeables;
 import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.tephra.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,10 +51,13 @@ import java.util.Set;
  */
 abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
 
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseQueueConsumer.class);
+
   private final HTable hTable;
   private final HBaseConsumerState state;
   private final HBaseConsumerStateStore stateStore;
   private final HBaseQueueStrategy queueStrategy;
+  private final boolean batchClaim;
   private boolean closed;
   private boolean canConsume;
   private boolean completed;
@@ -68,6 +79,7 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     this.state = consumerState;
     this.stateStore = stateStore;
     this.queueStrategy = queueStrategy;
+    this.batchClaim = cConf.getBoolean(QueueConstants.ConfigKeys.DEQUEUE_BATCH_CLAIM, false);
     this.canConsume = false;
   }
 
@@ -93,6 +105,55 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
                               stateColumnName, null, put);
   }
 
+  /**
+   * Claims all entries with one batch of puts, which the queue region observer turns into check and puts, and reads
+   * back the state columns with one batch of gets to find the entries claimed. If the batch of puts failed, the
+   * entries not claimed by it are claimed one by one until the timeout is reached.
+   */
+  @Override
+  protected Set<byte[]> claimEntries(List<byte[]> rowKeys, byte[] claimedStateValue,
+                                     long timeoutMillis) throws IOException {
+    if (!batchClaim) {
+      return null;
+    }
+    Stopwatch stopwatch = new Stopwatch().start();
+    List<Put> puts = Lists.newArrayListWithCapacity(rowKeys.size());
+    List<Get> gets = Lists.newArrayListWithCapacity(rowKeys.size());
+    for (byte[] rowKey : rowKeys) {
+      byte[] actualRowKey = queueStrategy.getActualRowKey(getConfig(), rowKey);
+      Put put = new Put(actualRowKey);
+      put.add(QueueEntryRow.COLUMN_FAMILY, stateColumnName, claimedStateValue);
+      puts.add(ClaimEntryAttributes.setClaim(put, stateColumnName));
+      gets.add(new Get(actualRowKey).addColumn(QueueEntryRow.COLUMN_FAMILY, stateColumnName));
+    }
+
+    boolean failed = false;
+    try {
+      hTable.batch(puts, new Object[puts.size()]);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while claiming queue entries");
+    } catch (IOException e) {
+      LOG.warn("Failed to claim a batch of {} entries of queue {}. Claiming one by one.",
+               rowKeys.size(), getQueueName(), e);
+      failed = true;
+    }
+
+    Result[] results = hTable.get(gets);
+    Set<byte[]> claimed = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < results.length; i++) {
+      byte[] rowKey = rowKeys.get(i);
+      byte[] state = results[i].getValue(QueueEntryRow.COLUMN_FAMILY, stateColumnName);
+      if (Bytes.equals(state, claimedStateValue)) {
+        claimed.add(rowKey);
+      } else if (failed && state == null && stopwatch.elapsedMillis() < timeoutMillis
+        && claimEntry(rowKey, claimedStateValue)) {
+        claimed.add(rowKey);
+      }
+    }
+    return claimed;
+  }
+
   @Override
   protected void updateState(Set<byte[]> rowKeys, byte[] stateColumnName, byte[] stateContent) throws IOException {
     if (rowKeys.isEmpty()) {
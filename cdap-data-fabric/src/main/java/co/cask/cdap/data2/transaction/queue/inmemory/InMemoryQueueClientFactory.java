@@ -49,6 +49,13 @@ public class InMemoryQueueClientFactory implements QueueClientFactory {
     return new InMemoryQueueConsumer(queueName, consumerConfig, numGroups, queueService);
   }
 
+  @Override
+  public QueueConsumer createConsumer(QueueName queueName, ConsumerConfig consumerConfig, int numGroups,
+                                      QueueMetrics queueMetrics) throws IOException {
+    // Entries are dequeued directly from memory, hence there is no fetch size and entry cache to report
+    return createConsumer(queueName, consumerConfig, numGroups);
+  }
+
   @Override
   public QueueProducer createProducer(QueueName queueName, QueueMetrics queueMetrics) throws IOException {
     return new InMemoryQueueProducer(queueName, queueService, queueMetrics);
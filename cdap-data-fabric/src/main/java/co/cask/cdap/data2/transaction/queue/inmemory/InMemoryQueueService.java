@@ -17,6 +17,7 @@
 package co.cask.cdap.data2.transaction.queue.inmemory;
 
 import co.cask.cdap.common.queue.QueueName;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
@@ -35,6 +36,7 @@ import javax.annotation.Nullable;
 public final class InMemoryQueueService {
 
   private final ConcurrentMap<QueueName, InMemoryQueue> queues;
+  private final ConcurrentMap<QueueName, RingBufferQueue> ringBufferQueues;
 
   /**
    * Package visible constructor so that instance of this class can only be created through Guice.
@@ -42,6 +44,7 @@ public final class InMemoryQueueService {
   @Inject
   private InMemoryQueueService() {
     queues = Maps.newConcurrentMap();
+    ringBufferQueues = Maps.newConcurrentMap();
   }
 
   InMemoryQueue getQueue(QueueName queueName) {
@@ -56,11 +59,29 @@ public final class InMemoryQueueService {
     return queue;
   }
 
+  /**
+   * Returns the {@link RingBufferQueue} of the given name, creating it with the given size if it does not exist.
+   */
+  RingBufferQueue getRingBufferQueue(QueueName queueName, int ringBufferSize) {
+    RingBufferQueue queue = ringBufferQueues.get(queueName);
+    if (queue == null) {
+      queue = new RingBufferQueue(ringBufferSize);
+      RingBufferQueue existing = ringBufferQueues.putIfAbsent(queueName, queue);
+      if (existing != null) {
+        queue = existing;
+      }
+    }
+    return queue;
+  }
+
   @SuppressWarnings("unused")
   public void dumpInfo(PrintStream out) {
     for (QueueName qname : queues.keySet()) {
       out.println("Queue '" + qname + "': size is " + queues.get(qname).getSize());
     }
+    for (QueueName qname : ringBufferQueues.keySet()) {
+      out.println("Ring buffer queue '" + qname + "': size is " + ringBufferQueues.get(qname).getSize());
+    }
   }
 
   /**
@@ -70,7 +91,7 @@ public final class InMemoryQueueService {
    */
   private void resetAllQueuesOrStreams(boolean clearStreams, @Nullable String prefix) {
     List<QueueName> toRemove = Lists.newArrayListWithCapacity(queues.size());
-    for (QueueName queueName : queues.keySet()) {
+    for (QueueName queueName : Iterables.concat(queues.keySet(), ringBufferQueues.keySet())) {
       if ((clearStreams && queueName.isStream()) || (!clearStreams && queueName.isQueue())) {
         if (prefix == null ||  queueName.toString().startsWith(prefix)) {
           toRemove.add(queueName);
@@ -79,6 +100,7 @@ public final class InMemoryQueueService {
     }
     for (QueueName queueName : toRemove) {
       queues.remove(queueName);
+      ringBufferQueues.remove(queueName);
     }
   }
 
@@ -101,7 +123,7 @@ public final class InMemoryQueueService {
   }
 
   public boolean exists(QueueName queueName) {
-    return queues.containsKey(queueName);
+    return queues.containsKey(queueName) || ringBufferQueues.containsKey(queueName);
   }
 
   public void truncate(QueueName queueName) {
@@ -109,6 +131,10 @@ public final class InMemoryQueueService {
     if (queue != null) {
       queue.clear();
     }
+    RingBufferQueue ringBufferQueue = ringBufferQueues.get(queueName);
+    if (ringBufferQueue != null) {
+      ringBufferQueue.clear();
+    }
   }
 
   /**
@@ -116,7 +142,7 @@ public final class InMemoryQueueService {
    * @param prefix the prefix to match.
    */
   public void truncateAllWithPrefix(@Nonnull String prefix) {
-    for (QueueName queueName : queues.keySet()) {
+    for (QueueName queueName : Iterables.concat(queues.keySet(), ringBufferQueues.keySet())) {
       if (queueName.toString().startsWith(prefix)) {
         truncate(queueName);
       }
@@ -125,5 +151,6 @@ public final class InMemoryQueueService {
 
   public void drop(QueueName queueName) {
     queues.remove(queueName);
+    ringBufferQueues.remove(queueName);
   }
 }
@@ -0,0 +1,364 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue.inmemory;
+
+import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueStrategy;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.transaction.queue.ConsumerEntryState;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Implementation of an in-memory queue backed by a lock-free ring buffer, for producers and consumers in the
+ * same process.
+ *
+ * Each entry has a sequence number, which maps to a slot in the ring buffer. Producers reserve slots for the entries
+ * of a transaction when the transaction is committing, and publish them after the transaction is committed, hence
+ * consumers never see entries of uncommitted transactions and need no transaction visibility checks. Slots of entries
+ * processed by all consumer groups are reclaimed in sequence order, and producers wait for free slots when the
+ * ring buffer is full.
+ */
+public class RingBufferQueue {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RingBufferQueue.class);
+  private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final AtomicReferenceArray<Item> slots;
+  private final int mask;
+  // Sequence number of the next slot to reserve
+  private final AtomicLong head = new AtomicLong();
+  // Sequence number of the oldest slot that is not reclaimed
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Creates a new instance.
+   *
+   * @param size number of slots in the ring buffer, rounded up to a power of two
+   */
+  public RingBufferQueue(int size) {
+    Preconditions.checkArgument(size > 0 && size <= (1 << 30), "Ring buffer size must be between 1 and 2^30.");
+    int capacity = Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1;
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Removes all entries. Entries that are reserved but not yet published are removed as well.
+   */
+  public void clear() {
+    long end = head.get();
+    for (long seq = tail.get(); seq < end; seq++) {
+      Item item = getItem(seq);
+      if (item != null) {
+        item.status.set(Item.CANCELLED);
+      }
+    }
+    reclaim();
+  }
+
+  public int getSize() {
+    return (int) (head.get() - tail.get());
+  }
+
+  public int getCapacity() {
+    return slots.length();
+  }
+
+  /**
+   * Reserves slots for the given entries. The entries are not visible to consumers until they are published.
+   *
+   * @param entries the entries to reserve slots for
+   * @param timeout maximum time to wait for free slots if the ring buffer is full
+   * @param unit unit of the timeout
+   * @return the sequence number of the first entry, or {@code -1} if there are not enough free slots before the
+   *         timeout
+   */
+  public long reserve(List<QueueEntry> entries, long timeout, TimeUnit unit) {
+    int count = entries.size();
+    Preconditions.checkArgument(count <= slots.length(),
+                                "Number of entries %s is larger than the ring buffer size %s.", count, slots.length());
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    long start = head.get();
+    while (start + count - tail.get() > slots.length() || !head.compareAndSet(start, start + count)) {
+      if (start + count - tail.get() > slots.length()) {
+        reclaim();
+        if (System.nanoTime() - deadline > 0) {
+          return -1L;
+        }
+        LockSupport.parkNanos(FULL_WAIT_NANOS);
+      }
+      start = head.get();
+    }
+
+    long seq = start;
+    for (QueueEntry entry : entries) {
+      slots.set(index(seq), new Item(seq, entry));
+      seq++;
+    }
+    return start;
+  }
+
+  /**
+   * Makes the reserved entries visible to consumers.
+   */
+  public void publish(long start, int count) {
+    for (long seq = start; seq < start + count; seq++) {
+      Item item = getItem(seq);
+      // The item is gone if the queue is cleared
+      if (item != null) {
+        item.status.compareAndSet(Item.RESERVED, Item.PUBLISHED);
+      }
+    }
+  }
+
+  /**
+   * Cancels the reserved entries, so that they are never visible to consumers.
+   */
+  public void cancel(long start, int count) {
+    for (long seq = start; seq < start + count; seq++) {
+      Item item = getItem(seq);
+      if (item != null) {
+        item.status.set(Item.CANCELLED);
+      }
+    }
+    reclaim();
+  }
+
+  public ImmutablePair<List<Long>, List<byte[]>> dequeue(long txId, ConsumerConfig config,
+                                                         ConsumerState consumerState, int maxBatchSize) {
+    List<Long> seqs = Lists.newArrayListWithCapacity(maxBatchSize);
+    List<byte[]> datas = Lists.newArrayListWithCapacity(maxBatchSize);
+    boolean updateStartSeq = true;
+
+    long end = head.get();
+    for (long seq = Math.max(consumerState.startSeq, tail.get()); seq < end && seqs.size() < maxBatchSize; seq++) {
+      Item item = getItem(seq);
+      boolean done;
+      if (item == null) {
+        // Either reclaimed, or reserved but not yet written by the producer
+        done = seq < tail.get();
+      } else {
+        int status = item.status.get();
+        if (status == Item.RESERVED) {
+          done = false;
+        } else if (status != Item.PUBLISHED || !isOwner(config, item)) {
+          done = true;
+        } else {
+          ItemEntryState state = item.consumerStates.get(config.getGroupId());
+          done = state != null && state.state == ConsumerEntryState.PROCESSED;
+          if (!done && item.claim(config, txId)) {
+            seqs.add(seq);
+            datas.add(item.entry.getData());
+          }
+        }
+      }
+      if (updateStartSeq && done) {
+        consumerState.startSeq = seq + 1;
+      } else {
+        // Entries claimed by this or other consumers could be rolled back, next time we have to revisit them
+        updateStartSeq = false;
+      }
+    }
+    return seqs.isEmpty() ? null : ImmutablePair.of(seqs, datas);
+  }
+
+  public void ack(List<Long> dequeuedSeqs, ConsumerConfig config) {
+    if (dequeuedSeqs == null) {
+      return;
+    }
+    for (long seq : dequeuedSeqs) {
+      Item item = getItem(seq);
+      if (item == null) {
+        LOG.warn("Attempting to ack non-existing entry " + seq);
+        continue;
+      }
+      item.consumerStates.put(config.getGroupId(),
+                              new ItemEntryState(config.getInstanceId(), ConsumerEntryState.PROCESSED, -1L));
+    }
+  }
+
+  public void undoDequeue(List<Long> dequeuedSeqs, ConsumerConfig config) {
+    if (dequeuedSeqs == null) {
+      return;
+    }
+    for (long seq : dequeuedSeqs) {
+      Item item = getItem(seq);
+      if (item == null) {
+        LOG.warn("Attempting to undo dequeue for non-existing entry " + seq);
+        continue;
+      }
+      if (config.getDequeueStrategy() == DequeueStrategy.FIFO) {
+        // Keep the claim, so that the entry is dequeued again by the same consumer
+        item.consumerStates.put(config.getGroupId(),
+                                new ItemEntryState(config.getInstanceId(), ConsumerEntryState.CLAIMED, -1L));
+      } else {
+        item.consumerStates.remove(config.getGroupId());
+      }
+    }
+  }
+
+  public void evict(List<Long> dequeuedSeqs, int numGroups) {
+    if (numGroups < 1) {
+      return; // this means no eviction because number of groups is not known
+    }
+    if (dequeuedSeqs == null) {
+      return;
+    }
+    boolean evicted = false;
+    for (long seq : dequeuedSeqs) {
+      Item item = getItem(seq);
+      if (item == null) {
+        LOG.warn("Attempting to evict non-existing entry " + seq);
+        continue;
+      }
+      if (item.processedCount.incrementAndGet() >= numGroups) {
+        // all consumer groups have processed _and_ reached the post-commit hook: safe to evict
+        evicted |= item.status.compareAndSet(Item.PUBLISHED, Item.EVICTED);
+      }
+    }
+    if (evicted) {
+      reclaim();
+    }
+  }
+
+  /**
+   * Reclaims the slots of evicted and cancelled entries from the tail, up to the first entry that is neither.
+   */
+  private void reclaim() {
+    while (true) {
+      long seq = tail.get();
+      if (seq >= head.get()) {
+        return;
+      }
+      Item item = getItem(seq);
+      if (item == null) {
+        return;
+      }
+      int status = item.status.get();
+      if (status != Item.EVICTED && status != Item.CANCELLED) {
+        return;
+      }
+      if (tail.compareAndSet(seq, seq + 1)) {
+        // Only clear the slot if a producer has not reused it yet
+        slots.compareAndSet(index(seq), item, null);
+      }
+    }
+  }
+
+  private int index(long seq) {
+    return (int) (seq & mask);
+  }
+
+  /**
+   * Returns the item with the given sequence number, or {@code null} if the slot is reclaimed or not yet written.
+   */
+  private Item getItem(long seq) {
+    Item item = slots.get(index(seq));
+    return item == null || item.seq != seq ? null : item;
+  }
+
+  private boolean isOwner(ConsumerConfig config, Item item) {
+    if (config.getDequeueStrategy() == DequeueStrategy.FIFO || config.getGroupSize() == 1) {
+      return true;
+    }
+    int hash;
+    if (config.getDequeueStrategy() == DequeueStrategy.ROUND_ROBIN) {
+      hash = (int) (item.seq ^ (item.seq >>> 32));
+    } else {
+      Integer hashFoundInEntry = item.entry.getHashKey(config.getHashKey());
+      hash = hashFoundInEntry == null ? 0 : hashFoundInEntry;
+    }
+    // modulo of a negative is negative, make sure we're positive or 0.
+    return Math.abs(hash % config.getGroupSize()) == config.getInstanceId();
+  }
+
+  // represents an entry of the queue plus meta data
+  private static final class Item {
+    static final int RESERVED = 0;
+    static final int PUBLISHED = 1;
+    static final int EVICTED = 2;
+    static final int CANCELLED = 3;
+
+    final long seq;
+    final QueueEntry entry;
+    final AtomicInteger status = new AtomicInteger(RESERVED);
+    final ConcurrentMap<Long, ItemEntryState> consumerStates = new ConcurrentHashMap<>(2, 0.75f, 1);
+    final AtomicInteger processedCount = new AtomicInteger();
+
+    Item(long seq, QueueEntry entry) {
+      this.seq = seq;
+      this.entry = entry;
+    }
+
+    /**
+     * Claims the entry for the given consumer in the given transaction.
+     *
+     * @return {@code true} if the entry is claimed, {@code false} if it is claimed by another consumer or it is
+     *         already dequeued by the same transaction
+     */
+    boolean claim(ConsumerConfig config, long txId) {
+      ItemEntryState newState = new ItemEntryState(config.getInstanceId(), ConsumerEntryState.CLAIMED, txId);
+      ItemEntryState state = consumerStates.putIfAbsent(config.getGroupId(), newState);
+      if (state == null) {
+        return true;
+      }
+      if (state.state != ConsumerEntryState.CLAIMED || state.txId == txId) {
+        return false;
+      }
+      // If the old claimed consumer is gone or if it has been claimed by the same consumer before,
+      // then it can be claimed.
+      return (state.instanceId >= config.getGroupSize() || state.instanceId == config.getInstanceId())
+        && consumerStates.replace(config.getGroupId(), state, newState);
+    }
+  }
+
+  /**
+   * Represents the state of an item entry for a consumer group.
+   */
+  private static final class ItemEntryState {
+    final int instanceId;
+    final ConsumerEntryState state;
+    // Write pointer of the transaction that claimed the entry
+    final long txId;
+
+    ItemEntryState(int instanceId, ConsumerEntryState state, long txId) {
+      this.instanceId = instanceId;
+      this.state = state;
+      this.txId = txId;
+    }
+  }
+
+  /**
+   * The state of a single consumer, gets modified.
+   */
+  public static class ConsumerState {
+    long startSeq = 0L;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue.inmemory;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.QueueClientFactory;
+import co.cask.cdap.data2.queue.QueueConsumer;
+import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.data2.transaction.queue.QueueConstants;
+import co.cask.cdap.data2.transaction.queue.QueueMetrics;
+import com.google.inject.Inject;
+
+import java.io.IOException;
+
+/**
+ * Factory for clients of {@link RingBufferQueue}, for queues with producers and consumers in the same process.
+ */
+public class RingBufferQueueClientFactory implements QueueClientFactory {
+
+  private final InMemoryQueueService queueService;
+  private final int ringBufferSize;
+
+  @Inject
+  public RingBufferQueueClientFactory(CConfiguration cConf, InMemoryQueueService queueService) {
+    this.queueService = queueService;
+    this.ringBufferSize = cConf.getInt(QueueConstants.ConfigKeys.INMEMORY_RING_BUFFER_SIZE,
+                                       QueueConstants.DEFAULT_INMEMORY_RING_BUFFER_SIZE);
+  }
+
+  @Override
+  public QueueProducer createProducer(QueueName queueName) throws IOException {
+    return createProducer(queueName, QueueMetrics.NOOP_QUEUE_METRICS);
+  }
+
+  @Override
+  public QueueConsumer createConsumer(QueueName queueName,
+                                      ConsumerConfig consumerConfig, int numGroups) throws IOException {
+    return new RingBufferQueueConsumer(queueName, consumerConfig, numGroups, ringBufferSize, queueService);
+  }
+
+  @Override
+  public QueueConsumer createConsumer(QueueName queueName, ConsumerConfig consumerConfig, int numGroups,
+                                      QueueMetrics queueMetrics) throws IOException {
+    // Entries are dequeued directly from memory, hence there is no fetch size and entry cache to report
+    return createConsumer(queueName, consumerConfig, numGroups);
+  }
+
+  @Override
+  public QueueProducer createProducer(QueueName queueName, QueueMetrics queueMetrics) throws IOException {
+    return new RingBufferQueueProducer(queueName, ringBufferSize, queueService, queueMetrics);
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue.inmemory;
+
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueResult;
+import co.cask.cdap.data2.queue.QueueConsumer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.tephra.Transaction;
+import org.apache.tephra.TransactionAware;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Consumer for a {@link RingBufferQueue}.
+ */
+public class RingBufferQueueConsumer implements QueueConsumer, TransactionAware {
+
+  private static final DequeueResult<byte[]> EMPTY_RESULT = DequeueResult.Empty.result();
+
+  private final QueueName queueName;
+  private final ConsumerConfig config;
+  private final int numGroups;
+  private final int ringBufferSize;
+  private final InMemoryQueueService queueService;
+  private Transaction currentTx;
+  private List<Long> dequeuedSeqs;
+  // The queue that the entries are dequeued from; it changes if the queue is dropped and created again
+  private RingBufferQueue queue;
+  private RingBufferQueue.ConsumerState state;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param numGroups number of consumer groups of the queue. Entries are only evicted from the ring buffer after all
+   *                  groups have processed them. A consumer created with a number below one, which means the number
+   *                  of groups is not known, never evicts entries; this is meant for consumers that inspect the queue
+   *                  rather than the consumers of a flow.
+   */
+  public RingBufferQueueConsumer(QueueName queueName, ConsumerConfig config, int numGroups,
+                                 int ringBufferSize, InMemoryQueueService queueService) {
+    this.queueName = queueName;
+    this.config = config;
+    this.numGroups = numGroups;
+    this.ringBufferSize = ringBufferSize;
+    this.queueService = queueService;
+  }
+
+  private RingBufferQueue getQueue() {
+    return queueService.getRingBufferQueue(queueName, ringBufferSize);
+  }
+
+  @Override
+  public String getTransactionAwareName() {
+    return getClass().getSimpleName() + "(queue = " + queueName + ")";
+  }
+
+  @Override
+  public QueueName getQueueName() {
+    return queueName;
+  }
+
+  @Override
+  public ConsumerConfig getConfig() {
+    return config;
+  }
+
+  @Override
+  public DequeueResult<byte[]> dequeue() throws IOException {
+    return dequeue(1);
+  }
+
+  @Override
+  public DequeueResult<byte[]> dequeue(int maxBatchSize) throws IOException {
+    RingBufferQueue currentQueue = getQueue();
+    if (currentQueue != queue) {
+      queue = currentQueue;
+      state = new RingBufferQueue.ConsumerState();
+      dequeuedSeqs = null;
+    }
+    ImmutablePair<List<Long>, List<byte[]>> result =
+      queue.dequeue(currentTx.getWritePointer(), config, state, maxBatchSize);
+    if (result == null) {
+      return EMPTY_RESULT;
+    }
+    if (dequeuedSeqs == null) {
+      dequeuedSeqs = result.getFirst();
+    } else {
+      dequeuedSeqs.addAll(result.getFirst());
+    }
+    return new RingBufferDequeueResult(result);
+  }
+
+  @Override
+  public void startTx(Transaction tx) {
+    currentTx = tx;
+    dequeuedSeqs = null;
+  }
+
+  @Override
+  public void updateTx(Transaction transaction) {
+    currentTx = transaction;
+  }
+
+  @Override
+  public Collection<byte[]> getTxChanges() {
+    return ImmutableList.of(); // no conflicts generated by queues
+  }
+
+  @Override
+  public boolean commitTx() throws Exception {
+    if (queue != null) {
+      queue.ack(dequeuedSeqs, config);
+    }
+    return true;
+  }
+
+  @Override
+  public void postTxCommit() {
+    if (queue != null) {
+      queue.evict(dequeuedSeqs, numGroups);
+    }
+  }
+
+  @Override
+  public boolean rollbackTx() throws Exception {
+    // Entries are claimed on dequeue for all strategies, hence always undo
+    if (queue != null && dequeuedSeqs != null) {
+      queue.undoDequeue(dequeuedSeqs, config);
+    }
+    dequeuedSeqs = null;
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    // No-op
+  }
+
+  private final class RingBufferDequeueResult implements DequeueResult<byte[]> {
+
+    private final List<Long> seqs;
+    private final List<byte[]> data;
+
+    RingBufferDequeueResult(ImmutablePair<List<Long>, List<byte[]>> result) {
+      this.seqs = ImmutableList.copyOf(result.getFirst());
+      this.data = ImmutableList.copyOf(result.getSecond());
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return data.isEmpty();
+    }
+
+    @Override
+    public void reclaim() {
+      if (dequeuedSeqs != null) {
+        dequeuedSeqs.addAll(seqs);
+      } else {
+        dequeuedSeqs = Lists.newArrayList(seqs);
+      }
+    }
+
+    @Override
+    public int size() {
+      return seqs.size();
+    }
+
+    @Override
+    public Iterator<byte[]> iterator() {
+      return data.iterator();
+    }
+  }
+}
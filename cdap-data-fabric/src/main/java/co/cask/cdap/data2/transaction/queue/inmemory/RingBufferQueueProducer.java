@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue.inmemory;
+
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.transaction.queue.AbstractQueueProducer;
+import co.cask.cdap.data2.transaction.queue.QueueMetrics;
+import com.google.common.collect.ImmutableList;
+import org.apache.tephra.Transaction;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producer for a {@link RingBufferQueue}. Entries are written to the ring buffer when the transaction is committing
+ * and become visible to consumers after the transaction is committed.
+ */
+public class RingBufferQueueProducer extends AbstractQueueProducer {
+
+  // Maximum time to wait for consumers to free up the ring buffer before failing the transaction
+  private static final long FULL_TIMEOUT_MS = 1000L;
+
+  private final QueueName queueName;
+  private final int ringBufferSize;
+  private final InMemoryQueueService queueService;
+  private RingBufferQueue reservedQueue;
+  private long reservedStart;
+  private int reservedCount;
+
+  public RingBufferQueueProducer(QueueName queueName, int ringBufferSize,
+                                 InMemoryQueueService queueService, QueueMetrics queueMetrics) {
+    super(queueMetrics, queueName);
+    this.queueName = queueName;
+    this.ringBufferSize = ringBufferSize;
+    this.queueService = queueService;
+  }
+
+  @Override
+  public void startTx(Transaction tx) {
+    super.startTx(tx);
+    reservedQueue = null;
+  }
+
+  @Override
+  protected int persist(Iterable<QueueEntry> entries, Transaction transaction) throws Exception {
+    List<QueueEntry> entryList = ImmutableList.copyOf(entries);
+    if (entryList.isEmpty()) {
+      return 0;
+    }
+    RingBufferQueue queue = queueService.getRingBufferQueue(queueName, ringBufferSize);
+    if (entryList.size() > queue.getCapacity()) {
+      throw new IOException(String.format("Cannot enqueue %d entries in one transaction to queue %s with ring " +
+                                            "buffer size %d.", entryList.size(), queueName, queue.getCapacity()));
+    }
+    long start = queue.reserve(entryList, FULL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    if (start < 0) {
+      throw new IOException("Timeout in waiting for free space in the ring buffer of queue " + queueName);
+    }
+    reservedQueue = queue;
+    reservedStart = start;
+    reservedCount = entryList.size();
+
+    int bytes = 0;
+    for (QueueEntry entry : entryList) {
+      bytes += entry.getData().length;
+    }
+    return bytes;
+  }
+
+  @Override
+  public void postTxCommit() {
+    if (reservedQueue != null) {
+      reservedQueue.publish(reservedStart, reservedCount);
+      reservedQueue = null;
+    }
+    super.postTxCommit();
+  }
+
+  @Override
+  protected void doRollback() {
+    if (reservedQueue != null) {
+      reservedQueue.cancel(reservedStart, reservedCount);
+      reservedQueue = null;
+    }
+  }
+}
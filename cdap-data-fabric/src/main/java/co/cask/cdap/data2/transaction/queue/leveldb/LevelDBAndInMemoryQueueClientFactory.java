@@ -15,29 +15,36 @@
  */
 package co.cask.cdap.data2.transaction.queue.leveldb;
 
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.queue.QueueConsumer;
 import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.data2.transaction.queue.QueueConstants;
 import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import co.cask.cdap.data2.transaction.queue.inmemory.InMemoryQueueClientFactory;
+import co.cask.cdap.data2.transaction.queue.inmemory.RingBufferQueueClientFactory;
 import com.google.inject.Inject;
 
 import java.io.IOException;
 
 /**
- * Factory for LevelDB queue clients.
+ * Factory for LevelDB queue clients. Streams are in LevelDB and queues are in memory, either in a sorted map or in
+ * a ring buffer if {@link QueueConstants.ConfigKeys#INMEMORY_RING_BUFFER} is enabled.
  */
 public final class LevelDBAndInMemoryQueueClientFactory implements QueueClientFactory {
 
-  private final InMemoryQueueClientFactory inMemoryFactory;
+  private final QueueClientFactory inMemoryFactory;
   private final LevelDBQueueClientFactory levelDBFactory;
 
   @Inject
-  public LevelDBAndInMemoryQueueClientFactory(InMemoryQueueClientFactory inMemoryFactory,
+  public LevelDBAndInMemoryQueueClientFactory(CConfiguration cConf,
+                                              InMemoryQueueClientFactory inMemoryFactory,
+                                              RingBufferQueueClientFactory ringBufferFactory,
                                               LevelDBQueueClientFactory levelDBFactory) {
-    this.inMemoryFactory = inMemoryFactory;
+    this.inMemoryFactory = cConf.getBoolean(QueueConstants.ConfigKeys.INMEMORY_RING_BUFFER, false)
+      ? ringBufferFactory : inMemoryFactory;
     this.levelDBFactory = levelDBFactory;
   }
 
@@ -53,6 +60,12 @@ public final class LevelDBAndInMemoryQueueClientFactory implements QueueClientFa
     return delegate(queueName).createConsumer(queueName, consumerConfig, numGroups);
   }
 
+  @Override
+  public QueueConsumer createConsumer(QueueName queueName, ConsumerConfig consumerConfig, int numGroups,
+                                      QueueMetrics queueMetrics) throws IOException {
+    return delegate(queueName).createConsumer(queueName, consumerConfig, numGroups, queueMetrics);
+  }
+
   @Override
   public QueueProducer createProducer(QueueName queueName, QueueMetrics queueMetrics) throws IOException {
     return delegate(queueName).createProducer(queueName, queueMetrics);
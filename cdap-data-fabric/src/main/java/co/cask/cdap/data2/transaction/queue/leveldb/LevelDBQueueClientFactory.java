@@ -75,13 +75,21 @@ public final class LevelDBQueueClientFactory implements QueueClientFactory {
   @Override
   public QueueConsumer createConsumer(QueueName queueName,
                                       ConsumerConfig consumerConfig, int numGroups) throws IOException {
+    return createConsumer(queueName, consumerConfig, numGroups, QueueMetrics.NOOP_QUEUE_METRICS);
+  }
+
+  @Override
+  public QueueConsumer createConsumer(QueueName queueName, ConsumerConfig consumerConfig, int numGroups,
+                                      QueueMetrics queueMetrics) throws IOException {
     LevelDBQueueAdmin admin = ensureTableExists(queueName);
     LevelDBTableCore core = new LevelDBTableCore(admin.getActualTableName(queueName), service);
     // only the first consumer of each group runs eviction; and only if the number of consumers is known (> 0).
     QueueEvictor evictor = (numGroups <= 0 || consumerConfig.getInstanceId() != 0)
                             ? QueueEvictor.NOOP : createEvictor(queueName, numGroups, core);
-    return new LevelDBQueueConsumer(cConf, core, getQueueLock(queueName.toString()),
-                                    consumerConfig, queueName, evictor);
+    LevelDBQueueConsumer consumer = new LevelDBQueueConsumer(cConf, core, getQueueLock(queueName.toString()),
+                                                             consumerConfig, queueName, evictor);
+    consumer.setQueueMetrics(queueMetrics);
+    return consumer;
   }
 
   @VisibleForTesting
@@ -22,6 +22,7 @@ import co.cask.cdap.data.file.FileReader;
 import co.cask.cdap.data.file.ReadFilter;
 import co.cask.cdap.data.file.filter.TTLReadFilter;
 import co.cask.cdap.data.stream.MultiLiveStreamFileReader;
+import co.cask.cdap.data.stream.StreamDataFileIndexCache;
 import co.cask.cdap.data.stream.StreamEventOffset;
 import co.cask.cdap.data.stream.StreamFileOffset;
 import co.cask.cdap.data.stream.StreamFileType;
@@ -59,6 +60,8 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
   private final StreamAdmin streamAdmin;
   private final StreamConsumerStateStoreFactory stateStoreFactory;
   private final String tablePrefix;
+  private final int prefetchSize;
+  private final StreamDataFileIndexCache indexCache;
 
   protected AbstractStreamFileConsumerFactory(CConfiguration cConf, StreamAdmin streamAdmin,
                                               StreamConsumerStateStoreFactory stateStoreFactory) {
@@ -67,6 +70,9 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
     this.stateStoreFactory = stateStoreFactory;
     this.tablePrefix = String.format("%s.%s", NamespaceId.SYSTEM.getEntityName(),
                                      QueueConstants.QueueType.STREAM.toString());
+    this.prefetchSize = cConf.getInt(Constants.Stream.CONSUMER_PREFETCH_SIZE,
+                                     Constants.Stream.DEFAULT_CONSUMER_PREFETCH_SIZE);
+    this.indexCache = new StreamDataFileIndexCache(cConf, null);
   }
 
   /**
@@ -173,7 +179,8 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
       if (useStoredStates) {
         LOG.info("Create file reader with consumer state: {}", consumerState);
         // Has existing offsets, just resume from there.
-        MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, consumerState.getState());
+        MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, consumerState.getState(),
+                                                                         prefetchSize, indexCache);
         reader.initialize();
         return reader;
       }
@@ -212,7 +219,8 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
     LOG.info("Empty consumer state. Create file reader with file offsets: groupId={}, instanceId={} states={}",
              consumerState.getGroupId(), consumerState.getInstanceId(), fileOffsets);
 
-    MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, fileOffsets);
+    MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, fileOffsets, prefetchSize,
+                                                                     indexCache);
     reader.initialize();
     return reader;
   }
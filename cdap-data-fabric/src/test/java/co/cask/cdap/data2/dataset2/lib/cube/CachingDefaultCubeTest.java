@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.Cube;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multiset;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the {@link AbstractCubeTest} tests against a {@link DefaultCube} with a query cache, and tests that cached
+ * results follow the facts added.
+ */
+public class CachingDefaultCubeTest extends AbstractCubeTest {
+
+  @Override
+  protected Cube getCube(String name, int[] resolutions, Map<String, ? extends Aggregation> aggregations) {
+    return new DefaultCube(resolutions, createFactTableSupplier(name, -1), aggregations,
+                           ImmutableMap.<String, AggregationAlias>of(), 100, TimeUnit.HOURS.toSeconds(1));
+  }
+
+  @Test
+  public void testQueryCache() throws Exception {
+    Aggregation agg1 = new DefaultAggregation(ImmutableList.of("dim1", "dim2"));
+    DefaultCube cube = (DefaultCube) getCube("myCachedCube", new int[] {1, 60}, ImmutableMap.of("agg1", agg1));
+    CountingMetricsCollector metrics = new CountingMetricsCollector();
+    cube.setMetricsCollector(metrics);
+
+    writeInc(cube, "metric1", 10, 1, "1", "1");
+    writeInc(cube, "metric1", 20, 2, "1", "2");
+    writeGauge(cube, "metric2", 10, 5, "1", "1");
+
+    // First query scans, the same query and the one after it in the same bucket hit the cache
+    Assert.assertEquals(ImmutableList.of(new TimeValue(10, 1), new TimeValue(20, 2)),
+                        queryCounter(cube, "metric1", 0, 30, 1));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(10, 1), new TimeValue(20, 2)),
+                        queryCounter(cube, "metric1", 0, 30, 1));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(20, 2)), queryCounter(cube, "metric1", 15, 40, 1));
+    Assert.assertEquals(1, metrics.counts.count("cube.query.cache.miss.count"));
+    Assert.assertEquals(2, metrics.counts.count("cube.query.cache.hit.count"));
+
+    // Counters added are summed up into the cached result, including in new series and at new timestamps
+    writeInc(cube, "metric1", 20, 3, "1", "1");
+    writeInc(cube, "metric1", 25, 4, "1", "3");
+    writeInc(cube, "metric1", 25, 1, "2", "1");
+    Assert.assertEquals(ImmutableList.of(new TimeValue(10, 1), new TimeValue(20, 5), new TimeValue(25, 4)),
+                        queryCounter(cube, "metric1", 0, 30, 1));
+    Assert.assertEquals(1, metrics.counts.count("cube.query.cache.miss.count"));
+
+    // A different resolution is cached separately
+    Assert.assertEquals(ImmutableList.of(new TimeValue(0, 10)), queryCounter(cube, "metric1", 0, 30, 60));
+    writeInc(cube, "metric1", 40, 2, "1", "1");
+    Assert.assertEquals(ImmutableList.of(new TimeValue(0, 12)), queryCounter(cube, "metric1", 0, 59, 60));
+    Assert.assertEquals(2, metrics.counts.count("cube.query.cache.miss.count"));
+
+    // A gauge can't be applied to the cached result, so it is scanned again
+    Assert.assertEquals(ImmutableList.of(new TimeValue(10, 5)), queryGauge(cube, 0, 30));
+    writeGauge(cube, "metric2", 10, 7, "1", "1");
+    Assert.assertEquals(ImmutableList.of(new TimeValue(10, 7)), queryGauge(cube, 0, 30));
+    Assert.assertEquals(4, metrics.counts.count("cube.query.cache.miss.count"));
+  }
+
+  @Test
+  public void testScanLimit() throws Exception {
+    // Rows of 10 seconds, so that the time range of the cache entry spans multiple rows, and a scan limit of 3 rows
+    Aggregation agg1 = new DefaultAggregation(ImmutableList.of("dim1", "dim2"));
+    DefaultCube cube = new DefaultCube(new int[] {1}, createFactTableSupplier("myLimitedCube", 10),
+                                       ImmutableMap.of("agg1", agg1), ImmutableMap.<String, AggregationAlias>of(),
+                                       100, TimeUnit.HOURS.toSeconds(1), 3);
+    CountingMetricsCollector metrics = new CountingMetricsCollector();
+    cube.setMetricsCollector(metrics);
+
+    for (long ts = 5; ts < 40; ts += 10) {
+      writeInc(cube, "metric1", ts, 1, "1", "1");
+    }
+    writeInc(cube, "metric1", 55, 2, "1", "1");
+
+    // The cache entry range has 5 rows, which exceeds the limit, while the query range has only one. The query range
+    // is scanned again and nothing is cached.
+    Assert.assertEquals(ImmutableList.of(new TimeValue(55, 2)), queryCounter(cube, "metric1", 50, 59, 1));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(55, 2)), queryCounter(cube, "metric1", 50, 59, 1));
+    Assert.assertEquals(2, metrics.counts.count("cube.query.cache.miss.count"));
+    Assert.assertEquals(0, metrics.counts.count("cube.query.cache.hit.count"));
+  }
+
+  /**
+   * Creates a {@link FactTableSupplier} of in-memory fact tables.
+   *
+   * @param rollTime number of resolution intervals in a row, or {@code -1} to use the one of the cube
+   */
+  private FactTableSupplier createFactTableSupplier(final String name, final int rollTime) {
+    return new FactTableSupplier() {
+      @Override
+      public FactTable get(int resolution, int cubeRollTime) {
+        String entityTableName = "CachingEntityTable-" + name;
+        InMemoryTableService.create(entityTableName);
+        String dataTableName = "CachingDataTable-" + name + "-" + resolution;
+        InMemoryTableService.create(dataTableName);
+        return new FactTable(new InMemoryMetricsTable(dataTableName),
+                             new EntityTable(new InMemoryMetricsTable(entityTableName)),
+                             resolution, rollTime < 0 ? cubeRollTime : rollTime);
+      }
+    };
+  }
+
+  private Collection<TimeValue> queryCounter(Cube cube, String measureName, long startTs, long endTs,
+                                             int resolution) throws Exception {
+    return query(cube, measureName, AggregationFunction.SUM, startTs, endTs, resolution);
+  }
+
+  private Collection<TimeValue> queryGauge(Cube cube, long startTs, long endTs) throws Exception {
+    return query(cube, "metric2", AggregationFunction.LATEST, startTs, endTs, 1);
+  }
+
+  private Collection<TimeValue> query(Cube cube, String measureName, AggregationFunction function,
+                                      long startTs, long endTs, int resolution) throws Exception {
+    CubeQuery query = CubeQuery.builder()
+      .select()
+        .measurement(measureName, function)
+      .from("agg1").resolution(resolution, TimeUnit.SECONDS)
+      .where()
+        .dimensions(ImmutableMap.of("dim1", "1"))
+        .timeRange(startTs, endTs)
+      .groupBy()
+        .dimensions(ImmutableList.<String>of())
+      .limit(Integer.MAX_VALUE)
+      .build();
+    Collection<TimeSeries> result = cube.query(query);
+    Assert.assertEquals(1, result.size());
+    return Iterables.getOnlyElement(result).getTimeValues();
+  }
+
+  /**
+   * A {@link MetricsCollector} that counts the increments of each metric.
+   */
+  private static final class CountingMetricsCollector implements MetricsCollector {
+
+    private final Multiset<String> counts = ConcurrentHashMultiset.create();
+
+    @Override
+    public void increment(String metricName, long value) {
+      counts.add(metricName, (int) value);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      // no-op
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Unit test for {@link PackedWriteBuffer}.
+ */
+public class PackedWriteBufferTest {
+
+  @Test
+  public void testCursor() {
+    PackedWriteBuffer log = new PackedWriteBuffer();
+    Assert.assertTrue(log.isEmpty());
+    Assert.assertFalse(log.cursor().next());
+
+    log.put(b("r2"), new byte[][] { b("c1"), b("c2") }, new byte[][] { b("v1"), b("v2") });
+    log.put(b("r1"), new byte[][] { b("c2") }, new byte[][] { b("v3") });
+    // overwrite and delete columns of r2
+    log.put(b("r2"), new byte[][] { b("c1") }, new byte[][] { b("v4") });
+    log.put(b("r2"), new byte[][] { b("c2") }, new byte[][] { null });
+    Assert.assertEquals(5, log.size());
+
+    // Only the latest write of every cell is returned, in row and column order
+    PackedWriteBuffer.Cursor cursor = log.cursor();
+    assertCell(cursor, true, "r1", "c2", b("v3"));
+    assertCell(cursor, true, "r2", "c1", b("v4"));
+    assertCell(cursor, false, "r2", "c2", null);
+    Assert.assertFalse(cursor.next());
+
+    // The rows and columns can be read in place
+    cursor = log.cursor();
+    Assert.assertTrue(cursor.next());
+    Assert.assertArrayEquals(b("r1"), Arrays.copyOfRange(cursor.getBuffer(), cursor.getRowOffset(),
+                                                         cursor.getRowOffset() + cursor.getRowLength()));
+    Assert.assertArrayEquals(b("c2"), Arrays.copyOfRange(cursor.getBuffer(), cursor.getColumnOffset(),
+                                                         cursor.getColumnOffset() + cursor.getColumnLength()));
+
+    // A cleared log is reused
+    log.clear();
+    Assert.assertTrue(log.isEmpty());
+    Assert.assertFalse(log.cursor().next());
+    log.put(b("r3"), new byte[][] { b("c1") }, new byte[][] { b("v5") });
+    cursor = log.cursor();
+    assertCell(cursor, true, "r3", "c1", b("v5"));
+    Assert.assertFalse(cursor.next());
+  }
+
+  @Test
+  public void testCopyTo() {
+    PackedWriteBuffer log = new PackedWriteBuffer();
+    log.put(b("r1"), new byte[][] { b("c2") }, new byte[][] { b("v3") });
+    log.put(b("r2"), new byte[][] { b("c1"), b("c2") }, new byte[][] { b("v4"), null });
+
+    // copy into a buffer with existing data, which is overridden by the log
+    NavigableMap<byte[], NavigableMap<byte[], Update>> buffer = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    NavigableMap<byte[], Update> r1 = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    r1.put(b("c1"), new IncrementValue(5L));
+    r1.put(b("c2"), new PutValue(b("v0")));
+    buffer.put(b("r1"), r1);
+
+    log.copyTo(buffer);
+    Assert.assertEquals(3, log.size());
+
+    Assert.assertEquals(2, buffer.size());
+    Assert.assertEquals(5L, buffer.get(b("r1")).get(b("c1")).getValue());
+    Assert.assertArrayEquals(b("v3"), (byte[]) buffer.get(b("r1")).get(b("c2")).getValue());
+    Assert.assertEquals(2, buffer.get(b("r2")).size());
+    Assert.assertArrayEquals(b("v4"), (byte[]) buffer.get(b("r2")).get(b("c1")).getValue());
+    Assert.assertNull(buffer.get(b("r2")).get(b("c2")).getValue());
+  }
+
+  @Test
+  public void testInOrder() {
+    // Writes appended in row and column order, including overwrites, are read without sorting
+    PackedWriteBuffer log = new PackedWriteBuffer();
+    log.put(b("r1"), new byte[][] { b("c1"), b("c2") }, new byte[][] { b("v1"), b("v2") });
+    log.put(b("r1"), new byte[][] { b("c2") }, new byte[][] { b("v3") });
+    log.put(b("r2"), new byte[][] { b("c1") }, new byte[][] { b("v4") });
+
+    PackedWriteBuffer.Cursor cursor = log.cursor();
+    assertCell(cursor, true, "r1", "c1", b("v1"));
+    assertCell(cursor, false, "r1", "c2", b("v3"));
+    assertCell(cursor, true, "r2", "c1", b("v4"));
+    Assert.assertFalse(cursor.next());
+
+    // Out of order writes appended after reading are still sorted
+    log.put(b("r2"), new byte[][] { b("c2") }, new byte[][] { b("v5") });
+    log.put(b("r1"), new byte[][] { b("c1") }, new byte[][] { b("v6") });
+    cursor = log.cursor();
+    assertCell(cursor, true, "r1", "c1", b("v6"));
+    assertCell(cursor, false, "r1", "c2", b("v3"));
+    assertCell(cursor, true, "r2", "c1", b("v4"));
+    assertCell(cursor, false, "r2", "c2", b("v5"));
+    Assert.assertFalse(cursor.next());
+  }
+
+  @Test
+  public void testSameAsMap() {
+    // Randomly generated writes should give the same result as applying them to a map one by one
+    Random random = new Random(0);
+    PackedWriteBuffer log = new PackedWriteBuffer();
+    NavigableMap<byte[], NavigableMap<byte[], Update>> expected = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+
+    for (int i = 0; i < 10000; i++) {
+      byte[] row = Bytes.toBytes("row" + random.nextInt(100));
+      byte[][] columns = new byte[random.nextInt(3) + 1][];
+      byte[][] values = new byte[columns.length][];
+      for (int j = 0; j < columns.length; j++) {
+        columns[j] = Bytes.toBytes("col" + random.nextInt(20));
+        values[j] = random.nextInt(10) == 0 ? null : Bytes.toBytes(i * 10 + j);
+      }
+      log.put(row, columns, values);
+
+      NavigableMap<byte[], Update> rowMap = expected.get(row);
+      if (rowMap == null) {
+        rowMap = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        expected.put(row, rowMap);
+      }
+      for (int j = 0; j < columns.length; j++) {
+        rowMap.put(columns[j], new PutValue(values[j]));
+      }
+    }
+
+    NavigableMap<byte[], NavigableMap<byte[], Update>> actual = log.toMap();
+    Assert.assertEquals(expected.size(), actual.size());
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> row : expected.entrySet()) {
+      NavigableMap<byte[], Update> actualRow = actual.get(row.getKey());
+      Assert.assertNotNull(actualRow);
+      Assert.assertEquals(row.getValue().keySet().size(), actualRow.size());
+      for (Map.Entry<byte[], Update> cell : row.getValue().entrySet()) {
+        Assert.assertArrayEquals((byte[]) cell.getValue().getValue(), (byte[]) actualRow.get(cell.getKey()).getValue());
+      }
+    }
+  }
+
+  private static void assertCell(PackedWriteBuffer.Cursor cursor, boolean newRow,
+                                 String row, String column, byte[] value) {
+    Assert.assertTrue(cursor.next());
+    Assert.assertEquals(newRow, cursor.isNewRow());
+    Assert.assertArrayEquals(b(row), cursor.getRow());
+    Assert.assertArrayEquals(b(column), cursor.getColumn());
+    Assert.assertArrayEquals(value, cursor.getValue());
+  }
+
+  private static byte[] b(String str) {
+    return Bytes.toBytes(str);
+  }
+}
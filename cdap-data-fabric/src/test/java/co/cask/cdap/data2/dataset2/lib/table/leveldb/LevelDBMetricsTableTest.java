@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
@@ -35,12 +36,24 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * metrics table test for levelDB.
  */
@@ -70,6 +83,64 @@ public class LevelDBMetricsTableTest extends MetricsTableTest {
     dsFramework = injector.getInstance(DatasetFramework.class);
   }
 
+  @Test
+  public void testConcurrentIncrementStress() throws Exception {
+    // Each thread uses its own table instance, and increments a row shared by all threads together with a row
+    // of its own, so that both contended and uncontended rows are exercised
+    final String tableName = "testConcurrentIncrementStress";
+    final int threads = 32;
+    final int rounds = 200;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        final byte[] ownRow = Bytes.toBytes("row" + i);
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            MetricsTable table = getTable(tableName);
+            try {
+              for (int j = 0; j < rounds; j++) {
+                NavigableMap<byte[], NavigableMap<byte[], Long>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+                updates.put(A, columnIncrement(X, 1L));
+                updates.put(ownRow, columnIncrement(X, 1L));
+                table.increment(updates);
+                table.increment(ownRow, ImmutableMap.of(Y, 2L));
+                table.incrementAndGet(B, X, 3L);
+              }
+            } finally {
+              table.close();
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    MetricsTable table = getTable(tableName);
+    try {
+      Assert.assertEquals(threads * rounds, Bytes.toLong(table.get(A, X)));
+      Assert.assertEquals(3L * threads * rounds, Bytes.toLong(table.get(B, X)));
+      for (int i = 0; i < threads; i++) {
+        Assert.assertEquals(rounds, Bytes.toLong(table.get(Bytes.toBytes("row" + i), X)));
+        Assert.assertEquals(2L * rounds, Bytes.toLong(table.get(Bytes.toBytes("row" + i), Y)));
+      }
+    } finally {
+      table.close();
+    }
+  }
+
+  private static NavigableMap<byte[], Long> columnIncrement(byte[] column, long delta) {
+    NavigableMap<byte[], Long> increments = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    increments.put(column, delta);
+    return increments;
+  }
+
   @Override
   protected MetricsTable getTable(String name) throws Exception {
     DatasetId metricsDatasetInstanceId = NamespaceId.SYSTEM.dataset(name);
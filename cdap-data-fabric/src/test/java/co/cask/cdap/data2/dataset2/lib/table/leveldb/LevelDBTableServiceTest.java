@@ -29,6 +29,7 @@ import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.junit.Assert;
@@ -40,6 +41,7 @@ import org.junit.rules.TemporaryFolder;
 import java.io.IOException;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 /**
  *
@@ -105,10 +107,14 @@ public class LevelDBTableServiceTest {
     Assert.assertTrue(table2SizeUpdated > table2Size);
     table2Size = table2SizeUpdated;
 
+    Striped<Lock> rowLocks = service.getRowLocks(table1);
+    Assert.assertSame(rowLocks, service.getRowLocks(table1));
     service.dropTable(table1);
     TimeUnit.SECONDS.sleep(1);
 
     Assert.assertNull(service.getTableStats().get(tableId1));
+    // row locks are kept for a dropped table, so that cores created before the drop share them with new ones
+    Assert.assertSame(rowLocks, service.getRowLocks(table1));
     Assert.assertEquals(table2Size, service.getTableStats().get(tableId2).getDiskSizeBytes());
   }
 
@@ -16,10 +16,13 @@
 
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.api.dataset.table.ConflictDetection;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
@@ -42,6 +45,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.Collections;
 
 /**
  * test for LevelDB tables.
@@ -54,7 +58,7 @@ public class LevelDBTableTest extends BufferingTableTest<LevelDBTable> {
   static LevelDBTableService service;
   static Injector injector = null;
 
-  private static CConfiguration cConf;
+  static CConfiguration cConf;
 
   @BeforeClass
   public static void init() throws Exception {
@@ -95,6 +99,44 @@ public class LevelDBTableTest extends BufferingTableTest<LevelDBTable> {
     return false;
   }
 
+  @Test
+  public void testScanReadAhead() throws Exception {
+    // use a separate service, with a read ahead smaller than the number of rows scanned
+    CConfiguration readAheadConf = CConfiguration.copy(cConf);
+    readAheadConf.set(Constants.CFG_DATA_LEVELDB_DIR, tmpFolder.newFolder().getAbsolutePath());
+    readAheadConf.setInt(Constants.CFG_DATA_LEVELDB_SCAN_READAHEAD, 3);
+    LevelDBTableService readAheadService = new LevelDBTableService();
+    readAheadService.setConfiguration(readAheadConf);
+
+    String tableName = "testScanReadAhead";
+    readAheadService.ensureTableExists(tableName);
+    try {
+      LevelDBTableCore core = new LevelDBTableCore(tableName, readAheadService);
+      byte[] column = Bytes.toBytes("c");
+      byte[] value = Bytes.toBytes("v");
+      for (int i = 0; i < 10; i++) {
+        core.persist(Collections.singletonMap(Bytes.toBytes(i), Collections.singletonMap(column, value)), 1L);
+      }
+
+      // scan rows [2, 9), which takes multiple rounds of read ahead
+      Scanner scanner = core.scan(Bytes.toBytes(2), Bytes.toBytes(9), null, null, null);
+      try {
+        for (int i = 2; i < 9; i++) {
+          Row row = scanner.next();
+          Assert.assertNotNull(row);
+          Assert.assertEquals(i, Bytes.toInt(row.getRow()));
+          Assert.assertArrayEquals(value, row.get(column));
+        }
+        Assert.assertNull(scanner.next());
+        Assert.assertNull(scanner.next());
+      } finally {
+        scanner.close();
+      }
+    } finally {
+      readAheadService.dropTable(tableName);
+    }
+  }
+
   @Test
   public void testTablesSurviveAcrossRestart() throws Exception {
     // todo make this test run for hbase, too - requires refactoring of their injection
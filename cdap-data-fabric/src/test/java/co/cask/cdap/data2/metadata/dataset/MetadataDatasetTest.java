@@ -28,6 +28,7 @@ import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.proto.id.StreamViewId;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -42,6 +43,7 @@ import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -668,6 +670,174 @@ public class MetadataDatasetTest {
     });
   }
 
+  @Test
+  public void testSearchLongValue() throws Exception {
+    // A value too long to be stored in the posting rows, which is read from the value row
+    final String longValue = "longvalue " + Strings.repeat("x", 2000);
+    final MetadataEntry longEntry = new MetadataEntry(flow1, "long", longValue);
+    final MetadataEntry shortEntry = new MetadataEntry(dataset1, "short", "longvalue");
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        dataset.setProperty(flow1, "long", longValue);
+        dataset.setProperty(dataset1, "short", "longvalue");
+      }
+    });
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        List<MetadataEntry> results =
+          dataset.search("ns1", "longvalue", ImmutableSet.of(MetadataSearchTargetType.ALL));
+        Assert.assertEquals(ImmutableSet.of(longEntry, shortEntry), ImmutableSet.copyOf(results));
+        Assert.assertEquals(2, results.size());
+
+        // flow1 matches the 'longvalue' index and the 'long:longvalue', 'long:xx...' and 'long:longvalue xx...'
+        // indexes, while dataset1 only matches the 'longvalue' index
+        Map<NamespacedEntityId, Integer> weights =
+          dataset.searchWeights("ns1", "longvalue long:*", ImmutableSet.of(MetadataSearchTargetType.ALL));
+        Assert.assertEquals(ImmutableMap.of(flow1, 4, dataset1, 1), weights);
+      }
+    });
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        dataset.removeProperties(flow1);
+        dataset.removeProperties(dataset1);
+      }
+    });
+  }
+
+  @Test
+  public void testSearchSeparatorInValue() throws Exception {
+    // The posting rows separate the index from the value row key with a NUL byte
+    final MetadataEntry entry = new MetadataEntry(flow1, "nul", "a\u0000b");
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        dataset.setProperty(flow1, "nul", "a\u0000b");
+        dataset.setProperty(dataset1, "nul", "a");
+      }
+    });
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        Set<MetadataSearchTargetType> allTypes = ImmutableSet.of(MetadataSearchTargetType.ALL);
+        Assert.assertEquals(ImmutableSet.of(entry),
+                            ImmutableSet.copyOf(dataset.search("ns1", "nul:a\u0000*", allTypes)));
+        Assert.assertEquals(ImmutableSet.of(new MetadataEntry(dataset1, "nul", "a")),
+                            ImmutableSet.copyOf(dataset.search("ns1", "nul:a", allTypes)));
+        dataset.removeProperties(flow1);
+        dataset.removeProperties(dataset1);
+        Assert.assertEquals(ImmutableList.of(), dataset.search("ns1", "nul:a*", allTypes));
+      }
+    });
+  }
+
+  @Test
+  public void testSearchRequiredTerms() throws Exception {
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        dataset.addTags(app1, "red", "blue");
+        dataset.addTags(flow1, "red");
+        dataset.addTags(dataset1, "red", "green");
+        dataset.addTags(stream1, "blue", "green");
+        dataset.setProperty(stream1, "color", "red");
+        dataset.addTags(appNs2, "red", "blue");
+      }
+    });
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        Set<MetadataSearchTargetType> allTypes = ImmutableSet.of(MetadataSearchTargetType.ALL);
+        // Without required terms, entities matching any of the terms are returned
+        Assert.assertEquals(ImmutableMap.of(app1, 2, flow1, 1, dataset1, 1, stream1, 1),
+                            dataset.searchWeights("ns1", "tags:red tags:blue", allTypes));
+
+        // Only entities having all the required terms are returned
+        Assert.assertEquals(ImmutableMap.of(app1, 2),
+                            dataset.searchWeights("ns1", "+tags:red +tags:blue", allTypes));
+        Assert.assertEquals(ImmutableMap.of(app1, 2, stream1, 2),
+                            dataset.searchWeights("ns1", "+red +blue", allTypes));
+        Assert.assertEquals(ImmutableMap.of(stream1, 3),
+                            dataset.searchWeights("ns1", "+gr* +red +blue", allTypes));
+        Assert.assertEquals(ImmutableMap.of(app1, 1, flow1, 1, dataset1, 2, stream1, 2),
+                            dataset.searchWeights("ns1", "+red gr*", allTypes));
+        Assert.assertEquals(ImmutableMap.of(),
+                            dataset.searchWeights("ns1", "+tags:green +tags:red +tags:blue", allTypes));
+
+        // Optional terms only add to the weights of entities having the required terms
+        Assert.assertEquals(ImmutableMap.of(dataset1, 2, stream1, 1),
+                            dataset.searchWeights("ns1", "+tags:green tags:red", allTypes));
+        Assert.assertEquals(ImmutableMap.of(stream1, 1),
+                            dataset.searchWeights("ns1", "+tags:green tags:red",
+                                                  ImmutableSet.of(MetadataSearchTargetType.STREAM)));
+
+        List<MetadataEntry> results = dataset.search("ns1", "+color:red", allTypes);
+        Assert.assertEquals(ImmutableList.of(new MetadataEntry(stream1, "color", "red")), results);
+      }
+    });
+
+    // Intersect a long posting list with a short one, which skips over most of the long one
+    final List<DatasetId> datasets = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      datasets.add(new DatasetId("ns1", "many" + i));
+    }
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        for (DatasetId datasetId : datasets) {
+          dataset.addTags(datasetId, "many");
+        }
+        dataset.addTags(datasets.get(3), "few");
+        dataset.addTags(datasets.get(50), "few");
+        dataset.addTags(datasets.get(97), "few");
+      }
+    });
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        Set<MetadataSearchTargetType> allTypes = ImmutableSet.of(MetadataSearchTargetType.ALL);
+        Assert.assertEquals(ImmutableMap.of(datasets.get(3), 2, datasets.get(50), 2, datasets.get(97), 2),
+                            dataset.searchWeights("ns1", "+tags:many +tags:few", allTypes));
+        Assert.assertEquals(ImmutableMap.of(datasets.get(3), 2, datasets.get(50), 2, datasets.get(97), 2),
+                            dataset.searchWeights("ns1", "+tags:few tags:many", allTypes));
+        Assert.assertEquals(100, dataset.searchWeights("ns1", "tags:few tags:many", allTypes).size());
+        for (DatasetId datasetId : datasets) {
+          dataset.removeTags(datasetId);
+        }
+      }
+    });
+
+    // Removed tags are no longer searchable
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        dataset.removeTags(app1, "blue");
+        Assert.assertEquals(ImmutableMap.of(stream1, 2),
+                            dataset.searchWeights("ns1", "+red +blue",
+                                                  ImmutableSet.of(MetadataSearchTargetType.ALL)));
+      }
+    });
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        dataset.removeTags(app1);
+        dataset.removeTags(flow1);
+        dataset.removeTags(dataset1);
+        dataset.removeTags(stream1);
+        dataset.removeProperties(stream1);
+        dataset.removeTags(appNs2);
+      }
+    });
+  }
+
   @Test
   public void testUpdateSearch() throws Exception {
     txnl.execute(new TransactionExecutor.Subroutine() {
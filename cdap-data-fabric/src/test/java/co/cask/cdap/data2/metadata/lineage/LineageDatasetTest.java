@@ -27,6 +27,7 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.id.ProgramRunId;
 import co.cask.cdap.proto.id.StreamId;
+import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -38,6 +39,7 @@ import org.junit.ClassRule;
 import org.junit.Test;
 
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests storage and retrieval of Dataset accesses by Programs in {@link LineageDataset}.
@@ -188,6 +190,104 @@ public class LineageDatasetTest {
     });
   }
 
+  @Test
+  public void testBatchedRelations() throws Exception {
+    final LineageDataset lineageDataset = getLineageDataset("testBatchedRelations");
+    Assert.assertNotNull(lineageDataset);
+    TransactionExecutor txnl = dsFrameworkUtil.newInMemoryTransactionExecutor((TransactionAware) lineageDataset);
+
+    // Runs that start in different weeks, so that the accesses are in different buckets of the adjacency index
+    final long week = TimeUnit.DAYS.toMillis(7);
+    final RunId runId1 = RunIds.generate(week + 1000);
+    final RunId runId2 = RunIds.generate(2 * week + 1000);
+    final RunId runId3 = RunIds.generate(5 * week + 1000);
+    final RunId runId4 = RunIds.generate(100 * week + 1000);
+
+    final DatasetId dataset1 = NamespaceId.DEFAULT.dataset("dataset1");
+    final DatasetId dataset2 = NamespaceId.DEFAULT.dataset("dataset2");
+    final StreamId stream1 = NamespaceId.DEFAULT.stream("stream1");
+
+    final ProgramId program1 = NamespaceId.DEFAULT.app("app1").flow("flow1");
+    final FlowletId flowlet1 = program1.flowlet("flowlet1");
+    final ProgramId program2 = NamespaceId.DEFAULT.app("app2").mr("mr2");
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        lineageDataset.addAccess(program1.run(runId1), stream1, AccessType.READ, week + 2000, flowlet1);
+        lineageDataset.addAccess(program1.run(runId1), dataset1, AccessType.WRITE, week + 2000, flowlet1);
+        lineageDataset.addAccess(program2.run(runId2), dataset1, AccessType.READ, 2 * week + 2000);
+        lineageDataset.addAccess(program2.run(runId2), dataset2, AccessType.WRITE, 2 * week + 2000);
+        lineageDataset.addAccess(program2.run(runId3), dataset1, AccessType.READ, 5 * week + 2000);
+        lineageDataset.addAccess(program2.run(runId4), dataset2, AccessType.WRITE, 100 * week + 2000);
+      }
+    });
+
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        Relation stream1Program1 = new Relation(stream1, program1, AccessType.READ, runId1, ImmutableSet.of(flowlet1));
+        Relation dataset1Program1 = new Relation(dataset1, program1, AccessType.WRITE, runId1,
+                                                 ImmutableSet.of(flowlet1));
+        Relation dataset1Program2 = new Relation(dataset1, program2, AccessType.READ, runId2);
+        Relation dataset2Program2 = new Relation(dataset2, program2, AccessType.WRITE, runId2);
+        Relation dataset1Program2Run3 = new Relation(dataset1, program2, AccessType.READ, runId3);
+        Relation dataset2Program2Run4 = new Relation(dataset2, program2, AccessType.WRITE, runId4);
+
+        // Data and programs in one read, for a period spanning a few buckets
+        Assert.assertEquals(
+          ImmutableSet.of(stream1Program1, dataset1Program1, dataset1Program2, dataset1Program2Run3),
+          lineageDataset.getRelations(ImmutableList.of(stream1, dataset1), 0, 10 * week,
+                                      Predicates.<Relation>alwaysTrue()));
+        Assert.assertEquals(
+          ImmutableSet.of(dataset1Program1, stream1Program1, dataset1Program2, dataset2Program2),
+          lineageDataset.getRelations(ImmutableList.of(program1, program2), 0, 3 * week,
+                                      Predicates.<Relation>alwaysTrue()));
+
+        // Relations are the same as the ones from the access rows
+        for (DatasetId dataset : ImmutableList.of(dataset1, dataset2)) {
+          Assert.assertEquals(lineageDataset.getRelations(dataset, 0, 10 * week, Predicates.<Relation>alwaysTrue()),
+                              lineageDataset.getRelations(ImmutableList.of(dataset), 0, 10 * week,
+                                                          Predicates.<Relation>alwaysTrue()));
+        }
+
+        // Period boundaries inside a bucket are applied on the run start time
+        Assert.assertEquals(
+          ImmutableSet.of(dataset1Program2),
+          lineageDataset.getRelations(ImmutableList.of(dataset1), 2 * week + 1000, 2 * week + 1001,
+                                      Predicates.<Relation>alwaysTrue()));
+
+        // A long period is read with a scan over the index rows
+        Assert.assertEquals(
+          ImmutableSet.of(dataset1Program2, dataset2Program2, dataset1Program2Run3, dataset2Program2Run4),
+          lineageDataset.getRelations(ImmutableList.of(program2), 0, 365 * week, Predicates.<Relation>alwaysTrue()));
+
+        // Filter is applied
+        Assert.assertEquals(
+          ImmutableSet.of(dataset2Program2Run4),
+          lineageDataset.getRelations(ImmutableList.of(dataset2), 0, 365 * week, new Predicate<Relation>() {
+            @Override
+            public boolean apply(Relation relation) {
+              return relation.getRun().equals(runId4);
+            }
+          }));
+      }
+    });
+
+    // Rebuilding the index from the access rows doesn't change the relations
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        byte[] startRow = lineageDataset.rebuildAdjacencyIndex(null, 2);
+        Assert.assertNotNull(startRow);
+        Assert.assertNull(lineageDataset.rebuildAdjacencyIndex(startRow, 10));
+        Assert.assertEquals(lineageDataset.getRelations(program2, 0, 365 * week, Predicates.<Relation>alwaysTrue()),
+                            lineageDataset.getRelations(ImmutableList.of(program2), 0, 365 * week,
+                                                        Predicates.<Relation>alwaysTrue()));
+      }
+    });
+  }
+
   private static LineageDataset getLineageDataset(String instanceId) throws Exception {
     DatasetId id = DatasetFrameworkTestUtil.NAMESPACE_ID.dataset(instanceId);
     return DatasetsUtil.getOrCreateDataset(dsFrameworkUtil.getFramework(), id,
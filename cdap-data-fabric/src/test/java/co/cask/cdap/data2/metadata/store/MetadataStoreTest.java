@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.metadata.store;
 
+import co.cask.cdap.api.Predicate;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.guice.ConfigModule;
@@ -38,6 +39,7 @@ import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.proto.metadata.Metadata;
 import co.cask.cdap.proto.metadata.MetadataScope;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
+import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
@@ -313,6 +315,91 @@ public class MetadataStoreTest {
     Assert.assertTrue(actual.containsAll(expected));
   }
 
+  @Test
+  public void testSearchPagination() throws Exception {
+    String namespace = "pagination";
+    StreamId stream1 = new StreamId(namespace, "s1");
+    StreamId stream2 = new StreamId(namespace, "s2");
+    DatasetId dataset1 = new DatasetId(namespace, "ds1");
+    DatasetId dataset2 = new DatasetId(namespace, "ds2");
+
+    // Weights for the search "page": stream1 = 1, dataset1 = 2, stream2 = 3, dataset2 = 4
+    store.addTags(MetadataScope.USER, stream1, "page");
+    store.addTags(MetadataScope.USER, dataset1, "page");
+    store.setProperties(MetadataScope.USER, dataset1, ImmutableMap.of("k1", "page"));
+    store.addTags(MetadataScope.USER, stream2, "page");
+    store.setProperties(MetadataScope.USER, stream2, ImmutableMap.of("k1", "page", "k2", "page"));
+    store.addTags(MetadataScope.SYSTEM, dataset2, "page");
+    store.setProperties(MetadataScope.USER, dataset2, ImmutableMap.of("k1", "page", "k2", "page", "k3", "page"));
+
+    Set<MetadataSearchTargetType> allTypes = ImmutableSet.of(MetadataSearchTargetType.ALL);
+    Predicate<NamespacedEntityId> all = new Predicate<NamespacedEntityId>() {
+      @Override
+      public boolean apply(NamespacedEntityId input) {
+        return true;
+      }
+    };
+
+    // Sort by name
+    SearchResults results = store.search(namespace, "page", allTypes, SortInfo.DEFAULT, 0, 3, null, all);
+    Assert.assertEquals(4, results.getTotal());
+    Assert.assertEquals(ImmutableList.of(dataset1, dataset2, stream1), getEntities(results));
+    Assert.assertNotNull(results.getCursor());
+    results = store.search(namespace, "page", allTypes, SortInfo.DEFAULT, 0, 3, results.getCursor(), all);
+    Assert.assertEquals(ImmutableList.of(stream2), getEntities(results));
+    Assert.assertNull(results.getCursor());
+
+    // Sort by weight, with offset
+    SortInfo byWeight = new SortInfo(SortInfo.SortBy.WEIGHT, SortInfo.SortOrder.DESC);
+    results = store.search(namespace, "page", allTypes, byWeight, 1, 2, null, all);
+    Assert.assertEquals(4, results.getTotal());
+    Assert.assertEquals(ImmutableList.of(stream2, dataset1), getEntities(results));
+    // Metadata of both scopes are in the results
+    Assert.assertEquals(ImmutableMap.of(MetadataScope.USER,
+                                        new Metadata(ImmutableMap.of("k1", "page", "k2", "page"),
+                                                     ImmutableSet.of("page"))),
+                        results.getResults().get(0).getMetadata());
+    results = store.search(namespace, "page", allTypes, byWeight, 0, 2, results.getCursor(), all);
+    Assert.assertEquals(ImmutableList.of(stream1), getEntities(results));
+    Assert.assertNull(results.getCursor());
+
+    // Filtered entities are not counted
+    Predicate<NamespacedEntityId> streamsOnly = new Predicate<NamespacedEntityId>() {
+      @Override
+      public boolean apply(NamespacedEntityId input) {
+        return input instanceof StreamId;
+      }
+    };
+    results = store.search(namespace, "page", allTypes, byWeight, 0, 10, null, streamsOnly);
+    Assert.assertEquals(2, results.getTotal());
+    Assert.assertEquals(ImmutableList.of(stream2, stream1), getEntities(results));
+    Assert.assertNull(results.getCursor());
+
+    // Limit of zero only returns the total
+    results = store.search(namespace, "page", allTypes, byWeight, 0, 0, null, all);
+    Assert.assertEquals(4, results.getTotal());
+    Assert.assertTrue(results.getResults().isEmpty());
+
+    try {
+      store.search(namespace, "page", allTypes, byWeight, 0, 1, "invalid", all);
+      Assert.fail("Expected failure for invalid cursor");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    for (NamespacedEntityId entityId : ImmutableList.of(stream1, stream2, dataset1, dataset2)) {
+      store.removeMetadata(entityId);
+    }
+  }
+
+  private List<NamespacedEntityId> getEntities(SearchResults results) {
+    List<NamespacedEntityId> entities = new ArrayList<>();
+    for (MetadataSearchResultRecord record : results.getResults()) {
+      entities.add(record.getEntityId());
+    }
+    return entities;
+  }
+
   @AfterClass
   public static void teardown() {
     txManager.stopAndWait();
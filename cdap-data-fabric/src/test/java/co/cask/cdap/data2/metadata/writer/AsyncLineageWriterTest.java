@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.metadata.writer;
+
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
+import co.cask.cdap.common.service.RetryStrategies;
+import co.cask.cdap.common.service.RetryStrategy;
+import co.cask.cdap.common.utils.Tasks;
+import co.cask.cdap.data2.metadata.lineage.AccessType;
+import co.cask.cdap.data2.metadata.lineage.DataAccess;
+import co.cask.cdap.proto.id.DatasetId;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.NamespacedEntityId;
+import co.cask.cdap.proto.id.ProgramRunId;
+import co.cask.cdap.proto.id.StreamId;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Tests for {@link AsyncLineageWriter}.
+ */
+public class AsyncLineageWriterTest {
+
+  private final ProgramRunId run = NamespaceId.DEFAULT.app("app").flow("flow").run("run");
+  private final DatasetId dataset = NamespaceId.DEFAULT.dataset("dataset");
+  private final StreamId stream = NamespaceId.DEFAULT.stream("stream");
+  private final RetryStrategy retryStrategy =
+    RetryStrategies.limit(2, RetryStrategies.fixDelay(10, TimeUnit.MILLISECONDS));
+
+  @Test
+  public void testBatching() throws Exception {
+    final RecordingLineageWriter delegate = new RecordingLineageWriter();
+    AsyncLineageWriter writer = new AsyncLineageWriter(delegate, new NoOpMetricsCollectionService(), 10, 2,
+                                                       TimeUnit.HOURS.toMillis(1), retryStrategy);
+
+    // Accesses are written synchronously before the writer is started
+    writer.addAccess(run, dataset, AccessType.READ);
+    Assert.assertEquals(1, delegate.getBatches().size());
+
+    writer.startAndWait();
+    try {
+      // A batch is written as soon as it is full, and duplicate accesses are not written again
+      writer.addAccess(run, dataset, AccessType.READ);
+      writer.addAccess(run, dataset, AccessType.WRITE);
+      writer.addAccess(run, stream, AccessType.READ);
+      writer.addAccess(run, stream, AccessType.WRITE);
+      waitForBatches(delegate, 2);
+      Assert.assertEquals(ImmutableList.of(AccessType.WRITE, AccessType.READ),
+                          getAccessTypes(delegate.getBatches().get(1)));
+
+      // The last access is only written when the writer stops
+      TimeUnit.MILLISECONDS.sleep(200);
+      Assert.assertEquals(2, delegate.getBatches().size());
+    } finally {
+      writer.stopAndWait();
+    }
+    Assert.assertEquals(3, delegate.getBatches().size());
+    Assert.assertEquals(ImmutableList.of(AccessType.WRITE), getAccessTypes(delegate.getBatches().get(2)));
+    Assert.assertEquals(stream, delegate.getBatches().get(2).get(0).getData());
+
+    // Accesses are written synchronously after the writer is stopped
+    writer.addAccess(run, stream, AccessType.UNKNOWN);
+    Assert.assertEquals(4, delegate.getBatches().size());
+  }
+
+  @Test
+  public void testFlushInterval() throws Exception {
+    RecordingLineageWriter delegate = new RecordingLineageWriter();
+    AsyncLineageWriter writer = new AsyncLineageWriter(delegate, new NoOpMetricsCollectionService(), 10, 100, 50L,
+                                                       retryStrategy);
+    writer.startAndWait();
+    try {
+      writer.addAccess(run, dataset, AccessType.READ);
+      writer.addAccess(run, stream, AccessType.WRITE);
+      waitForBatches(delegate, 1);
+      Assert.assertEquals(ImmutableList.of(AccessType.READ, AccessType.WRITE),
+                          getAccessTypes(delegate.getBatches().get(0)));
+    } finally {
+      writer.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testFailedWrite() throws Exception {
+    RecordingLineageWriter delegate = new FailingLineageWriter(2);
+    AsyncLineageWriter writer = new AsyncLineageWriter(delegate, new NoOpMetricsCollectionService(), 10, 1, 50L,
+                                                       retryStrategy);
+    writer.startAndWait();
+    try {
+      // A failed write is retried, and doesn't stop the following writes
+      writer.addAccess(run, dataset, AccessType.READ);
+      writer.addAccess(run, dataset, AccessType.WRITE);
+      waitForBatches(delegate, 2);
+      Assert.assertEquals(ImmutableList.of(AccessType.READ), getAccessTypes(delegate.getBatches().get(0)));
+      Assert.assertEquals(ImmutableList.of(AccessType.WRITE), getAccessTypes(delegate.getBatches().get(1)));
+    } finally {
+      writer.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testPermanentlyFailedWrite() throws Exception {
+    final RecordingLineageWriter delegate = new FailingLineageWriter(3);
+    final AsyncLineageWriter writer = new AsyncLineageWriter(delegate, new NoOpMetricsCollectionService(), 10, 1,
+                                                             50L, retryStrategy);
+    writer.startAndWait();
+    try {
+      // Once all the retries failed, the access is written when it is added again
+      writer.addAccess(run, dataset, AccessType.READ);
+      Tasks.waitFor(1, new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          writer.addAccess(run, dataset, AccessType.READ);
+          return delegate.getBatches().size();
+        }
+      }, 10, TimeUnit.SECONDS, 10, TimeUnit.MILLISECONDS);
+    } finally {
+      writer.stopAndWait();
+    }
+    Assert.assertEquals(1, delegate.getBatches().size());
+    Assert.assertEquals(ImmutableList.of(AccessType.READ), getAccessTypes(delegate.getBatches().get(0)));
+  }
+
+  private void waitForBatches(final RecordingLineageWriter delegate, int batches) throws Exception {
+    Tasks.waitFor(batches, new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        return delegate.getBatches().size();
+      }
+    }, 10, TimeUnit.SECONDS, 10, TimeUnit.MILLISECONDS);
+  }
+
+  private List<AccessType> getAccessTypes(List<DataAccess> accesses) {
+    List<AccessType> accessTypes = new ArrayList<>();
+    for (DataAccess access : accesses) {
+      accessTypes.add(access.getAccessType());
+    }
+    return accessTypes;
+  }
+
+  /**
+   * A {@link LineageWriter} that records the batches of accesses written.
+   */
+  private static class RecordingLineageWriter implements LineageWriter {
+
+    private final List<List<DataAccess>> batches = new ArrayList<>();
+
+    synchronized List<List<DataAccess>> getBatches() {
+      return new ArrayList<>(batches);
+    }
+
+    @Override
+    public synchronized void addAccesses(Collection<DataAccess> accesses) {
+      batches.add(new ArrayList<>(accesses));
+    }
+
+    @Override
+    public void addAccess(ProgramRunId run, DatasetId datasetInstance, AccessType accessType) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addAccess(ProgramRunId run, DatasetId datasetInstance, AccessType accessType,
+                          @Nullable NamespacedEntityId component) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addAccess(ProgramRunId run, StreamId stream, AccessType accessType) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addAccess(ProgramRunId run, StreamId stream, AccessType accessType,
+                          @Nullable NamespacedEntityId component) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * A {@link RecordingLineageWriter} that fails the given number of writes before succeeding.
+   */
+  private static class FailingLineageWriter extends RecordingLineageWriter {
+
+    private int failures;
+
+    FailingLineageWriter(int failures) {
+      this.failures = failures;
+    }
+
+    @Override
+    public synchronized void addAccesses(Collection<DataAccess> accesses) {
+      if (failures > 0) {
+        failures--;
+        throw new RuntimeException("Failed to write");
+      }
+      super.addAccesses(accesses);
+    }
+  }
+}
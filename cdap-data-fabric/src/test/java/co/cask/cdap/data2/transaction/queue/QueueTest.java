@@ -70,8 +70,8 @@ public abstract class QueueTest {
 
   private static final Logger LOG = LoggerFactory.getLogger(QueueTest.class);
 
-  private static final int ROUNDS = 100;
-  private static final long TIMEOUT_MS = 2 * 60 * 1000L;
+  protected static final int ROUNDS = 100;
+  protected static final long TIMEOUT_MS = 2 * 60 * 1000L;
 
   protected static TransactionSystemClient txSystemClient;
   protected static QueueClientFactory queueClientFactory;
@@ -748,10 +748,10 @@ public abstract class QueueTest {
     }
   }
 
-  private void enqueueDequeue(final QueueName queueName, int preEnqueueCount,
-                              int concurrentCount, int enqueueBatchSize,
-                              int consumerSize, DequeueStrategy dequeueStrategy,
-                              final int dequeueBatchSize) throws Exception {
+  protected void enqueueDequeue(final QueueName queueName, int preEnqueueCount,
+                                int concurrentCount, int enqueueBatchSize,
+                                int consumerSize, DequeueStrategy dequeueStrategy,
+                                final int dequeueBatchSize) throws Exception {
 
     ConsumerGroupConfig groupConfig = new ConsumerGroupConfig(0L, consumerSize, dequeueStrategy, "key");
     configureGroups(queueName, ImmutableList.of(groupConfig));
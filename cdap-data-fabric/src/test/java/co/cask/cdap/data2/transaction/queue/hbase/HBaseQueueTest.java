@@ -511,6 +511,32 @@ public abstract class HBaseQueueTest extends QueueTest {
     verifyQueueIsEmpty(queueName, ImmutableList.of(consumerConfig));
   }
 
+  // Enqueue and dequeue with three consumers that claim entries in batches through the queue region observer
+  @Test(timeout = TIMEOUT_MS)
+  public void testMultiFifoBatchClaim() throws Exception {
+    cConf.setBoolean(QueueConstants.ConfigKeys.DEQUEUE_BATCH_CLAIM, true);
+    try {
+      QueueName queueName = QueueName.fromFlowlet(NamespaceId.DEFAULT.getEntityName(), "app", "flow", "flowlet",
+                                                  "multififobatchclaim");
+      enqueueDequeue(queueName, ROUNDS, ROUNDS, 1, 3, DequeueStrategy.FIFO, 1);
+    } finally {
+      cConf.setBoolean(QueueConstants.ConfigKeys.DEQUEUE_BATCH_CLAIM, false);
+    }
+  }
+
+  // Enqueue and dequeue with three consumers that claim batches of entries through the queue region observer
+  @Test(timeout = TIMEOUT_MS)
+  public void testBatchFifoBatchClaim() throws Exception {
+    cConf.setBoolean(QueueConstants.ConfigKeys.DEQUEUE_BATCH_CLAIM, true);
+    try {
+      QueueName queueName = QueueName.fromFlowlet(NamespaceId.DEFAULT.getEntityName(), "app", "flow", "flowlet",
+                                                  "batchfifobatchclaim");
+      enqueueDequeue(queueName, ROUNDS, ROUNDS, 10, 3, DequeueStrategy.FIFO, 50);
+    } finally {
+      cConf.setBoolean(QueueConstants.ConfigKeys.DEQUEUE_BATCH_CLAIM, false);
+    }
+  }
+
   @Test (timeout = 30000L)
   public void testReconfigure() throws Exception {
     final QueueName queueName = QueueName.fromFlowlet(NamespaceId.DEFAULT.getEntityName(),
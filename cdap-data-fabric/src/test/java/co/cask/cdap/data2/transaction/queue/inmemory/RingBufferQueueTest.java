@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue.inmemory;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.guice.ConfigModule;
+import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
+import co.cask.cdap.common.guice.NonCustomLocationUnitTestModule;
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.data.runtime.DataFabricModules;
+import co.cask.cdap.data.runtime.DataSetsModules;
+import co.cask.cdap.data.runtime.SystemDatasetRuntimeModule;
+import co.cask.cdap.data.runtime.TransactionMetricsModule;
+import co.cask.cdap.data.stream.StreamAdminModules;
+import co.cask.cdap.data.stream.service.InMemoryStreamMetaStore;
+import co.cask.cdap.data.stream.service.StreamMetaStore;
+import co.cask.cdap.data.view.ViewAdminModules;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueResult;
+import co.cask.cdap.data2.queue.DequeueStrategy;
+import co.cask.cdap.data2.queue.QueueClientFactory;
+import co.cask.cdap.data2.queue.QueueConsumer;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.data2.transaction.queue.QueueAdmin;
+import co.cask.cdap.data2.transaction.queue.QueueConstants;
+import co.cask.cdap.data2.transaction.queue.QueueTest;
+import co.cask.cdap.data2.transaction.stream.StreamAdmin;
+import co.cask.cdap.explore.guice.ExploreClientModule;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.security.auth.context.AuthenticationContextModules;
+import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
+import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import com.google.inject.util.Modules;
+import org.apache.tephra.TransactionAware;
+import org.apache.tephra.TransactionContext;
+import org.apache.tephra.TransactionExecutorFactory;
+import org.apache.tephra.TransactionFailureException;
+import org.apache.tephra.TransactionManager;
+import org.apache.tephra.TransactionSystemClient;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests for the in-memory queue backed by a ring buffer.
+ */
+public class RingBufferQueueTest extends QueueTest {
+
+  // A small ring buffer, so that the queue tests also cover wrapping around the ring buffer
+  private static final int RING_BUFFER_SIZE = 256;
+
+  private static Injector injector;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setInt(QueueConstants.ConfigKeys.INMEMORY_RING_BUFFER_SIZE, RING_BUFFER_SIZE);
+
+    injector = Guice.createInjector(
+      new ConfigModule(cConf),
+      new NonCustomLocationUnitTestModule().getModule(),
+      new DiscoveryRuntimeModule().getInMemoryModules(),
+      new SystemDatasetRuntimeModule().getInMemoryModules(),
+      new AuthorizationTestModule(),
+      new AuthorizationEnforcementModule().getInMemoryModules(),
+      new AuthenticationContextModules().getMasterModule(),
+      new DataSetsModules().getInMemoryModules(),
+      Modules.override(new DataFabricModules().getInMemoryModules()).with(new AbstractModule() {
+        @Override
+        protected void configure() {
+          bind(QueueClientFactory.class).to(RingBufferQueueClientFactory.class).in(Singleton.class);
+        }
+      }),
+      new TransactionMetricsModule(),
+      new ExploreClientModule(),
+      new ViewAdminModules().getInMemoryModules(),
+      Modules.override(new StreamAdminModules().getInMemoryModules())
+        .with(new AbstractModule() {
+          @Override
+          protected void configure() {
+            // The tests are actually testing stream on queue implementation, hence bind it to the queue implementation
+            bind(StreamAdmin.class).to(InMemoryStreamAdmin.class);
+            bind(StreamMetaStore.class).to(InMemoryStreamMetaStore.class);
+          }
+        }));
+    // transaction manager is a "service" and must be started
+    transactionManager = injector.getInstance(TransactionManager.class);
+    transactionManager.startAndWait();
+    txSystemClient = injector.getInstance(TransactionSystemClient.class);
+    queueClientFactory = injector.getInstance(QueueClientFactory.class);
+    queueAdmin = injector.getInstance(QueueAdmin.class);
+    executorFactory = injector.getInstance(TransactionExecutorFactory.class);
+  }
+
+  @Test
+  public void testUnknownNumGroups() throws Exception {
+    QueueName queueName = QueueName.fromFlowlet(NamespaceId.DEFAULT.getEntityName(), "app", "flow", "flowlet",
+                                                "ringbuffernogroups");
+    ConsumerConfig consumerConfig = new ConsumerConfig(0, 0, 1, DequeueStrategy.FIFO, null);
+
+    try (
+      QueueProducer producer = queueClientFactory.createProducer(queueName);
+      QueueConsumer consumer = queueClientFactory.createConsumer(queueName, consumerConfig, -1)
+    ) {
+      TransactionContext producerContext = new TransactionContext(txSystemClient, (TransactionAware) producer);
+      TransactionContext consumerContext = new TransactionContext(txSystemClient, (TransactionAware) consumer);
+
+      producerContext.start();
+      for (int i = 0; i < RING_BUFFER_SIZE; i++) {
+        producer.enqueue(new QueueEntry(Bytes.toBytes(i)));
+      }
+      producerContext.finish();
+
+      // A consumer that doesn't know the number of groups dequeues, but doesn't evict
+      consumerContext.start();
+      DequeueResult<byte[]> result = consumer.dequeue();
+      Assert.assertEquals(0, Bytes.toInt(result.iterator().next()));
+      consumerContext.finish();
+
+      producerContext.start();
+      producer.enqueue(new QueueEntry(Bytes.toBytes(RING_BUFFER_SIZE)));
+      try {
+        producerContext.finish();
+        Assert.fail("Expected enqueue to a full ring buffer to fail");
+      } catch (TransactionFailureException e) {
+        producerContext.abort();
+      }
+    }
+  }
+
+  @Test
+  public void testFullRingBuffer() throws Exception {
+    QueueName queueName = QueueName.fromFlowlet(NamespaceId.DEFAULT.getEntityName(), "app", "flow", "flowlet",
+                                                "ringbufferfull");
+    ConsumerConfig consumerConfig = new ConsumerConfig(0, 0, 1, DequeueStrategy.FIFO, null);
+
+    try (
+      QueueProducer producer = queueClientFactory.createProducer(queueName);
+      QueueConsumer consumer = queueClientFactory.createConsumer(queueName, consumerConfig, 1)
+    ) {
+      TransactionContext producerContext = new TransactionContext(txSystemClient, (TransactionAware) producer);
+      TransactionContext consumerContext = new TransactionContext(txSystemClient, (TransactionAware) consumer);
+
+      // Fill up the ring buffer
+      producerContext.start();
+      for (int i = 0; i < RING_BUFFER_SIZE; i++) {
+        producer.enqueue(new QueueEntry(Bytes.toBytes(i)));
+      }
+      producerContext.finish();
+
+      // Enqueue to a full ring buffer fails the transaction
+      producerContext.start();
+      producer.enqueue(new QueueEntry(Bytes.toBytes(RING_BUFFER_SIZE)));
+      try {
+        producerContext.finish();
+        Assert.fail("Expected enqueue to a full ring buffer to fail");
+      } catch (TransactionFailureException e) {
+        producerContext.abort();
+      }
+
+      // Consume one entry to free up a slot, then enqueue should succeed
+      consumerContext.start();
+      DequeueResult<byte[]> result = consumer.dequeue();
+      Assert.assertEquals(0, Bytes.toInt(result.iterator().next()));
+      consumerContext.finish();
+
+      producerContext.start();
+      producer.enqueue(new QueueEntry(Bytes.toBytes(RING_BUFFER_SIZE)));
+      producerContext.finish();
+
+      // The entry of the failed transaction is never visible
+      for (int i = 1; i <= RING_BUFFER_SIZE; i++) {
+        consumerContext.start();
+        result = consumer.dequeue();
+        Assert.assertEquals(i, Bytes.toInt(result.iterator().next()));
+        consumerContext.finish();
+      }
+      consumerContext.start();
+      Assert.assertTrue(consumer.dequeue().isEmpty());
+      consumerContext.finish();
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package co.cask.cdap.data2.transaction.queue.leveldb;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.guice.ConfigModule;
@@ -25,9 +26,17 @@ import co.cask.cdap.data.runtime.DataFabricLevelDBModule;
 import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data.runtime.TransactionMetricsModule;
 import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueResult;
+import co.cask.cdap.data2.queue.DequeueStrategy;
 import co.cask.cdap.data2.queue.QueueClientFactory;
+import co.cask.cdap.data2.queue.QueueConsumer;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueProducer;
 import co.cask.cdap.data2.transaction.queue.QueueAdmin;
+import co.cask.cdap.data2.transaction.queue.QueueConstants;
 import co.cask.cdap.data2.transaction.queue.QueueEvictor;
+import co.cask.cdap.data2.transaction.queue.QueueMetrics;
 import co.cask.cdap.data2.transaction.queue.QueueTest;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
@@ -37,6 +46,8 @@ import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.apache.tephra.Transaction;
+import org.apache.tephra.TransactionAware;
+import org.apache.tephra.TransactionContext;
 import org.apache.tephra.TransactionExecutorFactory;
 import org.apache.tephra.TransactionManager;
 import org.apache.tephra.TransactionSystemClient;
@@ -46,11 +57,18 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * LevelDB queue tests.
  */
 public class LevelDBQueueTest extends QueueTest {
 
+  // A small entry cache, so that the queue tests also cover scans that stop at the cache size limit
+  private static final long CACHE_MAX_BYTES = 4096L;
+
   @ClassRule
   public static TemporaryFolder tmpFolder = new TemporaryFolder();
 
@@ -59,6 +77,7 @@ public class LevelDBQueueTest extends QueueTest {
     CConfiguration conf = CConfiguration.create();
     conf.set(Constants.CFG_LOCAL_DATA_DIR, tmpFolder.newFolder().getAbsolutePath());
     conf.set(Constants.Dataset.TABLE_PREFIX, "test");
+    conf.setLong(QueueConstants.ConfigKeys.DEQUEUE_CACHE_MAX_BYTES, CACHE_MAX_BYTES);
     Injector injector = Guice.createInjector(
       new ConfigModule(conf),
       new NonCustomLocationUnitTestModule().getModule(),
@@ -96,6 +115,72 @@ public class LevelDBQueueTest extends QueueTest {
     Assert.assertEquals("flow1", LevelDBQueueAdmin.getFlowName(tableName));
   }
 
+  @Test
+  public void testDequeueMetrics() throws Exception {
+    QueueName queueName = QueueName.fromFlowlet(NamespaceId.DEFAULT.getEntityName(), "app", "flow", "flowlet",
+                                                "dequeuemetrics");
+    int entryCount = 1000;
+    try (QueueProducer producer = queueClientFactory.createProducer(queueName)) {
+      TransactionContext txContext = new TransactionContext(txSystemClient, (TransactionAware) producer);
+      txContext.start();
+      for (int i = 0; i < entryCount; i++) {
+        producer.enqueue(new QueueEntry(Bytes.add(Bytes.toBytes(i), new byte[96])));
+      }
+      txContext.finish();
+    }
+
+    final AtomicInteger fetchCount = new AtomicInteger();
+    final AtomicLong maxCacheBytes = new AtomicLong();
+    QueueMetrics queueMetrics = new QueueMetrics() {
+      @Override
+      public void emitEnqueue(int count) {
+        // no-op
+      }
+
+      @Override
+      public void emitEnqueueBytes(int bytes) {
+        // no-op
+      }
+
+      @Override
+      public void emitDequeueFetchSize(int rows) {
+        Assert.assertTrue(rows > 0);
+        fetchCount.incrementAndGet();
+      }
+
+      @Override
+      public void emitDequeueCacheBytes(long bytes) {
+        maxCacheBytes.set(Math.max(maxCacheBytes.get(), bytes));
+      }
+    };
+
+    ConsumerConfig consumerConfig = new ConsumerConfig(0, 0, 1, DequeueStrategy.FIFO, null);
+    try (QueueConsumer consumer = queueClientFactory.createConsumer(queueName, consumerConfig, 1, queueMetrics)) {
+      int expected = 0;
+      while (expected < entryCount) {
+        TransactionContext txContext = new TransactionContext(txSystemClient, (TransactionAware) consumer);
+        txContext.start();
+        DequeueResult<byte[]> result = consumer.dequeue(10);
+        Assert.assertFalse(result.isEmpty());
+        for (byte[] entry : result) {
+          Assert.assertEquals(expected++, Bytes.toInt(entry));
+          Assert.assertTrue(Arrays.equals(new byte[96], Arrays.copyOfRange(entry, Bytes.SIZEOF_INT, entry.length)));
+        }
+        txContext.finish();
+      }
+
+      TransactionContext txContext = new TransactionContext(txSystemClient, (TransactionAware) consumer);
+      txContext.start();
+      Assert.assertTrue(consumer.dequeue(10).isEmpty());
+      txContext.finish();
+    }
+
+    // Each scan stops once the cache is full, hence the cache can only go over the limit by one entry
+    Assert.assertTrue(fetchCount.get() > 0);
+    Assert.assertTrue(maxCacheBytes.get() > 0);
+    Assert.assertTrue(maxCacheBytes.get() < CACHE_MAX_BYTES + 1024);
+  }
+
   @Override
   protected void forceEviction(QueueName queueName, int numGroups) throws Exception {
     QueueEvictor evictor = ((LevelDBQueueClientFactory) queueClientFactory).createEvictor(queueName, numGroups);
@@ -19,6 +19,7 @@ package co.cask.cdap.hive.stream;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.data.file.ReadFilter;
 import co.cask.cdap.data.stream.PositionStreamEvent;
+import co.cask.cdap.data.stream.StreamDataFileIndexCache;
 import co.cask.cdap.data.stream.StreamDataFileReader;
 import co.cask.cdap.data.stream.TimeRangeReadFilter;
 import co.cask.cdap.hive.context.ContextManager;
@@ -140,9 +141,8 @@ final class StreamRecordReader implements RecordReader<Void, ObjectWritable> {
    */
   private StreamDataFileReader createReader(FileSystem fs, StreamInputSplit inputSplit) throws IOException {
     StreamDataFileReader reader = StreamDataFileReader.createWithOffset(
-      Locations.newInputSupplier(fs, inputSplit.getEventPath()),
-      inputSplit.getIndexPath() == null ? null : Locations.newInputSupplier(fs, inputSplit.getIndexPath()),
-      inputSplit.getStart());
+      Locations.newInputSupplier(fs, inputSplit.getEventPath()), fs, inputSplit.getIndexPath(),
+      StreamDataFileIndexCache.getDefault(), inputSplit.getStart());
     try {
       reader.initialize();
       return reader;
@@ -71,7 +71,9 @@ public class RecordPutTransformer {
 
     Put output = createPut(record, keyField);
 
+    int idx = 0;
     for (Schema.Field field : recordSchema.getFields()) {
+      Object value = record.get(idx++);
       if (field.getName().equals(keyField.getName())) {
         continue;
       }
@@ -80,7 +82,7 @@ public class RecordPutTransformer {
       if (outputSchema != null && outputSchema.getField(field.getName()) == null) {
         continue;
       }
-      setField(output, field, record.get(field.getName()));
+      setField(output, field, value);
     }
     return output;
   }
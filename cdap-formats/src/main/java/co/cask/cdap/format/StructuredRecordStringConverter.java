@@ -19,11 +19,8 @@ package co.cask.cdap.format;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import com.google.common.base.Function;
-import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Iterables;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
@@ -39,7 +36,6 @@ import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -112,14 +108,16 @@ public final class StructuredRecordStringConverter {
   /**
    * Converts a {@link StructuredRecord} to a delimited string.
    */
-  public static String toDelimitedString(final StructuredRecord record, String delimiter) {
-    return Joiner.on(delimiter).join(
-      Iterables.transform(record.getSchema().getFields(), new Function<Schema.Field, String>() {
-        @Override
-        public String apply(Schema.Field field) {
-          return record.get(field.getName()).toString();
-        }
-      }));
+  public static String toDelimitedString(StructuredRecord record, String delimiter) {
+    StringBuilder builder = new StringBuilder();
+    int numFields = record.getSchema().getFields().size();
+    for (int i = 0; i < numFields; i++) {
+      if (i > 0) {
+        builder.append(delimiter);
+      }
+      builder.append(record.get(i).toString());
+    }
+    return builder.toString();
   }
 
   /**
@@ -127,11 +125,11 @@ public final class StructuredRecordStringConverter {
    */
   public static StructuredRecord fromDelimitedString(String delimitedString, String delimiter, Schema schema) {
     StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-    Iterator<Schema.Field> fields = schema.getFields().iterator();
+    int fieldIndex = 0;
 
     for (String part : Splitter.on(delimiter).split(delimitedString)) {
       if (!part.isEmpty()) {
-        builder.convertAndSet(fields.next().getName(), part);
+        builder.convertAndSet(fieldIndex++, part);
       }
     }
 
@@ -377,9 +375,13 @@ public final class StructuredRecordStringConverter {
     }
 
     StructuredRecord record = (StructuredRecord) value;
+    // Values can be accessed by index only if the record is structured by the same schema
+    boolean sameSchema = schema == record.getSchema();
     writer.beginObject();
+    int idx = 0;
     for (Schema.Field field : schema.getFields()) {
-      Object fieldValue = record.get(field.getName());
+      Object fieldValue = sameSchema ? record.get(idx) : record.get(field.getName());
+      idx++;
       if (fieldValue != null) {
         writer.name(field.getName());
         writeJson(writer, field.getSchema(), fieldValue);
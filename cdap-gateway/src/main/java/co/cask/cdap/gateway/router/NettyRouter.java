@@ -16,6 +16,8 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.ServiceBindException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
@@ -23,7 +25,9 @@ import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.gateway.router.handlers.HttpRequestHandler;
 import co.cask.cdap.gateway.router.handlers.HttpStatusRequestHandler;
 import co.cask.cdap.gateway.router.handlers.IdleEventProcessor;
+import co.cask.cdap.gateway.router.handlers.OutboundChannelPool;
 import co.cask.cdap.gateway.router.handlers.SecurityAuthenticationHttpHandler;
+import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.auth.TokenValidator;
 import co.cask.cdap.security.tools.SSLHandlerFactory;
@@ -72,6 +76,7 @@ import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -81,12 +86,15 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class NettyRouter extends AbstractIdleService {
   private static final Logger LOG = LoggerFactory.getLogger(NettyRouter.class);
   private static final int CLOSE_CHANNEL_TIMEOUT_SECS = 10;
+  private static final long METRICS_REPORT_INTERVAL_SECS = 10;
 
   private final int serverBossThreadPoolSize;
   private final int serverWorkerThreadPoolSize;
   private final int serverConnectionBacklog;
   private final int clientBossThreadPoolSize;
   private final int clientWorkerThreadPoolSize;
+  private final int clientPoolMaxIdle;
+  private final int clientPoolMaxIdlePerHost;
   private final InetAddress hostname;
   private final Map<String, Integer> serviceToPortMap;
   private final ChannelGroup channelGroup = new DefaultChannelGroup("server channels");
@@ -101,20 +109,26 @@ public class NettyRouter extends AbstractIdleService {
   private final int connectionTimeout;
 
   private Timer timer;
+  private ScheduledExecutorService metricsReporter;
   private ServerBootstrap serverBootstrap;
   private ClientBootstrap clientBootstrap;
+  private OutboundChannelPool channelPool;
   private DiscoveryServiceClient discoveryServiceClient;
+  private final MetricsContext metricsContext;
 
   @Inject
   public NettyRouter(CConfiguration cConf, SConfiguration sConf, @Named(Constants.Router.ADDRESS) InetAddress hostname,
                      RouterServiceLookup serviceLookup, TokenValidator tokenValidator,
                      AccessTokenTransformer accessTokenTransformer,
-                     DiscoveryServiceClient discoveryServiceClient) {
+                     DiscoveryServiceClient discoveryServiceClient,
+                     MetricsCollectionService metricsCollectionService) {
     this.serverBossThreadPoolSize = cConf.getInt(Constants.Router.SERVER_BOSS_THREADS);
     this.serverWorkerThreadPoolSize = cConf.getInt(Constants.Router.SERVER_WORKER_THREADS);
     this.serverConnectionBacklog = cConf.getInt(Constants.Router.BACKLOG_CONNECTIONS);
     this.clientBossThreadPoolSize = cConf.getInt(Constants.Router.CLIENT_BOSS_THREADS);
     this.clientWorkerThreadPoolSize = cConf.getInt(Constants.Router.CLIENT_WORKER_THREADS);
+    this.clientPoolMaxIdle = cConf.getInt(Constants.Router.CLIENT_POOL_MAX_IDLE);
+    this.clientPoolMaxIdlePerHost = cConf.getInt(Constants.Router.CLIENT_POOL_MAX_IDLE_PER_HOST);
     this.hostname = hostname;
     this.serviceToPortMap = new HashMap<>();
     this.serviceLookup = serviceLookup;
@@ -123,6 +137,9 @@ public class NettyRouter extends AbstractIdleService {
     this.tokenValidator = tokenValidator;
     this.accessTokenTransformer = accessTokenTransformer;
     this.discoveryServiceClient = discoveryServiceClient;
+    this.metricsContext = metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                      Constants.Metrics.Tag.COMPONENT, Constants.Service.GATEWAY));
     this.configuration = cConf;
     this.sslEnabled = cConf.getBoolean(Constants.Security.SSL_ENABLED);
     boolean webAppEnabled = cConf.getBoolean(Constants.Router.WEBAPP_ENABLED);
@@ -176,6 +193,15 @@ public class NettyRouter extends AbstractIdleService {
     bootstrapClient(connectionTracker);
 
     bootstrapServer(connectionTracker);
+
+    metricsReporter = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("router-metrics-reporter").build());
+    metricsReporter.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        serviceLookup.emitMetrics(metricsContext);
+      }
+    }, METRICS_REPORT_INTERVAL_SECS, METRICS_REPORT_INTERVAL_SECS, TimeUnit.SECONDS);
   }
 
   @Override
@@ -183,6 +209,8 @@ public class NettyRouter extends AbstractIdleService {
     LOG.info("Stopping Netty Router...");
 
     try {
+      metricsReporter.shutdownNow();
+      channelPool.close();
       if (!channelGroup.close().await(CLOSE_CHANNEL_TIMEOUT_SECS, TimeUnit.SECONDS)) {
         LOG.warn("Timeout when closing all channels.");
       }
@@ -259,7 +287,7 @@ public class NettyRouter extends AbstractIdleService {
           }
           // for now there's only one hardcoded rule, but if there will be more, we may want it generic and configurable
           pipeline.addLast("http-request-handler",
-                           new HttpRequestHandler(clientBootstrap, serviceLookup, ImmutableList.<ProxyRule>of()));
+                           new HttpRequestHandler(channelPool, serviceLookup, ImmutableList.<ProxyRule>of()));
           return pipeline;
         }
       }
@@ -330,6 +358,8 @@ public class NettyRouter extends AbstractIdleService {
     });
 
     clientBootstrap.setOption("bufferFactory", new DirectChannelBufferFactory());
+    channelPool = new OutboundChannelPool(clientBootstrap, clientPoolMaxIdle, clientPoolMaxIdlePerHost,
+                                          metricsContext);
   }
 
   private boolean isSSLEnabled() {
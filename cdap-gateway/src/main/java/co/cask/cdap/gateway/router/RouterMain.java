@@ -16,15 +16,18 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.ServiceBindException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
 import co.cask.cdap.common.guice.IOModule;
+import co.cask.cdap.common.guice.KafkaClientModule;
 import co.cask.cdap.common.guice.ZKClientModule;
 import co.cask.cdap.common.kerberos.SecurityUtil;
 import co.cask.cdap.common.runtime.DaemonMain;
+import co.cask.cdap.metrics.guice.MetricsClientRuntimeModule;
 import co.cask.cdap.route.store.RouteStore;
 import co.cask.cdap.route.store.ZKRouteStore;
 import co.cask.cdap.security.guice.SecurityModules;
@@ -35,6 +38,7 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Scopes;
 import org.apache.twill.internal.Services;
+import org.apache.twill.kafka.client.KafkaClientService;
 import org.apache.twill.zookeeper.ZKClientService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,6 +53,8 @@ public class RouterMain extends DaemonMain {
 
   private CConfiguration cConf;
   private ZKClientService zkClientService;
+  private KafkaClientService kafkaClientService;
+  private MetricsCollectionService metricsCollectionService;
   private NettyRouter router;
   private RouteStore routeStore;
 
@@ -86,6 +92,8 @@ public class RouterMain extends DaemonMain {
 
       Injector injector = createGuiceInjector(cConf);
       zkClientService = injector.getInstance(ZKClientService.class);
+      kafkaClientService = injector.getInstance(KafkaClientService.class);
+      metricsCollectionService = injector.getInstance(MetricsCollectionService.class);
 
       // Get the Router
       router = injector.getInstance(NettyRouter.class);
@@ -110,6 +118,8 @@ public class RouterMain extends DaemonMain {
                                                                     "ZooKeeper quorum settings are correct in " +
                                                                     "cdap-site.xml. Currently configured as: %s",
                                                                     cConf.get(Constants.Zookeeper.QUORUM)));
+    kafkaClientService.startAndWait();
+    metricsCollectionService.startAndWait();
     router.startAndWait();
     LOG.info("Router started.");
   }
@@ -117,7 +127,8 @@ public class RouterMain extends DaemonMain {
   @Override
   public void stop() {
     LOG.info("Stopping Router...");
-    Futures.getUnchecked(Services.chainStop(router, zkClientService));
+    Futures.getUnchecked(Services.chainStop(router, metricsCollectionService, kafkaClientService,
+                                                zkClientService));
     try {
       routeStore.close();
     } catch (Exception ex) {
@@ -135,10 +146,12 @@ public class RouterMain extends DaemonMain {
     return Guice.createInjector(
       new ConfigModule(cConf),
       new ZKClientModule(),
+      new KafkaClientModule(),
       new DiscoveryRuntimeModule().getDistributedModules(),
       new RouterModules().getDistributedModules(),
       new SecurityModules().getDistributedModules(),
       new IOModule(),
+      new MetricsClientRuntimeModule().getDistributedModules(),
       new AbstractModule() {
         @Override
         protected void configure() {
@@ -16,16 +16,17 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.discovery.EndpointStrategy;
 import co.cask.cdap.common.discovery.RandomEndpointStrategy;
+import co.cask.cdap.common.metrics.LatencyHistogram;
 import co.cask.cdap.common.service.ServiceDiscoverable;
 import co.cask.cdap.common.utils.Networks;
 import co.cask.cdap.gateway.discovery.RouteFallbackStrategy;
 import co.cask.cdap.gateway.discovery.UserServiceEndpointStrategy;
 import co.cask.cdap.route.store.RouteStore;
-import com.google.common.base.Objects;
 import com.google.common.base.Strings;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -48,36 +49,48 @@ import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Port -> service lookup.
+ * <p>
+ * Discovered services are kept in a route table keyed by the discovery name and version of the destination service.
+ * The {@link ServiceDiscovered} of a route is updated by discovery change events, so a route is created once and
+ * follows the endpoints of its service coming and going, including routes of services that currently have no
+ * endpoints.
  */
 public class RouterServiceLookup {
   private static final Logger LOG = LoggerFactory.getLogger(RouterServiceLookup.class);
   private static final String DEFAULT_SERVICE_NAME = "default";
+  // Bounds the route table, as webapp routes are keyed by the host header sent by clients
+  private static final int ROUTE_TABLE_MAX_SIZE = 10000;
 
   private final AtomicReference<Map<Integer, String>> serviceMapRef =
     new AtomicReference<Map<Integer, String>>(ImmutableMap.<Integer, String>of());
 
   private final DiscoveryServiceClient discoveryServiceClient;
-  private final LoadingCache<CacheKey, EndpointStrategy> discoverableCache;
+  private final LoadingCache<RouteDestination, Route> routeTable;
   private final RouterPathLookup routerPathLookup;
   private final RouteStore routeStore;
   private final RouteFallbackStrategy fallbackStrategy;
+  private final LatencyHistogram pathLookupLatency;
+  private final LatencyHistogram endpointLookupLatency;
 
   @Inject
   public RouterServiceLookup(CConfiguration cConf, DiscoveryServiceClient discoveryServiceClient,
                              RouterPathLookup routerPathLookup, RouteStore routeStore) {
     this.discoveryServiceClient = discoveryServiceClient;
     this.routerPathLookup = routerPathLookup;
-    this.discoverableCache = CacheBuilder.newBuilder()
+    this.routeTable = CacheBuilder.newBuilder()
       .expireAfterAccess(1, TimeUnit.HOURS)
-      .build(new CacheLoader<CacheKey, EndpointStrategy>() {
+      .maximumSize(ROUTE_TABLE_MAX_SIZE)
+      .build(new CacheLoader<RouteDestination, Route>() {
         @Override
-        public EndpointStrategy load(CacheKey key) throws Exception {
-          return loadCache(key);
+        public Route load(RouteDestination key) throws Exception {
+          return createRoute(key);
         }
       });
     this.routeStore = routeStore;
     this.fallbackStrategy = RouteFallbackStrategy.valueOfRouteFallbackStrategy(
       cConf.get(Constants.Router.ROUTER_USERSERVICE_FALLBACK_STRAGEY));
+    this.pathLookupLatency = new LatencyHistogram();
+    this.endpointLookupLatency = new LatencyHistogram();
   }
 
   /**
@@ -121,21 +134,33 @@ public class RouterServiceLookup {
       return null;
     }
 
+    // Routing to webapp is a special case. If the service contains "$HOST" the destination is webapp
+    // Otherwise the destination service will be other cdap services.
+    // Path lookup can be skipped for requests to webapp.
+    long startTime = System.nanoTime();
+    RouteDestination destService = routerPathLookup.getRoutingService(service, path, httpRequest);
+    long routedTime = System.nanoTime();
+    pathLookupLatency.record(routedTime - startTime);
+    if (destService == null || Strings.isNullOrEmpty(destService.getServiceName())) {
+      return null;
+    }
+    LOG.trace("Request was routed from {} to: {}", path, destService);
+
     try {
-      // Routing to webapp is a special case. If the service contains "$HOST" the destination is webapp
-      // Otherwise the destination service will be other cdap services.
-      // Path lookup can be skipped for requests to webapp.
-      RouteDestination destService = routerPathLookup.getRoutingService(service, path, httpRequest);
-      if (destService == null || Strings.isNullOrEmpty(destService.getServiceName())) {
+      Route route = destService.getServiceName().contains("$HOST")
+        ? getHostRoute(destService, host, path)
+        : routeTable.get(destService);
+
+      if (!route.hasEndpoints()) {
+        LOG.error("No discoverable endpoints found for service {}, host {} and path {}", destService, host, path);
         return null;
       }
-
-      CacheKey cacheKey = new CacheKey(destService, host, path);
-      LOG.trace("Request was routed from {} to: {}", path, cacheKey.getRouteDestination());
-
-      return discoverableCache.get(cacheKey);
-    } catch (ExecutionException e) {
+      return route.getEndpointStrategy();
+    } catch (ExecutionException | UnsupportedEncodingException e) {
+      LOG.debug("Failed to lookup service {}", destService, e);
       return null;
+    } finally {
+      endpointLookupLatency.record(System.nanoTime() - routedTime);
     }
   }
 
@@ -143,55 +168,40 @@ public class RouterServiceLookup {
     serviceMapRef.set(serviceMap);
   }
 
-  private EndpointStrategy loadCache(CacheKey cacheKey) throws Exception {
-    EndpointStrategy endpointStrategy;
-    RouteDestination routeDestination = cacheKey.getRouteDestination();
-    if (routeDestination.getServiceName().contains("$HOST")) {
-      // Route URLs to host in the header.
-      endpointStrategy = discoverService(cacheKey);
-
-      if (endpointStrategy.pick() == null) {
-        // Now try default, this matches any host / any port in the host header.
-        endpointStrategy = discoverDefaultService(cacheKey);
-      }
-    } else {
-      endpointStrategy = discover(routeDestination);
-    }
-
-    if (endpointStrategy.pick() == null) {
-      String message = String.format("No discoverable endpoints found for service %s", cacheKey);
-      LOG.error(message);
-      throw new Exception(message);
-    }
-
-    return endpointStrategy;
+  /**
+   * Emits the latencies of the route lookups since the last call as metrics.
+   */
+  public void emitMetrics(MetricsCollector collector) {
+    pathLookupLatency.emit(collector, "router.lookup.path");
+    endpointLookupLatency.emit(collector, "router.lookup.endpoint");
   }
 
-  private EndpointStrategy discoverService(CacheKey key)
-    throws UnsupportedEncodingException, ExecutionException {
-    // First try with path routing
-    String lookupService = genLookupName(key.getRouteDestination().getServiceName(),
-                                         key.getHost(), key.getFirstPathPart());
-    EndpointStrategy endpointStrategy = discover(new RouteDestination(lookupService));
+  /**
+   * Returns the route for a destination that routes URLs based on the host in the header.
+   */
+  private Route getHostRoute(RouteDestination destination, String host,
+                             String path) throws UnsupportedEncodingException, ExecutionException {
+    String service = destination.getServiceName();
+    int ind = path.indexOf('/', 1);
+    String firstPathPart = ind == -1 ? path : path.substring(0, ind);
 
-    if (endpointStrategy.pick() == null) {
-      // Try without path routing
-      lookupService = genLookupName(key.getRouteDestination().getServiceName(), key.getHost());
-      endpointStrategy = discover(new RouteDestination(lookupService));
+    // First try with path routing
+    Route route = routeTable.get(new RouteDestination(genLookupName(service, host, firstPathPart)));
+    if (route.hasEndpoints()) {
+      return route;
     }
 
-    return endpointStrategy;
-  }
+    // Try without path routing
+    route = routeTable.get(new RouteDestination(genLookupName(service, host)));
+    if (route.hasEndpoints()) {
+      return route;
+    }
 
-  private EndpointStrategy discoverDefaultService(CacheKey key)
-    throws UnsupportedEncodingException, ExecutionException {
-    // Try only path routing
-    String lookupService = genLookupName(key.getRouteDestination().getServiceName(),
-                                         DEFAULT_SERVICE_NAME, key.getFirstPathPart());
-    return discover(new RouteDestination(lookupService));
+    // Now try default, this matches any host / any port in the host header. Try only path routing.
+    return routeTable.get(new RouteDestination(genLookupName(service, DEFAULT_SERVICE_NAME, firstPathPart)));
   }
 
-  private EndpointStrategy discover(RouteDestination routeDestination) throws ExecutionException {
+  private Route createRoute(RouteDestination routeDestination) {
     LOG.debug("Looking up service name {}", routeDestination);
     // If its a user service, then use DistributionEndpoint Strategy
     String serviceName = routeDestination.getServiceName();
@@ -201,10 +211,11 @@ public class RouterServiceLookup {
       new UserServiceEndpointStrategy(serviceDiscovered, routeStore, ServiceDiscoverable.getId(serviceName),
                                       fallbackStrategy, routeDestination.getVersion()) :
       new RandomEndpointStrategy(serviceDiscovered);
+    // Give the discovery of a new service some time to find the endpoints
     if (endpointStrategy.pick(300L, TimeUnit.MILLISECONDS) == null) {
       LOG.debug("Discoverable endpoint {} not found", routeDestination);
     }
-    return endpointStrategy;
+    return new Route(serviceDiscovered, endpointStrategy);
   }
 
   private String genLookupName(String service, String host) throws UnsupportedEncodingException {
@@ -217,59 +228,27 @@ public class RouterServiceLookup {
     return service.replace("$HOST", normalizedHost);
   }
 
-  private static final class CacheKey {
-    private final RouteDestination routeDestination;
-    private final String host;
-    private final String firstPathPart;
-    private final int hashCode;
-
-    private CacheKey(RouteDestination routeDestination, String host, String path) {
-      this.routeDestination = routeDestination;
-      this.host = host;
-      int ind = path.indexOf('/', 1);
-      this.firstPathPart = ind == -1 ? path : path.substring(0, ind);
-      this.hashCode = Objects.hashCode(routeDestination, host, firstPathPart);
-    }
-
-    public RouteDestination getRouteDestination() {
-      return routeDestination;
-    }
-
-    public String getHost() {
-      return host;
-    }
-
-    public String getFirstPathPart() {
-      return firstPathPart;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
-      }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
-      }
+  /**
+   * An entry in the route table.
+   */
+  private static final class Route {
+    private final ServiceDiscovered serviceDiscovered;
+    private final EndpointStrategy endpointStrategy;
 
-      CacheKey other = (CacheKey) o;
-      return Objects.equal(routeDestination, other.routeDestination)
-        && Objects.equal(host, other.host)
-        && Objects.equal(firstPathPart, other.firstPathPart);
+    private Route(ServiceDiscovered serviceDiscovered, EndpointStrategy endpointStrategy) {
+      this.serviceDiscovered = serviceDiscovered;
+      this.endpointStrategy = endpointStrategy;
     }
 
-    @Override
-    public int hashCode() {
-      return hashCode;
+    /**
+     * Returns {@code true} if the service currently has any endpoint.
+     */
+    boolean hasEndpoints() {
+      return serviceDiscovered.iterator().hasNext();
     }
 
-    @Override
-    public String toString() {
-      return Objects.toStringHelper(this)
-        .add("routeDestination", routeDestination)
-        .add("host", host)
-        .add("firstPathPart", firstPathPart)
-        .toString();
+    EndpointStrategy getEndpointStrategy() {
+      return endpointStrategy;
     }
   }
 }
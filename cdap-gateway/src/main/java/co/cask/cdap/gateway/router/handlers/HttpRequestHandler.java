@@ -23,12 +23,12 @@ import co.cask.cdap.gateway.router.RouterServiceLookup;
 import com.google.common.collect.Queues;
 import com.google.common.io.Closeables;
 import org.apache.twill.discovery.Discoverable;
-import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.ExceptionEvent;
@@ -61,7 +61,7 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(HttpRequestHandler.class);
 
-  private final ClientBootstrap clientBootstrap;
+  private final OutboundChannelPool channelPool;
   private final RouterServiceLookup serviceLookup;
   // Data structure is used to clean up the channel futures on connection close.
   private final Map<WrappedDiscoverable, MessageSender> discoveryLookup;
@@ -71,10 +71,10 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
   private MessageSender chunkSender;
   private volatile boolean channelClosed;
 
-  public HttpRequestHandler(ClientBootstrap clientBootstrap,
+  public HttpRequestHandler(OutboundChannelPool channelPool,
                             RouterServiceLookup serviceLookup,
                             List<ProxyRule> proxyRules) {
-    this.clientBootstrap = clientBootstrap;
+    this.channelPool = channelPool;
     this.serviceLookup = serviceLookup;
     this.discoveryLookup = new HashMap<>();
     this.proxyRules = proxyRules;
@@ -111,32 +111,22 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       // If no event sender, make new connection, otherwise reuse existing one.
       MessageSender sender =  discoveryLookup.get(discoverable);
       if (sender == null || !sender.isConnected()) {
-        InetSocketAddress address = discoverable.getSocketAddress();
-
-        ChannelFuture future = clientBootstrap.connect(address);
-        final Channel outboundChannel = future.getChannel();
-        outboundChannel.getPipeline().addAfter("request-encoder",
-                                               "outbound-handler", new OutboundHandler(inboundChannel));
+        ChannelFuture future = channelPool.acquire(discoverable);
+        Channel outboundChannel = future.getChannel();
+        ChannelPipeline outboundPipeline = outboundChannel.getPipeline();
+        OutboundHandler outboundHandler = new OutboundHandler(inboundChannel);
+        if (outboundPipeline.get("outbound-handler") == null) {
+          outboundPipeline.addAfter("request-encoder", "outbound-handler", outboundHandler);
+        } else {
+          // A pooled connection, which was used by another inbound connection before
+          outboundPipeline.replace("outbound-handler", "outbound-handler", outboundHandler);
+          outboundChannel.setReadable(true);
+        }
         sender = new MessageSender(inboundChannel, future);
         discoveryLookup.put(discoverable, sender);
 
         // Remember the in-flight outbound channel
         inboundChannel.setAttachment(outboundChannel);
-        outboundChannel.getCloseFuture().addListener(new ChannelFutureListener() {
-          @Override
-          public void operationComplete(ChannelFuture future) throws Exception {
-            inboundChannel.getPipeline().execute(new Runnable() {
-              @Override
-              public void run() {
-                // When the outbound channel closed,
-                // close the inbound channel as well if it carries the in-flight request
-                if (outboundChannel.equals(inboundChannel.getAttachment())) {
-                  closeOnFlush(inboundChannel);
-                }
-              }
-            });
-          }
-        });
       } else {
         Channel outboundChannel = (Channel) inboundChannel.getAttachment();
         if (outboundChannel != null) {
@@ -222,10 +212,26 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   @Override
   public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
-    // Close all event sender
+    // Return connections that have no request in progress to the pool and close all other event senders
     LOG.trace("Channel closed {}", ctx.getChannel());
-    for (Closeable c : discoveryLookup.values()) {
-      Closeables.closeQuietly(c);
+    for (Map.Entry<WrappedDiscoverable, MessageSender> entry : discoveryLookup.entrySet()) {
+      final WrappedDiscoverable discoverable = entry.getKey();
+      final MessageSender sender = entry.getValue();
+      if (!sender.isConnected()) {
+        Closeables.closeQuietly(sender);
+        continue;
+      }
+      // Check in the I/O thread of the outbound channel, so that the response it has forwarded is fully processed
+      sender.getChannel().getPipeline().execute(new Runnable() {
+        @Override
+        public void run() {
+          if (sender.isReusable()) {
+            channelPool.release(discoverable, sender.getChannel());
+          } else {
+            Closeables.closeQuietly(sender);
+          }
+        }
+      });
     }
     channelClosed = true;
     super.channelClosed(ctx, e);
@@ -284,6 +290,21 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       return channelFuture.getChannel().isConnected();
     }
 
+    private Channel getChannel() {
+      return channelFuture.getChannel();
+    }
+
+    /**
+     * Returns {@code true} if the connection can be used for another request.
+     */
+    private boolean isReusable() {
+      if (!channelFuture.isSuccess() || !messages.isEmpty()) {
+        return false;
+      }
+      IdleEventProcessor idleEventProcessor = getChannel().getPipeline().get(IdleEventProcessor.class);
+      return idleEventProcessor != null && idleEventProcessor.isReusable();
+    }
+
     private void send(Object msg) {
       // Attach the outbound channel to the inbound to indicate the in-flight request outbound.
       inBoundChannel.setAttachment(channelFuture.getChannel());
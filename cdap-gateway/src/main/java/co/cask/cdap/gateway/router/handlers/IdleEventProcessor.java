@@ -20,6 +20,7 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.timeout.IdleState;
@@ -30,11 +31,20 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Handles states when a channel has been idle for a configured time interval, by closing the channel if an
- * HTTP Request is not in progress.
+ * HTTP Request is not in progress. It also tracks whether the channel can be reused for another request.
  */
 public class IdleEventProcessor extends IdleStateAwareChannelHandler {
   private static final Logger LOG = LoggerFactory.getLogger(IdleEventProcessor.class);
-  private boolean requestInProgress;
+  private volatile boolean requestInProgress;
+  private volatile boolean keepAlive;
+
+  /**
+   * Returns {@code true} if the last response was completely received and both the last request and response
+   * allow keeping the connection alive.
+   */
+  public boolean isReusable() {
+    return keepAlive && !requestInProgress;
+  }
 
   @Override
   public void channelIdle(ChannelHandlerContext ctx, IdleStateEvent e) throws Exception {
@@ -58,6 +68,7 @@ public class IdleEventProcessor extends IdleStateAwareChannelHandler {
     Object message = e.getMessage();
     if (message instanceof HttpResponse) {
       HttpResponse response = (HttpResponse) message;
+      keepAlive = keepAlive && HttpHeaders.isKeepAlive(response);
       if (!response.isChunked()) {
         requestInProgress = false;
       }
@@ -75,6 +86,9 @@ public class IdleEventProcessor extends IdleStateAwareChannelHandler {
   @Override
   public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
     Object message = e.getMessage();
+    if (message instanceof HttpRequest) {
+      keepAlive = HttpHeaders.isKeepAlive((HttpRequest) message);
+    }
     if (message instanceof HttpRequest || message instanceof HttpChunk) {
       requestInProgress = true;
     }
@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.Channels;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of idle keep-alive connections from the router to the discoverable endpoints, so that connections can be
+ * reused across inbound connections instead of connecting to the endpoint for every inbound connection.
+ * Idle connections are still closed by the {@link IdleEventProcessor} after the idle timeout; closed connections
+ * are discarded when they are next seen by the pool. Pool hits, misses and evictions are emitted as metrics.
+ */
+public class OutboundChannelPool {
+
+  private static final String METRIC_HITS = "router.pool.hits";
+  private static final String METRIC_MISSES = "router.pool.misses";
+  private static final String METRIC_EVICTIONS = "router.pool.evictions";
+
+  private final ClientBootstrap clientBootstrap;
+  private final int maxIdle;
+  private final int maxIdlePerHost;
+  private final ConcurrentMap<WrappedDiscoverable, Deque<Channel>> idleChannels;
+  private final AtomicInteger idleCount;
+  private final MetricsContext metricsContext;
+
+  /**
+   * Creates a new pool.
+   *
+   * @param clientBootstrap the bootstrap used to create new connections
+   * @param maxIdle maximum number of idle connections kept in total
+   * @param maxIdlePerHost maximum number of idle connections kept for each discoverable; 0 disables pooling
+   * @param metricsContext the context for emitting the pool metrics
+   */
+  public OutboundChannelPool(ClientBootstrap clientBootstrap, int maxIdle, int maxIdlePerHost,
+                             MetricsContext metricsContext) {
+    this.clientBootstrap = clientBootstrap;
+    this.maxIdle = maxIdle;
+    this.maxIdlePerHost = maxIdlePerHost;
+    this.idleChannels = Maps.newConcurrentMap();
+    this.idleCount = new AtomicInteger();
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Returns a connection to the given discoverable. The most recently released idle connection is used if there is
+   * one, otherwise a new connection is made.
+   */
+  public ChannelFuture acquire(WrappedDiscoverable discoverable) {
+    Deque<Channel> channels = idleChannels.get(discoverable);
+    if (channels != null) {
+      while (true) {
+        Channel channel;
+        synchronized (channels) {
+          channel = channels.pollFirst();
+        }
+        if (channel == null) {
+          break;
+        }
+        idleCount.decrementAndGet();
+        if (channel.isConnected()) {
+          metricsContext.increment(METRIC_HITS, 1);
+          return Channels.succeededFuture(channel);
+        }
+        // closed while idle, either by the endpoint or by the idle timeout
+        metricsContext.increment(METRIC_EVICTIONS, 1);
+      }
+    }
+    metricsContext.increment(METRIC_MISSES, 1);
+    return clientBootstrap.connect(discoverable.getSocketAddress());
+  }
+
+  /**
+   * Returns a connection that has no request in progress to the pool. The connection is closed instead if the pool
+   * is full.
+   */
+  public void release(WrappedDiscoverable discoverable, Channel channel) {
+    if (!channel.isConnected()) {
+      return;
+    }
+    if (maxIdlePerHost <= 0) {
+      HttpRequestHandler.closeOnFlush(channel);
+      return;
+    }
+    if (idleCount.incrementAndGet() > maxIdle) {
+      idleCount.decrementAndGet();
+      evict(channel);
+      return;
+    }
+
+    Deque<Channel> channels = idleChannels.get(discoverable);
+    if (channels == null) {
+      channels = new ArrayDeque<>();
+      Deque<Channel> existing = idleChannels.putIfAbsent(discoverable, channels);
+      if (existing != null) {
+        channels = existing;
+      }
+    }
+
+    Channel evicted = null;
+    synchronized (channels) {
+      channels.addFirst(channel);
+      if (channels.size() > maxIdlePerHost) {
+        // keep the most recently used connections, as the oldest ones are the first to reach the idle timeout
+        evicted = channels.pollLast();
+      }
+    }
+    if (evicted != null) {
+      idleCount.decrementAndGet();
+      evict(evicted);
+    }
+  }
+
+  /**
+   * Closes all idle connections.
+   */
+  public void close() {
+    List<Channel> channels = Lists.newArrayList();
+    for (Deque<Channel> deque : idleChannels.values()) {
+      synchronized (deque) {
+        channels.addAll(deque);
+        deque.clear();
+      }
+    }
+    for (Channel channel : channels) {
+      idleCount.decrementAndGet();
+      channel.close();
+    }
+  }
+
+  private void evict(Channel channel) {
+    metricsContext.increment(METRIC_EVICTIONS, 1);
+    HttpRequestHandler.closeOnFlush(channel);
+  }
+}
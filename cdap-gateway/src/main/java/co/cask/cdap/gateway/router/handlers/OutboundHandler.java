@@ -67,6 +67,22 @@ public class OutboundHandler extends SimpleChannelUpstreamHandler {
     });
   }
 
+  @Override
+  public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    final Channel outboundChannel = ctx.getChannel();
+    inboundChannel.getPipeline().execute(new Runnable() {
+      @Override
+      public void run() {
+        // When the outbound channel closed,
+        // close the inbound channel as well if it carries the in-flight request
+        if (outboundChannel.equals(inboundChannel.getAttachment())) {
+          HttpRequestHandler.closeOnFlush(inboundChannel);
+        }
+      }
+    });
+    super.channelClosed(ctx, e);
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
     LOG.error("Got exception {}", ctx.getChannel(), e.getCause());
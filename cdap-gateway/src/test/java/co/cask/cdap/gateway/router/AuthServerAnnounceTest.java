@@ -21,6 +21,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.internal.guava.reflect.TypeToken;
 import co.cask.cdap.internal.guice.AppFabricTestModule;
 import co.cask.cdap.route.store.RouteStore;
@@ -149,7 +150,8 @@ public class AuthServerAnnounceTest {
         new NettyRouter(cConf, sConfiguration, InetAddresses.forString(hostname),
                         new RouterServiceLookup(cConf, (DiscoveryServiceClient) discoveryService,
                                                 new RouterPathLookup(), injector.getInstance(RouteStore.class)),
-                        new MissingTokenValidator(), accessTokenTransformer, discoveryServiceClient);
+                        new MissingTokenValidator(), accessTokenTransformer, discoveryServiceClient,
+                        new NoOpMetricsCollectionService());
       router.startAndWait();
 
       for (Map.Entry<Integer, String> entry : router.getServiceLookup().getServiceMap().entrySet()) {
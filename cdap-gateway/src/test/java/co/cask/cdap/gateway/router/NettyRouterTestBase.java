@@ -433,6 +433,31 @@ public abstract class NettyRouterTestBase {
     Assert.assertEquals(1, defaultServer1.getNumConnectionsClosed() + defaultServer2.getNumConnectionsClosed());
   }
 
+  @Test
+  public void testConnectionReuseAcrossClients() throws Exception {
+    defaultServer2.cancelRegistration();
+
+    // Make each request on a new client connection, which is closed after the response is received.
+    // The router should reuse its connection to the backend for all of them.
+    URI uri = new URI(resolveURI(Constants.Router.GATEWAY_DISCOVERY_NAME, "/v2/ping"));
+    int times = 5;
+    for (int i = 0; i < times; i++) {
+      Socket socket = getSocketFactory().createSocket(uri.getHost(), uri.getPort());
+      try {
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        Assert.assertEquals("HTTP/1.1 200 OK\r", makeRequest(uri, out, socket.getInputStream()));
+      } finally {
+        socket.close();
+      }
+      // give the router time to process the close of the client connection
+      TimeUnit.MILLISECONDS.sleep(200);
+    }
+
+    Assert.assertEquals(times, defaultServer1.getNumRequests());
+    Assert.assertEquals(1, defaultServer1.getNumConnectionsOpened());
+    Assert.assertEquals(0, defaultServer1.getNumConnectionsClosed());
+  }
+
   private String makeRequest(URI uri, PrintWriter out, InputStream inputStream) throws IOException {
 
     //Send request
@@ -657,6 +682,10 @@ public abstract class NettyRouterTestBase {
     public void registerServer() {
       // Register services of test server
       log.info("Registering service {}", serviceNameSupplier.get());
+      // Cancel any previous registration, so that it is not left behind in the shared discovery service
+      if (cancelDiscovery != null) {
+        cancelDiscovery.cancel();
+      }
       cancelDiscovery = discoveryService.register(
         ResolvingDiscoverable.of(new Discoverable(serviceNameSupplier.get(), httpService.getBindAddress())));
     }
@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.internal.guice.AppFabricTestModule;
 import co.cask.cdap.route.store.RouteStore;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
@@ -73,7 +74,8 @@ class RouterResource extends ExternalResource {
       new NettyRouter(cConf, sConf, InetAddresses.forString(hostname),
                       new RouterServiceLookup(cConf, (DiscoveryServiceClient) discoveryService,
                                               new RouterPathLookup(), routeStore),
-                      new MockTokenValidator("failme"), accessTokenTransformer, discoveryServiceClient);
+                      new MockTokenValidator("failme"), accessTokenTransformer, discoveryServiceClient,
+                      new NoOpMetricsCollectionService());
     router.startAndWait();
 
     for (Map.Entry<Integer, String> entry : router.getServiceLookup().getServiceMap().entrySet()) {
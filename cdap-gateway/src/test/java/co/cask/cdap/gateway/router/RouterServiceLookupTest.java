@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router;
+
+import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.discovery.EndpointStrategy;
+import co.cask.cdap.common.utils.Networks;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.InMemoryDiscoveryService;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+/**
+ * Tests that the routes of {@link RouterServiceLookup} follow services being registered and unregistered.
+ */
+public class RouterServiceLookupTest {
+
+  private static final int GATEWAY_PORT = 10000;
+  private static final int WEBAPP_PORT = 20000;
+
+  @Test
+  public void testServiceRoute() throws Exception {
+    InMemoryDiscoveryService discoveryService = new InMemoryDiscoveryService();
+    RouterServiceLookup lookup = createLookup(discoveryService);
+    HttpRequest request = createRequest("/v3/namespaces/default/apps", "localhost");
+
+    // No endpoint for the service yet
+    Assert.assertNull(lookup.getDiscoverable(GATEWAY_PORT, request));
+
+    // The existing route picks up the new endpoint
+    InetSocketAddress address = new InetSocketAddress("localhost", 1234);
+    Cancellable cancellable = discoveryService.register(new Discoverable(Constants.Service.APP_FABRIC_HTTP, address));
+    EndpointStrategy strategy = lookup.getDiscoverable(GATEWAY_PORT, request);
+    Assert.assertNotNull(strategy);
+    Assert.assertEquals(address, strategy.pick().getSocketAddress());
+
+    // And it has no endpoint again after the service is gone
+    cancellable.cancel();
+    Assert.assertNull(lookup.getDiscoverable(GATEWAY_PORT, request));
+
+    // The latencies of all three lookups are emitted
+    final Map<String, Long> counters = Maps.newHashMap();
+    lookup.emitMetrics(new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        counters.put(metricName, value);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        // no-op
+      }
+    });
+    Assert.assertEquals(ImmutableMap.of("router.lookup.path.count", 3L, "router.lookup.endpoint.count", 3L), counters);
+  }
+
+  @Test
+  public void testHostRoute() throws Exception {
+    InMemoryDiscoveryService discoveryService = new InMemoryDiscoveryService();
+    RouterServiceLookup lookup = createLookup(discoveryService);
+    HttpRequest request = createRequest("/abc/index.html", "example.com");
+
+    // Only the default webapp for the path is available
+    InetSocketAddress defaultAddress = new InetSocketAddress("localhost", 1234);
+    discoveryService.register(new Discoverable(webappName("default/abc"), defaultAddress));
+    Assert.assertEquals(defaultAddress, lookup.getDiscoverable(WEBAPP_PORT, request).pick().getSocketAddress());
+
+    // A webapp for the host takes precedence as soon as it is registered
+    InetSocketAddress hostAddress = new InetSocketAddress("localhost", 2345);
+    Cancellable cancellable = discoveryService.register(new Discoverable(webappName("example.com"), hostAddress));
+    Assert.assertEquals(hostAddress, lookup.getDiscoverable(WEBAPP_PORT, request).pick().getSocketAddress());
+
+    // A webapp for the host and path takes precedence over both
+    InetSocketAddress pathAddress = new InetSocketAddress("localhost", 3456);
+    discoveryService.register(new Discoverable(webappName("example.com/abc"), pathAddress));
+    Assert.assertEquals(pathAddress, lookup.getDiscoverable(WEBAPP_PORT, request).pick().getSocketAddress());
+
+    // Other paths still go to the webapp for the host
+    HttpRequest otherRequest = createRequest("/def/index.html", "example.com");
+    Assert.assertEquals(hostAddress, lookup.getDiscoverable(WEBAPP_PORT, otherRequest).pick().getSocketAddress());
+    cancellable.cancel();
+    Assert.assertNull(lookup.getDiscoverable(WEBAPP_PORT, otherRequest));
+  }
+
+  private RouterServiceLookup createLookup(InMemoryDiscoveryService discoveryService) {
+    // The route store is only used for user services
+    RouterServiceLookup lookup = new RouterServiceLookup(CConfiguration.create(), discoveryService,
+                                                         new RouterPathLookup(), null);
+    lookup.updateServiceMap(ImmutableMap.of(GATEWAY_PORT, Constants.Router.GATEWAY_DISCOVERY_NAME,
+                                            WEBAPP_PORT, Constants.Router.WEBAPP_DISCOVERY_NAME));
+    return lookup;
+  }
+
+  private HttpRequest createRequest(String path, String host) {
+    HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, path);
+    request.setHeader(HttpHeaders.Names.HOST, host);
+    return request;
+  }
+
+  private String webappName(String hostAndPath) throws Exception {
+    return "webapp/" + Networks.normalizeWebappDiscoveryName(hostAndPath);
+  }
+}
@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.common.utils.Networks;
 import co.cask.cdap.internal.guice.AppFabricTestModule;
 import co.cask.cdap.route.store.RouteStore;
@@ -79,7 +80,8 @@ public class RoutingToDataSetsTest {
     nettyRouter = new NettyRouter(cConf, sConf, InetAddresses.forString("127.0.0.1"),
                                   new RouterServiceLookup(cConf, discoveryServiceClient, new RouterPathLookup(),
                                                           routeStore),
-                                  new SuccessTokenValidator(), accessTokenTransformer, discoveryServiceClient);
+                                  new SuccessTokenValidator(), accessTokenTransformer, discoveryServiceClient,
+                                  new NoOpMetricsCollectionService());
     nettyRouter.startAndWait();
 
     // Starting mock DataSet service
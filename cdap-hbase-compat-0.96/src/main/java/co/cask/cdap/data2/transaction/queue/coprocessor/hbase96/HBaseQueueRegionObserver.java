@@ -20,6 +20,7 @@ import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.data2.transaction.coprocessor.DefaultTransactionStateCacheSupplier;
 import co.cask.cdap.data2.transaction.queue.ConsumerEntryState;
 import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
+import co.cask.cdap.data2.transaction.queue.hbase.ClaimEntryAttributes;
 import co.cask.cdap.data2.transaction.queue.hbase.HBaseQueueAdmin;
 import co.cask.cdap.data2.transaction.queue.hbase.SaltedHBaseQueueStrategy;
 import co.cask.cdap.data2.transaction.queue.hbase.coprocessor.CConfigurationReader;
@@ -35,17 +36,23 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
 import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.CompareFilter;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.ScanType;
 import org.apache.hadoop.hbase.regionserver.Store;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
+import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.tephra.coprocessor.TransactionStateCache;
 import org.apache.tephra.persist.TransactionVisibilityState;
@@ -116,6 +123,23 @@ public final class HBaseQueueRegionObserver extends BaseRegionObserver {
     }
   }
 
+  @Override
+  public void prePut(ObserverContext<RegionCoprocessorEnvironment> e, Put put, WALEdit edit,
+                     Durability durability) throws IOException {
+    byte[] stateColumnName = ClaimEntryAttributes.getStateColumn(put);
+    if (stateColumnName == null) {
+      return;
+    }
+    // A queue entry claim from a FIFO consumer. Put the claimed state only if the entry is not yet claimed by
+    // another consumer, the same as the check and put done when claiming a single entry.
+    ClaimEntryAttributes.clearClaim(put);
+    e.getEnvironment().getRegion().checkAndMutate(put.getRow(), QueueEntryRow.COLUMN_FAMILY, stateColumnName,
+                                                  CompareFilter.CompareOp.EQUAL,
+                                                  new BinaryComparator(HConstants.EMPTY_BYTE_ARRAY), put,
+                                                  durability != Durability.SKIP_WAL);
+    e.bypass();
+  }
+
   @Override
   public InternalScanner preFlush(ObserverContext<RegionCoprocessorEnvironment> e,
                                   Store store, InternalScanner scanner) throws IOException {
@@ -115,6 +115,7 @@ public class UpgradeTool {
   private final QueueAdmin queueAdmin;
   private final DatasetSpecificationUpgrader dsSpecUpgrader;
   private final MetadataStore metadataStore;
+  private final LineageStore lineageStore;
   private final ExistingEntitySystemMetadataWriter existingEntitySystemMetadataWriter;
   private final UpgradeDatasetServiceManager upgradeDatasetServiceManager;
   private final NamespaceStore nsStore;
@@ -166,6 +167,7 @@ public class UpgradeTool {
     this.zkClientService = injector.getInstance(ZKClientService.class);
     this.dsFramework = injector.getInstance(DatasetFramework.class);
     this.metadataStore = injector.getInstance(MetadataStore.class);
+    this.lineageStore = injector.getInstance(LineageStore.class);
     this.streamStateStoreUpgrader = injector.getInstance(StreamStateStoreUpgrader.class);
     this.dsUpgrade = injector.getInstance(DatasetUpgrader.class);
     this.dsSpecUpgrader = injector.getInstance(DatasetSpecificationUpgrader.class);
@@ -421,6 +423,9 @@ public class UpgradeTool {
     LOG.info("Upgrading time schedule store...");
     datasetBasedTimeScheduleStore.upgrade();
 
+    LOG.info("Building lineage adjacency index...");
+    lineageStore.rebuildAdjacencyIndex();
+
     LOG.info("Writing system metadata to existing entities...");
     try {
       existingEntitySystemMetadataWriter.write(upgradeDatasetServiceManager.getDSFramework());
@@ -17,6 +17,7 @@
 package co.cask.cdap.proto.metadata;
 
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Denotes the response of the metadata search API.
@@ -27,13 +28,20 @@ public class MetadataSearchResponse {
   private final int size;
   private final int total;
   private final Set<MetadataSearchResultRecord> results;
+  private final String cursor;
 
   public MetadataSearchResponse(String sort, int offset, int size, int total, Set<MetadataSearchResultRecord> results) {
+    this(sort, offset, size, total, results, null);
+  }
+
+  public MetadataSearchResponse(String sort, int offset, int size, int total, Set<MetadataSearchResultRecord> results,
+                                @Nullable String cursor) {
     this.sort = sort;
     this.offset = offset;
     this.size = size;
     this.total = total;
     this.results = results;
+    this.cursor = cursor;
   }
 
   public String getSort() {
@@ -55,4 +63,13 @@ public class MetadataSearchResponse {
   public Set<MetadataSearchResultRecord> getResults() {
     return results;
   }
+
+  /**
+   * @return the cursor to pass to the next search request to get the page after this one, or {@code null} if this
+   *         is the last page
+   */
+  @Nullable
+  public String getCursor() {
+    return cursor;
+  }
 }
@@ -31,6 +31,7 @@ import co.cask.cdap.common.lang.FilterClassLoader;
 import co.cask.cdap.common.logging.LoggingContextAccessor;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
+import co.cask.cdap.data2.metadata.writer.AsyncLineageWriter;
 import co.cask.cdap.data2.metadata.writer.ProgramContextAware;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
 import co.cask.cdap.internal.app.runtime.ProgramClassLoader;
@@ -136,6 +137,7 @@ public final class SparkRuntimeContextProvider {
       final ZKClientService zkClientService = injector.getInstance(ZKClientService.class);
       final KafkaClientService kafkaClientService = injector.getInstance(KafkaClientService.class);
       final MetricsCollectionService metricsCollectionService = injector.getInstance(MetricsCollectionService.class);
+      final AsyncLineageWriter lineageWriter = injector.getInstance(AsyncLineageWriter.class);
       final StreamCoordinatorClient streamCoordinatorClient = injector.getInstance(StreamCoordinatorClient.class);
       final AuthorizationEnforcementService enforcementService =
         injector.getInstance(AuthorizationEnforcementService.class);
@@ -144,7 +146,8 @@ public final class SparkRuntimeContextProvider {
       // of the spark executor, hence there should be exactly one instance only.
       // The problem with not shutting down nicely is that some logs/metrics might be lost
       Services.chainStart(logAppenderService, zkClientService,
-                          kafkaClientService, metricsCollectionService, streamCoordinatorClient, enforcementService);
+                          kafkaClientService, metricsCollectionService, lineageWriter, streamCoordinatorClient,
+                          enforcementService);
       Runtime.getRuntime().addShutdownHook(new Thread() {
         @Override
         public void run() {
@@ -153,6 +156,7 @@ public final class SparkRuntimeContextProvider {
           Future<List<ListenableFuture<Service.State>>> future = Services.chainStop(enforcementService,
                                                                                     logAppenderService,
                                                                                     streamCoordinatorClient,
+                                                                                    lineageWriter,
                                                                                     metricsCollectionService,
                                                                                     kafkaClientService,
                                                                                     zkClientService);
@@ -23,6 +23,7 @@ import co.cask.cdap.common.io.SeekableInputStream;
 import co.cask.cdap.common.security.Impersonator;
 import co.cask.cdap.logging.filter.Filter;
 import co.cask.cdap.logging.serialize.LoggingEvent;
+import co.cask.cdap.logging.write.LogFileIndex;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
@@ -43,9 +44,11 @@ import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
- * Reads log events from an Avro file.
+ * Reads log events from an Avro file. If the file has a {@link LogFileIndex}, it is used to seek directly to the
+ * sync position for the requested time, otherwise the file is scanned through its sync points.
  */
 public class AvroFileReader {
   private static final Logger LOG = LoggerFactory.getLogger(AvroFileReader.class);
@@ -88,7 +91,15 @@ public class AvroFileReader {
 
       try {
         dataFileReader = createReader(file, namespaceId, impersonator);
-        if (dataFileReader.hasNext()) {
+        LogFileIndex index = readIndex(file, namespaceId, impersonator);
+        if (index != null) {
+          // All events before the position of the lower entry are older than fromTimeMs
+          int entry = index.lowerEntry(fromTimeMs);
+          if (entry >= 0) {
+            dataFileReader.seek(index.getPosition(entry));
+            LOG.trace("Seek to indexed pos {}", index.getPosition(entry));
+          }
+        } else if (dataFileReader.hasNext()) {
           datum = dataFileReader.next();
           loggingEvent = LoggingEvent.decode(datum);
           long prevPrevSyncPos = 0;
@@ -199,10 +210,17 @@ public class AvroFileReader {
     DataFileReader<GenericRecord> dataFileReader = createReader(file, namespaceId, impersonator);
 
     try {
+      // Position of the first block, right after the file header
+      long dataStartPosition = dataFileReader.previousSync();
       if (!dataFileReader.hasNext()) {
         return ImmutableList.of();
       }
 
+      LogFileIndex index = readIndex(file, namespaceId, impersonator);
+      if (index != null) {
+        return readLogPrev(dataFileReader, index, dataStartPosition, logFilter, fromTimeMs, maxEvents);
+      }
+
       List<List<LogEvent>> logSegments = Lists.newArrayList();
       List<LogEvent> logSegment;
       int count = 0;
@@ -218,7 +236,7 @@ public class AvroFileReader {
       // For open file, endPosition sync marker is unknown so start from file length and read till the actual eof
       dataFileReader.sync(length);
       long finalSync = dataFileReader.previousSync();
-      logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, -1);
+      logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, -1, false);
 
       if (!logSegment.isEmpty()) {
         logSegments.add(logSegment);
@@ -235,7 +253,7 @@ public class AvroFileReader {
         // Skip to sync position less than current sync position
         startPosition = skipToPosition(dataFileReader, startPosition, endPosition, skipLen);
         currentSync = dataFileReader.previousSync();
-        logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+        logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition, false);
 
         if (!logSegment.isEmpty()) {
           logSegments.add(logSegment);
@@ -246,8 +264,7 @@ public class AvroFileReader {
         endPosition = currentSync;
       }
 
-      int skip = count >= maxEvents ? count - maxEvents : 0;
-      return Lists.newArrayList(Iterables.skip(Iterables.concat(Lists.reverse(logSegments)), skip));
+      return lastEvents(logSegments, count, maxEvents);
     } finally {
       try {
         dataFileReader.close();
@@ -257,11 +274,57 @@ public class AvroFileReader {
     }
   }
 
+  /**
+   * Reads the file backwards using the index entries as segment boundaries, starting from the segment after the
+   * one that contains the first event newer than fromTimeMs.
+   */
+  private Collection<LogEvent> readLogPrev(DataFileReader<GenericRecord> dataFileReader, LogFileIndex index,
+                                           long dataStartPosition, Filter logFilter, long fromTimeMs,
+                                           int maxEvents) throws IOException {
+    List<List<LogEvent>> logSegments = Lists.newArrayList();
+    int count = 0;
+
+    // There is an event newer than fromTimeMs before the position of the higher entry. Events are appended in
+    // close to time order, but not strictly, so the segment after that entry can still have events at or before
+    // fromTimeMs. Hence reading starts one segment later, and newer events are skipped rather than ending the
+    // segment. If there is no such entry, read till the end of the file, which can still be open.
+    int entry = Math.min(index.higherEntry(fromTimeMs) + 1, index.size());
+    long endPosition = entry < index.size() ? index.getPosition(entry) : -1;
+
+    for (int i = entry - 1; i >= -1 && count < maxEvents; i--) {
+      long startPosition = i < 0 ? dataStartPosition : index.getPosition(i);
+      dataFileReader.seek(startPosition);
+      List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition, true);
+
+      if (!logSegment.isEmpty()) {
+        logSegments.add(logSegment);
+        count = count + logSegment.size();
+      }
+      LOG.trace("Read logevents {} from position {} to endPosition {}", count, startPosition, endPosition);
+
+      endPosition = startPosition;
+    }
+
+    return lastEvents(logSegments, count, maxEvents);
+  }
+
+  /**
+   * Returns the last maxEvents events in time order from the segments, which are in reverse time order.
+   */
+  private List<LogEvent> lastEvents(List<List<LogEvent>> logSegments, int count, int maxEvents) {
+    int skip = count >= maxEvents ? count - maxEvents : 0;
+    return Lists.newArrayList(Iterables.skip(Iterables.concat(Lists.reverse(logSegments)), skip));
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
+   *
+   * @param skipNewer if {@code true}, events newer than fromTimeMs are skipped, otherwise reading stops at the first
+   *                  such event
    */
   private List<LogEvent> readToEndSyncPosition(DataFileReader<GenericRecord> dataFileReader, Filter logFilter,
-                                               long fromTimeMs, long endSyncPosition) throws IOException {
+                                               long fromTimeMs, long endSyncPosition,
+                                               boolean skipNewer) throws IOException {
 
     List<LogEvent> logSegment = new ArrayList<>();
     GenericRecord datum = null;
@@ -272,12 +335,12 @@ public class AvroFileReader {
       datum = dataFileReader.next(datum);
       ILoggingEvent loggingEvent = LoggingEvent.decode(datum);
 
-      // Stop when reached fromTimeMs
+      // Stop or skip when reached fromTimeMs
       if (loggingEvent.getTimeStamp() > fromTimeMs) {
-        break;
-      }
-
-      if (logFilter.match(loggingEvent)) {
+        if (!skipNewer) {
+          break;
+        }
+      } else if (logFilter.match(loggingEvent)) {
         logSegment.add(new LogEvent(loggingEvent,
                                     new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, loggingEvent.getTimeStamp())));
       }
@@ -303,6 +366,26 @@ public class AvroFileReader {
     return startPosition;
   }
 
+  /**
+   * Reads the index of the given log file.
+   *
+   * @return the index or {@code null} if the file doesn't have a usable index
+   */
+  @Nullable
+  private LogFileIndex readIndex(final Location file, NamespaceId namespaceId, Impersonator impersonator) {
+    try {
+      return impersonator.doAs(namespaceId, new Callable<LogFileIndex>() {
+        @Override
+        public LogFileIndex call() throws Exception {
+          return LogFileIndex.read(file);
+        }
+      });
+    } catch (Exception e) {
+      LOG.warn("Failed to read index of log file {}. Falling back to scanning the file.", file, e);
+      return null;
+    }
+  }
+
   private DataFileReader<GenericRecord> createReader(Location location, NamespaceId namespaceId,
                                                      Impersonator impersonator) throws IOException {
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator),
@@ -55,6 +55,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
   private final String logBaseDir;
   private final Schema schema;
   private final int syncIntervalBytes;
+  private final long indexIntervalBytes;
   private final Map<String, AvroFile> fileMap;
   private final long maxFileSize;
   private final long maxFileLifetimeMs;
@@ -70,16 +71,18 @@ public final class AvroFileWriter implements Closeable, Flushable {
    * @param schema schema of the Avro data to be written.
    * @param maxFileSize Avro files greater than maxFileSize will get rotated.
    * @param syncIntervalBytes the approximate number of uncompressed bytes to write in each block.
+   * @param indexIntervalBytes the approximate number of bytes between two entries in the {@link LogFileIndex}.
    * @param maxFileLifetimeMs files that are older than maxFileLifetimeMs will be closed.
    */
   public AvroFileWriter(FileMetaDataManager fileMetaDataManager, NamespacedLocationFactory namespacedLocationFactory,
                         String logBaseDir, Schema schema, long maxFileSize, int syncIntervalBytes,
-                        long maxFileLifetimeMs, Impersonator impersonator) {
+                        long indexIntervalBytes, long maxFileLifetimeMs, Impersonator impersonator) {
     this.fileMetaDataManager = fileMetaDataManager;
     this.namespacedLocationFactory = namespacedLocationFactory;
     this.logBaseDir = logBaseDir;
     this.schema = schema;
     this.syncIntervalBytes = syncIntervalBytes;
+    this.indexIntervalBytes = indexIntervalBytes;
     this.fileMap = Maps.newHashMap();
     this.maxFileSize = maxFileSize;
     this.maxFileLifetimeMs = maxFileLifetimeMs;
@@ -254,6 +257,10 @@ public final class AvroFileWriter implements Closeable, Flushable {
         if (avroFile.getLocation().exists()) {
           avroFile.getLocation().delete();
         }
+        Location indexLocation = LogFileIndex.getIndexLocation(avroFile.getLocation());
+        if (indexLocation.exists()) {
+          indexLocation.delete();
+        }
       }
     } catch (IOException e) {
       LOG.error("Error while closing and deleting file {}", avroFile.getLocation(), e);
@@ -265,6 +272,9 @@ public final class AvroFileWriter implements Closeable, Flushable {
    *
    * Since there is no way to check the state of the underlying file on an exception,
    * all methods of this class assume that the file state is bad on any exception and close the file.
+   *
+   * While appending, a sync point is forced roughly every {@code indexIntervalBytes} and recorded in a
+   * {@link LogFileIndex}, which is written next to the file on every sync and on close.
    */
   public class AvroFile implements Closeable {
     private final Location location;
@@ -272,6 +282,10 @@ public final class AvroFileWriter implements Closeable, Flushable {
     private DataFileWriter<GenericRecord> dataFileWriter;
     private long createTime;
     private boolean isOpen = false;
+    private LogFileIndex index;
+    private int indexSize;
+    private long lastIndexPos;
+    private long maxTimestamp = -1L;
 
     public AvroFile(Location location) {
       this.location = location;
@@ -290,6 +304,9 @@ public final class AvroFileWriter implements Closeable, Flushable {
         this.dataFileWriter.create(schema, this.outputStream);
         this.dataFileWriter.setSyncInterval(syncIntervalBytes);
         this.createTime = System.currentTimeMillis();
+        this.index = new LogFileIndex();
+        this.indexSize = 0;
+        this.lastIndexPos = this.outputStream.getPos();
         // Sync the file as soon as it is created, otherwise a zero length Avro file can get created on OOM
         sync();
       } catch (Exception e) {
@@ -309,7 +326,14 @@ public final class AvroFileWriter implements Closeable, Flushable {
 
     public void append(LogWriteEvent event) throws IOException {
       try {
+        // Record a sync point if enough data was written since the last index entry. The index entry carries
+        // the largest timestamp written before the sync point, so that all events before it are known to be older.
+        if (maxTimestamp >= 0 && outputStream.getPos() - lastIndexPos >= indexIntervalBytes) {
+          lastIndexPos = dataFileWriter.sync();
+          index.add(maxTimestamp, lastIndexPos);
+        }
         dataFileWriter.append(event.getGenericRecord());
+        maxTimestamp = Math.max(maxTimestamp, event.getLogEvent().getTimeStamp());
       } catch (Exception e) {
         close();
         throw new IOException("Exception while appending to file " + location, e);
@@ -343,6 +367,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
       try {
         dataFileWriter.flush();
         outputStream.hsync();
+        writeIndex();
       } catch (Exception e) {
         close();
         throw new IOException("Exception while syncing file " + location, e);
@@ -367,6 +392,23 @@ public final class AvroFileWriter implements Closeable, Flushable {
           outputStream.close();
         }
       }
+      writeIndex();
+    }
+
+    /**
+     * Writes the index file if there are new entries since it was last written. Failure to write the index
+     * doesn't affect the log file, since readers fall back to scanning files without a valid index.
+     */
+    private void writeIndex() {
+      if (index == null || index.size() == indexSize) {
+        return;
+      }
+      try {
+        index.write(location);
+        indexSize = index.size();
+      } catch (IOException e) {
+        LOG.warn("Failed to write index for file {}", location, e);
+      }
     }
   }
 }
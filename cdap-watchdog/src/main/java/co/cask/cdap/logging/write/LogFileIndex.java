@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.write;
+
+import co.cask.cdap.common.io.Locations;
+import com.google.common.io.Closeables;
+import org.apache.twill.filesystem.Location;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * A sparse index of an Avro log file, stored in a sidecar file next to the log file. Each entry maps a sync
+ * position in the log file to the largest event timestamp written before that position. Since the timestamps
+ * are non-decreasing, readers can binary search the index to find where to start reading for a given time,
+ * instead of scanning the log file block by block.
+ *
+ * Index file format:
+ * <pre>
+ *   version (int), number of entries (int), [timestamp (long), position (long)]*
+ * </pre>
+ */
+public final class LogFileIndex {
+
+  private static final String INDEX_SUFFIX = ".idx";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final int VERSION = 1;
+
+  private long[] timestamps;
+  private long[] positions;
+  private int size;
+
+  public LogFileIndex() {
+    this(new long[16], new long[16], 0);
+  }
+
+  private LogFileIndex(long[] timestamps, long[] positions, int size) {
+    this.timestamps = timestamps;
+    this.positions = positions;
+    this.size = size;
+  }
+
+  /**
+   * Returns the location of the index file for the given log file.
+   */
+  public static Location getIndexLocation(Location logFile) throws IOException {
+    return getSibling(logFile, logFile.getName() + INDEX_SUFFIX);
+  }
+
+  /**
+   * Reads the index of the given log file.
+   *
+   * @return the index or {@code null} if the log file does not have an index
+   * @throws IOException if failed to read the index file
+   */
+  @Nullable
+  public static LogFileIndex read(Location logFile) throws IOException {
+    Location indexLocation = getIndexLocation(logFile);
+    if (!indexLocation.exists()) {
+      return null;
+    }
+
+    DataInputStream is = new DataInputStream(new BufferedInputStream(indexLocation.getInputStream()));
+    try {
+      int version = is.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported log file index version " + version + " in " + indexLocation);
+      }
+      int size = is.readInt();
+      if (size < 0) {
+        throw new IOException("Invalid number of entries " + size + " in " + indexLocation);
+      }
+      long[] timestamps = new long[size];
+      long[] positions = new long[size];
+      for (int i = 0; i < size; i++) {
+        timestamps[i] = is.readLong();
+        positions[i] = is.readLong();
+      }
+      return new LogFileIndex(timestamps, positions, size);
+    } finally {
+      Closeables.closeQuietly(is);
+    }
+  }
+
+  /**
+   * Adds an index entry.
+   *
+   * @param timestamp the largest event timestamp written before the given position
+   * @param position the sync position in the log file
+   */
+  public void add(long timestamp, long position) {
+    if (size > 0) {
+      // Keep the timestamps non-decreasing for binary search, even if events arrive out of order
+      timestamp = Math.max(timestamp, timestamps[size - 1]);
+    }
+    if (size == timestamps.length) {
+      timestamps = Arrays.copyOf(timestamps, size * 2);
+      positions = Arrays.copyOf(positions, size * 2);
+    }
+    timestamps[size] = timestamp;
+    positions[size] = position;
+    size++;
+  }
+
+  /**
+   * Writes the index for the given log file. The index is written to a temporary file first and then renamed,
+   * so that readers never see a partially written index.
+   */
+  public void write(Location logFile) throws IOException {
+    Location indexLocation = getIndexLocation(logFile);
+    Location tempLocation = getSibling(logFile, logFile.getName() + INDEX_SUFFIX + TEMP_SUFFIX);
+
+    DataOutputStream os = new DataOutputStream(new BufferedOutputStream(tempLocation.getOutputStream()));
+    try {
+      os.writeInt(VERSION);
+      os.writeInt(size);
+      for (int i = 0; i < size; i++) {
+        os.writeLong(timestamps[i]);
+        os.writeLong(positions[i]);
+      }
+    } finally {
+      os.close();
+    }
+
+    if (tempLocation.renameTo(indexLocation) == null) {
+      tempLocation.delete();
+      throw new IOException("Failed to rename " + tempLocation + " to " + indexLocation);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getTimestamp(int idx) {
+    return timestamps[idx];
+  }
+
+  public long getPosition(int idx) {
+    return positions[idx];
+  }
+
+  /**
+   * Returns the index of the last entry with a timestamp smaller than the given timestamp. All events before the
+   * position of that entry have timestamps smaller than the given timestamp.
+   *
+   * @return the entry index, or {@code -1} if there is no such entry
+   */
+  public int lowerEntry(long timestamp) {
+    return higherEntry(timestamp - 1) - 1;
+  }
+
+  /**
+   * Returns the index of the first entry with a timestamp larger than the given timestamp.
+   *
+   * @return the entry index, or {@link #size()} if there is no such entry
+   */
+  public int higherEntry(long timestamp) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (timestamps[mid] <= timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static Location getSibling(Location location, String name) throws IOException {
+    Location parent = Locations.getParent(location);
+    if (parent == null) {
+      throw new IllegalArgumentException("Log file " + location + " does not have a parent directory");
+    }
+    return parent.append(name);
+  }
+}
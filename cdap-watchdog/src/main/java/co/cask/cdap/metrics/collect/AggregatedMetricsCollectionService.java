@@ -21,9 +21,9 @@ import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.Constants;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import co.cask.cdap.common.metrics.MetricHandle;
+import co.cask.cdap.common.metrics.MetricHandleProvider;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -36,6 +36,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -43,6 +44,11 @@ import java.util.concurrent.TimeUnit;
 /**
  * Base class for {@link MetricsCollectionService} which collect metrics through a set of cached
  * {@link AggregatedMetricsEmitter}.
+ * <p>
+ * Each {@link MetricsContext} keeps the emitters of its metrics, which are also the {@link MetricHandle}s of the
+ * context, so updating a metric through a handle is a single atomic add. Metrics that have not been updated for
+ * a minute are removed, as well as contexts without metrics. A handle of a removed metric that gets updated again
+ * adds itself back.
  */
 public abstract class AggregatedMetricsCollectionService extends AbstractScheduledService
                                                          implements MetricsCollectionService {
@@ -50,34 +56,19 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsCollectionService.class);
   private static final long CACHE_EXPIRE_MINUTES = 1;
 
-  private final LoadingCache<Map<String, String>, MetricsContext> collectors;
-  private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  private final long expireSeconds;
+  private final ConcurrentMap<Map<String, String>, MetricsContextImpl> contexts;
 
   private ScheduledExecutorService executorService;
 
   public AggregatedMetricsCollectionService() {
-    this.collectors = CacheBuilder.newBuilder()
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(createCollectorLoader());
-
-    this.emitters = CacheBuilder.newBuilder()
-      // NOTE : we don't need to have removalListener to  emit metrics, as we have expireAfterAccess set for a minute,
-      // emitters.get() is used to increment/gauge and that would reset the access time,
-      // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
-      // there wont be any loss of emitter entries.
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
-        @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
-              @Override
-              public AggregatedMetricsEmitter load(String metricName) throws Exception {
-                return new AggregatedMetricsEmitter(metricName);
-              }
-            });
-        }
-      });
+    this(TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_MINUTES));
+  }
+
+  @VisibleForTesting
+  AggregatedMetricsCollectionService(long expireSeconds) {
+    this.expireSeconds = expireSeconds;
+    this.contexts = Maps.newConcurrentMap();
   }
 
   /**
@@ -129,7 +120,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
 
   @Override
   public final MetricsContext getContext(final Map<String, String> tags) {
-    return collectors.getUnchecked(tags);
+    return getContextImpl(tags);
   }
 
   @Override
@@ -144,27 +135,26 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
     }
   }
 
+  private MetricsContextImpl getContextImpl(Map<String, String> tags) {
+    MetricsContextImpl context = contexts.get(tags);
+    if (context == null) {
+      context = new MetricsContextImpl(tags);
+      MetricsContextImpl existing = contexts.putIfAbsent(context.getTags(), context);
+      if (existing != null) {
+        context = existing;
+      }
+    }
+    return context;
+  }
+
   private Iterator<MetricValues> getMetrics(final long timestamp) {
-    // NOTE : emitters.asMap does not reset the access time in cache,
-    // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
-    final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
-      emitters.asMap().entrySet().iterator();
+    final Iterator<MetricsContextImpl> iterator = contexts.values().iterator();
     return new AbstractIterator<MetricValues>() {
       @Override
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
-          Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
-          Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
-          // +1 because we add extra metric about how many metric values did we emit in this context (see below)
-          List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
-          for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
-            MetricValue metricValue = emitterEntry.getValue().emit();
-            // skip increment by 0
-            if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
-              continue;
-            }
-            metricValues.add(metricValue);
-          }
+          MetricsContextImpl context = iterator.next();
+          List<MetricValue> metricValues = context.emit(timestamp);
 
           if (metricValues.isEmpty()) {
             // skip if there are no metric values to send
@@ -175,45 +165,81 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
           metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
 
           LOG.trace("Emit metric {}", metricValues);
-          return new MetricValues(entry.getKey(), timestamp, metricValues);
+          return new MetricValues(context.getTags(), timestamp, metricValues);
         }
         return endOfData();
       }
     };
   }
 
-  private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
-    return new CacheLoader<Map<String, String>, MetricsContext>() {
-      @Override
-      public MetricsContext load(final Map<String, String> collectorKey) throws Exception {
-        return new MetricsContextImpl(collectorKey);
+  /**
+   * Adds back a handle that was removed for being idle.
+   */
+  private void reattach(MetricHandleImpl handle) {
+    MetricHandleImpl existing;
+    synchronized (handle) {
+      if (!handle.detached) {
+        return;
       }
-    };
+      while (true) {
+        MetricsContextImpl context = getContextImpl(handle.tags);
+        synchronized (context) {
+          if (context.detached) {
+            // The context was removed after it was looked up, look it up again
+            continue;
+          }
+          existing = context.handles.putIfAbsent(handle.getName(), handle);
+          if (existing == null) {
+            handle.detached = false;
+            return;
+          }
+        }
+        break;
+      }
+    }
+    // Another handle was created for the metric after this one was removed, so move the value over to it.
+    // The handle stays detached, so updates keep going to the other handle.
+    MetricValue metricValue = handle.emit();
+    if (metricValue.getType() == MetricType.GAUGE) {
+      existing.gauge(metricValue.getValue());
+    } else {
+      existing.increment(metricValue.getValue());
+    }
   }
 
-  private final class MetricsContextImpl implements MetricsContext {
+  private final class MetricsContextImpl implements MetricsContext, MetricHandleProvider {
 
     private final Map<String, String> tags;
+    private final ConcurrentMap<String, MetricHandleImpl> handles;
+    // Whether the context was removed from the contexts map, guarded by this
+    private boolean detached;
 
     private MetricsContextImpl(final Map<String, String> tags) {
       this.tags = ImmutableMap.copyOf(tags);
+      this.handles = Maps.newConcurrentMap();
     }
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      getMetricHandle(metricName).increment(value);
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      getMetricHandle(metricName).gauge(value);
+    }
+
+    @Override
+    public MetricHandle getMetricHandle(String metricName) {
+      MetricHandle handle = handles.get(metricName);
+      return handle == null ? createHandle(metricName) : handle;
     }
 
     @Override
     public MetricsContext childContext(String tagName, String tagValue) {
       ImmutableMap<String, String> allTags = ImmutableMap.<String, String>builder()
         .putAll(tags).put(tagName, tagValue).build();
-      return collectors.getUnchecked(allTags);
+      return getContextImpl(allTags);
     }
 
     @Override
@@ -230,7 +256,103 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
       Map<String, String> allTags = Maps.newHashMap();
       allTags.putAll(this.tags);
       allTags.putAll(tags);
-      return collectors.getUnchecked(allTags);
+      return getContextImpl(allTags);
+    }
+
+    private MetricHandle createHandle(String metricName) {
+      synchronized (this) {
+        // A context that was removed for being idle adds itself back, unless it was replaced already
+        if (!detached || contexts.putIfAbsent(tags, this) == null) {
+          detached = false;
+          MetricHandleImpl handle = handles.get(metricName);
+          if (handle == null) {
+            handle = new MetricHandleImpl(tags, metricName);
+            handles.put(metricName, handle);
+          }
+          return handle;
+        }
+      }
+      return getContextImpl(tags).getMetricHandle(metricName);
+    }
+
+    /**
+     * Emits the values of all metrics of this context and removes the metrics that have been idle for too long.
+     * Called from the publishing thread only.
+     */
+    private List<MetricValue> emit(long timestamp) {
+      // +1 because we add extra metric about how many metric values did we emit in this context
+      List<MetricValue> metricValues = Lists.newArrayListWithCapacity(handles.size() + 1);
+      for (MetricHandleImpl handle : handles.values()) {
+        MetricValue metricValue = handle.emit();
+        if (!isEmpty(metricValue)) {
+          handle.lastActive = timestamp;
+        } else if (timestamp - handle.lastActive >= expireSeconds) {
+          metricValue = handle.detach(handles);
+        }
+        // skip increment by 0
+        if (!isEmpty(metricValue)) {
+          metricValues.add(metricValue);
+        }
+      }
+
+      if (handles.isEmpty()) {
+        synchronized (this) {
+          if (handles.isEmpty()) {
+            detached = true;
+            contexts.remove(tags, this);
+          }
+        }
+      }
+      return metricValues;
+    }
+
+    private boolean isEmpty(MetricValue metricValue) {
+      return metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0;
+    }
+  }
+
+  /**
+   * The {@link MetricHandle} of a metric, which aggregates its values until they are published.
+   */
+  private final class MetricHandleImpl extends AggregatedMetricsEmitter implements MetricHandle {
+
+    private final Map<String, String> tags;
+    // Whether the handle was removed from its context, guarded by this for writes
+    private volatile boolean detached;
+    // Time in seconds when the metric was last published, used by the publishing thread only
+    private long lastActive;
+
+    private MetricHandleImpl(Map<String, String> tags, String name) {
+      super(name);
+      this.tags = tags;
+      this.lastActive = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    @Override
+    public void increment(long value) {
+      super.increment(value);
+      if (detached) {
+        reattach(this);
+      }
+    }
+
+    @Override
+    public void gauge(long value) {
+      super.gauge(value);
+      if (detached) {
+        reattach(this);
+      }
+    }
+
+    /**
+     * Removes this handle from the given handles of its context and returns the updates made before the removal.
+     */
+    private MetricValue detach(Map<String, MetricHandleImpl> handles) {
+      synchronized (this) {
+        detached = true;
+        handles.remove(getName(), this);
+      }
+      return emit();
     }
   }
 }
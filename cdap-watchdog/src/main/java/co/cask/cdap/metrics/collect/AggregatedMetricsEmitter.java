@@ -27,12 +27,14 @@ import java.util.concurrent.atomic.AtomicLong;
  * {@link MetricsEmitter} that aggregates  values for a metric
  * during collection and emit the aggregated value when emit.
  */
-final class AggregatedMetricsEmitter implements MetricsEmitter {
+class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
   private final String name;
-  // metric value
-  private final AtomicLong value;
+  // metric value accumulated by increments
+  private final StripedCounter value;
+  // last gauged metric value
+  private final AtomicLong gaugeValue;
   // specifies if the metric type is gauge or counter
   private final AtomicBoolean gaugeUsed;
 
@@ -42,25 +44,35 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     }
 
     this.name = name;
-    this.value = new AtomicLong();
+    this.value = new StripedCounter();
+    this.gaugeValue = new AtomicLong();
     this.gaugeUsed = new AtomicBoolean(false);
   }
 
+  String getName() {
+    return name;
+  }
+
   void increment(long value) {
-    this.value.addAndGet(value);
+    this.value.add(value);
   }
 
 
   @Override
   public MetricValue emit() {
     // todo CDAP-2195 - potential race condition , reseting value and type has to be done together
-    long value = this.value.getAndSet(0);
-    MetricType type = gaugeUsed.getAndSet(false) ? MetricType.GAUGE : MetricType.COUNTER;
-    return new MetricValue(name, type, value);
+    long value = this.value.sumThenReset();
+    if (gaugeUsed.getAndSet(false)) {
+      // increments after the gauge add to the gauged value
+      return new MetricValue(name, MetricType.GAUGE, gaugeValue.get() + value);
+    }
+    return new MetricValue(name, MetricType.COUNTER, value);
   }
 
-  public void gauge(long value) {
-    this.value.set(value);
+  void gauge(long value) {
+    // the gauge replaces any value accumulated so far
+    this.value.sumThenReset();
+    this.gaugeValue.set(value);
     this.gaugeUsed.set(true);
   }
 }
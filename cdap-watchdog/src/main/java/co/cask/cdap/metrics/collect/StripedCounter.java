@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.collect;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that spreads concurrent updates over multiple cells, similar to {@code LongAdder} in Java 8.
+ * Updates go to a single value until two threads contend on it, after which every thread adds to the cell picked
+ * by its thread id, so that threads updating the same counter don't keep invalidating each other's cache line.
+ */
+final class StripedCounter {
+
+  private static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+  // Number of longs between two cells, to put every cell on its own cache line
+  private static final int PADDING = 8;
+
+  private final AtomicLong base = new AtomicLong();
+  private volatile AtomicLongArray cells;
+
+  /**
+   * Adds the given value to the counter.
+   */
+  void add(long delta) {
+    AtomicLongArray cells = this.cells;
+    if (cells == null) {
+      long value = base.get();
+      if (base.compareAndSet(value, value + delta)) {
+        return;
+      }
+      cells = createCells();
+    }
+    cells.addAndGet(cellIndex(), delta);
+  }
+
+  /**
+   * Returns the value of the counter and resets it to zero. Updates that happen concurrently are either included in
+   * the returned value or kept for the next call.
+   */
+  long sumThenReset() {
+    long sum = base.getAndSet(0L);
+    AtomicLongArray cells = this.cells;
+    if (cells != null) {
+      for (int i = 0; i < cells.length(); i += PADDING) {
+        sum += cells.getAndSet(i, 0L);
+      }
+    }
+    return sum;
+  }
+
+  private synchronized AtomicLongArray createCells() {
+    if (cells == null) {
+      cells = new AtomicLongArray(STRIPES * PADDING);
+    }
+    return cells;
+  }
+
+  private static int cellIndex() {
+    // Spread the sequential thread ids over the cells
+    int hash = (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 32);
+    return (hash & (STRIPES - 1)) * PADDING;
+  }
+
+  private static int stripes(int processors) {
+    int stripes = 2;
+    while (stripes < processors && stripes < 64) {
+      stripes <<= 1;
+    }
+    return stripes;
+  }
+}
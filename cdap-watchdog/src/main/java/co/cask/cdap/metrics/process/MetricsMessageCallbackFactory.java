@@ -20,10 +20,12 @@ import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.internal.io.DatumReader;
 import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.SchemaGenerator;
+import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.reflect.TypeToken;
 import com.google.inject.Inject;
@@ -36,17 +38,22 @@ import org.apache.twill.kafka.client.KafkaConsumer;
  */
 public final class MetricsMessageCallbackFactory implements MessageCallbackFactory {
 
+  private final CConfiguration cConf;
+  private final DatumReaderFactory readerFactory;
   private final DatumReader<MetricValues> datumReader;
   private final Schema recordSchema;
   private final MetricStore metricStore;
   private final int persistThreshold;
 
   @Inject
-  public MetricsMessageCallbackFactory(SchemaGenerator schemaGenerator, DatumReaderFactory readerFactory,
+  public MetricsMessageCallbackFactory(CConfiguration cConf,
+                                       SchemaGenerator schemaGenerator, DatumReaderFactory readerFactory,
                                        MetricStore metricStore,
                                        @Named(Constants.Metrics.KAFKA_CONSUMER_PERSIST_THRESHOLD)
                                        int persistThreshold) {
     try {
+      this.cConf = cConf;
+      this.readerFactory = readerFactory;
       this.recordSchema = schemaGenerator.generate(MetricValues.class);
       this.datumReader = readerFactory.create(TypeToken.of(MetricValues.class), recordSchema);
       this.metricStore = metricStore;
@@ -60,6 +67,24 @@ public final class MetricsMessageCallbackFactory implements MessageCallbackFacto
   @Override
   public KafkaConsumer.MessageCallback create(KafkaConsumerMetaTable metaTable, MetricsContext metricsContext) {
     metricStore.setMetricsContext(metricsContext);
+    if (cConf.getBoolean(Constants.MetricsProcessor.PIPELINE_ENABLED,
+                         Constants.MetricsProcessor.DEFAULT_PIPELINE_ENABLED)) {
+      // Each decode thread gets its own reader
+      Supplier<DatumReader<MetricValues>> readerSupplier = new Supplier<DatumReader<MetricValues>>() {
+        @Override
+        public DatumReader<MetricValues> get() {
+          return readerFactory.create(TypeToken.of(MetricValues.class), recordSchema);
+        }
+      };
+      return new PipelinedMetricsMessageCallback(
+        readerSupplier, recordSchema, metricStore, metaTable, persistThreshold, metricsContext,
+        cConf.getInt(Constants.MetricsProcessor.PIPELINE_DECODE_THREADS,
+                     Constants.MetricsProcessor.DEFAULT_PIPELINE_DECODE_THREADS),
+        cConf.getInt(Constants.MetricsProcessor.PIPELINE_QUEUE_SIZE,
+                     Constants.MetricsProcessor.DEFAULT_PIPELINE_QUEUE_SIZE),
+        cConf.getInt(Constants.MetricsProcessor.PIPELINE_BATCH_SIZE,
+                     Constants.MetricsProcessor.DEFAULT_PIPELINE_BATCH_SIZE));
+    }
     return new PersistedMessageCallback(
       new MetricsMessageCallback(datumReader, recordSchema, metricStore, metricsContext), metaTable, persistThreshold);
   }
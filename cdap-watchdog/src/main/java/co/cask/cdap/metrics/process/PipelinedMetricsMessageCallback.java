@@ -0,0 +1,502 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.process;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.common.io.ByteBufferInputStream;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.twill.common.Threads;
+import org.apache.twill.kafka.client.FetchedMessage;
+import org.apache.twill.kafka.client.KafkaConsumer;
+import org.apache.twill.kafka.client.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link KafkaConsumer.MessageCallback} that processes metrics in a pipeline of three stages connected by
+ * bounded queues, so that the Kafka consumer thread only hands off messages:
+ *
+ * <ul>
+ *   <li>decode: decodes messages into {@link MetricValues} on a configurable number of threads;</li>
+ *   <li>aggregate: merges decoded batches in the order they were received, summing up counters and keeping the
+ *   last gauge of the same metric with the same tags and timestamp, until the batch size is reached or there is
+ *   nothing more to merge;</li>
+ *   <li>write: adds the merged batches to the {@link MetricStore}.</li>
+ * </ul>
+ *
+ * The aggregate and write stages run on a single thread each, as merging gauges depends on the order of the
+ * messages and the tables of the {@link MetricStore} are not safe to be written concurrently.
+ * Throughput and lag of each stage are written to the {@link MetricStore} together with the metrics.
+ *
+ * A batch that fails to be written is dropped, the same as with {@link MetricsMessageCallback}, and the failure is
+ * reported once, by the next call to {@link #onReceived(Iterator)} or {@link #flush()}.
+ *
+ * As messages are processed after {@link #onReceived(Iterator)} returns, this callback persists the offsets into
+ * the {@link KafkaConsumerMetaTable} by itself, only after the messages are written, instead of being wrapped by
+ * a {@link PersistedMessageCallback}.
+ */
+public final class PipelinedMetricsMessageCallback implements KafkaConsumer.MessageCallback {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PipelinedMetricsMessageCallback.class);
+
+  private final ThreadLocal<DatumReader<MetricValues>> recordReader;
+  private final Schema recordSchema;
+  private final MetricStore metricStore;
+  private final KafkaConsumerMetaTable metaTable;
+  private final int persistThreshold;
+  private final Map<String, String> metricsContext;
+  private final int decodeThreads;
+  private final int batchSize;
+
+  private final ExecutorService decodeExecutor;
+  private final ExecutorService stageExecutor;
+  private final BlockingQueue<DecodeChunk> aggregateQueue;
+  private final BlockingQueue<WriteBatch> writeQueue;
+  // Offsets of the messages written to the metric store
+  private final Map<TopicPartition, Long> offsets;
+
+  // Number of chunks received but not yet written, guarded by this
+  private int pendingChunks;
+  // Failure of a batch that is not yet reported, guarded by this
+  private Throwable failure;
+
+  private long recordProcessed;
+
+  public PipelinedMetricsMessageCallback(final Supplier<DatumReader<MetricValues>> recordReaderSupplier,
+                                         Schema recordSchema, MetricStore metricStore,
+                                         KafkaConsumerMetaTable metaTable, int persistThreshold,
+                                         @Nullable MetricsContext metricsContext,
+                                         int decodeThreads, int queueSize, int batchSize) {
+    Preconditions.checkArgument(decodeThreads > 0, "Number of decode threads must be positive.");
+    Preconditions.checkArgument(queueSize > 0, "Queue size must be positive.");
+    Preconditions.checkArgument(batchSize > 0, "Batch size must be positive.");
+
+    this.recordReader = new ThreadLocal<DatumReader<MetricValues>>() {
+      @Override
+      protected DatumReader<MetricValues> initialValue() {
+        return recordReaderSupplier.get();
+      }
+    };
+    this.recordSchema = recordSchema;
+    this.metricStore = metricStore;
+    this.metaTable = metaTable;
+    this.persistThreshold = persistThreshold;
+    this.metricsContext = metricsContext == null ? Collections.<String, String>emptyMap() : metricsContext.getTags();
+    this.decodeThreads = decodeThreads;
+    this.batchSize = batchSize;
+
+    this.decodeExecutor = Executors.newFixedThreadPool(decodeThreads,
+                                                       Threads.createDaemonThreadFactory("metrics-decode-%d"));
+    this.stageExecutor = Executors.newFixedThreadPool(2, Threads.createDaemonThreadFactory("metrics-pipeline-%d"));
+    this.aggregateQueue = new ArrayBlockingQueue<>(queueSize);
+    this.writeQueue = new ArrayBlockingQueue<>(queueSize);
+    this.offsets = Maps.newConcurrentMap();
+
+    stageExecutor.execute(new Aggregator());
+    stageExecutor.execute(new Writer());
+  }
+
+  @Override
+  public void onReceived(Iterator<FetchedMessage> messages) {
+    List<ByteBuffer> payloads = Lists.newArrayList();
+    Map<TopicPartition, Long> fetchedOffsets = Maps.newHashMap();
+    while (messages.hasNext()) {
+      FetchedMessage message = messages.next();
+      payloads.add(message.getPayload());
+      fetchedOffsets.put(message.getTopicPartition(), message.getNextOffset());
+    }
+    if (payloads.isEmpty()) {
+      return;
+    }
+
+    // Split the messages evenly over the decode threads
+    int chunkSize = (payloads.size() + decodeThreads - 1) / decodeThreads;
+    for (int i = 0; i < payloads.size(); i += chunkSize) {
+      int end = Math.min(payloads.size(), i + chunkSize);
+      final List<ByteBuffer> chunk = payloads.subList(i, end);
+      final long enqueueTime = System.nanoTime();
+      Future<DecodeResult> future = decodeExecutor.submit(new Callable<DecodeResult>() {
+        @Override
+        public DecodeResult call() throws Exception {
+          return decode(chunk, enqueueTime);
+        }
+      });
+      synchronized (this) {
+        pendingChunks++;
+      }
+      try {
+        // Blocks when the aggregate stage is behind
+        // Chunks are written in order, hence the offsets are carried by the last one
+        Map<TopicPartition, Long> chunkOffsets = end == payloads.size()
+          ? fetchedOffsets : ImmutableMap.<TopicPartition, Long>of();
+        aggregateQueue.put(new DecodeChunk(future, enqueueTime, chunk.size(), chunkOffsets));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        chunksDone(1, null);
+        throw Throwables.propagate(e);
+      }
+    }
+
+    // Report a failed batch after the messages are handed off, so that they are not dropped as well
+    Throwable t = takeFailure();
+    if (t != null) {
+      throw new RuntimeException("Failed to add metrics data to a store", t);
+    }
+  }
+
+  /**
+   * Blocks until all messages received so far are written to the {@link MetricStore}.
+   *
+   * @throws IOException if messages failed to be written since the failure was last reported
+   */
+  synchronized void flush() throws IOException {
+    try {
+      while (pendingChunks > 0) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for metrics to be written", e);
+    }
+    Throwable t = takeFailure();
+    if (t != null) {
+      throw new IOException("Failed to add metrics data to a store", t);
+    }
+  }
+
+  @Override
+  public void finished() {
+    try {
+      flush();
+    } catch (IOException e) {
+      LOG.error("Failed to process all metrics before finishing.", e);
+    } finally {
+      decodeExecutor.shutdownNow();
+      stageExecutor.shutdownNow();
+      persistOffsets();
+    }
+    LOG.info("Metrics MessageCallback completed.");
+  }
+
+  private DecodeResult decode(List<ByteBuffer> payloads, long enqueueTime) {
+    long startTime = System.nanoTime();
+    ByteBufferInputStream is = new ByteBufferInputStream(null);
+    DatumReader<MetricValues> reader = recordReader.get();
+    List<MetricValues> records = Lists.newArrayListWithCapacity(payloads.size());
+    for (ByteBuffer payload : payloads) {
+      try {
+        records.add(reader.read(new BinaryDecoder(is.reset(payload)), recordSchema));
+      } catch (IOException e) {
+        LOG.info("Failed to decode message to MetricValue. Skipped. {}", e.getMessage());
+      }
+    }
+    return new DecodeResult(records, startTime - enqueueTime);
+  }
+
+  private void persistOffsets() {
+    try {
+      metaTable.save(ImmutableMap.copyOf(offsets));
+    } catch (Exception e) {
+      // Simple log and ignore the error.
+      LOG.error("Failed to persist consumed message offset. {}", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Returns the failure not yet reported and clears it, or {@code null} if there is none.
+   */
+  @Nullable
+  private synchronized Throwable takeFailure() {
+    Throwable t = failure;
+    failure = null;
+    return t;
+  }
+
+  private synchronized void chunksDone(int chunks, @Nullable Throwable t) {
+    pendingChunks -= chunks;
+    if (t != null && failure == null) {
+      failure = t;
+    }
+    notifyAll();
+  }
+
+  /**
+   * Merges decoded chunks into batches for the writer.
+   */
+  private final class Aggregator implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          DecodeChunk chunk = aggregateQueue.take();
+          BatchBuilder builder = new BatchBuilder();
+          builder.add(chunk);
+
+          // Keep merging chunks that are already decoded
+          chunk = aggregateQueue.peek();
+          while (builder.recordsIn < batchSize && chunk != null && chunk.future.isDone()) {
+            builder.add(aggregateQueue.poll());
+            chunk = aggregateQueue.peek();
+          }
+          writeQueue.put(builder.build());
+        }
+      } catch (InterruptedException e) {
+        // It's triggered by finished
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Writes merged batches to the {@link MetricStore}.
+   */
+  private final class Writer implements Runnable {
+
+    private int lastWriteCount;
+    private long lastWriteMillis;
+    private int messagesSincePersist;
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          WriteBatch batch = writeQueue.take();
+          // A failed batch is dropped without recording its offsets
+          Throwable error = batch.failure;
+          if (error == null) {
+            if (!batch.records.isEmpty()) {
+              error = write(batch);
+            }
+            if (error == null) {
+              offsets.putAll(batch.offsets);
+              messagesSincePersist += batch.messages;
+              if (messagesSincePersist >= persistThreshold) {
+                messagesSincePersist = 0;
+                persistOffsets();
+              }
+            }
+          }
+          chunksDone(batch.chunks, error);
+        }
+      } catch (InterruptedException e) {
+        // It's triggered by finished
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Nullable
+    private Throwable write(WriteBatch batch) {
+      long startTime = System.nanoTime();
+      List<MetricValues> records = batch.records;
+      long now = System.currentTimeMillis();
+      long delay = now - TimeUnit.SECONDS.toMillis(batch.lastTimestamp);
+      long writeLag = TimeUnit.NANOSECONDS.toMillis(startTime - batch.createTime);
+
+      List<MetricValue> stats = Lists.newArrayList(
+        new MetricValue("metrics.process.count", MetricType.COUNTER, batch.recordsIn),
+        new MetricValue("metrics.process.delay.ms", MetricType.GAUGE, delay),
+        new MetricValue("metrics.process.decode.count", MetricType.COUNTER, batch.recordsIn),
+        new MetricValue("metrics.process.decode.lag.ms", MetricType.GAUGE, batch.decodeLag),
+        new MetricValue("metrics.process.aggregate.count", MetricType.COUNTER, records.size()),
+        new MetricValue("metrics.process.aggregate.lag.ms", MetricType.GAUGE, batch.aggregateLag),
+        new MetricValue("metrics.process.write.lag.ms", MetricType.GAUGE, writeLag));
+      // Stats of a write are only known after it is done, hence are added to the next write
+      if (lastWriteCount > 0) {
+        stats.add(new MetricValue("metrics.process.write.count", MetricType.COUNTER, lastWriteCount));
+        stats.add(new MetricValue("metrics.process.write.time.ms", MetricType.GAUGE, lastWriteMillis));
+      }
+      records.add(new MetricValues(metricsContext, TimeUnit.MILLISECONDS.toSeconds(now), stats));
+
+      try {
+        metricStore.add(records);
+      } catch (Exception e) {
+        LOG.error("Failed to add metrics data to a store");
+        return e;
+      }
+
+      lastWriteCount = records.size();
+      lastWriteMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+      long processed = recordProcessed + batch.recordsIn;
+      if (processed / 1000 > recordProcessed / 1000) {
+        LOG.info("{} metrics records processed", processed);
+        LOG.info("Last record time: {}", batch.lastTimestamp);
+      }
+      recordProcessed = processed;
+      return null;
+    }
+  }
+
+  /**
+   * Builds a {@link WriteBatch} by merging the records of decoded chunks.
+   */
+  private final class BatchBuilder {
+
+    // Metrics with the same tags and timestamp, keyed by metric name
+    private final Map<ImmutablePair<Map<String, String>, Long>, Map<String, MetricValue>> metrics =
+      Maps.newLinkedHashMap();
+    private final Map<TopicPartition, Long> offsets = Maps.newHashMap();
+    private int chunks;
+    private int messages;
+    private int recordsIn;
+    private long lastTimestamp;
+    private long decodeLag;
+    private long aggregateLag;
+    private Throwable failure;
+
+    void add(DecodeChunk chunk) throws InterruptedException {
+      chunks++;
+      messages += chunk.messages;
+      offsets.putAll(chunk.offsets);
+      aggregateLag = Math.max(aggregateLag, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chunk.enqueueTime));
+      if (failure != null) {
+        return;
+      }
+
+      DecodeResult result;
+      try {
+        result = chunk.future.get();
+      } catch (ExecutionException e) {
+        failure = e.getCause();
+        return;
+      }
+
+      decodeLag = Math.max(decodeLag, TimeUnit.NANOSECONDS.toMillis(result.decodeLag));
+      for (MetricValues record : result.records) {
+        merge(record);
+        lastTimestamp = record.getTimestamp();
+      }
+      recordsIn += result.records.size();
+    }
+
+    WriteBatch build() {
+      List<MetricValues> records = Lists.newArrayListWithCapacity(metrics.size() + 1);
+      for (Map.Entry<ImmutablePair<Map<String, String>, Long>, Map<String, MetricValue>> entry : metrics.entrySet()) {
+        records.add(new MetricValues(entry.getKey().getFirst(), entry.getKey().getSecond(),
+                                     ImmutableList.copyOf(entry.getValue().values())));
+      }
+      return new WriteBatch(this, records);
+    }
+
+    private void merge(MetricValues record) {
+      ImmutablePair<Map<String, String>, Long> key = ImmutablePair.of(record.getTags(), record.getTimestamp());
+      Map<String, MetricValue> values = metrics.get(key);
+      if (values == null) {
+        values = Maps.newLinkedHashMap();
+        metrics.put(key, values);
+      }
+      for (MetricValue value : record.getMetrics()) {
+        MetricValue existing = values.get(value.getName());
+        if (existing != null && value.getType() == MetricType.COUNTER) {
+          // A counter adds to whatever was there before, which keeps the type of the existing value
+          value = new MetricValue(value.getName(), existing.getType(), existing.getValue() + value.getValue());
+        }
+        values.put(value.getName(), value);
+      }
+    }
+  }
+
+  /**
+   * A chunk of messages submitted for decoding.
+   */
+  private static final class DecodeChunk {
+    private final Future<DecodeResult> future;
+    private final long enqueueTime;
+    private final int messages;
+    private final Map<TopicPartition, Long> offsets;
+
+    DecodeChunk(Future<DecodeResult> future, long enqueueTime, int messages, Map<TopicPartition, Long> offsets) {
+      this.future = future;
+      this.enqueueTime = enqueueTime;
+      this.messages = messages;
+      this.offsets = offsets;
+    }
+  }
+
+  /**
+   * The records decoded from a {@link DecodeChunk} and how long the chunk waited to be decoded in nanoseconds.
+   */
+  private static final class DecodeResult {
+    private final List<MetricValues> records;
+    private final long decodeLag;
+
+    DecodeResult(List<MetricValues> records, long decodeLag) {
+      this.records = records;
+      this.decodeLag = decodeLag;
+    }
+  }
+
+  /**
+   * A batch of merged records to be written.
+   */
+  private static final class WriteBatch {
+    private final List<MetricValues> records;
+    private final Map<TopicPartition, Long> offsets;
+    private final int chunks;
+    private final int messages;
+    private final int recordsIn;
+    private final long lastTimestamp;
+    private final long decodeLag;
+    private final long aggregateLag;
+    private final Throwable failure;
+    private final long createTime;
+
+    WriteBatch(BatchBuilder builder, List<MetricValues> records) {
+      this.records = records;
+      this.offsets = builder.offsets;
+      this.chunks = builder.chunks;
+      this.messages = builder.messages;
+      this.recordsIn = builder.recordsIn;
+      this.lastTimestamp = builder.lastTimestamp;
+      this.decodeLag = builder.decodeLag;
+      this.aggregateLag = builder.aggregateLag;
+      this.failure = builder.failure;
+      this.createTime = System.nanoTime();
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.common.logging.logback.TestLoggingContext;
+import co.cask.cdap.common.security.DefaultImpersonator;
+import co.cask.cdap.common.security.Impersonator;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.read.AvroFileReader;
+import co.cask.cdap.logging.read.LogEvent;
+import co.cask.cdap.logging.serialize.LogSchema;
+import co.cask.cdap.logging.serialize.LoggingEvent;
+import co.cask.cdap.proto.id.NamespaceId;
+import org.apache.avro.Schema;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tests for {@link LogFileIndex} and reading log files through it.
+ */
+public class LogFileIndexTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final Impersonator IMPERSONATOR = new DefaultImpersonator(CConfiguration.create(), null, null);
+  private static final LoggingContext LOGGING_CONTEXT = new TestLoggingContext("ns1", "app1", "run1", "instance1");
+
+  @Test
+  public void testSearch() throws Exception {
+    LogFileIndex index = new LogFileIndex();
+    index.add(10L, 100L);
+    index.add(20L, 200L);
+    // Out of order timestamp should not break the ordering
+    index.add(15L, 300L);
+    index.add(30L, 400L);
+
+    Assert.assertEquals(20L, index.getTimestamp(2));
+    Assert.assertEquals(-1, index.lowerEntry(10L));
+    Assert.assertEquals(0, index.lowerEntry(11L));
+    Assert.assertEquals(2, index.lowerEntry(21L));
+    Assert.assertEquals(3, index.lowerEntry(Long.MAX_VALUE));
+
+    Assert.assertEquals(0, index.higherEntry(9L));
+    Assert.assertEquals(1, index.higherEntry(10L));
+    Assert.assertEquals(3, index.higherEntry(20L));
+    Assert.assertEquals(4, index.higherEntry(30L));
+
+    // Index should survive a round trip through the sidecar file
+    Location logFile = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create("1234.avro");
+    Assert.assertNull(LogFileIndex.read(logFile));
+    index.write(logFile);
+    LogFileIndex readIndex = LogFileIndex.read(logFile);
+    Assert.assertNotNull(readIndex);
+    Assert.assertEquals(index.size(), readIndex.size());
+    for (int i = 0; i < index.size(); i++) {
+      Assert.assertEquals(index.getTimestamp(i), readIndex.getTimestamp(i));
+      Assert.assertEquals(index.getPosition(i), readIndex.getPosition(i));
+    }
+  }
+
+  @Test
+  public void testReadWithIndex() throws Exception {
+    Schema schema = new LogSchema().getAvroSchema();
+    AvroFileWriter avroFileWriter = new AvroFileWriter(null, null, "logs", schema, Long.MAX_VALUE,
+                                                       1024 * 1024, 2048, Long.MAX_VALUE, IMPERSONATOR);
+    Location logFile = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create("1234.avro");
+    AvroFileWriter.AvroFile avroFile = avroFileWriter.new AvroFile(logFile);
+    avroFile.open();
+
+    // Write events with timestamps 1000, 1010, ..., 10990 in batches, the same way AvroFileWriter does
+    Logger logger = (Logger) LoggerFactory.getLogger(LogFileIndexTest.class);
+    for (int i = 0; i < 1000; i++) {
+      ch.qos.logback.classic.spi.LoggingEvent event = new ch.qos.logback.classic.spi.LoggingEvent(
+        getClass().getName(), logger, Level.INFO, "Test message " + i, null, null);
+      event.setTimeStamp(1000L + i * 10);
+      avroFile.append(new LogWriteEvent(LoggingEvent.encode(schema, event, LOGGING_CONTEXT), event, LOGGING_CONTEXT));
+      if (i % 20 == 19) {
+        avroFile.flush();
+      }
+      // Sync half way to test reading a file that is still open with a partial index
+      if (i == 499) {
+        avroFile.sync();
+        LogFileIndex index = LogFileIndex.read(logFile);
+        Assert.assertNotNull(index);
+        verifyRead(schema, logFile, 1000L, 5990L);
+      }
+    }
+    avroFile.close();
+
+    LogFileIndex index = LogFileIndex.read(logFile);
+    Assert.assertNotNull(index);
+    Assert.assertTrue(index.size() > 10);
+    verifyRead(schema, logFile, 1000L, 10990L);
+
+    // Without the index, the file is scanned and the result should be the same
+    Assert.assertTrue(LogFileIndex.getIndexLocation(logFile).delete());
+    Assert.assertNull(LogFileIndex.read(logFile));
+    verifyRead(schema, logFile, 1000L, 10990L);
+  }
+
+  @Test
+  public void testReadPrevOutOfOrder() throws Exception {
+    Schema schema = new LogSchema().getAvroSchema();
+    AvroFileWriter avroFileWriter = new AvroFileWriter(null, null, "logs", schema, Long.MAX_VALUE,
+                                                       1024 * 1024, 2048, Long.MAX_VALUE, IMPERSONATOR);
+    Location logFile = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create("1234.avro");
+    AvroFileWriter.AvroFile avroFile = avroFileWriter.new AvroFile(logFile);
+    avroFile.open();
+
+    // Write events with timestamps 1000, 1010, ..., 10990 in batches, with the last event of each batch arriving
+    // late in the next batch. The late event is written after the index entry that follows the newer events.
+    long[] timestamps = new long[1000];
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = 1000L + i * 10;
+    }
+    for (int i = 20; i < timestamps.length; i += 20) {
+      long late = timestamps[i - 1];
+      timestamps[i - 1] = timestamps[i];
+      timestamps[i] = late;
+    }
+
+    Logger logger = (Logger) LoggerFactory.getLogger(LogFileIndexTest.class);
+    for (int i = 0; i < timestamps.length; i++) {
+      ch.qos.logback.classic.spi.LoggingEvent event = new ch.qos.logback.classic.spi.LoggingEvent(
+        getClass().getName(), logger, Level.INFO, "Test message " + i, null, null);
+      event.setTimeStamp(timestamps[i]);
+      avroFile.append(new LogWriteEvent(LoggingEvent.encode(schema, event, LOGGING_CONTEXT), event, LOGGING_CONTEXT));
+      if (i % 20 == 19) {
+        avroFile.flush();
+      }
+    }
+    avroFile.close();
+    Assert.assertNotNull(LogFileIndex.read(logFile));
+
+    // Backward read from the timestamp of each late event, which should include the late event
+    AvroFileReader reader = new AvroFileReader(schema);
+    for (int i = 20; i < timestamps.length; i += 20) {
+      long fromTime = timestamps[i];
+      List<Long> expected = new ArrayList<>();
+      for (long ts : timestamps) {
+        if (ts <= fromTime) {
+          expected.add(ts);
+        }
+      }
+      expected = expected.subList(Math.max(0, expected.size() - 50), expected.size());
+      List<Long> actual = new ArrayList<>();
+      for (LogEvent event : reader.readLogPrev(logFile, Filter.EMPTY_FILTER, fromTime, 50,
+                                               NamespaceId.DEFAULT, IMPERSONATOR)) {
+        actual.add(event.getLoggingEvent().getTimeStamp());
+      }
+      Assert.assertEquals("Backward read from " + fromTime, expected, actual);
+    }
+  }
+
+  private void verifyRead(Schema schema, Location logFile, long firstTs, long lastTs) throws Exception {
+    AvroFileReader reader = new AvroFileReader(schema);
+    long[] times = {0L, firstTs, firstTs + 5, 3333L, 5000L, 5005L, lastTs - 10, lastTs, lastTs + 1000};
+
+    for (long fromTime : times) {
+      // Forward read
+      List<Long> expected = new ArrayList<>();
+      for (long ts = firstTs; ts <= lastTs; ts += 10) {
+        if (ts >= fromTime && ts < fromTime + 500) {
+          expected.add(ts);
+        }
+      }
+      List<Long> actual = new ArrayList<>();
+      try (CloseableIterator<LogEvent> iterator = reader.readLog(logFile, Filter.EMPTY_FILTER, fromTime,
+                                                                 fromTime + 500, Integer.MAX_VALUE,
+                                                                 NamespaceId.DEFAULT, IMPERSONATOR)) {
+        while (iterator.hasNext()) {
+          actual.add(iterator.next().getLoggingEvent().getTimeStamp());
+        }
+      }
+      Assert.assertEquals("Forward read from " + fromTime, expected, actual);
+
+      // Backward read
+      expected.clear();
+      for (long ts = firstTs; ts <= lastTs; ts += 10) {
+        if (ts <= fromTime) {
+          expected.add(ts);
+        }
+      }
+      expected = expected.subList(Math.max(0, expected.size() - 150), expected.size());
+      Collection<LogEvent> events = reader.readLogPrev(logFile, Filter.EMPTY_FILTER, fromTime, 150,
+                                                       NamespaceId.DEFAULT, IMPERSONATOR);
+      actual.clear();
+      for (LogEvent event : events) {
+        actual.add(event.getLoggingEvent().getTimeStamp());
+      }
+      Assert.assertEquals("Backward read from " + fromTime, expected, actual);
+    }
+  }
+}
@@ -19,6 +19,8 @@ import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.metrics.MetricHandle;
+import co.cask.cdap.common.metrics.MetricHandles;
 import co.cask.cdap.test.SlowTests;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
@@ -155,6 +157,81 @@ public class AggregatedMetricsCollectionServiceTest {
     }
   }
 
+  @Test
+  public void testMetricHandle() throws Exception {
+    final BlockingQueue<MetricValues> published = new LinkedBlockingQueue<>();
+
+    // Remove metrics as soon as they are idle, publishing is triggered by the test
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService(0L) {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+    };
+
+    Map<String, String> tags = ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE);
+    MetricHandle handle = MetricHandles.get(service.getContext(tags), METRIC);
+    // The context resolves the metric to its own handle
+    Assert.assertSame(handle, MetricHandles.get(service.getContext(tags), METRIC));
+    handle.increment(3);
+    handle.increment(4);
+    service.getContext(tags).increment(METRIC, 5);
+    service.runOneIteration();
+    verifyMetricsValue(published.poll(), 12L);
+
+    // The idle metric and context are removed, and added back when the handle is used again
+    service.runOneIteration();
+    Assert.assertTrue(published.isEmpty());
+    service.runOneIteration();
+    handle.increment(6);
+    service.runOneIteration();
+    verifyMetricsValue(published.poll(), 6L);
+
+    // Updates of a handle removed after another handle was created for the same metric go to the other handle
+    service.runOneIteration();
+    MetricHandle otherHandle = MetricHandles.get(service.getContext(tags), METRIC);
+    Assert.assertNotSame(handle, otherHandle);
+    otherHandle.increment(1);
+    handle.increment(2);
+    handle.gauge(7);
+    service.runOneIteration();
+    verifyMetricsValue(published.poll(), 7L);
+    Assert.assertTrue(published.isEmpty());
+  }
+
+  @Test
+  public void testConcurrentIncrement() throws Exception {
+    final BlockingQueue<MetricValues> published = new LinkedBlockingQueue<>();
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService() {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+    };
+
+    final MetricHandle handle = MetricHandles.get(service.getContext(EMPTY_TAGS), METRIC);
+    final int threadCount = 8;
+    final int increments = 100000;
+    Thread[] threads = new Thread[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < increments; j++) {
+            handle.increment(1);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    service.runOneIteration();
+    verifyMetricsValue(published.poll(), (long) threadCount * increments);
+  }
+
   private void verifyCounterMetricsValue(MetricValues metricValues) {
     Assert.assertNotNull(metricValues);
     Map<String, String> tags = metricValues.getTags();
@@ -0,0 +1,300 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.process;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricDeleteQuery;
+import co.cask.cdap.api.metrics.MetricSearchQuery;
+import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import co.cask.cdap.internal.io.ASMDatumWriterFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumReader;
+import co.cask.cdap.internal.io.DatumWriter;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.reflect.TypeToken;
+import org.apache.twill.kafka.client.FetchedMessage;
+import org.apache.twill.kafka.client.TopicPartition;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link PipelinedMetricsMessageCallback}.
+ */
+public class PipelinedMetricsMessageCallbackTest {
+
+  private static final TypeToken<MetricValues> METRIC_VALUES_TYPE = TypeToken.of(MetricValues.class);
+  private static final TopicPartition TOPIC_PARTITION = new TopicPartition("metrics", 0);
+  private static final Map<String, String> TAGS = ImmutableMap.of("tag", "value");
+
+  private static Schema schema;
+  private static DatumWriter<MetricValues> writer;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    schema = new ReflectionSchemaGenerator().generate(METRIC_VALUES_TYPE.getType());
+    writer = new ASMDatumWriterFactory(new ASMFieldAccessorFactory()).create(METRIC_VALUES_TYPE, schema);
+  }
+
+  @Test
+  public void testPipeline() throws Exception {
+    RecordingMetricStore metricStore = new RecordingMetricStore();
+    KafkaConsumerMetaTable metaTable = createMetaTable("testPipeline");
+    PipelinedMetricsMessageCallback callback = createCallback(metricStore, metaTable, 3);
+
+    // Counters of the same metric are summed up and the last gauge wins, no matter how the messages are batched
+    long offset = 0;
+    for (int i = 0; i < 10; i++) {
+      List<FetchedMessage> messages = Lists.newArrayList();
+      for (int j = 0; j < 50; j++) {
+        messages.add(createMessage(++offset, new MetricValues(TAGS, 1000L, ImmutableList.of(
+          new MetricValue("counter", MetricType.COUNTER, 1),
+          new MetricValue("gauge", MetricType.GAUGE, offset)))));
+      }
+      callback.onReceived(messages.iterator());
+    }
+    callback.flush();
+
+    Assert.assertEquals(500L, metricStore.getTotal("counter"));
+    Assert.assertEquals(500L, metricStore.getLast("gauge"));
+    Assert.assertEquals(500L, metricStore.getTotal("metrics.process.count"));
+    Assert.assertEquals(500L, metricStore.getTotal("metrics.process.decode.count"));
+
+    callback.finished();
+    Assert.assertEquals(500L, metaTable.get(TOPIC_PARTITION));
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    RecordingMetricStore metricStore = new RecordingMetricStore();
+    PipelinedMetricsMessageCallback callback = createCallback(metricStore, createMetaTable("testMerge"), 1);
+
+    // A counter after a gauge adds to the gauge, a gauge after a counter replaces it
+    callback.onReceived(ImmutableList.of(
+      createMessage(1, new MetricValues(TAGS, "first", 1000L, 3, MetricType.COUNTER)),
+      createMessage(2, new MetricValues(TAGS, "first", 1000L, 5, MetricType.GAUGE)),
+      createMessage(3, new MetricValues(TAGS, "first", 1000L, 2, MetricType.COUNTER)),
+      createMessage(4, new MetricValues(TAGS, "second", 1000L, 3, MetricType.COUNTER)),
+      createMessage(5, new MetricValues(TAGS, "second", 1000L, 1, MetricType.GAUGE)),
+      createMessage(6, new MetricValues(TAGS, "second", 1001L, 4, MetricType.COUNTER))
+    ).iterator());
+    callback.flush();
+    callback.finished();
+
+    // One record per timestamp plus the processing stats
+    Assert.assertEquals(1, metricStore.writes.size());
+    List<MetricValues> records = ImmutableList.copyOf(metricStore.writes.get(0));
+    Assert.assertEquals(3, records.size());
+
+    Map<String, MetricValue> values = toMap(records.get(0).getMetrics());
+    Assert.assertEquals(MetricType.GAUGE, values.get("first").getType());
+    Assert.assertEquals(7L, values.get("first").getValue());
+    Assert.assertEquals(MetricType.GAUGE, values.get("second").getType());
+    Assert.assertEquals(1L, values.get("second").getValue());
+
+    Assert.assertEquals(1001L, records.get(1).getTimestamp());
+    Assert.assertEquals(4L, toMap(records.get(1).getMetrics()).get("second").getValue());
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    RecordingMetricStore metricStore = new RecordingMetricStore();
+    metricStore.failures = 1;
+    KafkaConsumerMetaTable metaTable = createMetaTable("testFailure");
+    PipelinedMetricsMessageCallback callback = createCallback(metricStore, metaTable, 2);
+
+    callback.onReceived(ImmutableList.of(
+      createMessage(1, new MetricValues(TAGS, "counter", 1000L, 1, MetricType.COUNTER))).iterator());
+    try {
+      callback.flush();
+      Assert.fail("Expected the write failure to be reported");
+    } catch (IOException e) {
+      // expected
+    }
+    // The failure is reported only once and offsets of messages that were not written are not persisted
+    callback.flush();
+    Assert.assertEquals(-1L, metaTable.get(TOPIC_PARTITION));
+
+    // Messages after the failed write are written
+    for (int i = 2; i <= 4; i++) {
+      callback.onReceived(ImmutableList.of(
+        createMessage(i, new MetricValues(TAGS, "counter", 1000L, 1, MetricType.COUNTER))).iterator());
+      callback.flush();
+    }
+    Assert.assertEquals(3L, metricStore.getTotal("counter"));
+    Assert.assertEquals(4L, metaTable.get(TOPIC_PARTITION));
+
+    callback.finished();
+    Assert.assertEquals(4L, metaTable.get(TOPIC_PARTITION));
+  }
+
+  private PipelinedMetricsMessageCallback createCallback(MetricStore metricStore, KafkaConsumerMetaTable metaTable,
+                                                         int decodeThreads) {
+    Supplier<DatumReader<MetricValues>> readerSupplier = new Supplier<DatumReader<MetricValues>>() {
+      @Override
+      public DatumReader<MetricValues> get() {
+        return new ReflectionDatumReader<>(schema, METRIC_VALUES_TYPE);
+      }
+    };
+    return new PipelinedMetricsMessageCallback(readerSupplier, schema, metricStore, metaTable, 1, null,
+                                               decodeThreads, 2, 100);
+  }
+
+  private KafkaConsumerMetaTable createMetaTable(String name) {
+    InMemoryTableService.create(name);
+    return new KafkaConsumerMetaTable(new InMemoryMetricsTable(name));
+  }
+
+  private FetchedMessage createMessage(final long nextOffset, MetricValues metricValues) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writer.encode(metricValues, new BinaryEncoder(os));
+    final ByteBuffer payload = ByteBuffer.wrap(os.toByteArray());
+    return new FetchedMessage() {
+      @Override
+      public TopicPartition getTopicPartition() {
+        return TOPIC_PARTITION;
+      }
+
+      @Override
+      public ByteBuffer getPayload() {
+        return payload;
+      }
+
+      @Override
+      public long getNextOffset() {
+        return nextOffset;
+      }
+    };
+  }
+
+  private static Map<String, MetricValue> toMap(Collection<MetricValue> values) {
+    ImmutableMap.Builder<String, MetricValue> builder = ImmutableMap.builder();
+    for (MetricValue value : values) {
+      builder.put(value.getName(), value);
+    }
+    return builder.build();
+  }
+
+  /**
+   * A {@link MetricStore} that keeps the records of each write in memory.
+   */
+  private static final class RecordingMetricStore implements MetricStore {
+
+    private final List<Collection<? extends MetricValues>> writes = Lists.newCopyOnWriteArrayList();
+    // Number of writes to fail
+    private volatile int failures;
+
+    long getTotal(String name) {
+      long total = 0;
+      for (Collection<? extends MetricValues> records : writes) {
+        for (MetricValues record : records) {
+          for (MetricValue value : record.getMetrics()) {
+            if (value.getName().equals(name)) {
+              total += value.getValue();
+            }
+          }
+        }
+      }
+      return total;
+    }
+
+    long getLast(String name) {
+      long last = -1;
+      for (Collection<? extends MetricValues> records : writes) {
+        for (MetricValues record : records) {
+          for (MetricValue value : record.getMetrics()) {
+            if (value.getName().equals(name)) {
+              last = value.getValue();
+            }
+          }
+        }
+      }
+      return last;
+    }
+
+    @Override
+    public void setMetricsContext(MetricsContext metricsContext) {
+      // no-op
+    }
+
+    @Override
+    public void add(MetricValues metricValues) throws Exception {
+      add(ImmutableList.of(metricValues));
+    }
+
+    @Override
+    public void add(Collection<? extends MetricValues> metricValues) throws Exception {
+      if (failures > 0) {
+        failures--;
+        throw new IOException("Failed to write");
+      }
+      writes.add(ImmutableList.copyOf(metricValues));
+    }
+
+    @Override
+    public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteBefore(long timestamp) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(MetricDeleteQuery query) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAll() throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<TagValue> findNextAvailableTags(MetricSearchQuery query) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<String> findMetricNames(MetricSearchQuery query) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+}